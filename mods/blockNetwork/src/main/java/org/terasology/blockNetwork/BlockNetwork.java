@@ -1,17 +1,28 @@
 package org.terasology.blockNetwork;
 
 import com.google.common.collect.*;
+import org.terasology.math.Direction;
 import org.terasology.math.Vector3i;
 
 import java.util.*;
 
 /**
+ * Keeps track of all networks formed by networking and leaf blocks.
+ * <p/>
+ * Every networking block is indexed with the network it belongs to. Adding a networking block only looks at the
+ * networks of its neighbours, and if it connects several networks, the smaller ones are merged into the largest one,
+ * so only the nodes of the smaller networks are moved and reported to the listeners. Removing a networking block
+ * searches the network from each of its neighbours in lockstep, until all searches have met or all but one have
+ * run out of nodes. Each search that runs out of nodes has found a disconnected part, which is split off into a new
+ * network. So the cost of a removal depends on the size of the smaller parts, not on the size of the network.
+ *
  * @author Marcin Sciesinski <marcins78@gmail.com>
  */
 public class BlockNetwork {
     private Set<SimpleNetwork> networks = Sets.newHashSet();
     private Multimap<Vector3i, Byte> leafNodes = HashMultimap.create();
     private Set<Vector3i> networkingNodes = Sets.newHashSet();
+    private Map<Vector3i, SimpleNetwork> networkingNodeNetworks = Maps.newHashMap();
 
     private Set<NetworkTopologyListener> listeners = new HashSet<NetworkTopologyListener>();
 
@@ -43,35 +54,16 @@ public class BlockNetwork {
     }
 
     private void addNetworkingBlockInternal(Vector3i location, byte connectingOnSides) {
+        // Find the networks this node connects to, the largest one is kept and the others are merged into it
+        Set<SimpleNetwork> connectedNetworks = Sets.newLinkedHashSet();
         SimpleNetwork addToNetwork = null;
-
-        Map<Vector3i, Byte> networkingNodesToAdd = Maps.newHashMap();
-        networkingNodesToAdd.put(location, connectingOnSides);
-
-        Multimap<Vector3i, Byte> newLeafNodes = HashMultimap.create();
-
-        // Try adding to existing networks
-        final Iterator<SimpleNetwork> networkIterator = networks.iterator();
-        while (networkIterator.hasNext()) {
-            final SimpleNetwork network = networkIterator.next();
-            if (network.canAddNetworkingNode(location, connectingOnSides)) {
-                if (addToNetwork == null) {
+        for (Direction direction : DirectionsUtil.getDirections(connectingOnSides)) {
+            final Vector3i neighbourLocation = new Vector3i(location);
+            neighbourLocation.add(direction.getVector3i());
+            final SimpleNetwork network = networkingNodeNetworks.get(neighbourLocation);
+            if (network != null && network.canAddNetworkingNode(location, connectingOnSides) && connectedNetworks.add(network)) {
+                if (addToNetwork == null || network.getNetworkSize() > addToNetwork.getNetworkSize())
                     addToNetwork = network;
-                } else {
-                    Map<Vector3i, Byte> networkingNodes = Maps.newHashMap(network.getNetworkingNodes());
-                    Multimap<Vector3i, Byte> leafNodes = HashMultimap.create(network.getLeafNodes());
-
-                    networkingNodesToAdd.putAll(networkingNodes);
-                    newLeafNodes.putAll(leafNodes);
-
-                    network.removeAllLeafNodes();
-                    notifyLeafNodesRemoved(network, leafNodes);
-                    network.removeAllNetworkingNodes();
-                    notifyNetworkingNodesRemoved(network, networkingNodes);
-
-                    networkIterator.remove();
-                    notifyNetworkRemoved(network);
-                }
             }
         }
 
@@ -83,20 +75,50 @@ public class BlockNetwork {
             addToNetwork = newNetwork;
         }
 
-        for (Map.Entry<Vector3i, Byte> networkingNode : networkingNodesToAdd.entrySet())
+        Map<Vector3i, Byte> networkingNodesToAdd = Maps.newHashMap();
+        networkingNodesToAdd.put(location, connectingOnSides);
+
+        Multimap<Vector3i, Byte> newLeafNodes = HashMultimap.create();
+
+        for (SimpleNetwork network : connectedNetworks) {
+            if (network == addToNetwork)
+                continue;
+            Map<Vector3i, Byte> networkingNodes = Maps.newHashMap(network.getNetworkingNodes());
+            Multimap<Vector3i, Byte> leafNodes = HashMultimap.create(network.getLeafNodes());
+
+            network.removeAllLeafNodes();
+            notifyLeafNodesRemoved(network, leafNodes);
+            network.removeAllNetworkingNodes();
+            notifyNetworkingNodesRemoved(network, networkingNodes);
+
+            networks.remove(network);
+            notifyNetworkRemoved(network);
+
+            networkingNodesToAdd.putAll(networkingNodes);
+            for (Map.Entry<Vector3i, Byte> leafNode : leafNodes.entries()) {
+                if (!addToNetwork.hasLeafNode(leafNode.getKey(), leafNode.getValue()))
+                    newLeafNodes.put(leafNode.getKey(), leafNode.getValue());
+            }
+        }
+
+        for (Map.Entry<Vector3i, Byte> networkingNode : networkingNodesToAdd.entrySet()) {
             addToNetwork.addNetworkingNode(networkingNode.getKey(), networkingNode.getValue());
+            networkingNodeNetworks.put(new Vector3i(networkingNode.getKey()), addToNetwork);
+        }
         notifyNetworkingNodesAdded(addToNetwork, networkingNodesToAdd);
 
         for (Map.Entry<Vector3i, Byte> leafNode : newLeafNodes.entries())
             addToNetwork.addLeafNode(leafNode.getKey(), leafNode.getValue());
 
-        // Find all leaf nodes that it joins to its network
-        for (Map.Entry<Vector3i, Byte> leafNode : leafNodes.entries()) {
-            final Vector3i leafNodeLocation = leafNode.getKey();
-            final byte leafNodeConnectingOnSides = leafNode.getValue();
-            if (addToNetwork.canAddLeafNode(leafNodeLocation, leafNodeConnectingOnSides)) {
-                addToNetwork.addLeafNode(leafNodeLocation, leafNodeConnectingOnSides);
-                newLeafNodes.put(leafNodeLocation, leafNodeConnectingOnSides);
+        // Find all leaf nodes that it joins to its network, only the neighbours of the new node can be joined
+        for (Direction direction : DirectionsUtil.getDirections(connectingOnSides)) {
+            final Vector3i leafNodeLocation = new Vector3i(location);
+            leafNodeLocation.add(direction.getVector3i());
+            for (byte leafNodeConnectingOnSides : leafNodes.get(leafNodeLocation)) {
+                if (addToNetwork.canAddLeafNode(leafNodeLocation, leafNodeConnectingOnSides)) {
+                    addToNetwork.addLeafNode(leafNodeLocation, leafNodeConnectingOnSides);
+                    newLeafNodes.put(leafNodeLocation, leafNodeConnectingOnSides);
+                }
             }
         }
 
@@ -108,22 +130,29 @@ public class BlockNetwork {
         validateNotMutating();
         mutating = true;
         try {
-            for (SimpleNetwork network : networks) {
-                if (network.canAddLeafNode(location, connectingOnSides)) {
+            Set<SimpleNetwork> joinedNetworks = Sets.newHashSet();
+            for (Direction direction : DirectionsUtil.getDirections(connectingOnSides)) {
+                final Vector3i neighbourLocation = new Vector3i(location);
+                neighbourLocation.add(direction.getVector3i());
+                final SimpleNetwork network = networkingNodeNetworks.get(neighbourLocation);
+                if (network != null && !joinedNetworks.contains(network) && network.canAddLeafNode(location, connectingOnSides)) {
                     network.addLeafNode(location, connectingOnSides);
+                    joinedNetworks.add(network);
                     notifyLeafNodesAdded(network, ImmutableMultimap.of(location, connectingOnSides));
                 }
             }
 
             // Check for new degenerated networks
-            for (Map.Entry<Vector3i, Byte> leafNode : leafNodes.entries()) {
-                final Vector3i leafLocation = leafNode.getKey();
-                final byte leafConnectingOnSides = leafNode.getValue();
-                if (SimpleNetwork.areNodesConnecting(location, connectingOnSides, leafLocation, leafConnectingOnSides)) {
-                    SimpleNetwork degenerateNetwork = SimpleNetwork.createDegenerateNetwork(location, connectingOnSides, leafLocation, leafConnectingOnSides);
-                    networks.add(degenerateNetwork);
-                    notifyNetworkAdded(degenerateNetwork);
-                    notifyLeafNodesAdded(degenerateNetwork, ImmutableMultimap.of(location, connectingOnSides, leafLocation, leafConnectingOnSides));
+            for (Direction direction : DirectionsUtil.getDirections(connectingOnSides)) {
+                final Vector3i leafLocation = new Vector3i(location);
+                leafLocation.add(direction.getVector3i());
+                for (byte leafConnectingOnSides : leafNodes.get(leafLocation)) {
+                    if (SimpleNetwork.areNodesConnecting(location, connectingOnSides, leafLocation, leafConnectingOnSides)) {
+                        SimpleNetwork degenerateNetwork = SimpleNetwork.createDegenerateNetwork(location, connectingOnSides, leafLocation, leafConnectingOnSides);
+                        networks.add(degenerateNetwork);
+                        notifyNetworkAdded(degenerateNetwork);
+                        notifyLeafNodesAdded(degenerateNetwork, ImmutableMultimap.of(location, connectingOnSides, leafLocation, leafConnectingOnSides));
+                    }
                 }
             }
 
@@ -153,30 +182,178 @@ public class BlockNetwork {
                 throw new IllegalStateException("Trying to remove a networking block that doesn't belong to any network");
 
             networkingNodes.remove(location);
+            networkingNodeNetworks.remove(location);
 
-            // Naive implementation, just remove everything and start over
-            // TODO: Improve to actually detects the branches of splits and build separate network for each disjunctioned
-            // TODO: network
-            Map<Vector3i, Byte> networkingNodes = Maps.newHashMap(networkWithBlock.getNetworkingNodes());
-            Multimap<Vector3i, Byte> leafNodes = HashMultimap.create(networkWithBlock.getLeafNodes());
+            final byte connectingOnSides = networkWithBlock.getNetworkingNodes().get(location);
+            networkWithBlock.removeNetworkingNode(location, connectingOnSides);
+            notifyNetworkingNodesRemoved(networkWithBlock, ImmutableMap.of(location, connectingOnSides));
 
-            networkWithBlock.removeAllLeafNodes();
-            notifyLeafNodesRemoved(networkWithBlock, leafNodes);
-            networkWithBlock.removeAllNetworkingNodes();
-            notifyNetworkingNodesRemoved(networkWithBlock, networkingNodes);
+            if (networkWithBlock.getNetworkingNodes().isEmpty()) {
+                Multimap<Vector3i, Byte> leafNodes = HashMultimap.create(networkWithBlock.getLeafNodes());
+                networkWithBlock.removeAllLeafNodes();
+                if (leafNodes.size() > 0)
+                    notifyLeafNodesRemoved(networkWithBlock, leafNodes);
 
-            networks.remove(networkWithBlock);
-            notifyNetworkRemoved(networkWithBlock);
+                networks.remove(networkWithBlock);
+                notifyNetworkRemoved(networkWithBlock);
+                return;
+            }
 
-            for (Map.Entry<Vector3i, Byte> networkingNode : networkingNodes.entrySet()) {
-                if (!networkingNode.getKey().equals(location))
-                    addNetworkingBlockInternal(networkingNode.getKey(), networkingNode.getValue());
+            splitDisconnectedParts(networkWithBlock, getConnectedNetworkingNodes(networkWithBlock, location, connectingOnSides));
+
+            // Leaf nodes, that were connected to the network only through the removed node
+            Multimap<Vector3i, Byte> removedLeafNodes = HashMultimap.create();
+            for (Direction direction : DirectionsUtil.getDirections(connectingOnSides)) {
+                final Vector3i leafLocation = new Vector3i(location);
+                leafLocation.add(direction.getVector3i());
+                for (byte leafConnectingOnSides : Lists.newArrayList(networkWithBlock.getLeafNodes().get(leafLocation))) {
+                    if (!isConnectingToNetworkingNode(networkWithBlock, leafLocation, leafConnectingOnSides)) {
+                        networkWithBlock.removeLeafNode(leafLocation, leafConnectingOnSides);
+                        removedLeafNodes.put(leafLocation, leafConnectingOnSides);
+                    }
+                }
             }
+            if (removedLeafNodes.size() > 0)
+                notifyLeafNodesRemoved(networkWithBlock, removedLeafNodes);
         } finally {
             mutating = false;
         }
     }
 
+    /**
+     * Searches the network from all of the given networking nodes in lockstep. Searches that meet are joined, like
+     * the sets of a union-find structure. Each search that runs out of nodes before it meets another one, has found
+     * a part of the network not connected to the rest, which is split off into a new network. The search stops once
+     * a single search is left.
+     */
+    private void splitDisconnectedParts(SimpleNetwork network, List<Vector3i> startNodes) {
+        final int count = startNodes.size();
+        if (count < 2)
+            return;
+
+        final int[] parent = new int[count];
+        final List<Deque<Vector3i>> toVisit = Lists.newArrayList();
+        final List<List<Vector3i>> visited = Lists.newArrayList();
+        final Map<Vector3i, Integer> searchOfNode = Maps.newHashMap();
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            toVisit.add(new ArrayDeque<Vector3i>(Collections.singleton(startNodes.get(i))));
+            visited.add(Lists.newArrayList(startNodes.get(i)));
+            searchOfNode.put(startNodes.get(i), i);
+        }
+
+        final Map<Vector3i, Byte> nodes = network.getNetworkingNodes();
+        int running = count;
+        while (running > 1) {
+            for (int i = 0; i < count && running > 1; i++) {
+                if (parent[i] != i || toVisit.get(i) == null)
+                    continue;
+                final Vector3i node = toVisit.get(i).poll();
+                if (node == null) {
+                    // This search has visited its whole part of the network without meeting another one
+                    running--;
+                    toVisit.set(i, null);
+                    splitOff(network, visited.get(i));
+                    continue;
+                }
+                for (Direction direction : DirectionsUtil.getDirections(nodes.get(node))) {
+                    final Vector3i neighbourLocation = new Vector3i(node);
+                    neighbourLocation.add(direction.getVector3i());
+                    final Byte neighbourConnectingOnSides = nodes.get(neighbourLocation);
+                    if (neighbourConnectingOnSides == null || !DirectionsUtil.hasDirection(neighbourConnectingOnSides, direction.reverse()))
+                        continue;
+                    final Integer search = searchOfNode.get(neighbourLocation);
+                    if (search == null) {
+                        searchOfNode.put(neighbourLocation, i);
+                        toVisit.get(i).add(neighbourLocation);
+                        visited.get(i).add(neighbourLocation);
+                    } else {
+                        final int other = find(parent, search);
+                        if (other != i) {
+                            // The searches met, continue them as one search
+                            parent[other] = i;
+                            toVisit.get(i).addAll(toVisit.get(other));
+                            visited.get(i).addAll(visited.get(other));
+                            toVisit.set(other, null);
+                            visited.set(other, null);
+                            running--;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    private void splitOff(SimpleNetwork network, Collection<Vector3i> nodes) {
+        Map<Vector3i, Byte> movedNetworkingNodes = Maps.newHashMap();
+        for (Vector3i node : nodes)
+            movedNetworkingNodes.put(node, network.getNetworkingNodes().get(node));
+        for (Map.Entry<Vector3i, Byte> networkingNode : movedNetworkingNodes.entrySet())
+            network.removeNetworkingNode(networkingNode.getKey(), networkingNode.getValue());
+        notifyNetworkingNodesRemoved(network, movedNetworkingNodes);
+
+        SimpleNetwork newNetwork = new SimpleNetwork();
+        networks.add(newNetwork);
+        notifyNetworkAdded(newNetwork);
+        for (Map.Entry<Vector3i, Byte> networkingNode : movedNetworkingNodes.entrySet()) {
+            newNetwork.addNetworkingNode(networkingNode.getKey(), networkingNode.getValue());
+            networkingNodeNetworks.put(networkingNode.getKey(), newNetwork);
+        }
+        notifyNetworkingNodesAdded(newNetwork, movedNetworkingNodes);
+
+        // Leaf nodes of the moved networking nodes join the new network, and leave the old one, if they are not
+        // connected to it anymore
+        Multimap<Vector3i, Byte> movedLeafNodes = HashMultimap.create();
+        for (Map.Entry<Vector3i, Byte> networkingNode : movedNetworkingNodes.entrySet()) {
+            for (Direction direction : DirectionsUtil.getDirections(networkingNode.getValue())) {
+                final Vector3i leafLocation = new Vector3i(networkingNode.getKey());
+                leafLocation.add(direction.getVector3i());
+                for (byte leafConnectingOnSides : network.getLeafNodes().get(leafLocation)) {
+                    if (DirectionsUtil.hasDirection(leafConnectingOnSides, direction.reverse()))
+                        movedLeafNodes.put(leafLocation, leafConnectingOnSides);
+                }
+            }
+        }
+        if (movedLeafNodes.isEmpty())
+            return;
+
+        Multimap<Vector3i, Byte> removedLeafNodes = HashMultimap.create();
+        for (Map.Entry<Vector3i, Byte> leafNode : movedLeafNodes.entries()) {
+            newNetwork.addLeafNode(leafNode.getKey(), leafNode.getValue());
+            if (!isConnectingToNetworkingNode(network, leafNode.getKey(), leafNode.getValue())) {
+                network.removeLeafNode(leafNode.getKey(), leafNode.getValue());
+                removedLeafNodes.put(leafNode.getKey(), leafNode.getValue());
+            }
+        }
+        if (removedLeafNodes.size() > 0)
+            notifyLeafNodesRemoved(network, removedLeafNodes);
+        notifyLeafNodesAdded(newNetwork, movedLeafNodes);
+    }
+
+    private List<Vector3i> getConnectedNetworkingNodes(SimpleNetwork network, Vector3i location, byte connectingOnSides) {
+        List<Vector3i> result = Lists.newArrayList();
+        for (Direction direction : DirectionsUtil.getDirections(connectingOnSides)) {
+            final Vector3i neighbourLocation = new Vector3i(location);
+            neighbourLocation.add(direction.getVector3i());
+            final Byte neighbourConnectingOnSides = network.getNetworkingNodes().get(neighbourLocation);
+            if (neighbourConnectingOnSides != null && DirectionsUtil.hasDirection(neighbourConnectingOnSides, direction.reverse()))
+                result.add(neighbourLocation);
+        }
+        return result;
+    }
+
+    private boolean isConnectingToNetworkingNode(SimpleNetwork network, Vector3i location, byte connectingOnSides) {
+        return !getConnectedNetworkingNodes(network, location, connectingOnSides).isEmpty();
+    }
+
     public void removeLeafBlock(Vector3i location, byte connectingOnSides) {
         validateNotMutating();
         mutating = true;
@@ -212,11 +389,7 @@ public class BlockNetwork {
     }
 
     private SimpleNetwork findNetworkWithNetworkingBlock(Vector3i location) {
-        for (SimpleNetwork network : networks) {
-            if (network.hasNetworkingNode(location))
-                return network;
-        }
-        return null;
+        return networkingNodeNetworks.get(location);
     }
 
     private void notifyNetworkAdded(SimpleNetwork network) {
@@ -25,11 +25,17 @@ import org.terasology.math.Vector3i;
  */
 public class SimpleNetwork implements Network {
     private static final boolean SANITY_CHECK = false;
+    private static final int DISTANCE_CACHE_SIZE = 256;
     private Map<Vector3i, Byte> networkingNodes = Maps.newHashMap();
     private Multimap<Vector3i, Byte> leafNodes = HashMultimap.create();
 
-    // Distance cache
-    private Map<TwoNetworkNodes, Integer> distanceCache = Maps.newHashMap();
+    // Distance cache, keeps the most recently used distances, cleared whenever the network changes
+    private Map<TwoNetworkNodes, Integer> distanceCache = new LinkedHashMap<TwoNetworkNodes, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TwoNetworkNodes, Integer> eldest) {
+            return size() > DISTANCE_CACHE_SIZE;
+        }
+    };
 
     public static SimpleNetwork createDegenerateNetwork(
             Vector3i location1, byte connectingOnSides1,
@@ -193,6 +199,11 @@ public class SimpleNetwork implements Network {
         if (SimpleNetwork.areNodesConnecting(from, fromConnectionSides, to, toConnectionSides))
             return 1;
 
+        final Integer cachedDistance = distanceCache.get(
+                new TwoNetworkNodes(new NetworkNode(from, fromConnectionSides), new NetworkNode(to, toConnectionSides)));
+        if (cachedDistance != null)
+            return cachedDistance;
+
         // Breadth-first search of the network
         Set<Vector3i> visitedNodes = Sets.newHashSet();
         visitedNodes.add(from);
@@ -240,6 +251,11 @@ public class SimpleNetwork implements Network {
         if (SimpleNetwork.areNodesConnecting(from, fromConnectionSides, to, toConnectionSides))
             return true;
 
+        final Integer cachedDistance = distanceCache.get(
+                new TwoNetworkNodes(new NetworkNode(from, fromConnectionSides), new NetworkNode(to, toConnectionSides)));
+        if (cachedDistance != null)
+            return cachedDistance <= distance;
+
         // Breadth-first search of the network
         Set<Vector3i> visitedNodes = Sets.newHashSet();
         visitedNodes.add(from);
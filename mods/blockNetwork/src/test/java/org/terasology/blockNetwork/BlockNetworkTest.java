@@ -154,6 +154,47 @@ public class BlockNetworkTest {
         assertTrue(network.hasLeafNode(new Vector3i(0, 0, 2), allDirections));
     }
 
+    @Test
+    public void removingNetworkingNodeFromLoopDoesNotSplitNetwork() {
+        blockNetwork.addNetworkingBlock(new Vector3i(0, 0, 0), allDirections);
+        blockNetwork.addNetworkingBlock(new Vector3i(1, 0, 0), allDirections);
+        blockNetwork.addNetworkingBlock(new Vector3i(1, 0, 1), allDirections);
+        blockNetwork.addNetworkingBlock(new Vector3i(0, 0, 1), allDirections);
+        blockNetwork.addLeafBlock(new Vector3i(-1, 0, 0), allDirections);
+        listener.reset();
+
+        blockNetwork.removeNetworkingBlock(new Vector3i(1, 0, 0));
+        assertEquals(1, blockNetwork.getNetworks().size());
+        assertEquals(0, listener.networksAdded);
+        assertEquals(0, listener.networksRemoved);
+        assertEquals(1, listener.networkingNodesRemoved);
+        Network network = blockNetwork.getNetworks().iterator().next();
+        assertTrue(network.hasLeafNode(new Vector3i(-1, 0, 0), allDirections));
+        assertEquals(4, network.getNetworkSize());
+    }
+
+    @Test
+    public void splittingNetworkMovesLeafNodes() {
+        for (int x = -3; x <= 3; x++)
+            blockNetwork.addNetworkingBlock(new Vector3i(x, 0, 0), allDirections);
+        blockNetwork.addLeafBlock(new Vector3i(-3, 1, 0), allDirections);
+        blockNetwork.addLeafBlock(new Vector3i(3, 1, 0), allDirections);
+        blockNetwork.addLeafBlock(new Vector3i(0, 1, 0), allDirections);
+
+        blockNetwork.removeNetworkingBlock(new Vector3i(0, 0, 0));
+        assertEquals(2, blockNetwork.getNetworks().size());
+        for (Network network : blockNetwork.getNetworks()) {
+            assertEquals(4, network.getNetworkSize());
+            assertFalse(network.hasLeafNode(new Vector3i(0, 1, 0), allDirections));
+            assertTrue(network.hasNetworkingNode(new Vector3i(-1, 0, 0)) != network.hasNetworkingNode(new Vector3i(1, 0, 0)));
+            assertTrue(network.hasLeafNode(new Vector3i(-3, 1, 0), allDirections) == network.hasNetworkingNode(new Vector3i(-3, 0, 0)));
+        }
+
+        blockNetwork.addNetworkingBlock(new Vector3i(0, 0, 0), allDirections);
+        assertEquals(1, blockNetwork.getNetworks().size());
+        assertEquals(10, blockNetwork.getNetworks().iterator().next().getNetworkSize());
+    }
+
     private class TestListener implements NetworkTopologyListener {
         public int networksAdded;
         public int networksRemoved;
@@ -1,6 +1,11 @@
 package org.terasology.pathfinding.componentSystem;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.componentSystem.UpdateSubscriberSystem;
@@ -21,19 +26,20 @@ import org.terasology.pathfinding.model.Pathfinder;
 import org.terasology.pathfinding.model.WalkableBlock;
 import org.terasology.world.BlockChangedEvent;
 import org.terasology.world.WorldProvider;
-import org.terasology.world.block.BlockComponent;
 import org.terasology.world.chunks.ChunkReadyEvent;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This systems helps finding a path through the game world.
@@ -44,6 +50,10 @@ import java.util.concurrent.TimeUnit;
  *
  * In addition, paths may change or even get invalid. In such cases the callback interface is called too.
  *
+ * Searches run on a small pool of threads. Requests with the same start and target share one search, and searches
+ * whose requests got killed or invalidated meanwhile are skipped. As an alternative to the callback interface,
+ * findPath returns a future of the path.
+ *
  * @author synopia
  */
 @RegisterComponentSystem
@@ -71,19 +81,28 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
     }
 
     /**
-     * Task to update a chunk
+     * Task to update a chunk. If a block position is given, only the part of the chunk around this block is updated.
      */
     private class UpdateChunkTask {
         public Vector3i chunkPos;
+        public Vector3i blockPos;
 
-        private UpdateChunkTask(Vector3i chunkPos) {
+        private UpdateChunkTask(Vector3i chunkPos, Vector3i blockPos) {
             this.chunkPos = chunkPos;
+            this.blockPos = blockPos;
         }
 
         public void process() {
+            if( blockPos!=null ) {
+                if( pathfinder.blockChanged(blockPos) ) {
+                    invalidChunks.add(chunkPos);
+                }
+                return;
+            }
             maps.remove(chunkPos);
             HeightMap map = pathfinder.update(chunkPos);
             maps.put(chunkPos, map);
+            invalidChunks.add(chunkPos);
         }
     }
 
@@ -93,10 +112,12 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
      */
     public class FindPathTask {
         public Path path;
-        public PathRequest pathRequest;
+        public volatile PathRequest pathRequest;
         public Vector3i start;
         public Vector3i target;
         public boolean processed;
+        private boolean queued;
+        private volatile int generation;
 
         private FindPathTask(Vector3i start, Vector3i target, PathRequest pathRequest) {
             this.pathRequest = pathRequest;
@@ -104,21 +125,6 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
             this.target = target;
         }
 
-        /**
-         * Does the actual path finding. When its done, the outputQueue is filled with the result.
-         * This method should be called from a thread only, it may take long.
-         */
-        public void process() {
-            WalkableBlock start = pathfinder.getBlock(this.start);
-            WalkableBlock target = pathfinder.getBlock(this.target);
-            path = null;
-            if( start!=null && target!=null ) {
-                path = pathfinder.findPath(target, start);
-            }
-            processed = true;
-            outputQueue.offer(this);
-        }
-
         /**
          * Kills this task. Stops updating this path request.
          */
@@ -129,20 +135,116 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
         }
 
         /**
-         * Invalidates the path request, after the world or at least a chunk part of this path has changed.
+         * Invalidates the path request, after the world or at least a chunk part of this path has changed. A search
+         * already running for this task is discarded.
          */
         public void invalidate() {
+            generation++;
             processed = false;
-            pathRequest.invalidate();
+            queued = false;
+            PathRequest request = pathRequest;
+            if( request!=null ) {
+                request.invalidate();
+            }
+        }
+
+        private boolean isStale(int generation) {
+            return pathRequest==null || this.generation!=generation;
+        }
+
+        /**
+         * @return true, if the path of this task may have changed since one of the given chunks has changed
+         */
+        private boolean isAffectedBy(Set<Vector3i> chunks) {
+            if( !processed ) {
+                return queued;
+            }
+            if( path==null || path==Path.INVALID ) {
+                return true;
+            }
+            if( chunks.contains(TeraMath.calcChunkPos(start)) || chunks.contains(TeraMath.calcChunkPos(target)) ) {
+                return true;
+            }
+            for (WalkableBlock block : path) {
+                if( chunks.contains(TeraMath.calcChunkPos(block.getBlockPosition())) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Searches one path for all tasks with the same start and target.
+     */
+    private class SearchTask implements Runnable {
+        private final Vector3i start;
+        private final Vector3i target;
+        private final List<FindPathTask> tasks = Lists.newArrayList();
+        private final List<Integer> generations = Lists.newArrayList();
+
+        private SearchTask(Vector3i start, Vector3i target) {
+            this.start = start;
+            this.target = target;
+        }
+
+        private void add(FindPathTask task) {
+            tasks.add(task);
+            generations.add(task.generation);
+            task.queued = true;
+        }
+
+        private boolean isStale() {
+            for (int i = 0; i < tasks.size(); i++) {
+                if( !tasks.get(i).isStale(generations.get(i)) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if( isStale() ) {
+                // all requests got killed or invalidated while waiting, the result would be dropped anyway
+                return;
+            }
+            Path path = null;
+            try {
+                path = pathfinder.findPath(target, start);
+            } catch (RuntimeException e) {
+                logger.error("Error searching path from " + start + " to " + target, e);
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                outputQueue.offer(new SearchResult(tasks.get(i), generations.get(i), path));
+            }
+        }
+    }
+
+    private static class SearchResult {
+        private final FindPathTask task;
+        private final int generation;
+        private final Path path;
+
+        private SearchResult(FindPathTask task, int generation, Path path) {
+            this.task = task;
+            this.generation = generation;
+            this.path = path;
         }
     }
 
-    private BlockingQueue<UpdateChunkTask> updateChunkQueue = new ArrayBlockingQueue<UpdateChunkTask>(100);
-    private BlockingQueue<FindPathTask> outputQueue = new ArrayBlockingQueue<FindPathTask>(100);
+    private static final int SEARCH_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int MAX_DEFERRED_UPDATES = 10;
+
+    private BlockingQueue<UpdateChunkTask> updateChunkQueue = new LinkedBlockingQueue<UpdateChunkTask>();
+    private BlockingQueue<SearchResult> outputQueue = new LinkedBlockingQueue<SearchResult>();
     private Set<FindPathTask> taskMap = Collections.synchronizedSet(new HashSet<FindPathTask>());
     private Set<Vector3i> invalidChunks = Collections.synchronizedSet(new HashSet<Vector3i>());
+    private AtomicInteger pendingChunkUpdates = new AtomicInteger();
+    private int deferredUpdates;
 
     private ExecutorService inputThreads;
+    private ExecutorService searchThreads;
 
     private Map<Vector3i, HeightMap> maps = new HashMap<Vector3i, HeightMap>();
     private Pathfinder pathfinder;
@@ -159,6 +261,38 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
         return task;
     }
 
+    /**
+     * Requests a single path. Unlike requestPath, the path is not updated once the world changes. Cancelling the
+     * future drops the request.
+     *
+     * @return the future of the found path. The value is null if the path cannot be requested, since world changes
+     *         too much, or Path.INVALID if no path can be found between start and target.
+     */
+    public ListenableFuture<Path> findPath(Vector3i start, Vector3i target) {
+        final SettableFuture<Path> future = SettableFuture.create();
+        final FindPathTask[] task = new FindPathTask[1];
+        task[0] = requestPath(start, target, new PathRequest() {
+            @Override
+            public void onPathReady(Path path) {
+                task[0].kill();
+                future.set(path);
+            }
+
+            @Override
+            public void invalidate() {
+            }
+        });
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if( future.isCancelled() ) {
+                    task[0].kill();
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return future;
+    }
+
     public HeightMap getHeightMap( Vector3i chunkPos ) {
         return maps.get(chunkPos);
     }
@@ -172,11 +306,12 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
         pathfinder = new Pathfinder(world);
         logger.info("Pathfinder started");
 
+        searchThreads = Executors.newFixedThreadPool(SEARCH_THREADS);
         inputThreads = Executors.newFixedThreadPool(1);
         inputThreads.execute(new Runnable() {
             @Override
             public void run() {
-                final SingleThreadMonitor monitor = ThreadMonitor.create("Pathfinder.Requests", "Update", "FindPath");
+                final SingleThreadMonitor monitor = ThreadMonitor.create("Pathfinder.Requests", "Update");
                 try {
                     boolean running = true;
                     Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
@@ -184,10 +319,12 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
                         try {
                             UpdateChunkTask task = updateChunkQueue.poll(1, TimeUnit.SECONDS);
                             if( task!=null ) {
-                                task.process();
+                                try {
+                                    task.process();
+                                } finally {
+                                    pendingChunkUpdates.decrementAndGet();
+                                }
                                 monitor.increment(0);
-                            } else {
-                                findPaths(monitor, Sets.newHashSet(taskMap));
                             }
                         } catch (InterruptedException e) {
                             monitor.addError(e);
@@ -205,75 +342,93 @@ public class PathfinderSystem implements EventHandlerSystem, UpdateSubscriberSys
         });
     }
 
-    private void findPaths(SingleThreadMonitor monitor, Set<FindPathTask> tasks) {
-        pathfinder.clearCache();
-
-        int count = 0;
-        long time = System.nanoTime();
-        int notFound = 0;
-        int invalid = 0;
-        int processed = 0;
-        for (FindPathTask pathTask : tasks) {
-            if( pathTask !=null ) {
-                processed++;
-                if( pathTask.processed ) {
-                    continue;
-                }
-                if( pathTask.pathRequest==null ) {
-                    continue;
-                }
-                count ++;
-                pathTask.process();
-                if( pathTask.path==null ) {
-                    invalid ++;
-                }
-                if( pathTask.path== Path.INVALID ) {
-                    notFound ++;
-                }
-                monitor.increment(1);
+    /**
+     * Submits a search for every task, that is neither processed nor already searched for. Tasks with the same start
+     * and target are searched together. While chunk updates are pending nothing is submitted, since the results would
+     * likely be invalidated right away, but for at most MAX_DEFERRED_UPDATES updates in a row, so searches still run
+     * while the world keeps changing.
+     */
+    private void scheduleSearches() {
+        if( pendingChunkUpdates.get()>0 && deferredUpdates<MAX_DEFERRED_UPDATES ) {
+            deferredUpdates++;
+            return;
+        }
+        deferredUpdates = 0;
+        Map<List<Vector3i>, SearchTask> searches = Maps.newHashMap();
+        for (FindPathTask task : Sets.newHashSet(taskMap)) {
+            if( task.processed || task.queued || task.pathRequest==null ) {
+                continue;
             }
+            List<Vector3i> key = Lists.newArrayList(task.start, task.target);
+            SearchTask search = searches.get(key);
+            if( search==null ) {
+                search = new SearchTask(task.start, task.target);
+                searches.put(key, search);
+            }
+            search.add(task);
         }
-        float ms = (System.nanoTime() - time) / 1000 / 1000f;
-        if( count>0 ) {
-            logger.info("Searching "+count+" pathes took "+ ms +" ms ("
-                +(1000f/ms*count)+" pps), processed="+processed+", invalid="+invalid+", not found="+notFound);
+        for (SearchTask search : searches.values()) {
+            searchThreads.execute(search);
         }
     }
 
     @Override
     public void update(float delta) {
-        while (!outputQueue.isEmpty()) {
-            FindPathTask task = outputQueue.poll();
-            if( task.pathRequest!=null ) {
-                task.pathRequest.onPathReady(task.path);
+        SearchResult result;
+        while ((result = outputQueue.poll())!=null) {
+            FindPathTask task = result.task;
+            if( task.isStale(result.generation) ) {
+                continue;
             }
+            task.queued = false;
+            task.processed = true;
+            task.path = result.path;
+            task.pathRequest.onPathReady(result.path);
         }
+        invalidateChunks();
+        scheduleSearches();
     }
 
     @Override
     public void shutdown() {
         inputThreads.shutdown();
+        searchThreads.shutdownNow();
     }
 
-    @ReceiveEvent(components = BlockComponent.class)
-    public void blockChanged(BlockChangedEvent event, EntityRef entity) {
+    @ReceiveEvent(components = WorldComponent.class)
+    public void blockChanged(BlockChangedEvent event, EntityRef worldEntity) {
         Vector3i chunkPos = TeraMath.calcChunkPos(event.getBlockPosition());
-        invalidateChunk(chunkPos);
-        updateChunkQueue.offer(new UpdateChunkTask(chunkPos));
+        queueChunkUpdate(new UpdateChunkTask(chunkPos, new Vector3i(event.getBlockPosition())));
     }
 
     @ReceiveEvent(components = WorldComponent.class)
     public void chunkReady(ChunkReadyEvent event, EntityRef worldEntity) {
         Vector3i chunkPos = new Vector3i(event.getChunkPos());
-        invalidateChunk(chunkPos);
-        updateChunkQueue.offer(new UpdateChunkTask(chunkPos));
+        queueChunkUpdate(new UpdateChunkTask(chunkPos, null));
     }
 
-    private void invalidateChunk(Vector3i chunkPos) {
-        invalidChunks.add(chunkPos);
+    private void queueChunkUpdate(UpdateChunkTask task) {
+        pendingChunkUpdates.incrementAndGet();
+        updateChunkQueue.offer(task);
+    }
+
+    /**
+     * Invalidates all tasks, whose paths run through a chunk that has changed since the last call.
+     */
+    private void invalidateChunks() {
+        Set<Vector3i> chunks;
+        synchronized (invalidChunks) {
+            if( invalidChunks.isEmpty() ) {
+                return;
+            }
+            chunks = Sets.newHashSet(invalidChunks);
+            invalidChunks.clear();
+        }
         Set<FindPathTask> tasks = Sets.newHashSet(this.taskMap);
         for (FindPathTask task : tasks) {
-            task.invalidate();
+            if( task.isAffectedBy(chunks) ) {
+                task.invalidate();
+            }
         }
     }
 }
@@ -4,82 +4,108 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.math.Vector3i;
 
-import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
+ * Hierarchical A* on walkable blocks.
+ * <p/>
+ * All search state is kept in primitive arrays indexed by a node id, which is assigned in order of discovery. Blocks
+ * are mapped to node ids using arrays indexed by the block id. Entries of these arrays are only valid if they carry
+ * the generation of the current search, so reset() is O(1) and a search does not allocate, except for the resulting
+ * path and growing the arrays. An instance must only be used by one thread.
+ *
  * @author synopia
  */
 public class HAStar {
     private static final Logger logger = LoggerFactory.getLogger(HAStar.class);
     private static final int MAX_NODES = 64*1024;
+    private static final int INITIAL_NODES = 1024;
     private Path localPath;
     private HAStar localAStar;
 
-    private List<Node> nodes = new ArrayList<Node>();
+    private int nodeCount;
+    private WalkableBlock[] nodeBlock = new WalkableBlock[INITIAL_NODES];
+    private float[] nodeG = new float[INITIAL_NODES];
+    private int[] nodeParent = new int[INITIAL_NODES];
+    private Path[] nodePath = new Path[INITIAL_NODES];
+    private boolean[] nodeClosed = new boolean[INITIAL_NODES];
+    private int[] nodeSeenBy = new int[INITIAL_NODES];
+
+    private int[] blockNode = new int[0];
+    private int[] blockGeneration = new int[0];
+    private int generation = 1;
 
-    private Map<WalkableBlock, Integer> nodeMap = new HashMap<WalkableBlock, Integer>();
     private int start;
     private int end;
+    private int closedCount;
     private int cacheHits;
     private int localPathsUsed;
-    private BinaryHeap openList;
-
-    private BitSet closedList = new BitSet(16*1024);
+    private IndexedHeap openList = new IndexedHeap(INITIAL_NODES);
     private boolean useContour;
 
-    private class Node {
-        int id;
-        float g;
-        float f;
-        Node p;
-        WalkableBlock block;
-        Path path;
-    }
+    private final PathCache.Callback localSearch = new PathCache.Callback() {
+        @Override
+        public Path run(WalkableBlock from, WalkableBlock to) {
+            localAStar.reset();
+            if( localAStar.run(from, to) ) {
+                return localAStar.getPath();
+            }
+            return Path.INVALID;
+        }
+    };
 
     public HAStar() {
         this(true);
     }
     public HAStar(boolean useContour) {
         this.useContour = useContour;
-        openList = new BinaryHeap(new Comparator<Integer>() {
-            @Override
-            public int compare(Integer a, Integer b) {
-                float fA = nodes.get(a).f;
-                float fB = nodes.get(b).f;
-                return -(fA < fB ? -1 : ( fA > fB ? 1 : 0 ));
-            }
-        }, MAX_NODES, MAX_NODES);
         if( useContour ) {
             localAStar = new HAStar(false);
         }
     }
 
     public void reset() {
-        nodes.clear();
-        nodeMap.clear();
-        closedList.clear();
+        generation++;
+        if( generation==Integer.MAX_VALUE ) {
+            Arrays.fill(blockGeneration, 0);
+            generation = 1;
+        }
+        nodeCount = 0;
+        closedCount = 0;
         openList.clear();
         cacheHits = 0;
     }
 
     private int create(WalkableBlock block) {
-        Integer id = nodeMap.get(block);
-        if(id!=null) {
-            return id;
+        int blockId = block.id;
+        if( blockId>=blockNode.length ) {
+            int length = Math.max(blockId+1, Math.max(WalkableBlock.getMaxId(), blockNode.length*2));
+            blockNode = Arrays.copyOf(blockNode, length);
+            blockGeneration = Arrays.copyOf(blockGeneration, length);
+        }
+        if( blockGeneration[blockId]==generation ) {
+            return blockNode[blockId];
         }
-        Node node = new Node();
-        node.block = block;
-        node.id = nodes.size();
-        nodes.add(node);
-        nodeMap.put(block, node.id);
-        return node.id;
+        int node = nodeCount++;
+        if( node==nodeBlock.length ) {
+            int length = nodeBlock.length*2;
+            nodeBlock = Arrays.copyOf(nodeBlock, length);
+            nodeG = Arrays.copyOf(nodeG, length);
+            nodeParent = Arrays.copyOf(nodeParent, length);
+            nodePath = Arrays.copyOf(nodePath, length);
+            nodeClosed = Arrays.copyOf(nodeClosed, length);
+            nodeSeenBy = Arrays.copyOf(nodeSeenBy, length);
+        }
+        nodeBlock[node] = block;
+        nodeG[node] = 0;
+        nodeParent[node] = -1;
+        nodePath[node] = null;
+        nodeClosed[node] = false;
+        nodeSeenBy[node] = -1;
+        blockGeneration[blockId] = generation;
+        blockNode[blockId] = node;
+        return node;
     }
 
     public boolean run( WalkableBlock start, WalkableBlock end ) {
@@ -87,25 +113,21 @@ public class HAStar {
         this.start = create(start);
         this.end = create(end);
 
-        openList.insert(this.start);
+        openList.insert(this.start, 0);
 
-        int maxSize = 0;
         int current = -1;
         while (!openList.isEmpty()) {
             current = openList.removeMin();
             if( current==this.end ) {
                 break;
             }
-            if( nodes.size()>MAX_NODES-MAX_NODES/10 ){
-                logger.info("stop hpa*... nodes: "+nodes.size());
+            if( nodeCount>MAX_NODES-MAX_NODES/10 ){
+                logger.info("stop hpa*... nodes: "+nodeCount);
                 break;
             }
             expand( current );
-            closedList.set(current);
-
-            if( openList.getSize()>maxSize ) {
-                maxSize = openList.getSize();
-            }
+            nodeClosed[current] = true;
+            closedCount++;
         }
         return current==this.end;
     }
@@ -113,117 +135,104 @@ public class HAStar {
     public Path getPath() {
         localPathsUsed = 0;
         Path path = new Path();
-        Node start = nodes.get(this.start);
-        Node current = nodes.get(end);
-        while (current!=start && current!=null) {
-            if( current.path!=null ) {
-                path.addAll(current.path);
+        int current = end;
+        while (current!=start && current!=-1) {
+            if( nodePath[current]!=null ) {
+                path.addAll(nodePath[current]);
                 localPathsUsed ++;
             } else {
-                path.add(current.block);
+                path.add(nodeBlock[current]);
             }
-            current = current.p;
+            current = nodeParent[current];
         }
         return path;
     }
 
     protected void expand( int current ) {
-        Node currentNode = nodes.get(current);
-        Floor currentFloor = currentNode.block.floor;
-        Set<WalkableBlock> neighbors = new HashSet<WalkableBlock>();
-        boolean onEndHeightMap = nodes.get(end).block.floor.heightMap == currentFloor.heightMap;
-        boolean onStartHeightMap = nodes.get(start).block.floor.heightMap == currentFloor.heightMap;
+        Floor currentFloor = nodeBlock[current].floor;
+        boolean onEndHeightMap = nodeBlock[end].floor.heightMap == currentFloor.heightMap;
+        boolean onStartHeightMap = nodeBlock[start].floor.heightMap == currentFloor.heightMap;
         if( !useContour || onEndHeightMap || onStartHeightMap ) {
             // normal A* if on start or end height map
-            for (WalkableBlock neighbor : currentNode.block.neighbors) {
-                if( neighbor==null ) {
-                    continue;
+            WalkableBlock[] neighbors = nodeBlock[current].neighbors;
+            for (int i = 0; i < neighbors.length; i++) {
+                if( neighbors[i]!=null ) {
+                    expandNeighbor(current, neighbors[i]);
                 }
-                neighbors.add(neighbor);
             }
         } else {
             // otherwise use entrances of other floor
             for (Floor neighborFloor : currentFloor.neighborRegions) {
-                for (Entrance neighborEntrance : neighborFloor.entrances()) {
-                    neighbors.add(neighborEntrance.getAbstractBlock());
+                List<Entrance> entrances = neighborFloor.entrances();
+                for (int i = 0; i < entrances.size(); i++) {
+                    WalkableBlock block = entrances.get(i).getAbstractBlock();
+                    if( block!=null ) {
+                        expandNeighbor(current, block);
+                    }
                 }
             }
         }
-
-        for (WalkableBlock neighbor : neighbors) {
-            expandNeighbor(current, currentNode, neighbor);
-        }
     }
 
-    private void expandNeighbor(int current, Node currentNode, WalkableBlock neighbor) {
+    private void expandNeighbor(int current, WalkableBlock neighbor) {
         int successor = create(neighbor);
-        if( closedList.get(successor) ) {
+        // each node is expanded once, so the expanded node marks the successors already visited by this expansion
+        if( nodeClosed[successor] || nodeSeenBy[successor]==current ) {
             return;
         }
-        float tentativeG = currentNode.g + c(current, successor);
-        Node successorNode = nodes.get(successor);
-        if( openList.contains(successor) && tentativeG>=successorNode.g) {
+        nodeSeenBy[successor] = current;
+        float tentativeG = nodeG[current] + c(current, successor);
+        boolean open = openList.contains(successor);
+        if( open && tentativeG>=nodeG[successor]) {
             return;
         }
-        successorNode.path = localPath;
-        successorNode.p = currentNode;
-        successorNode.g = tentativeG;
-        successorNode.f = tentativeG + h(successor);
+        nodePath[successor] = localPath;
+        nodeParent[successor] = current;
+        nodeG[successor] = tentativeG;
+        float f = tentativeG + h(successor);
 
-        if( openList.contains(successor) ) {
-            openList.update(successor);
+        if( open ) {
+            openList.decreaseKey(successor, f);
         } else {
-            openList.insert(successor);
+            openList.insert(successor, f);
         }
     }
 
     protected float c( int from, int to ) {
         localPath = null;
-        Node fromNode = nodes.get(from);
-        Node toNode = nodes.get(to);
-        Vector3i fromPos = fromNode.block.getBlockPosition();
-        Vector3i toPos = toNode.block.getBlockPosition();
+        WalkableBlock fromBlock = nodeBlock[from];
+        WalkableBlock toBlock = nodeBlock[to];
+        Vector3i fromPos = fromBlock.getBlockPosition();
+        Vector3i toPos = toBlock.getBlockPosition();
         int diffX = Math.abs(fromPos.x- toPos.x);
-        int diffY = Math.abs(fromPos.y- toPos.y);
         int diffZ = Math.abs(fromPos.z- toPos.z);
-        if( toNode.block.hasNeighbor(fromNode.block) ) {
+        if( toBlock.hasNeighbor(fromBlock) ) {
             if( diffX+diffZ==1 ) {
                 return 1;
             } else {
                 return BitMap.SQRT_2;
             }
         }
-        if( fromNode.block.floor.heightMap.pathCache.hasPath(fromNode.block, toNode.block)) {
+        PathCache pathCache = fromBlock.floor.heightMap.pathCache;
+        if( pathCache.hasPath(fromBlock, toBlock)) {
             cacheHits ++;
         }
-        localPath = fromNode.block.floor.heightMap.pathCache.findPath(
-            fromNode.block, toNode.block, new PathCache.Callback() {
-            @Override
-            public Path run(WalkableBlock from, WalkableBlock to) {
-                localAStar.reset();
-                if( localAStar.run(from, to) ) {
-                    return localAStar.getPath();
-                }
-                return Path.INVALID;
-            }
-        });
+        localPath = pathCache.findPath(fromBlock, toBlock, localSearch);
         if( localPath==null || localPath==Path.INVALID ) {
-            throw new IllegalStateException(fromNode+", "+toNode+ " no costs found!");
+            throw new IllegalStateException(fromBlock+", "+toBlock+ " no costs found!");
         }
 
         return localPath.size();
     }
 
     protected float h( int current ) {
-        Node fromNode = nodes.get(current);
-        Node toNode = nodes.get(end);
-        Vector3i fromPos = fromNode.block.getBlockPosition();
-        Vector3i toPos = toNode.block.getBlockPosition();
+        Vector3i fromPos = nodeBlock[current].getBlockPosition();
+        Vector3i toPos = nodeBlock[end].getBlockPosition();
         return (float) Math.abs(fromPos.x-toPos.x) + Math.abs(fromPos.y-toPos.y) + Math.abs(fromPos.z-toPos.z);
     }
 
     @Override
     public String toString() {
-        return "closed list size="+closedList.cardinality()+", cache hits="+cacheHits+", local paths used="+localPathsUsed;
+        return "closed list size="+closedCount+", cache hits="+cacheHits+", local paths used="+localPathsUsed;
     }
 }
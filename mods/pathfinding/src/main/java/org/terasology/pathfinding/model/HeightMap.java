@@ -51,6 +51,48 @@ public class HeightMap {
         new FloorFinder(world).findFloors(this);
     }
 
+    /**
+     * Updates the walkable blocks and floors after a block of this height map has changed. Only the column of the
+     * changed block is scanned again, and only the blocks of the surrounding columns are connected again. Floors
+     * and entrances are rebuilt only if the walkable blocks or their connections actually changed.
+     * <p/>
+     * The neighbor maps need to be disconnected before the floors are rebuilt, since they reference the floors of
+     * this map. The given callback is run right before this height map is changed.
+     *
+     * @return true, if the walkable blocks or floors have changed
+     */
+    public boolean update(int x, int z, Runnable beforeChange) {
+        WalkableBlockFinder finder = new WalkableBlockFinder(world);
+        HeightMapCell cell = getCell(x, z);
+        List<WalkableBlock> column = finder.findWalkableBlocks(this, x, z);
+        boolean columnChanged = column.size()!=cell.blocks.size();
+        for (int i = 0; !columnChanged && i < column.size(); i++) {
+            columnChanged = column.get(i).height()!=cell.blocks.get(i).height();
+        }
+        if( !columnChanged ) {
+            for (WalkableBlock block : column) {
+                block.release();
+            }
+            if( !finder.connectColumns(this, x, z) ) {
+                return false;
+            }
+        }
+        beforeChange.run();
+        if( columnChanged ) {
+            walkableBlocks.removeAll(cell.blocks);
+            borderBlocks.removeAll(cell.blocks);
+            for (WalkableBlock block : cell.blocks) {
+                block.release();
+            }
+            cell.blocks.clear();
+            cell.blocks.addAll(column);
+            walkableBlocks.addAll(column);
+            finder.connectColumns(this, x, z);
+        }
+        new FloorFinder(world).findFloors(this);
+        return true;
+    }
+
     public void connectNeighborMaps( HeightMap left, HeightMap up, HeightMap right, HeightMap down ) {
         for (WalkableBlock block : borderBlocks) {
             int x = TeraMath.calcBlockPosX(block.getBlockPosition().x);
@@ -191,6 +233,15 @@ public class HeightMap {
 
 
 
+    /**
+     * Releases the ids of all walkable blocks, once this height map is no longer used.
+     */
+    public void release() {
+        for (WalkableBlock block : walkableBlocks) {
+            block.release();
+        }
+    }
+
     public HeightMapCell getCell(int x, int z) {
         return cells[x + z * Chunk.SIZE_Z];
     }
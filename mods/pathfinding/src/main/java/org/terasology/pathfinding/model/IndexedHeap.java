@@ -0,0 +1,117 @@
+package org.terasology.pathfinding.model;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of int items ordered by float keys. Items are small dense ids, the heap keeps track of the
+ * position of each item, so keys can be decreased in place.
+ *
+ * Positions are never reset. Instead, an item is contained only if its recorded position still holds the item, so
+ * clear() is O(1).
+ */
+public class IndexedHeap {
+    private int[] heap;
+    private int[] position;
+    private float[] keys;
+    private int size;
+
+    public IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new float[capacity];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size==0;
+    }
+
+    public boolean contains( int item ) {
+        if( item>=position.length ) {
+            return false;
+        }
+        int pos = position[item];
+        return pos<size && heap[pos]==item;
+    }
+
+    public float getKey( int item ) {
+        return keys[item];
+    }
+
+    public void insert( int item, float key ) {
+        if( item>=position.length ) {
+            int length = Math.max(item+1, position.length*2);
+            position = Arrays.copyOf(position, length);
+            keys = Arrays.copyOf(keys, length);
+        }
+        if( size==heap.length ) {
+            heap = Arrays.copyOf(heap, heap.length*2);
+        }
+        keys[item] = key;
+        heap[size] = item;
+        position[item] = size;
+        size++;
+        resortUp(size-1);
+    }
+
+    /**
+     * Lowers the key of an item already contained in the heap.
+     */
+    public void decreaseKey( int item, float key ) {
+        keys[item] = key;
+        resortUp(position[item]);
+    }
+
+    public int removeMin() {
+        int min = heap[0];
+        size--;
+        if( size>0 ) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            resortDown(0);
+        }
+        return min;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void resortUp( int index ) {
+        int item = heap[index];
+        float key = keys[item];
+        while( index>0 ) {
+            int parent = (index-1)/2;
+            if( keys[heap[parent]]<=key ) {
+                break;
+            }
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = item;
+        position[item] = index;
+    }
+
+    private void resortDown( int index ) {
+        int item = heap[index];
+        float key = keys[item];
+        while( index*2+1<size ) {
+            int child = index*2+1;
+            if( child+1<size && keys[heap[child+1]]<keys[heap[child]] ) {
+                child++;
+            }
+            if( keys[heap[child]]>=key ) {
+                break;
+            }
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = item;
+        position[item] = index;
+    }
+}
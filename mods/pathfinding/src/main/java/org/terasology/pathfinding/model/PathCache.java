@@ -1,41 +1,175 @@
 package org.terasology.pathfinding.model;
 
+import org.terasology.math.TeraMath;
+import org.terasology.math.Vector3i;
+
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
+ * Caches paths between pairs of blocks. The cache may be used by several path searches concurrently.
+ * <p/>
+ * Cached paths are indexed by the chunks they traverse, so changing a chunk only drops the paths running through
+ * it (see invalidate). Unreachable targets are dropped on every change, since any change may connect them.
+ * <p/>
+ * The number of cached paths is bounded, the least recently used paths are evicted first. Looking up a cached path
+ * does not allocate.
+ *
  * @author synopia
  */
 public class PathCache {
-    private Map<WalkableBlock, Map<WalkableBlock, Path>> paths = new HashMap<WalkableBlock, Map<WalkableBlock, Path>>();
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final Map<Key, Entry> paths;
+    private Map<Vector3i, Set<Key>> chunkIndex = new HashMap<Vector3i, Set<Key>>();
+    private Set<Key> unreachable = new HashSet<Key>();
+    private final Key probe = new Key(null, null);
 
     public interface Callback {
         Path run( WalkableBlock from, WalkableBlock to );
     }
 
-    public Path getCachedPath( WalkableBlock from, WalkableBlock to ) {
-        Map<WalkableBlock, Path> fromMap = paths.get(from);
-        if(fromMap!=null) {
-            return fromMap.get(to);
+    private static final class Key {
+        private WalkableBlock from;
+        private WalkableBlock to;
+
+        private Key(WalkableBlock from, WalkableBlock to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if( this==o ) {
+                return true;
+            }
+            if( !(o instanceof Key) ) {
+                return false;
+            }
+            Key other = (Key) o;
+            return from==other.from && to==other.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return from.id * 31 + to.id;
+        }
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private final Vector3i[] chunks;
+
+        private Entry(Path path, Vector3i[] chunks) {
+            this.path = path;
+            this.chunks = chunks;
+        }
+    }
+
+    public PathCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PathCache(int capacity) {
+        this.capacity = capacity;
+        paths = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if( size()>PathCache.this.capacity ) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized Path getCachedPath( WalkableBlock from, WalkableBlock to ) {
+        probe.from = from;
+        probe.to = to;
+        Entry entry = paths.get(probe);
+        probe.from = null;
+        probe.to = null;
+        return entry!=null ? entry.path : null;
+    }
+
+    private synchronized void insert( WalkableBlock from, WalkableBlock to, Path path ) {
+        Key key = new Key(from, to);
+        Entry old = paths.remove(key);
+        if( old!=null ) {
+            unindex(key, old);
+        }
+        if( path==Path.INVALID ) {
+            unreachable.add(key);
+            paths.put(key, new Entry(path, new Vector3i[0]));
+            return;
+        }
+        Set<Vector3i> chunks = new HashSet<Vector3i>();
+        chunks.add(TeraMath.calcChunkPos(from.getBlockPosition()));
+        chunks.add(TeraMath.calcChunkPos(to.getBlockPosition()));
+        for (WalkableBlock block : path) {
+            chunks.add(TeraMath.calcChunkPos(block.getBlockPosition()));
         }
-        return null;
+        for (Vector3i chunk : chunks) {
+            Set<Key> keys = chunkIndex.get(chunk);
+            if( keys==null ) {
+                keys = new HashSet<Key>();
+                chunkIndex.put(chunk, keys);
+            }
+            keys.add(key);
+        }
+        paths.put(key, new Entry(path, chunks.toArray(new Vector3i[chunks.size()])));
     }
 
-    private void insert( WalkableBlock from, WalkableBlock to, Path path ) {
-        Map<WalkableBlock, Path> fromMap = paths.get(from);
-        if(fromMap==null) {
-            fromMap = new HashMap<WalkableBlock, Path>();
-            paths.put(from, fromMap);
+    private void unindex( Key key, Entry entry ) {
+        if( entry.path==Path.INVALID ) {
+            unreachable.remove(key);
+        }
+        for (Vector3i chunk : entry.chunks) {
+            Set<Key> keys = chunkIndex.get(chunk);
+            if( keys!=null ) {
+                keys.remove(key);
+                if( keys.isEmpty() ) {
+                    chunkIndex.remove(chunk);
+                }
+            }
         }
-        fromMap.put(to, path );
     }
 
-    public boolean hasPath( WalkableBlock from, WalkableBlock to ) {
+    private void remove( Key key ) {
+        Entry entry = paths.remove(key);
+        if( entry!=null ) {
+            unindex(key, entry);
+        }
+    }
+
+    /**
+     * Drops all cached paths starting, ending or running through the given chunk, as well as all unreachable
+     * targets.
+     */
+    public synchronized void invalidate( Vector3i chunkPos ) {
+        Set<Key> keys = chunkIndex.get(chunkPos);
+        if( keys!=null ) {
+            for (Key key : keys.toArray(new Key[keys.size()])) {
+                remove(key);
+            }
+        }
+        for (Key key : unreachable.toArray(new Key[unreachable.size()])) {
+            remove(key);
+        }
+    }
+
+    public synchronized boolean hasPath( WalkableBlock from, WalkableBlock to ) {
         return getCachedPath(from, to)!=null;
     }
     public Path findPath( WalkableBlock from, WalkableBlock to, Callback callback ) {
         Path path = getCachedPath(from, to);
         if( path==null ) {
+            // searched without holding the lock, concurrent searches for the same pair find the same path
             path = callback.run(from, to);
             insert(from, to, path);
 //        insert(to, from, path);
@@ -43,10 +177,13 @@ public class PathCache {
         return path;
     }
 
-    public void clear() {
-        for (Map.Entry<WalkableBlock, Map<WalkableBlock, Path>> entry : paths.entrySet()) {
-            entry.getValue().clear();
-        }
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    public synchronized void clear() {
         paths.clear();
+        chunkIndex.clear();
+        unreachable.clear();
     }
 }
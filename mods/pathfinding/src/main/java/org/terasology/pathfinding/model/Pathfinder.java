@@ -8,8 +8,15 @@ import org.terasology.world.WorldProvider;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * Finds paths on the height maps of the loaded chunks.
+ * <p/>
+ * Paths may be searched by several threads at once, each thread uses its own HAStar. Height maps are only replaced
+ * while no search is running, so a search always sees a consistent set of height maps.
+ *
  * @author synopia
  */
 public class Pathfinder {
@@ -17,12 +24,17 @@ public class Pathfinder {
 
     private WorldProvider world;
     private Map<Vector3i, HeightMap> heightMaps = new HashMap<Vector3i, HeightMap>();
-    private HAStar haStar;
+    private ThreadLocal<HAStar> haStar = new ThreadLocal<HAStar>() {
+        @Override
+        protected HAStar initialValue() {
+            return new HAStar();
+        }
+    };
     private PathCache cache;
+    private ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public Pathfinder(WorldProvider world) {
         this.world = world;
-        haStar = new HAStar();
         cache = new PathCache();
     }
 
@@ -31,28 +43,65 @@ public class Pathfinder {
     }
 
     public Path findPath(final WalkableBlock start, final WalkableBlock end) {
-        return cache.findPath(start, end, new PathCache.Callback() {
-            @Override
-            public Path run(WalkableBlock from, WalkableBlock to) {
-                WalkableBlock refFrom = getBlock(from.getBlockPosition());
-                WalkableBlock refTo = getBlock(to.getBlockPosition());
-                haStar.reset();
-                Path path;
-                if( haStar.run(refFrom, refTo) ) {
-                    path = haStar.getPath();
-                    path.add(refFrom);
-                } else {
-                    path = Path.INVALID;
+        lock.readLock().lock();
+        try {
+            return cache.findPath(start, end, new PathCache.Callback() {
+                @Override
+                public Path run(WalkableBlock from, WalkableBlock to) {
+                    WalkableBlock refFrom = getBlock(from.getBlockPosition());
+                    WalkableBlock refTo = getBlock(to.getBlockPosition());
+                    if( refFrom==null || refTo==null ) {
+                        return Path.INVALID;
+                    }
+                    HAStar search = haStar.get();
+                    search.reset();
+                    Path path;
+                    if( search.run(refFrom, refTo) ) {
+                        path = search.getPath();
+                        path.add(refFrom);
+                    } else {
+                        path = Path.INVALID;
+                    }
+                    return path;
                 }
-                return path;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds a path between two block positions.
+     *
+     * @return The path, Path.INVALID if there is no path, or null if one of the positions has no walkable block
+     */
+    public Path findPath(Vector3i start, Vector3i end) {
+        lock.readLock().lock();
+        try {
+            WalkableBlock startBlock = getBlock(start);
+            WalkableBlock endBlock = getBlock(end);
+            if( startBlock==null || endBlock==null ) {
+                return null;
             }
-        });
+            return findPath(startBlock, endBlock);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public HeightMap init( Vector3i chunkPos ) {
-        clearCache();
+        lock.writeLock().lock();
+        try {
+            return initLocked(chunkPos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private HeightMap initLocked( Vector3i chunkPos ) {
         HeightMap heightMap = heightMaps.get(chunkPos);
         if( heightMap==null ) {
+            cache.invalidate(chunkPos);
             long time = System.nanoTime();
             heightMap = new HeightMap(world, chunkPos);
             heightMap.update();
@@ -71,26 +120,67 @@ public class Pathfinder {
     }
 
     public HeightMap update( Vector3i chunkPos ) {
-        HeightMap heightMap = heightMaps.remove(chunkPos);
-        if( heightMap!=null ) {
-            heightMap.disconnectNeighborMaps(getNeighbor(chunkPos, -1, 0), getNeighbor(chunkPos, 0, -1), getNeighbor(chunkPos, 1,0), getNeighbor(chunkPos, 0,1));
-            heightMap.cells = null;
+        lock.writeLock().lock();
+        try {
+            HeightMap heightMap = heightMaps.remove(chunkPos);
+            if( heightMap!=null ) {
+                heightMap.disconnectNeighborMaps(getNeighbor(chunkPos, -1, 0), getNeighbor(chunkPos, 0, -1), getNeighbor(chunkPos, 1,0), getNeighbor(chunkPos, 0,1));
+                heightMap.release();
+                heightMap.cells = null;
+            }
+            return initLocked(chunkPos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the height map containing the given block after the block has changed. Unlike update(chunkPos), only
+     * the affected part of the height map is rebuilt, and only cached paths running through the chunk are dropped.
+     *
+     * @return true, if the walkable blocks or floors of the chunk have changed
+     */
+    public boolean blockChanged( Vector3i blockPos ) {
+        lock.writeLock().lock();
+        try {
+            final Vector3i chunkPos = TeraMath.calcChunkPos(blockPos);
+            final HeightMap heightMap = heightMaps.get(chunkPos);
+            if( heightMap==null ) {
+                return false;
+            }
+            boolean changed = heightMap.update(TeraMath.calcBlockPosX(blockPos.x), TeraMath.calcBlockPosZ(blockPos.z), new Runnable() {
+                @Override
+                public void run() {
+                    heightMap.disconnectNeighborMaps(getNeighbor(chunkPos, -1, 0), getNeighbor(chunkPos, 0, -1), getNeighbor(chunkPos, 1,0), getNeighbor(chunkPos, 0,1));
+                }
+            });
+            if( changed ) {
+                heightMap.connectNeighborMaps(getNeighbor(chunkPos, -1, 0), getNeighbor(chunkPos, 0, -1), getNeighbor(chunkPos, 1,0), getNeighbor(chunkPos, 0,1));
+                cache.invalidate(chunkPos);
+            }
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return init(chunkPos);
     }
 
     public WalkableBlock getBlock(Vector3i pos) {
-        Vector3i chunkPos = TeraMath.calcChunkPos(pos);
-        HeightMap heightMap = heightMaps.get(chunkPos);
-        if( heightMap!=null ) {
-            return heightMap.getBlock(pos.x, pos.y, pos.z);
-        } else {
-            return null;
+        lock.readLock().lock();
+        try {
+            Vector3i chunkPos = TeraMath.calcChunkPos(pos);
+            HeightMap heightMap = heightMaps.get(chunkPos);
+            if( heightMap!=null ) {
+                return heightMap.getBlock(pos.x, pos.y, pos.z);
+            } else {
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public String toString() {
-        return haStar.toString();
+        return haStar.get().toString();
     }
 }
@@ -1,17 +1,55 @@
 package org.terasology.pathfinding.model;
 
+import gnu.trove.list.array.TIntArrayList;
 import org.terasology.math.Vector3i;
 
 /**
-* @author synopia
-*/
+ * A block, entities can walk on.
+ * <p/>
+ * Each block has a small id, which is unique among all blocks currently in use. Path searches use the id to index
+ * their arrays. Once a block is no longer part of a height map, its id should be released, to keep the ids dense.
+ *
+ * @author synopia
+ */
 public class WalkableBlock {
+    private static final TIntArrayList freeIds = new TIntArrayList();
+    private static int nextId;
+
+    public final int id;
     private Vector3i position;
     public WalkableBlock[] neighbors = new WalkableBlock[8];
     public Floor floor;
+    private boolean released;
 
     public WalkableBlock(int x, int z, int height) {
         position = new Vector3i(x, height, z);
+        id = acquireId();
+    }
+
+    private static synchronized int acquireId() {
+        if( !freeIds.isEmpty() ) {
+            return freeIds.removeAt(freeIds.size()-1);
+        }
+        return nextId++;
+    }
+
+    /**
+     * @return an upper bound of all ids currently in use
+     */
+    public static synchronized int getMaxId() {
+        return nextId;
+    }
+
+    /**
+     * Releases the id of this block, so it can be reused by new blocks.
+     */
+    public void release() {
+        synchronized (WalkableBlock.class) {
+            if( !released ) {
+                released = true;
+                freeIds.add(id);
+            }
+        }
     }
 
     public Vector3i getBlockPosition() {
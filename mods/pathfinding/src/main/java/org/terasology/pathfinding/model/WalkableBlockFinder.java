@@ -5,6 +5,10 @@ import org.terasology.world.WorldProvider;
 import org.terasology.world.block.Block;
 import org.terasology.world.chunks.Chunk;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * @author synopia
  */
@@ -43,6 +47,56 @@ public class WalkableBlockFinder {
         findNeighbors(map);
     }
 
+    /**
+     * Scans a single column of the height map.
+     *
+     * @return the walkable blocks of the column, ordered by height like the blocks of a HeightMapCell
+     */
+    public List<WalkableBlock> findWalkableBlocks(HeightMap map, int x, int z) {
+        List<WalkableBlock> result = new ArrayList<WalkableBlock>();
+        Vector3i worldPos = map.worldPos;
+        int air = 0;
+        for (int y = HeightMap.SIZE_Y-1; y >= 0; y--) {
+            Block block = world.getBlock(x+worldPos.x, y+worldPos.y, z+worldPos.z);
+            if( block.isPenetrable() ) {
+                air++;
+            } else {
+                if( air>=2 ) {
+                    result.add(0, new WalkableBlock(x+worldPos.x, z+worldPos.z, y+worldPos.y));
+                }
+                air = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Connects the blocks of the given column and its eight surrounding columns to their neighbors within the height
+     * map again. Connections to neighbor height maps are left untouched.
+     *
+     * @return true, if any connection changed
+     */
+    public boolean connectColumns(HeightMap map, int x, int z) {
+        boolean changed = false;
+        for (int cz = Math.max(0, z-1); cz <= Math.min(HeightMap.SIZE_Z-1, z+1); cz++) {
+            for (int cx = Math.max(0, x-1); cx <= Math.min(HeightMap.SIZE_X-1, x+1); cx++) {
+                for (WalkableBlock block : map.getCell(cx, cz).blocks) {
+                    WalkableBlock[] old = block.neighbors.clone();
+                    for (int i = 0; i < HeightMap.DIRECTIONS.length; i++) {
+                        int nx = cx + HeightMap.DIRECTIONS[i][0];
+                        int nz = cz + HeightMap.DIRECTIONS[i][1];
+                        if( nx>=0 && nz>=0 && nx<HeightMap.SIZE_X && nz<HeightMap.SIZE_Z ) {
+                            block.neighbors[i] = null;
+                        }
+                        connectToDirection(map, cx, cz, block, i);
+                    }
+                    changed |= !Arrays.equals(old, block.neighbors);
+                }
+            }
+        }
+        return changed;
+    }
+
     private void findNeighbors(HeightMap map) {
         map.borderBlocks.clear();
         for (int z = 0; z < Chunk.SIZE_Z; z++) {
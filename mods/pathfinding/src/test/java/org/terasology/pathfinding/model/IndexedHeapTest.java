@@ -0,0 +1,48 @@
+package org.terasology.pathfinding.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class IndexedHeapTest {
+    @Test
+    public void testOrder() {
+        IndexedHeap heap = new IndexedHeap(4);
+        Random random = new Random(1);
+        float[] keys = new float[100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextFloat();
+            heap.insert(i, keys[i]);
+        }
+        keys[42] = -1;
+        heap.decreaseKey(42, -1);
+        Assert.assertEquals(42, heap.removeMin());
+
+        float last = -1;
+        int count = 1;
+        while (!heap.isEmpty()) {
+            int item = heap.removeMin();
+            Assert.assertFalse(heap.contains(item));
+            Assert.assertTrue(keys[item]>=last);
+            last = keys[item];
+            count++;
+        }
+        Assert.assertEquals(keys.length, count);
+    }
+
+    @Test
+    public void testClear() {
+        IndexedHeap heap = new IndexedHeap(4);
+        heap.insert(3, 1);
+        heap.insert(7, 2);
+        Assert.assertTrue(heap.contains(7));
+        heap.clear();
+        Assert.assertTrue(heap.isEmpty());
+        Assert.assertFalse(heap.contains(3));
+        Assert.assertFalse(heap.contains(7));
+        heap.insert(7, 5);
+        Assert.assertTrue(heap.contains(7));
+        Assert.assertFalse(heap.contains(3));
+    }
+}
@@ -0,0 +1,62 @@
+package org.terasology.pathfinding.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.math.Vector3i;
+import org.terasology.world.chunks.Chunk;
+
+public class PathCacheTest {
+    private static Path path( WalkableBlock... blocks ) {
+        Path path = new Path();
+        for (WalkableBlock block : blocks) {
+            path.add(block);
+        }
+        return path;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        PathCache cache = new PathCache(2);
+        WalkableBlock a = new WalkableBlock(0, 0, 0);
+        WalkableBlock b = new WalkableBlock(1, 0, 0);
+        WalkableBlock c = new WalkableBlock(2, 0, 0);
+        Path ab = path(b);
+        Path ac = path(c);
+        cache.findPath(a, b, constant(ab));
+        cache.findPath(a, c, constant(ac));
+        Assert.assertSame(ab, cache.getCachedPath(a, b));
+        cache.findPath(b, c, constant(path(c)));
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.hasPath(a, b));
+        Assert.assertFalse(cache.hasPath(a, c));
+        Assert.assertTrue(cache.hasPath(b, c));
+    }
+
+    @Test
+    public void testInvalidateChunk() {
+        PathCache cache = new PathCache();
+        WalkableBlock a = new WalkableBlock(0, 0, 0);
+        WalkableBlock b = new WalkableBlock(Chunk.SIZE_X, 0, 0);
+        WalkableBlock c = new WalkableBlock(2*Chunk.SIZE_X, 0, 0);
+        WalkableBlock d = new WalkableBlock(3*Chunk.SIZE_X, 0, 0);
+        cache.findPath(a, c, constant(path(c, b)));
+        cache.findPath(c, d, constant(path(d)));
+        cache.findPath(d, a, constant(Path.INVALID));
+
+        cache.invalidate(new Vector3i(1, 0, 0));
+        Assert.assertFalse(cache.hasPath(a, c));
+        Assert.assertTrue(cache.hasPath(c, d));
+        Assert.assertFalse(cache.hasPath(d, a));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    private static PathCache.Callback constant(final Path path) {
+        return new PathCache.Callback() {
+            @Override
+            public Path run(WalkableBlock from, WalkableBlock to) {
+                return path;
+            }
+        };
+    }
+}
@@ -11,6 +11,13 @@ import org.terasology.world.block.management.BlockManager;
 import org.terasology.world.chunks.Chunk;
 import org.terasology.pathfinding.PathfinderTestGenerator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * @author synopia
  */
@@ -80,6 +87,78 @@ public class PathfinderTest {
         Assert.assertTrue(0 < path.size());
     }
 
+    @Test
+    public void testBlockChanged() {
+        pathfinder.init(new Vector3i(0,0,0));
+        pathfinder.init(new Vector3i(1,0,0));
+        pathfinder.init(new Vector3i(0,0,1));
+
+        WalkableBlock startBlock = pathfinder.getBlock(new Vector3i(0, 51, 1));
+        WalkableBlock targetBlock = pathfinder.getBlock(new Vector3i(14, 45, 12));
+        Assert.assertEquals(0, pathfinder.findPath(startBlock, targetBlock).size());
+
+        // digging below the surface does not change any walkable block
+        helper.setAir(3, 20, 3);
+        Assert.assertFalse(pathfinder.blockChanged(new Vector3i(3, 20, 3)));
+
+        helper.setAir(7, 50, 7);
+        Assert.assertTrue(pathfinder.blockChanged(new Vector3i(7, 50, 7)));
+        helper.setAir(7, 50, 8);
+        Assert.assertTrue(pathfinder.blockChanged(new Vector3i(7, 50, 8)));
+
+        Path path = pathfinder.findPath(startBlock, targetBlock);
+        Assert.assertTrue(0 < path.size());
+
+        // the incrementally updated map must be equal to a rebuilt one
+        int blocks = pathfinder.getBlock(new Vector3i(0, 51, 1)).floor.heightMap.walkableBlocks.size();
+        int floors = pathfinder.getBlock(new Vector3i(0, 51, 1)).floor.heightMap.floors.size();
+        HeightMap rebuilt = pathfinder.update(new Vector3i(0,0,0));
+        Assert.assertEquals(rebuilt.walkableBlocks.size(), blocks);
+        Assert.assertEquals(rebuilt.floors.size(), floors);
+        Assert.assertEquals(path.size(), pathfinder.findPath(pathfinder.getBlock(new Vector3i(0, 51, 1)), pathfinder.getBlock(new Vector3i(14, 45, 12))).size());
+    }
+
+    @Test
+    public void testConcurrentSearches() throws Exception {
+        for (int x = 0; x < 3; x++) {
+            for (int z = 0; z < 3; z++) {
+                pathfinder.init(new Vector3i(x, 0, z));
+            }
+        }
+        final Vector3i start = new Vector3i(0, 51, 1);
+        final Vector3i target = new Vector3i(14+16, 45, 12);
+        helper.setAir(7, 50, 7);
+        helper.setAir(7, 50, 8);
+        helper.setAir(Chunk.SIZE_X-1, 47, 7);
+        helper.setAir(Chunk.SIZE_X-1, 47, 8);
+        helper.setAir(Chunk.SIZE_X, 47, 7);
+        helper.setAir(Chunk.SIZE_X, 47, 8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Path>> results = new ArrayList<Future<Path>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Path>() {
+                    @Override
+                    public Path call() throws Exception {
+                        pathfinder.clearCache();
+                        return pathfinder.findPath(start, target);
+                    }
+                }));
+            }
+            pathfinder.update(new Vector3i(0,0,0));
+            pathfinder.update(new Vector3i(1,0,0));
+            for (Future<Path> result : results) {
+                Assert.assertNotNull(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Path path = pathfinder.findPath(start, target);
+        Assert.assertTrue(0<path.size());
+    }
+
     @Before
     public void setup() {
         Block dirt = new Block();
@@ -0,0 +1,368 @@
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.terasology.blockNetwork.Network;
+import org.terasology.math.Vector3i;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps track of which consumers receive a signal.
+ * <p/>
+ * Networks, producers and consumers get dense integer ids, their state is kept in primitive arrays. Whether a consumer
+ * receives a signal through one of its networks is stored per consumer and network pair. A change only marks the
+ * pairs as dirty, that may actually change: a producer getting stronger or a network getting more conductors can only
+ * give a signal to consumers that do not have one yet, a producer getting weaker or a network losing conductors can
+ * only take it away. Dirty pairs are evaluated in the order they were marked, with a limit per call, so a large
+ * change is spread over several ticks.
+ */
+public class SignalPropagator {
+    private static final int INFINITE_STRENGTH = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Networks
+    private final TObjectIntHashMap<Network> networkIds = new TObjectIntHashMap<Network>(INITIAL_CAPACITY, 0.5f, -1);
+    private final TIntArrayList freeNetworkIds = new TIntArrayList();
+    private final List<Network> networks = new ArrayList<Network>();
+    private TIntHashSet[] networkProducers = new TIntHashSet[INITIAL_CAPACITY];
+    private TIntHashSet[] networkConsumers = new TIntHashSet[INITIAL_CAPACITY];
+    private int[] networkInfiniteProducers = new int[INITIAL_CAPACITY];
+
+    // Producers
+    private final TObjectIntHashMap<Vector3i> producerIds = new TObjectIntHashMap<Vector3i>(INITIAL_CAPACITY, 0.5f, -1);
+    private final TIntArrayList freeProducerIds = new TIntArrayList();
+    private int producerCount;
+    private Vector3i[] producerLocations = new Vector3i[INITIAL_CAPACITY];
+    private byte[] producerSides = new byte[INITIAL_CAPACITY];
+    private int[] producerStrengths = new int[INITIAL_CAPACITY];
+    private TIntHashSet[] producerNetworks = new TIntHashSet[INITIAL_CAPACITY];
+
+    // Consumers
+    private final TObjectIntHashMap<Vector3i> consumerIds = new TObjectIntHashMap<Vector3i>(INITIAL_CAPACITY, 0.5f, -1);
+    private final TIntArrayList freeConsumerIds = new TIntArrayList();
+    private int consumerCount;
+    private Vector3i[] consumerLocations = new Vector3i[INITIAL_CAPACITY];
+    private byte[] consumerSides = new byte[INITIAL_CAPACITY];
+    private TIntHashSet[] consumerNetworks = new TIntHashSet[INITIAL_CAPACITY];
+    private int[] consumerPoweredNetworks = new int[INITIAL_CAPACITY];
+
+    // Consumer and network pairs having a signal, and pairs to be evaluated
+    private final TLongHashSet poweredPairs = new TLongHashSet();
+    private final TLongHashSet dirtyPairs = new TLongHashSet();
+    private final TLongArrayList dirtyQueue = new TLongArrayList();
+    private int dirtyQueueStart;
+
+    private final TIntHashSet changedConsumers = new TIntHashSet();
+
+    private static long pair(int consumer, int network) {
+        return ((long) consumer << 32) | network;
+    }
+
+    /*
+     * ****************************** Networks ********************************
+     */
+
+    public void addNetwork(Network network) {
+        int id;
+        if (freeNetworkIds.isEmpty()) {
+            id = networks.size();
+            networks.add(network);
+            if (id == networkProducers.length) {
+                networkProducers = Arrays.copyOf(networkProducers, id * 2);
+                networkConsumers = Arrays.copyOf(networkConsumers, id * 2);
+                networkInfiniteProducers = Arrays.copyOf(networkInfiniteProducers, id * 2);
+            }
+        } else {
+            id = freeNetworkIds.removeAt(freeNetworkIds.size() - 1);
+            networks.set(id, network);
+        }
+        networkIds.put(network, id);
+        networkProducers[id] = new TIntHashSet();
+        networkConsumers[id] = new TIntHashSet();
+        networkInfiniteProducers[id] = 0;
+    }
+
+    public void removeNetwork(Network network) {
+        int id = networkIds.remove(network);
+        if (id == -1)
+            return;
+        // Leaf nodes are removed from a network before the network itself, this only guards against stale members
+        for (int producer : networkProducers[id].toArray())
+            if (producerNetworks[producer].remove(id))
+                leaveProducer(producer, id);
+        for (int consumer : networkConsumers[id].toArray())
+            leaveConsumer(consumer, id);
+        networks.set(id, null);
+        networkProducers[id] = null;
+        networkConsumers[id] = null;
+        freeNetworkIds.add(id);
+    }
+
+    /**
+     * Conductors have been added to the network, consumers without a signal may get one now.
+     */
+    public void conductorsAdded(Network network) {
+        int id = networkIds.get(network);
+        if (id != -1)
+            markConsumers(id, false);
+    }
+
+    /**
+     * Conductors have been removed from the network, consumers with a signal may lose it now.
+     */
+    public void conductorsRemoved(Network network) {
+        int id = networkIds.get(network);
+        if (id != -1)
+            markConsumers(id, true);
+    }
+
+    /*
+     * ****************************** Producers ********************************
+     */
+
+    public void addProducer(Vector3i location, byte connectionSides, int signalStrength) {
+        int id = freeProducerIds.isEmpty() ? producerCount++ : freeProducerIds.removeAt(freeProducerIds.size() - 1);
+        if (id == producerLocations.length) {
+            producerLocations = Arrays.copyOf(producerLocations, id * 2);
+            producerSides = Arrays.copyOf(producerSides, id * 2);
+            producerStrengths = Arrays.copyOf(producerStrengths, id * 2);
+            producerNetworks = Arrays.copyOf(producerNetworks, id * 2);
+        }
+        producerIds.put(location, id);
+        producerLocations[id] = location;
+        producerSides[id] = connectionSides;
+        producerStrengths[id] = signalStrength;
+        producerNetworks[id] = new TIntHashSet();
+    }
+
+    public void removeProducer(Vector3i location) {
+        int id = producerIds.remove(location);
+        if (id == -1)
+            return;
+        TIntIterator networkIterator = producerNetworks[id].iterator();
+        while (networkIterator.hasNext())
+            leaveProducer(id, networkIterator.next());
+        producerLocations[id] = null;
+        producerNetworks[id] = null;
+        freeProducerIds.add(id);
+    }
+
+    public boolean isProducer(Vector3i location) {
+        return producerIds.containsKey(location);
+    }
+
+    public void setProducerConnectionSides(Vector3i location, byte connectionSides) {
+        int id = producerIds.get(location);
+        if (id != -1)
+            producerSides[id] = connectionSides;
+    }
+
+    public void setProducerSignalStrength(Vector3i location, int signalStrength) {
+        int id = producerIds.get(location);
+        if (id == -1)
+            return;
+        int oldStrength = producerStrengths[id];
+        if (oldStrength == signalStrength)
+            return;
+        producerStrengths[id] = signalStrength;
+
+        boolean stronger = oldStrength != INFINITE_STRENGTH
+                && (signalStrength == INFINITE_STRENGTH || signalStrength > oldStrength);
+        TIntIterator networkIterator = producerNetworks[id].iterator();
+        while (networkIterator.hasNext()) {
+            int network = networkIterator.next();
+            if (oldStrength == INFINITE_STRENGTH)
+                networkInfiniteProducers[network]--;
+            if (signalStrength == INFINITE_STRENGTH)
+                networkInfiniteProducers[network]++;
+            markConsumers(network, !stronger);
+        }
+    }
+
+    public void producerJoined(Network network, Vector3i location) {
+        int id = producerIds.get(location);
+        int networkId = networkIds.get(network);
+        if (id == -1 || networkId == -1 || !producerNetworks[id].add(networkId))
+            return;
+        networkProducers[networkId].add(id);
+        if (producerStrengths[id] == INFINITE_STRENGTH)
+            networkInfiniteProducers[networkId]++;
+        markConsumers(networkId, false);
+    }
+
+    private void leaveProducer(int id, int networkId) {
+        networkProducers[networkId].remove(id);
+        if (producerStrengths[id] == INFINITE_STRENGTH)
+            networkInfiniteProducers[networkId]--;
+        markConsumers(networkId, true);
+    }
+
+    /*
+     * ****************************** Consumers ********************************
+     */
+
+    public void addConsumer(Vector3i location, byte connectionSides) {
+        int id = freeConsumerIds.isEmpty() ? consumerCount++ : freeConsumerIds.removeAt(freeConsumerIds.size() - 1);
+        if (id == consumerLocations.length) {
+            consumerLocations = Arrays.copyOf(consumerLocations, id * 2);
+            consumerSides = Arrays.copyOf(consumerSides, id * 2);
+            consumerNetworks = Arrays.copyOf(consumerNetworks, id * 2);
+            consumerPoweredNetworks = Arrays.copyOf(consumerPoweredNetworks, id * 2);
+        }
+        consumerIds.put(location, id);
+        consumerLocations[id] = location;
+        consumerSides[id] = connectionSides;
+        consumerNetworks[id] = new TIntHashSet();
+        consumerPoweredNetworks[id] = 0;
+        changedConsumers.add(id);
+    }
+
+    public void removeConsumer(Vector3i location) {
+        int id = consumerIds.remove(location);
+        if (id == -1)
+            return;
+        for (int network : consumerNetworks[id].toArray())
+            leaveConsumer(id, network);
+        consumerLocations[id] = null;
+        consumerNetworks[id] = null;
+        changedConsumers.remove(id);
+        freeConsumerIds.add(id);
+    }
+
+    public void setConsumerConnectionSides(Vector3i location, byte connectionSides) {
+        int id = consumerIds.get(location);
+        if (id != -1)
+            consumerSides[id] = connectionSides;
+    }
+
+    public void consumerJoined(Network network, Vector3i location) {
+        int id = consumerIds.get(location);
+        int networkId = networkIds.get(network);
+        if (id == -1 || networkId == -1 || !consumerNetworks[id].add(networkId))
+            return;
+        networkConsumers[networkId].add(id);
+        markDirty(id, networkId);
+    }
+
+    private void leaveConsumer(int id, int networkId) {
+        consumerNetworks[id].remove(networkId);
+        networkConsumers[networkId].remove(id);
+        if (poweredPairs.remove(pair(id, networkId)) && --consumerPoweredNetworks[id] == 0)
+            changedConsumers.add(id);
+    }
+
+    /**
+     * A leaf node has left the network. The leaf node is looked up by its membership, since its connection sides
+     * may have been changed already.
+     */
+    public void leafLeft(Network network, Vector3i location) {
+        int networkId = networkIds.get(network);
+        if (networkId == -1)
+            return;
+        int producer = producerIds.get(location);
+        if (producer != -1 && producerNetworks[producer].remove(networkId))
+            leaveProducer(producer, networkId);
+        int consumer = consumerIds.get(location);
+        if (consumer != -1 && consumerNetworks[consumer].contains(networkId))
+            leaveConsumer(consumer, networkId);
+    }
+
+    public boolean hasSignal(Vector3i location) {
+        int id = consumerIds.get(location);
+        return id != -1 && consumerPoweredNetworks[id] > 0;
+    }
+
+    /*
+     * ****************************** Evaluation ********************************
+     */
+
+    private void markConsumers(int network, boolean powered) {
+        TIntIterator consumerIterator = networkConsumers[network].iterator();
+        while (consumerIterator.hasNext()) {
+            int consumer = consumerIterator.next();
+            if (poweredPairs.contains(pair(consumer, network)) == powered)
+                markDirty(consumer, network);
+        }
+    }
+
+    private void markDirty(int consumer, int network) {
+        long pair = pair(consumer, network);
+        if (dirtyPairs.add(pair))
+            dirtyQueue.add(pair);
+    }
+
+    public int getDirtyCount() {
+        return dirtyPairs.size();
+    }
+
+    /**
+     * Evaluates up to the given number of dirty consumer and network pairs.
+     *
+     * @return the number of pairs evaluated
+     */
+    public int evaluate(int maxEvaluations) {
+        int evaluations = 0;
+        while (evaluations < maxEvaluations && dirtyQueueStart < dirtyQueue.size()) {
+            long pair = dirtyQueue.get(dirtyQueueStart++);
+            dirtyPairs.remove(pair);
+            int consumer = (int) (pair >>> 32);
+            int network = (int) pair;
+            // the pair may have been dropped since it was marked
+            if (networkConsumers[network] == null || !networkConsumers[network].contains(consumer))
+                continue;
+            evaluations++;
+            boolean powered = hasSignalInNetwork(consumer, network);
+            if (powered) {
+                if (poweredPairs.add(pair) && consumerPoweredNetworks[consumer]++ == 0)
+                    changedConsumers.add(consumer);
+            } else {
+                if (poweredPairs.remove(pair) && --consumerPoweredNetworks[consumer] == 0)
+                    changedConsumers.add(consumer);
+            }
+        }
+        if (dirtyQueueStart == dirtyQueue.size()) {
+            dirtyQueue.resetQuick();
+            dirtyQueueStart = 0;
+        } else if (dirtyQueueStart > dirtyQueue.size() / 2) {
+            dirtyQueue.remove(0, dirtyQueueStart);
+            dirtyQueueStart = 0;
+        }
+        return evaluations;
+    }
+
+    private boolean hasSignalInNetwork(int consumer, int networkId) {
+        // Infinite signal strength powers the whole network
+        if (networkInfiniteProducers[networkId] > 0)
+            return true;
+
+        Network network = networks.get(networkId);
+        TIntIterator producerIterator = networkProducers[networkId].iterator();
+        while (producerIterator.hasNext()) {
+            int producer = producerIterator.next();
+            int strength = producerStrengths[producer];
+            if (strength >= 0 && network.isInDistance(strength, producerLocations[producer], producerSides[producer],
+                    consumerLocations[consumer], consumerSides[consumer]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the locations of all consumers, whose signal may have changed since the last call.
+     */
+    public List<Vector3i> pollChangedConsumers() {
+        List<Vector3i> result = new ArrayList<Vector3i>(changedConsumers.size());
+        TIntIterator consumerIterator = changedConsumers.iterator();
+        while (consumerIterator.hasNext())
+            result.add(consumerLocations[consumerIterator.next()]);
+        changedConsumers.clear();
+        return result;
+    }
+}
@@ -1,9 +1,7 @@
 package org.terasology.signalling.componentSystem;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import org.terasology.blockNetwork.BlockNetwork;
 import org.terasology.blockNetwork.NetworkTopologyListener;
 import org.terasology.blockNetwork.Network;
@@ -14,6 +12,9 @@ import org.terasology.entitySystem.event.AddComponentEvent;
 import org.terasology.entitySystem.event.ChangedComponentEvent;
 import org.terasology.entitySystem.event.RemovedComponentEvent;
 import org.terasology.math.Vector3i;
+import org.terasology.monitoring.PerformanceMonitor;
+import org.terasology.monitoring.ThreadMonitor;
+import org.terasology.monitoring.impl.SingleThreadMonitor;
 import org.terasology.signalling.components.SignalConductorComponent;
 import org.terasology.signalling.components.SignalConsumerComponent;
 import org.terasology.signalling.components.SignalProducerComponent;
@@ -22,13 +23,15 @@ import org.terasology.world.block.BlockComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
 import java.util.Map;
-import java.util.Set;
 
 @RegisterComponentSystem
 public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem, NetworkTopologyListener {
     private static final Logger logger = LoggerFactory.getLogger(SignalSystem.class);
+    private static final int EVALUATIONS_PER_TICK = 2000;
+
+    // Thread monitors cannot be unregistered, so one monitor is shared by all worlds and deactivated on shutdown
+    private static SingleThreadMonitor monitor;
 
     @In
     private BlockEntityRegistry blockEntityRegistry;
@@ -38,20 +41,7 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
     private Map<Vector3i, Byte> signalProducers;
     private Map<Vector3i, Byte> signalConsumers;
 
-    private Multimap<Vector3i, Network> producerNetworks = HashMultimap.create();
-    private Multimap<Network, Vector3i> producersInNetwork = HashMultimap.create();
-
-    private Multimap<Vector3i, Network> consumerNetworks = HashMultimap.create();
-    private Multimap<Network, Vector3i> consumersInNetwork = HashMultimap.create();
-
-    // Used to detect producer changes
-    private Map<Vector3i, Integer> producerSignalStrengths = Maps.newHashMap();
-    // Used to store signal for consumer from non-modified networks
-    private Map<Vector3i, Map<Network, Boolean>> consumerSignalInNetworks = Maps.newHashMap();
-
-    private Set<Network> networksToRecalculate = Sets.newHashSet();
-    private Set<Vector3i> consumersToRecalculate = Sets.newHashSet();
-    private Set<Vector3i> producersSignalsChanged = Sets.newHashSet();
+    private SignalPropagator propagator;
 
     @Override
     public void initialise() {
@@ -59,108 +49,65 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
         signalNetwork.addTopologyListener(this);
         signalProducers = Maps.newHashMap();
         signalConsumers = Maps.newHashMap();
-
+        propagator = new SignalPropagator();
+        if (monitor == null) {
+            monitor = ThreadMonitor.create("Signalling", "Evaluations", "Deferred");
+        }
+        monitor.setActive(true);
     }
 
     @Override
     public void shutdown() {
+        monitor.setActive(false);
         signalNetwork = null;
         signalProducers = null;
         signalConsumers = null;
+        propagator = null;
     }
 
     @Override
     public void update(float delta) {
-        // Mark all networks affected by the producer signal change
-        for (Vector3i producerChanges : producersSignalsChanged)
-            networksToRecalculate.addAll(producerNetworks.get(producerChanges));
-
-        Set<Vector3i> consumersToEvaluate = Sets.newHashSet();
-
-        for (Network network : networksToRecalculate) {
-            if (signalNetwork.isNetworkActive(network)) {
-                Collection<Vector3i> consumersInNetwork = this.consumersInNetwork.get(network);
-                for (Vector3i consumerLocation : consumersInNetwork) {
-                    boolean consumerSignalInNetwork = getConsumerSignalInNetwork(network, consumerLocation);
-                    consumerSignalInNetworks.get(consumerLocation).put(network, consumerSignalInNetwork);
-                }
-                consumersToEvaluate.addAll(consumersInNetwork);
+        PerformanceMonitor.startActivity("Signal propagation");
+        try {
+            monitor.increment(0, propagator.evaluate(EVALUATIONS_PER_TICK));
+            if (propagator.getDirtyCount() > 0) {
+                monitor.increment(1);
+                logger.debug("{} signal evaluations deferred to the next tick", propagator.getDirtyCount());
             }
-        }
 
-        for (Vector3i modifiedConsumer : consumersToRecalculate) {
-            Collection<Network> networks = consumerNetworks.get(modifiedConsumer);
-            for (Network network : networks) {
-                boolean consumerSignalInNetwork = getConsumerSignalInNetwork(network, modifiedConsumer);
-                consumerSignalInNetworks.get(modifiedConsumer).put(network, consumerSignalInNetwork);
-            }
-            consumersToEvaluate.add(modifiedConsumer);
-        }
-
-        // Send consumer status changes
-        for (Vector3i consumerToEvaluate : consumersToEvaluate) {
-            if (signalConsumers.containsKey(consumerToEvaluate)) {
-                final EntityRef blockEntity = blockEntityRegistry.getBlockEntityAt(consumerToEvaluate);
-                final SignalConsumerComponent consumerComponent = blockEntity.getComponent(SignalConsumerComponent.class);
-                Map<Network, Boolean> consumerSignals = consumerSignalInNetworks.get(consumerToEvaluate);
-                boolean newSignal = false;
-                if (consumerSignals != null)
-                    newSignal = calculateResultSignal(consumerSignals.values());
-                if (newSignal != consumerComponent.hasSignal) {
-                    consumerComponent.hasSignal = newSignal;
-                    blockEntity.saveComponent(consumerComponent);
-                    logger.info("Consumer has signal: " + newSignal);
+            // Send consumer status changes
+            for (Vector3i consumerLocation : propagator.pollChangedConsumers()) {
+                if (signalConsumers.containsKey(consumerLocation)) {
+                    final EntityRef blockEntity = blockEntityRegistry.getBlockEntityAt(consumerLocation);
+                    final SignalConsumerComponent consumerComponent = blockEntity.getComponent(SignalConsumerComponent.class);
+                    boolean newSignal = propagator.hasSignal(consumerLocation);
+                    if (consumerComponent != null && newSignal != consumerComponent.hasSignal) {
+                        consumerComponent.hasSignal = newSignal;
+                        blockEntity.saveComponent(consumerComponent);
+                        logger.debug("Consumer has signal: {}", newSignal);
+                    }
                 }
             }
+        } finally {
+            PerformanceMonitor.endActivity();
         }
-
-        producersSignalsChanged.clear();
-        networksToRecalculate.clear();
-        consumersToRecalculate.clear();
-    }
-
-    private Boolean calculateResultSignal(Collection<Boolean> values) {
-        for (Boolean value : values) {
-            if (value)
-                return true;
-        }
-
-        return false;
-    }
-
-    //
-    private boolean getConsumerSignalInNetwork(Network network, Vector3i location) {
-        // Check for infinite signal strength (-1), if there - it powers whole network
-        final Collection<Vector3i> producers = producersInNetwork.get(network);
-        for (Vector3i producer : producers) {
-            final int signalStrength = producerSignalStrengths.get(producer);
-            if (signalStrength == -1)
-                return true;
-        }
-
-        for (Vector3i producerLocation : producers) {
-            final int signalStrength = producerSignalStrengths.get(producerLocation);
-            if (network.isInDistance(signalStrength, producerLocation, signalProducers.get(producerLocation), location, signalConsumers.get(location)))
-                return true;
-        }
-
-        return false;
     }
 
     @Override
     public void networkAdded(Network newNetwork) {
+        propagator.addNetwork(newNetwork);
     }
 
     @Override
     public void networkingNodesAdded(Network network, Map<Vector3i, Byte> networkingNodes) {
-        logger.info("Cable added to network");
-        networksToRecalculate.add(network);
+        logger.debug("Cable added to network");
+        propagator.conductorsAdded(network);
     }
 
     @Override
     public void networkingNodesRemoved(Network network, Map<Vector3i, Byte> networkingNodes) {
-        logger.info("Cable removed from network");
-        networksToRecalculate.add(network);
+        logger.debug("Cable removed from network");
+        propagator.conductorsRemoved(network);
     }
 
     @Override
@@ -169,41 +116,27 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
             Vector3i nodeLocation = modifiedLeafNode.getKey();
             Byte producerConnectingSides = signalProducers.get(nodeLocation);
             if (producerConnectingSides != null && producerConnectingSides.byteValue() == modifiedLeafNode.getValue()) {
-                logger.info("Producer added to network");
-                networksToRecalculate.add(network);
-                producerNetworks.put(nodeLocation, network);
-                producersInNetwork.put(network, nodeLocation);
+                logger.debug("Producer added to network");
+                propagator.producerJoined(network, nodeLocation);
             } else {
-                logger.info("Consumer added to network");
-                consumersToRecalculate.add(nodeLocation);
-                consumerNetworks.put(nodeLocation, network);
-                consumersInNetwork.put(network, nodeLocation);
+                logger.debug("Consumer added to network");
+                propagator.consumerJoined(network, nodeLocation);
             }
         }
     }
 
     @Override
     public void leafNodesRemoved(Network network, Multimap<Vector3i, Byte> leafNodes) {
-        for (Map.Entry<Vector3i, Byte> modifiedLeafNode : leafNodes.entries()) {
-            Vector3i nodeLocation = modifiedLeafNode.getKey();
-            Byte producerConnectingSides = signalProducers.get(nodeLocation);
-            if (producerConnectingSides != null && producerConnectingSides.byteValue() == modifiedLeafNode.getValue()) {
-                logger.info("Producer removed from network");
-                networksToRecalculate.add(network);
-                producerNetworks.remove(nodeLocation, network);
-                producersInNetwork.remove(network, nodeLocation);
-            } else {
-                logger.info("Consumer removed from network");
-                consumersToRecalculate.add(nodeLocation);
-                consumerNetworks.remove(nodeLocation, network);
-                consumersInNetwork.remove(network, nodeLocation);
-                consumerSignalInNetworks.get(nodeLocation).remove(network);
-            }
+        // The sides of the leaf node may have been changed already, the propagator knows what the node was joined as
+        for (Vector3i nodeLocation : leafNodes.keySet()) {
+            logger.debug("Leaf node removed from network");
+            propagator.leafLeft(network, nodeLocation);
         }
     }
 
     @Override
     public void networkRemoved(Network network) {
+        propagator.removeNetwork(network);
     }
 
     /**
@@ -246,7 +179,7 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
         byte connectingOnSides = producerComponent.connectionSides;
 
         signalProducers.put(location, connectingOnSides);
-        producerSignalStrengths.put(location, producerComponent.signalStrength);
+        propagator.addProducer(location, connectingOnSides, producerComponent.signalStrength);
         signalNetwork.addLeafBlock(location, connectingOnSides);
     }
 
@@ -261,15 +194,11 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
             byte newConnectionSides = producerComponent.connectionSides;
             if (oldConnectionSides != newConnectionSides) {
                 signalProducers.put(location, newConnectionSides);
+                propagator.setProducerConnectionSides(location, newConnectionSides);
                 signalNetwork.updateLeafBlock(location, oldConnectionSides, newConnectionSides);
             }
 
-            int oldSignalStrength = producerSignalStrengths.get(location);
-            int newSignalStrength = producerComponent.signalStrength;
-            if (oldSignalStrength != newSignalStrength) {
-                producerSignalStrengths.put(location, newSignalStrength);
-                producersSignalsChanged.add(location);
-            }
+            propagator.setProducerSignalStrength(location, producerComponent.signalStrength);
         }
     }
 
@@ -280,7 +209,7 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
 
         signalNetwork.removeLeafBlock(location, connectingOnSides);
         signalProducers.remove(location);
-        producerSignalStrengths.remove(location);
+        propagator.removeProducer(location);
     }
 
     /**
@@ -293,7 +222,7 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
         byte connectingOnSides = block.getComponent(SignalConsumerComponent.class).connectionSides;
 
         signalConsumers.put(location, connectingOnSides);
-        consumerSignalInNetworks.put(location, Maps.<Network, Boolean>newHashMap());
+        propagator.addConsumer(location, connectingOnSides);
         signalNetwork.addLeafBlock(location, connectingOnSides);
     }
 
@@ -308,6 +237,7 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
             byte newConnectionSides = consumerComponent.connectionSides;
             if (oldConnectionSides != newConnectionSides) {
                 signalConsumers.put(location, newConnectionSides);
+                propagator.setConsumerConnectionSides(location, newConnectionSides);
                 signalNetwork.updateLeafBlock(location, oldConnectionSides, newConnectionSides);
             }
         }
@@ -320,6 +250,6 @@ public class SignalSystem implements EventHandlerSystem, UpdateSubscriberSystem,
 
         signalNetwork.removeLeafBlock(location, connectingOnSides);
         signalConsumers.remove(location);
-        consumerSignalInNetworks.remove(location);
+        propagator.removeConsumer(location);
     }
 }
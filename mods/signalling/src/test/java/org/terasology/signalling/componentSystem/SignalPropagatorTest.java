@@ -0,0 +1,169 @@
+package org.terasology.signalling.componentSystem;
+
+import com.google.common.collect.Multimap;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.blockNetwork.BlockNetwork;
+import org.terasology.blockNetwork.DirectionsUtil;
+import org.terasology.blockNetwork.Network;
+import org.terasology.blockNetwork.NetworkTopologyListener;
+import org.terasology.math.Direction;
+import org.terasology.math.Vector3i;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignalPropagatorTest {
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private BlockNetwork blockNetwork;
+    private SignalPropagator propagator;
+    private byte allDirections;
+    private byte down;
+
+    @Before
+    public void setup() {
+        blockNetwork = new BlockNetwork();
+        propagator = new SignalPropagator();
+        blockNetwork.addTopologyListener(new PropagatingListener());
+        allDirections = DirectionsUtil.addDirection((byte) 0, Direction.UP, Direction.LEFT, Direction.FORWARD, Direction.DOWN, Direction.RIGHT, Direction.BACKWARD);
+        down = DirectionsUtil.getDirection(Direction.DOWN);
+    }
+
+    @Test
+    public void signalPropagatesWhenNetworksMerge() {
+        addProducer(new Vector3i(0, 0, 0), 10);
+        blockNetwork.addNetworkingBlock(new Vector3i(1, 0, 0), allDirections);
+        blockNetwork.addNetworkingBlock(new Vector3i(3, 0, 0), allDirections);
+        addConsumer(new Vector3i(4, 0, 0), allDirections);
+        propagator.evaluate(UNLIMITED);
+        assertFalse(propagator.hasSignal(new Vector3i(4, 0, 0)));
+
+        blockNetwork.addNetworkingBlock(new Vector3i(2, 0, 0), allDirections);
+        propagator.evaluate(UNLIMITED);
+        assertTrue(propagator.hasSignal(new Vector3i(4, 0, 0)));
+        assertTrue(propagator.pollChangedConsumers().contains(new Vector3i(4, 0, 0)));
+    }
+
+    @Test
+    public void signalIsLostWhenNetworkSplits() {
+        addProducer(new Vector3i(0, 0, 0), 10);
+        for (int x = 1; x <= 3; x++)
+            blockNetwork.addNetworkingBlock(new Vector3i(x, 0, 0), allDirections);
+        addConsumer(new Vector3i(4, 0, 0), allDirections);
+        propagator.evaluate(UNLIMITED);
+        assertTrue(propagator.hasSignal(new Vector3i(4, 0, 0)));
+        propagator.pollChangedConsumers();
+
+        blockNetwork.removeNetworkingBlock(new Vector3i(2, 0, 0));
+        propagator.evaluate(UNLIMITED);
+        assertFalse(propagator.hasSignal(new Vector3i(4, 0, 0)));
+        assertTrue(propagator.pollChangedConsumers().contains(new Vector3i(4, 0, 0)));
+    }
+
+    @Test
+    public void signalStrengthLimitsPropagation() {
+        addProducer(new Vector3i(0, 0, 0), 2);
+        for (int x = 1; x <= 5; x++)
+            blockNetwork.addNetworkingBlock(new Vector3i(x, 0, 0), allDirections);
+        addConsumer(new Vector3i(6, 0, 0), allDirections);
+        propagator.evaluate(UNLIMITED);
+        assertFalse(propagator.hasSignal(new Vector3i(6, 0, 0)));
+
+        propagator.setProducerSignalStrength(new Vector3i(0, 0, 0), 10);
+        propagator.evaluate(UNLIMITED);
+        assertTrue(propagator.hasSignal(new Vector3i(6, 0, 0)));
+
+        propagator.setProducerSignalStrength(new Vector3i(0, 0, 0), 2);
+        propagator.evaluate(UNLIMITED);
+        assertFalse(propagator.hasSignal(new Vector3i(6, 0, 0)));
+    }
+
+    @Test
+    public void deferredEvaluationsCarryOverToTheNextCall() {
+        final int consumers = 10;
+        for (int x = 1; x <= consumers; x++) {
+            blockNetwork.addNetworkingBlock(new Vector3i(x, 0, 0), allDirections);
+            addConsumer(new Vector3i(x, 1, 0), down);
+        }
+        propagator.evaluate(UNLIMITED);
+        assertEquals(0, countPowered(consumers));
+
+        addProducer(new Vector3i(0, 0, 0), 100);
+        assertEquals(consumers, propagator.getDirtyCount());
+
+        assertEquals(3, propagator.evaluate(3));
+        assertEquals(consumers - 3, propagator.getDirtyCount());
+        assertEquals(3, countPowered(consumers));
+
+        // marking the pending pairs again does not queue them twice
+        propagator.setProducerSignalStrength(new Vector3i(0, 0, 0), 200);
+        assertEquals(consumers - 3, propagator.getDirtyCount());
+
+        assertEquals(consumers - 3, propagator.evaluate(UNLIMITED));
+        assertEquals(0, propagator.getDirtyCount());
+        assertEquals(consumers, countPowered(consumers));
+    }
+
+    private void addProducer(Vector3i location, int signalStrength) {
+        propagator.addProducer(location, allDirections, signalStrength);
+        blockNetwork.addLeafBlock(location, allDirections);
+    }
+
+    private void addConsumer(Vector3i location, byte connectionSides) {
+        propagator.addConsumer(location, connectionSides);
+        blockNetwork.addLeafBlock(location, connectionSides);
+    }
+
+    private int countPowered(int consumers) {
+        int result = 0;
+        for (int x = 1; x <= consumers; x++)
+            if (propagator.hasSignal(new Vector3i(x, 1, 0)))
+                result++;
+        return result;
+    }
+
+    /**
+     * Forwards topology changes to the propagator the same way SignalSystem does.
+     */
+    private class PropagatingListener implements NetworkTopologyListener {
+        @Override
+        public void networkAdded(Network newNetwork) {
+            propagator.addNetwork(newNetwork);
+        }
+
+        @Override
+        public void networkingNodesAdded(Network network, Map<Vector3i, Byte> networkingNodes) {
+            propagator.conductorsAdded(network);
+        }
+
+        @Override
+        public void networkingNodesRemoved(Network network, Map<Vector3i, Byte> networkingNodes) {
+            propagator.conductorsRemoved(network);
+        }
+
+        @Override
+        public void leafNodesAdded(Network network, Multimap<Vector3i, Byte> leafNodes) {
+            for (Vector3i location : leafNodes.keySet()) {
+                if (propagator.isProducer(location))
+                    propagator.producerJoined(network, location);
+                else
+                    propagator.consumerJoined(network, location);
+            }
+        }
+
+        @Override
+        public void leafNodesRemoved(Network network, Multimap<Vector3i, Byte> leafNodes) {
+            for (Vector3i location : leafNodes.keySet())
+                propagator.leafLeft(network, location);
+        }
+
+        @Override
+        public void networkRemoved(Network network) {
+            propagator.removeNetwork(network);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import javax.vecmath.Vector3f;
+
+import org.terasology.entitySystem.Component;
+import org.terasology.entitySystem.metadata.ComponentLibrary;
+import org.terasology.entitySystem.metadata.ComponentLibraryImpl;
+import org.terasology.entitySystem.pojo.ArchetypeComponentStore;
+import org.terasology.entitySystem.pojo.PojoEntityManager;
+import org.terasology.entitySystem.pojo.PojoPrefabManager;
+
+/**
+ * Components and entity managers shared by the entity system benchmarks.
+ */
+final class BenchmarkComponents {
+
+    private BenchmarkComponents() {
+    }
+
+    /**
+     * Creates an entity manager using either the default component table ("table") or the archetype store ("archetype").
+     */
+    public static PojoEntityManager createEntityManager(String store) {
+        ComponentLibrary library = new ComponentLibraryImpl();
+        if ("archetype".equals(store)) {
+            return new PojoEntityManager(library, new PojoPrefabManager(library), new ArchetypeComponentStore());
+        }
+        return new PojoEntityManager(library, new PojoPrefabManager(library));
+    }
+
+    public static final class PositionComponent implements Component {
+        public Vector3f position = new Vector3f();
+    }
+
+    public static final class VelocityComponent implements Component {
+        public Vector3f velocity = new Vector3f(1, 0, 0);
+    }
+
+    public static final class HealthComponent implements Component {
+        public int health = 100;
+    }
+}
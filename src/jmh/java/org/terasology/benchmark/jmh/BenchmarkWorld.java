@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import javax.vecmath.Vector2f;
+import javax.vecmath.Vector3f;
+
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Region3i;
+import org.terasology.math.Side;
+import org.terasology.math.Vector3i;
+import org.terasology.world.WorldBiomeProvider;
+import org.terasology.world.WorldBiomeProviderImpl;
+import org.terasology.world.WorldView;
+import org.terasology.world.block.Block;
+import org.terasology.world.block.BlockPart;
+import org.terasology.world.block.BlockUri;
+import org.terasology.world.block.family.SymmetricFamily;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.block.shapes.BlockMeshPart;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.generator.core.PerlinTerrainGenerator;
+import org.terasology.world.lighting.InternalLightProcessor;
+
+/**
+ * Sets up the engine state needed to generate, light and tessellate chunks without assets or an OpenGL context.
+ * <p/>
+ * The blocks used by the {@link PerlinTerrainGenerator} are registered as plain cubes, which is close enough to the
+ * real block definitions for measuring the CPU side of the world pipeline.
+ */
+final class BenchmarkWorld {
+
+    private static final String[] TERRAIN_BLOCKS = {"MantleStone", "Water", "Ice", "Stone", "Sand", "Grass", "Snow", "Dirt"};
+    private static final String[] TRANSLUCENT_BLOCKS = {"Water", "Ice"};
+
+    private static boolean initialized = false;
+    private static Block torch;
+
+    private final WorldBiomeProvider biomeProvider;
+    private final PerlinTerrainGenerator generator;
+
+    private BenchmarkWorld(String seed) {
+        biomeProvider = new WorldBiomeProviderImpl(seed);
+        generator = new PerlinTerrainGenerator();
+        generator.setWorldSeed(seed);
+        generator.setWorldBiomeProvider(biomeProvider);
+    }
+
+    public static synchronized BenchmarkWorld create(String seed) {
+        if (!initialized) {
+            CoreRegistry.put(Config.class, new Config());
+            for (String name : TERRAIN_BLOCKS) {
+                registerBlock(createCube(name, isTranslucent(name)));
+            }
+            torch = createCube("Torch", true);
+            torch.setLuminance(Chunk.MAX_LIGHT);
+            registerBlock(torch);
+            initialized = true;
+        }
+        return new BenchmarkWorld(seed);
+    }
+
+    public WorldBiomeProvider getBiomeProvider() {
+        return biomeProvider;
+    }
+
+    public PerlinTerrainGenerator getGenerator() {
+        return generator;
+    }
+
+    public Block getTorch() {
+        return torch;
+    }
+
+    /**
+     * Generates the terrain and the internal lighting of a chunk.
+     */
+    public Chunk generateChunk(Vector3i pos) {
+        Chunk chunk = new Chunk(pos);
+        generator.generateChunk(chunk);
+        InternalLightProcessor.generateInternalLighting(chunk);
+        return chunk;
+    }
+
+    /**
+     * Generates the chunk at the origin and its eight neighbours.
+     *
+     * @return A view centered on the chunk at the origin
+     */
+    public WorldView generateView() {
+        Region3i region = Region3i.createFromCenterExtents(new Vector3i(0, 0, 0), new Vector3i(1, 0, 1));
+        Chunk[] chunks = new Chunk[region.size().x * region.size().z];
+        int i = 0;
+        for (int z = region.min().z; z <= region.max().z; z++) {
+            for (int x = region.min().x; x <= region.max().x; x++) {
+                chunks[i++] = generateChunk(new Vector3i(x, 0, z));
+            }
+        }
+        return new WorldView(chunks, region, new Vector3i(1, 1, 1));
+    }
+
+    private static boolean isTranslucent(String name) {
+        for (String translucent : TRANSLUCENT_BLOCKS) {
+            if (translucent.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void registerBlock(Block block) {
+        BlockManager.getInstance().addBlockFamily(new SymmetricFamily(block.getURI(), block), true);
+    }
+
+    private static Block createCube(String name, boolean translucent) {
+        Block block = new Block();
+        block.setDisplayName(name);
+        block.setUri(new BlockUri("engine:" + name));
+        block.setTranslucent(translucent);
+        for (Side side : Side.values()) {
+            block.setFullSide(side, !translucent);
+            block.setMeshPart(BlockPart.fromSide(side), createCubeSide(side));
+        }
+        return block;
+    }
+
+    private static BlockMeshPart createCubeSide(Side side) {
+        Vector3i normal = side.getVector3i();
+        float[][] corners = {{-0.5f, -0.5f}, {0.5f, -0.5f}, {0.5f, 0.5f}, {-0.5f, 0.5f}};
+        Vector3f[] vertices = new Vector3f[corners.length];
+        Vector3f[] normals = new Vector3f[corners.length];
+        Vector2f[] texCoords = new Vector2f[corners.length];
+        for (int i = 0; i < corners.length; i++) {
+            float u = corners[i][0];
+            float v = corners[i][1];
+            if (normal.x != 0) {
+                vertices[i] = new Vector3f(0.5f * normal.x, u, v);
+            } else if (normal.y != 0) {
+                vertices[i] = new Vector3f(u, 0.5f * normal.y, v);
+            } else {
+                vertices[i] = new Vector3f(u, v, 0.5f * normal.z);
+            }
+            normals[i] = new Vector3f(normal.x, normal.y, normal.z);
+            texCoords[i] = new Vector2f(u + 0.5f, v + 0.5f);
+        }
+        return new BlockMeshPart(vertices, normals, texCoords, new int[]{0, 1, 2, 0, 2, 3});
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.terasology.math.Vector3i;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.lighting.InternalLightProcessor;
+
+/**
+ * Measures terrain generation and internal lighting of single chunks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChunkGenerationBenchmark {
+
+    @Param({"Terasology", "Blockmania", "Moon"})
+    public String seed;
+
+    private BenchmarkWorld world;
+    private Chunk generatedChunk;
+    private int nextChunk;
+
+    @Setup
+    public void setup() {
+        world = BenchmarkWorld.create(seed);
+        generatedChunk = world.generateChunk(new Vector3i(0, 0, 0));
+    }
+
+    @Benchmark
+    public Chunk generateChunk() {
+        // Walk along the x axis, so the noise is sampled at new positions for every chunk
+        Chunk chunk = new Chunk(new Vector3i(nextChunk++, 0, 0));
+        world.getGenerator().generateChunk(chunk);
+        return chunk;
+    }
+
+    @Benchmark
+    public Chunk generateInternalLighting() {
+        InternalLightProcessor.generateInternalLighting(generatedChunk);
+        return generatedChunk;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Vector3i;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.chunks.store.ChunkStoreProtobuf;
+
+/**
+ * Measures encoding and decoding of single chunks as done by {@link ChunkStoreProtobuf}, for all compression methods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkStoreBenchmark {
+
+    @Param({"Terasology", "Blockmania"})
+    public String seed;
+
+    @Param({"NONE", "GZIP", "LZ4", "LZMA"})
+    public String compressionMethod;
+
+    private BenchmarkChunkStore store;
+    private Chunk chunk;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkWorld world = BenchmarkWorld.create(seed);
+        CoreRegistry.get(Config.class).getAdvanced().setChunkCompressionMethod(compressionMethod);
+        chunk = world.generateChunk(new Vector3i(0, 0, 0));
+        store = new BenchmarkChunkStore();
+        encoded = store.encodeChunk(chunk);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return store.encodeChunk(chunk);
+    }
+
+    @Benchmark
+    public Chunk decode() throws IOException {
+        return store.decodeChunk(encoded);
+    }
+
+    /**
+     * Exposes the per chunk encoding of the store without starting its compression threads.
+     */
+    private static class BenchmarkChunkStore extends ChunkStoreProtobuf {
+
+        public BenchmarkChunkStore() {
+            super(false);
+        }
+
+        public byte[] encodeChunk(Chunk chunk) throws IOException {
+            return encode(chunk);
+        }
+
+        public Chunk decodeChunk(byte[] data) throws IOException {
+            return decode(data);
+        }
+    }
+}
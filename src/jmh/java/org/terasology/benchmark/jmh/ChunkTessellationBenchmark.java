@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.terasology.math.Vector3i;
+import org.terasology.rendering.primitives.ChunkMesh;
+import org.terasology.rendering.primitives.ChunkTessellator;
+import org.terasology.world.WorldView;
+import org.terasology.world.chunks.Chunk;
+
+/**
+ * Measures the CPU side of chunk tessellation, the vertex data is never uploaded into VBOs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChunkTessellationBenchmark {
+
+    @Param({"Terasology", "Blockmania", "Moon"})
+    public String seed;
+
+    @Param({"1", "4"})
+    public int meshSegments;
+
+    private WorldView view;
+    private ChunkTessellator tessellator;
+    private final Vector3i chunkPos = new Vector3i(0, 0, 0);
+
+    @Setup
+    public void setup() {
+        BenchmarkWorld world = BenchmarkWorld.create(seed);
+        view = world.generateView();
+        tessellator = new ChunkTessellator(world.getBiomeProvider());
+    }
+
+    @Benchmark
+    public ChunkMesh[] generateMesh() {
+        ChunkMesh[] meshes = new ChunkMesh[meshSegments];
+        int segmentHeight = Chunk.SIZE_Y / meshSegments;
+        for (int i = 0; i < meshSegments; i++) {
+            meshes[i] = tessellator.generateMesh(view, chunkPos, segmentHeight, i * segmentHeight);
+        }
+        return meshes;
+    }
+}
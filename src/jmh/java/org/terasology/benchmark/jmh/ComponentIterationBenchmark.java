@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.terasology.benchmark.jmh.BenchmarkComponents.HealthComponent;
+import org.terasology.benchmark.jmh.BenchmarkComponents.PositionComponent;
+import org.terasology.benchmark.jmh.BenchmarkComponents.VelocityComponent;
+import org.terasology.entitySystem.EntityRef;
+import org.terasology.entitySystem.pojo.PojoEntityManager;
+
+/**
+ * Measures iterating over the components of entities, like systems do every tick, for both component stores.
+ * <p/>
+ * The density is the fraction of entities having a velocity component.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ComponentIterationBenchmark {
+
+    @Param({"table", "archetype"})
+    public String store;
+
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    @Param({"0.1", "0.5", "1.0"})
+    public float density;
+
+    private PojoEntityManager entityManager;
+
+    @Setup
+    public void setup() {
+        entityManager = BenchmarkComponents.createEntityManager(store);
+        int withVelocity = Math.round(entityCount * density);
+        for (int i = 0; i < entityCount; i++) {
+            EntityRef entity = entityManager.create(new PositionComponent());
+            if (i % 3 == 0) {
+                entity.addComponent(new HealthComponent());
+            }
+            if (i < withVelocity) {
+                entity.addComponent(new VelocityComponent());
+            }
+        }
+    }
+
+    @Benchmark
+    public void iterateComponents(Blackhole blackhole) {
+        for (Map.Entry<EntityRef, VelocityComponent> entry : entityManager.iterateComponents(VelocityComponent.class)) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void iterateEntities(Blackhole blackhole) {
+        for (EntityRef entity : entityManager.iteratorEntities(PositionComponent.class, VelocityComponent.class)) {
+            PositionComponent position = entity.getComponent(PositionComponent.class);
+            VelocityComponent velocity = entity.getComponent(VelocityComponent.class);
+            position.position.add(velocity.velocity);
+            blackhole.consume(position);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.terasology.benchmark.jmh.BenchmarkComponents.HealthComponent;
+import org.terasology.benchmark.jmh.BenchmarkComponents.PositionComponent;
+import org.terasology.benchmark.jmh.BenchmarkComponents.VelocityComponent;
+import org.terasology.entitySystem.AbstractEvent;
+import org.terasology.entitySystem.EntityRef;
+import org.terasology.entitySystem.EventHandlerSystem;
+import org.terasology.entitySystem.ReceiveEvent;
+import org.terasology.entitySystem.pojo.PojoEntityManager;
+import org.terasology.entitySystem.pojo.PojoEventSystem;
+
+/**
+ * Measures sending events to entities through the {@link PojoEventSystem}.
+ * <p/>
+ * The density is the fraction of entities having a health component, the other entities only match a part of the
+ * registered handlers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventSystemBenchmark {
+
+    @Param({"100", "10000"})
+    public int entityCount;
+
+    @Param({"0.1", "0.5", "1.0"})
+    public float density;
+
+    @Param({"1", "8"})
+    public int handlerSystems;
+
+    private EntityRef[] entities;
+    private int nextEntity;
+
+    @Setup
+    public void setup() {
+        PojoEntityManager entityManager = BenchmarkComponents.createEntityManager("table");
+        PojoEventSystem eventSystem = new PojoEventSystem();
+        entityManager.setEventSystem(eventSystem);
+        for (int i = 0; i < handlerSystems; i++) {
+            eventSystem.registerEventHandler(new BenchmarkEventHandler());
+        }
+        entities = new EntityRef[entityCount];
+        int withHealth = Math.round(entityCount * density);
+        for (int i = 0; i < entityCount; i++) {
+            entities[i] = entityManager.create(new PositionComponent(), new VelocityComponent());
+            if (i < withHealth) {
+                entities[i].addComponent(new HealthComponent());
+            }
+        }
+    }
+
+    @Benchmark
+    public BenchmarkEvent send() {
+        BenchmarkEvent event = new BenchmarkEvent();
+        entities[nextEntity].send(event);
+        nextEntity = (nextEntity + 1) % entities.length;
+        return event;
+    }
+
+    public static class BenchmarkEvent extends AbstractEvent {
+        public int received;
+    }
+
+    public static class BenchmarkEventHandler implements EventHandlerSystem {
+
+        @Override
+        public void initialise() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @ReceiveEvent(components = PositionComponent.class)
+        public void onPosition(BenchmarkEvent event, EntityRef entity) {
+            event.received++;
+        }
+
+        @ReceiveEvent(components = {PositionComponent.class, VelocityComponent.class})
+        public void onMovement(BenchmarkEvent event, EntityRef entity) {
+            event.received++;
+        }
+
+        @ReceiveEvent(components = HealthComponent.class)
+        public void onHealth(BenchmarkEvent event, EntityRef entity) {
+            event.received++;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.terasology.math.Region3i;
+import org.terasology.world.WorldView;
+import org.terasology.world.block.Block;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.lighting.LightPropagator;
+
+/**
+ * Measures light propagation for placing and removing a light source on the surface of generated terrain.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LightPropagationBenchmark {
+
+    @Param({"Terasology", "Blockmania", "Moon"})
+    public String seed;
+
+    private WorldView view;
+    private LightPropagator propagator;
+    private Block air;
+    private Block torch;
+    private int x = Chunk.SIZE_X / 2;
+    private int y;
+    private int z = Chunk.SIZE_Z / 2;
+
+    @Setup
+    public void setup() {
+        BenchmarkWorld world = BenchmarkWorld.create(seed);
+        view = world.generateView();
+        propagator = new LightPropagator(view);
+        propagator.propagateOutOfTargetChunk();
+        air = BlockManager.getInstance().getAir();
+        torch = world.getTorch();
+        y = Chunk.SIZE_Y - 1;
+        while (y > 0 && view.getBlock(x, y - 1, z) == air) {
+            y--;
+        }
+    }
+
+    @Benchmark
+    public Region3i placeAndRemoveLight() {
+        view.setBlock(x, y, z, torch, air);
+        propagator.update(x, y, z, torch, air);
+        view.setBlock(x, y, z, air, torch);
+        return propagator.update(x, y, z, air, torch);
+    }
+
+    @Benchmark
+    public Region3i placeAndRemoveBlock() {
+        Block solid = view.getBlock(x, y - 1, z);
+        view.setBlock(x, y - 1, z, air, solid);
+        propagator.update(x, y - 1, z, air, solid);
+        view.setBlock(x, y - 1, z, solid, air);
+        return propagator.update(x, y - 1, z, solid, air);
+    }
+}
@@ -24,7 +24,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.terasology.world.block.BlockComponent;
+import org.terasology.components.world.WorldComponent;
 import org.terasology.entitySystem.EntityRef;
 import org.terasology.entitySystem.EventHandlerSystem;
 import org.terasology.entitySystem.ReceiveEvent;
@@ -116,8 +116,8 @@ public class GrowthSimulator implements EventHandlerSystem {
         }
     }
 
-    @ReceiveEvent(components = BlockComponent.class)
-    public void blockChanged(BlockChangedEvent event, EntityRef blockEntity) {
+    @ReceiveEvent(components = WorldComponent.class)
+    public void blockChanged(BlockChangedEvent event, EntityRef worldEntity) {
         if (dirt.equals(event.getNewType())) {
             blockQueue.offer(event.getBlockPosition());
         }
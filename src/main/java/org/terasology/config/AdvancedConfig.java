@@ -25,6 +25,8 @@ import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+import org.terasology.world.chunks.compression.ChunkCodecs;
 import org.terasology.world.chunks.blockdata.TeraArray;
 import org.terasology.world.chunks.blockdata.TeraArrays;
 import org.terasology.world.chunks.blockdata.TeraDenseArray16Bit;
@@ -47,6 +49,13 @@ public final class AdvancedConfig {
     private String blocksFactory, sunlightFactory, lightFactory, extraFactory;
     private boolean chunkDeflationEnabled, chunkDeflationLoggingEnabled;
     private boolean advancedMonitoringEnabled, advancedMonitorVisibleAtStartup;
+    private boolean regionChunkStoreEnabled;
+    private String chunkCompressionMethod;
+    private int chunkCacheBudget;
+    private boolean archetypeEntityStoreEnabled;
+    private boolean parallelTerrainGenerationEnabled;
+    private boolean bulkLiquidSimulationEnabled;
+    private int blockEventBudget;
     
     private AdvancedConfig() {}
     
@@ -179,6 +188,92 @@ public final class AdvancedConfig {
         return this;
     }
 
+    public boolean isRegionChunkStoreEnabled() {
+        return regionChunkStoreEnabled;
+    }
+
+    public AdvancedConfig setRegionChunkStoreEnabled(boolean enabled) {
+        regionChunkStoreEnabled = enabled;
+        return this;
+    }
+
+    public CompressionMethod getChunkCompressionMethod() {
+        return CompressionMethod.valueOf(chunkCompressionMethod);
+    }
+
+    public String getChunkCompressionMethodName() {
+        return chunkCompressionMethod;
+    }
+
+    public AdvancedConfig setChunkCompressionMethod(String method) {
+        Preconditions.checkNotNull(method, "Parameter 'method' must not be null");
+        Preconditions.checkState(containsCompressionMethod(method), "Compression method does not exist: '" + method + "'");
+        chunkCompressionMethod = method;
+        return this;
+    }
+
+    public AdvancedConfig setChunkCompressionMethodDontThrow(String method) {
+        if (containsCompressionMethod(method)) {
+            chunkCompressionMethod = method;
+        } else {
+            logger.warn("Compression method does not exist: '{}'", method);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the memory budget in megabytes for chunks kept in memory, or 0 if the budget is derived from the maximum heap size.
+     */
+    public int getChunkCacheBudget() {
+        return chunkCacheBudget;
+    }
+
+    public AdvancedConfig setChunkCacheBudget(int megabytes) {
+        Preconditions.checkArgument(megabytes >= 0, "Parameter 'megabytes' must not be negative");
+        chunkCacheBudget = megabytes;
+        return this;
+    }
+
+    public boolean isArchetypeEntityStoreEnabled() {
+        return archetypeEntityStoreEnabled;
+    }
+
+    public AdvancedConfig setArchetypeEntityStoreEnabled(boolean enabled) {
+        archetypeEntityStoreEnabled = enabled;
+        return this;
+    }
+
+    public boolean isParallelTerrainGenerationEnabled() {
+        return parallelTerrainGenerationEnabled;
+    }
+
+    public AdvancedConfig setParallelTerrainGenerationEnabled(boolean enabled) {
+        parallelTerrainGenerationEnabled = enabled;
+        return this;
+    }
+
+    public boolean isBulkLiquidSimulationEnabled() {
+        return bulkLiquidSimulationEnabled;
+    }
+
+    public AdvancedConfig setBulkLiquidSimulationEnabled(boolean enabled) {
+        bulkLiquidSimulationEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Returns the time in milliseconds per frame spent on delivering block changes made outside of the main thread.
+     */
+    public int getBlockEventBudget() {
+        return blockEventBudget;
+    }
+
+    public AdvancedConfig setBlockEventBudget(int milliseconds) {
+        Preconditions.checkArgument(milliseconds > 0, "Parameter 'milliseconds' must be positive");
+        blockEventBudget = milliseconds;
+        return this;
+    }
+
     public static AdvancedConfig createDefault() {
         return new AdvancedConfig()
             .setBlocksFactory(TeraDenseArray16Bit.class.getName())
@@ -188,7 +283,14 @@ public final class AdvancedConfig {
             .setChunkDeflationEnabled(true)
             .setChunkDeflationLoggingEnabled(false)
             .setAdvancedMonitoringEnabled(false)
-            .setAdvancedMonitorVisibleAtStartup(false);
+            .setAdvancedMonitorVisibleAtStartup(false)
+            .setRegionChunkStoreEnabled(false)
+            .setChunkCompressionMethod(CompressionMethod.GZIP.name())
+            .setChunkCacheBudget(0)
+            .setArchetypeEntityStoreEnabled(false)
+            .setParallelTerrainGenerationEnabled(false)
+            .setBulkLiquidSimulationEnabled(false)
+            .setBlockEventBudget(2);
     }
 
     public static class Handler implements JsonSerializer<AdvancedConfig>, JsonDeserializer<AdvancedConfig> {
@@ -223,6 +325,27 @@ public final class AdvancedConfig {
             if (input.has("advancedMonitorVisibleAtStartup")) {
                 config.setAdvancedMonitorVisibleAtStartup(input.get("advancedMonitorVisibleAtStartup").getAsBoolean());
             }
+            if (input.has("regionChunkStoreEnabled")) {
+                config.setRegionChunkStoreEnabled(input.get("regionChunkStoreEnabled").getAsBoolean());
+            }
+            if (input.has("chunkCompressionMethod")) {
+                config.setChunkCompressionMethodDontThrow(input.get("chunkCompressionMethod").getAsString());
+            }
+            if (input.has("chunkCacheBudget")) {
+                config.setChunkCacheBudget(Math.max(0, input.get("chunkCacheBudget").getAsInt()));
+            }
+            if (input.has("archetypeEntityStoreEnabled")) {
+                config.setArchetypeEntityStoreEnabled(input.get("archetypeEntityStoreEnabled").getAsBoolean());
+            }
+            if (input.has("parallelTerrainGenerationEnabled")) {
+                config.setParallelTerrainGenerationEnabled(input.get("parallelTerrainGenerationEnabled").getAsBoolean());
+            }
+            if (input.has("bulkLiquidSimulationEnabled")) {
+                config.setBulkLiquidSimulationEnabled(input.get("bulkLiquidSimulationEnabled").getAsBoolean());
+            }
+            if (input.has("blockEventBudget")) {
+                config.setBlockEventBudget(Math.max(1, input.get("blockEventBudget").getAsInt()));
+            }
             return config;
         }
 
@@ -237,6 +360,13 @@ public final class AdvancedConfig {
             result.addProperty("chunkDeflationLoggingEnabled", src.chunkDeflationLoggingEnabled);
             result.addProperty("advancedMonitoringEnabled", src.advancedMonitoringEnabled);
             result.addProperty("advancedMonitorVisibleAtStartup", src.advancedMonitorVisibleAtStartup);
+            result.addProperty("regionChunkStoreEnabled", src.regionChunkStoreEnabled);
+            result.addProperty("chunkCompressionMethod", src.chunkCompressionMethod);
+            result.addProperty("chunkCacheBudget", src.chunkCacheBudget);
+            result.addProperty("archetypeEntityStoreEnabled", src.archetypeEntityStoreEnabled);
+            result.addProperty("parallelTerrainGenerationEnabled", src.parallelTerrainGenerationEnabled);
+            result.addProperty("bulkLiquidSimulationEnabled", src.bulkLiquidSimulationEnabled);
+            result.addProperty("blockEventBudget", src.blockEventBudget);
             return result;
         }
         
@@ -265,6 +395,18 @@ public final class AdvancedConfig {
         return factory != null && getTeraArrayFactory(factory) != null;
     }
     
+    public static boolean containsCompressionMethod(String method) {
+        if (method == null) {
+            return false;
+        }
+        for (final CompressionMethod m : CompressionMethod.values()) {
+            if (m.name().equals(method)) {
+                return ChunkCodecs.getInstance().isSupported(m);
+            }
+        }
+        return false;
+    }
+
     public static String[] getTeraArrayFactories() {
         final TeraArrays.Entry[] entries = TeraArrays.getInstance().getCoreArrayEntries();
         final String[] factories = new String[entries.length];
@@ -40,6 +40,7 @@ public class RenderingConfig {
     private boolean dynamicShadowsPcfFiltering = false;
     private boolean volumetricFog = false;
     private boolean cloudShadows = false;
+    private boolean greedyMeshing = false;
 
     public int getBlurRadius() {
         return Math.max(1, blurIntensity);
@@ -315,4 +316,12 @@ public class RenderingConfig {
     public void setCloudShadows(boolean cloudShadows) {
         this.cloudShadows = cloudShadows;
     }
+
+    public boolean isGreedyMeshing() {
+        return greedyMeshing;
+    }
+
+    public void setGreedyMeshing(boolean greedyMeshing) {
+        this.greedyMeshing = greedyMeshing;
+    }
 }
@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.entitySystem.pojo;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.terasology.entitySystem.Component;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * A component store which groups entities by the set of classes of their components, their archetype.
+ * <p/>
+ * The components of the entities of an archetype are stored in one array per component class, so queries only visit
+ * the archetypes containing all requested components and walk their arrays without any per entity lookups. Adding or
+ * removing a component moves the entity into another archetype, which is more expensive than with {@link ComponentTable}.
+ */
+public class ArchetypeComponentStore implements ComponentStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<Set<Class<? extends Component>>, Archetype> archetypes = Maps.newHashMap();
+    private final Map<Class<? extends Component>, List<Archetype>> archetypesByComponent = Maps.newHashMap();
+    private final TIntObjectMap<Archetype> entityArchetypes = new TIntObjectHashMap<Archetype>();
+
+    @Override
+    public <T extends Component> T get(int entityId, Class<T> componentClass) {
+        Archetype archetype = entityArchetypes.get(entityId);
+        if (archetype != null) {
+            int column = archetype.columnOf(componentClass);
+            if (column >= 0) {
+                return componentClass.cast(archetype.columns[column][archetype.rowOf(entityId)]);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Component put(int entityId, Component component) {
+        Class<? extends Component> componentClass = component.getClass();
+        Archetype current = entityArchetypes.get(entityId);
+        if (current != null) {
+            int column = current.columnOf(componentClass);
+            if (column >= 0) {
+                int row = current.rowOf(entityId);
+                Component old = current.columns[column][row];
+                current.columns[column][row] = component;
+                return old;
+            }
+        }
+        Archetype target = withComponent(current, componentClass);
+        int row = move(entityId, current, target);
+        target.columns[target.columnOf(componentClass)][row] = component;
+        return null;
+    }
+
+    @Override
+    public <T extends Component> Component remove(int entityId, Class<T> componentClass) {
+        Archetype current = entityArchetypes.get(entityId);
+        if (current == null) {
+            return null;
+        }
+        int column = current.columnOf(componentClass);
+        if (column < 0) {
+            return null;
+        }
+        Component old = current.columns[column][current.rowOf(entityId)];
+        move(entityId, current, withoutComponent(current, componentClass));
+        return old;
+    }
+
+    @Override
+    public void remove(int entityId) {
+        Archetype current = entityArchetypes.remove(entityId);
+        if (current != null) {
+            current.removeRow(entityId);
+        }
+    }
+
+    @Override
+    public void clear() {
+        archetypes.clear();
+        archetypesByComponent.clear();
+        entityArchetypes.clear();
+    }
+
+    @Override
+    public int getComponentCount(Class<? extends Component> componentClass) {
+        List<Archetype> candidates = archetypesByComponent.get(componentClass);
+        if (candidates == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Archetype archetype : candidates) {
+            count += archetype.size;
+        }
+        return count;
+    }
+
+    @Override
+    public Iterable<Component> iterateComponents(int entityId) {
+        Archetype archetype = entityArchetypes.get(entityId);
+        if (archetype == null) {
+            return Collections.emptyList();
+        }
+        int row = archetype.rowOf(entityId);
+        List<Component> components = Lists.newArrayListWithCapacity(archetype.columns.length);
+        for (Component[] column : archetype.columns) {
+            components.add(column[row]);
+        }
+        return components;
+    }
+
+    @Override
+    public <T extends Component> TIntObjectIterator<T> componentIterator(Class<T> componentClass) {
+        List<Archetype> candidates = archetypesByComponent.get(componentClass);
+        if (candidates == null) {
+            return null;
+        }
+        return new ColumnIterator<T>(candidates, componentClass);
+    }
+
+    @Override
+    public TIntIterator entityIdIterator() {
+        return new TIntArrayList(entityArchetypes.keys()).iterator();
+    }
+
+    @Override
+    public TIntList findEntities(Class<? extends Component>... componentClasses) {
+        TIntList result = new TIntArrayList();
+        // Only the archetypes of the rarest component need to be checked
+        List<Archetype> candidates = null;
+        for (Class<? extends Component> componentClass : componentClasses) {
+            List<Archetype> archetypesWithComponent = archetypesByComponent.get(componentClass);
+            if (archetypesWithComponent == null) {
+                return result;
+            }
+            if (candidates == null || archetypesWithComponent.size() < candidates.size()) {
+                candidates = archetypesWithComponent;
+            }
+        }
+        for (Archetype archetype : candidates) {
+            if (archetype.size > 0 && archetype.containsAll(componentClasses)) {
+                result.add(archetype.entityIds, 0, archetype.size);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int numEntities() {
+        return entityArchetypes.size();
+    }
+
+    /**
+     * Moves the entity and its components from one archetype into another, dropping components not part of the target.
+     *
+     * @return The row of the entity in the target archetype, or -1 if the target is null
+     */
+    private int move(int entityId, Archetype from, Archetype to) {
+        int row = -1;
+        if (to != null) {
+            row = to.addRow(entityId);
+            entityArchetypes.put(entityId, to);
+        } else {
+            entityArchetypes.remove(entityId);
+        }
+        if (from != null) {
+            int fromRow = from.rowOf(entityId);
+            if (to != null) {
+                for (int i = 0; i < from.componentClasses.length; i++) {
+                    int column = to.columnOf(from.componentClasses[i]);
+                    if (column >= 0) {
+                        to.columns[column][row] = from.columns[i][fromRow];
+                    }
+                }
+            }
+            from.removeRow(entityId);
+        }
+        return row;
+    }
+
+    private Archetype withComponent(Archetype from, Class<? extends Component> componentClass) {
+        if (from == null) {
+            return getArchetype(ImmutableSet.<Class<? extends Component>>of(componentClass));
+        }
+        Archetype result = from.addEdges.get(componentClass);
+        if (result == null) {
+            Set<Class<? extends Component>> componentClasses = Sets.newHashSet(from.componentClasses);
+            componentClasses.add(componentClass);
+            result = getArchetype(componentClasses);
+            from.addEdges.put(componentClass, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return The archetype without the given component, or null if no components would remain
+     */
+    private Archetype withoutComponent(Archetype from, Class<? extends Component> componentClass) {
+        if (from.componentClasses.length == 1) {
+            return null;
+        }
+        Archetype result = from.removeEdges.get(componentClass);
+        if (result == null) {
+            Set<Class<? extends Component>> componentClasses = Sets.newHashSet(from.componentClasses);
+            componentClasses.remove(componentClass);
+            result = getArchetype(componentClasses);
+            from.removeEdges.put(componentClass, result);
+        }
+        return result;
+    }
+
+    private Archetype getArchetype(Set<Class<? extends Component>> componentClasses) {
+        Archetype archetype = archetypes.get(componentClasses);
+        if (archetype == null) {
+            archetype = new Archetype(componentClasses);
+            archetypes.put(ImmutableSet.copyOf(componentClasses), archetype);
+            for (Class<? extends Component> componentClass : componentClasses) {
+                List<Archetype> archetypesWithComponent = archetypesByComponent.get(componentClass);
+                if (archetypesWithComponent == null) {
+                    archetypesWithComponent = Lists.newArrayList();
+                    archetypesByComponent.put(componentClass, archetypesWithComponent);
+                }
+                archetypesWithComponent.add(archetype);
+            }
+        }
+        return archetype;
+    }
+
+    private static final class Archetype {
+        private final Class<? extends Component>[] componentClasses;
+        private final Map<Class<? extends Component>, Archetype> addEdges = Maps.newHashMap();
+        private final Map<Class<? extends Component>, Archetype> removeEdges = Maps.newHashMap();
+        private final TIntIntMap rows = new TIntIntHashMap(INITIAL_CAPACITY, 0.5f, -1, -1);
+        private final Component[][] columns;
+        private int[] entityIds = new int[INITIAL_CAPACITY];
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        public Archetype(Set<Class<? extends Component>> componentClasses) {
+            this.componentClasses = componentClasses.toArray(new Class[componentClasses.size()]);
+            this.columns = new Component[componentClasses.size()][INITIAL_CAPACITY];
+        }
+
+        /**
+         * Archetypes contain few components, a linear search beats hashing the class.
+         */
+        public int columnOf(Class<? extends Component> componentClass) {
+            for (int i = 0; i < componentClasses.length; i++) {
+                if (componentClasses[i] == componentClass) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public boolean containsAll(Class<? extends Component>[] requiredClasses) {
+            for (Class<? extends Component> requiredClass : requiredClasses) {
+                if (columnOf(requiredClass) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int rowOf(int entityId) {
+            return rows.get(entityId);
+        }
+
+        public int addRow(int entityId) {
+            if (size == entityIds.length) {
+                int capacity = size * 2;
+                entityIds = Arrays.copyOf(entityIds, capacity);
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = Arrays.copyOf(columns[i], capacity);
+                }
+            }
+            entityIds[size] = entityId;
+            rows.put(entityId, size);
+            return size++;
+        }
+
+        public void removeRow(int entityId) {
+            int row = rows.remove(entityId);
+            int last = --size;
+            if (row != last) {
+                // Fill the gap with the last row to keep the arrays dense
+                int movedId = entityIds[last];
+                entityIds[row] = movedId;
+                rows.put(movedId, row);
+                for (Component[] column : columns) {
+                    column[row] = column[last];
+                }
+            }
+            for (Component[] column : columns) {
+                column[last] = null;
+            }
+        }
+    }
+
+    private static final class ColumnIterator<T extends Component> implements TIntObjectIterator<T> {
+        private final List<Archetype> archetypes;
+        private final Class<T> componentClass;
+        private int archetypeIndex = -1;
+        private Archetype archetype;
+        private int column;
+        private int row;
+
+        public ColumnIterator(List<Archetype> archetypes, Class<T> componentClass) {
+            this.archetypes = archetypes;
+            this.componentClass = componentClass;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (archetype != null && row + 1 < archetype.size) {
+                return true;
+            }
+            for (int i = archetypeIndex + 1; i < archetypes.size(); i++) {
+                if (archetypes.get(i).size > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void advance() {
+            row++;
+            while (archetype == null || row >= archetype.size) {
+                archetypeIndex++;
+                if (archetypeIndex >= archetypes.size()) {
+                    throw new NoSuchElementException();
+                }
+                archetype = archetypes.get(archetypeIndex);
+                column = archetype.columnOf(componentClass);
+                row = 0;
+            }
+        }
+
+        @Override
+        public int key() {
+            return archetype.entityIds[row];
+        }
+
+        @Override
+        public T value() {
+            return componentClass.cast(archetype.columns[column][row]);
+        }
+
+        @Override
+        public T setValue(T val) {
+            T old = value();
+            archetype.columns[column][row] = val;
+            return old;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
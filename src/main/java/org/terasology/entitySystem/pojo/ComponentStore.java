@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.entitySystem.pojo;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.TIntList;
+
+import org.terasology.entitySystem.Component;
+
+/**
+ * Storage for the components of the entities of a {@link PojoEntityManager}.
+ */
+public interface ComponentStore {
+
+    public <T extends Component> T get(int entityId, Class<T> componentClass);
+
+    /**
+     * Stores the component for the entity, replacing any component of the same class.
+     *
+     * @return The replaced component, or null if the entity had no component of this class
+     */
+    public Component put(int entityId, Component component);
+
+    public <T extends Component> Component remove(int entityId, Class<T> componentClass);
+
+    public void remove(int entityId);
+
+    public void clear();
+
+    public int getComponentCount(Class<? extends Component> componentClass);
+
+    public Iterable<Component> iterateComponents(int entityId);
+
+    /**
+     * @return An iterator over all components of the given class and their entity ids, or null if no entity has ever
+     *         had a component of this class
+     */
+    public <T extends Component> TIntObjectIterator<T> componentIterator(Class<T> componentClass);
+
+    /**
+     * @return An iterator over the ids of all entities with at least one component
+     */
+    public TIntIterator entityIdIterator();
+
+    /**
+     * @return The ids of all entities having all of the given components
+     */
+    public TIntList findEntities(Class<? extends Component>... componentClasses);
+
+    public int numEntities();
+}
@@ -62,12 +62,17 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
     private TIntList freedIds = new TIntArrayList();
     private Map<Integer, EntityRef> entityCache = new MapMaker().concurrencyLevel(4).weakValues().makeMap();
 
-    private ComponentTable store = new ComponentTable();
+    private ComponentStore store;
     private EventSystem eventSystem;
     private PrefabManager prefabManager;
     private ComponentLibrary componentLibrary;
 
     public PojoEntityManager(ComponentLibrary componentLibrary, PrefabManager prefabManager) {
+        this(componentLibrary, prefabManager, new ComponentTable());
+    }
+
+    public PojoEntityManager(ComponentLibrary componentLibrary, PrefabManager prefabManager, ComponentStore store) {
+        this.store = store;
         this.componentLibrary = componentLibrary;
         this.prefabManager = prefabManager;
         componentLibrary.registerTypeHandler(EntityRef.class, new EntityRefTypeHandler(this));
@@ -80,6 +85,9 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
         nextEntityId = 1;
         freedIds.clear();
         entityCache.clear();
+        if (eventSystem instanceof PojoEventSystem) {
+            ((PojoEventSystem) eventSystem).invalidateSignatures();
+        }
     }
 
     @Override
@@ -102,6 +110,7 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
         for (Component c : components) {
             store.put(entity.getId(), c);
         }
+        compositionChanged(entity.getId());
         if (eventSystem != null) {
             eventSystem.send(entity, AddComponentEvent.newInstance());
         }
@@ -234,26 +243,7 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
         if (componentClasses.length == 0) {
             return iteratorEntities();
         }
-        TIntList idList = new TIntArrayList();
-        TIntObjectIterator<? extends Component> primeIterator = store.componentIterator(componentClasses[0]);
-        if (primeIterator == null) {
-            return NullIterator.newInstance();
-        }
-
-        while (primeIterator.hasNext()) {
-            primeIterator.advance();
-            int id = primeIterator.key();
-            boolean discard = false;
-            for (int i = 1; i < componentClasses.length; ++i) {
-                if (store.get(id, componentClasses[i]) == null) {
-                    discard = true;
-                    break;
-                }
-            }
-            if (!discard) {
-                idList.add(primeIterator.key());
-            }
-        }
+        TIntList idList = store.findEntities(componentClasses);
         return new EntityIterable(idList);
     }
 
@@ -276,6 +266,7 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
             ((PojoEntityRef) ref).invalidate();
         }
         store.remove(entityId);
+        compositionChanged(entityId);
     }
 
     <T extends Component> T getComponent(int entityId, Class<T> componentClass) {
@@ -285,6 +276,9 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
 
     <T extends Component> T addComponent(int entityId, T component) {
         Component oldComponent = store.put(entityId, component);
+        if (oldComponent == null) {
+            compositionChanged(entityId);
+        }
         if (eventSystem != null) {
             if (oldComponent == null) {
                 eventSystem.send(createEntityRef(entityId), AddComponentEvent.newInstance(), component);
@@ -302,6 +296,17 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
                 eventSystem.send(createEntityRef(entityId), RemovedComponentEvent.newInstance(), component);
             }
             store.remove(entityId, componentClass);
+            compositionChanged(entityId);
+        }
+    }
+
+    /**
+     * Must be called after components were added to or removed from the store for the entity, so the event system does
+     * not dispatch on a stale set of components.
+     */
+    private void compositionChanged(int entityId) {
+        if (eventSystem instanceof PojoEventSystem) {
+            ((PojoEventSystem) eventSystem).invalidateSignature(entityId);
         }
     }
 
@@ -324,6 +329,7 @@ public class PojoEntityManager implements EntityManager, PersistableEntityManage
             for (Component c : components) {
                 store.put(id, c);
             }
+            compositionChanged(id);
             if (eventSystem != null) {
                 eventSystem.send(entity, AddComponentEvent.newInstance());
             }
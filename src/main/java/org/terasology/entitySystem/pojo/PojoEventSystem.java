@@ -15,17 +15,23 @@
  */
 package org.terasology.entitySystem.pojo;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
 import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +66,13 @@ public class PojoEventSystem implements EventSystem {
     private Map<Class<? extends Event>, Multimap<Class<? extends Component>, EventHandlerInfo>> componentSpecificHandlers = Maps.newHashMap();
     private Comparator<EventHandlerInfo> priorityComparator = new EventHandlerPriorityComparator();
 
+    // Dispatch tables are compiled on first use and dropped when handlers are registered
+    private static final EventHandlerInfo[] NO_HANDLERS = new EventHandlerInfo[0];
+    private Map<Class<? extends Event>, DispatchTable> dispatchTables = Maps.newHashMap();
+    private Map<Class<? extends Component>, Integer> componentIndices = Maps.newHashMap();
+    private Map<BitSet, ComponentSignature> signatures = Maps.newHashMap();
+    private TIntObjectMap<ComponentSignature> entitySignatures = new TIntObjectHashMap<ComponentSignature>();
+
     // Event metadata
     private BiMap<String, Class<? extends Event>> eventIdMap = HashBiMap.create();
     private Multimap<Class<? extends Event>, Class<? extends Event>> childEvents = HashMultimap.create();
@@ -114,7 +127,13 @@ public class PojoEventSystem implements EventSystem {
 
                 if (types.length == 2 && Event.class.isAssignableFrom(types[0]) && EntityRef.class.isAssignableFrom(types[1])) {
                     logger.debug("Found method: " + method.toString());
-                    ReflectedEventHandlerInfo handlerInfo = new ReflectedEventHandlerInfo(handler, method, receiveEventAnnotation.priority(), receiveEventAnnotation.components());
+                    ReflectedEventHandlerInfo handlerInfo;
+                    try {
+                        handlerInfo = new ReflectedEventHandlerInfo(handler, method, receiveEventAnnotation.priority(), receiveEventAnnotation.components());
+                    } catch (IllegalAccessException e) {
+                        logger.error("Cannot access event handler method: {}", method.getName(), e);
+                        continue;
+                    }
                     for (Class<? extends Component> c : receiveEventAnnotation.components()) {
                         addEventHandler((Class<? extends Event>) types[0], handlerInfo, c);
                         for (Class<? extends Event> childType : childEvents.get((Class<? extends Event>) types[0])) {
@@ -135,6 +154,7 @@ public class PojoEventSystem implements EventSystem {
             componentSpecificHandlers.put(type, componentMap);
         }
         componentMap.put(c, handlerInfo);
+        dispatchTables.clear();
     }
 
     @Override
@@ -158,13 +178,14 @@ public class PojoEventSystem implements EventSystem {
         if (Thread.currentThread() != mainThread) {
             pendingEvents.offer(new PendingEvent(entity, event));
         } else {
-            Set<EventHandlerInfo> selectedHandlersSet = selectEventHandlers(event.getClass(), entity);
-            List<EventHandlerInfo> selectedHandlers = Lists.newArrayList(selectedHandlersSet);
-            Collections.sort(selectedHandlers, priorityComparator);
-
-            for (EventHandlerInfo handler : selectedHandlers) {
+            DispatchTable table = getDispatchTable(event.getClass());
+            if (table == null) {
+                return;
+            }
+            ComponentSignature signature = getSignature(entity);
+            for (EventHandlerInfo handler : table.getHandlers(signature)) {
                 // Check isValid at each stage in case components were removed.
-                if (handler.isValidFor(entity)) {
+                if (getSignature(entity) == signature || handler.isValidFor(entity)) {
                     handler.invoke(entity, event);
                     if (event.isCancelled())
                         return;
@@ -178,9 +199,9 @@ public class PojoEventSystem implements EventSystem {
         if (Thread.currentThread() != mainThread) {
             pendingEvents.offer(new PendingEvent(entity, event, component));
         } else {
-            Multimap<Class<? extends Component>, EventHandlerInfo> handlers = componentSpecificHandlers.get(event.getClass());
-            if (handlers != null) {
-                for (EventHandlerInfo eventHandler : handlers.get(component.getClass())) {
+            DispatchTable table = getDispatchTable(event.getClass());
+            if (table != null) {
+                for (EventHandlerInfo eventHandler : table.getHandlers(component.getClass())) {
                     if (eventHandler.isValidFor(entity)) {
                         eventHandler.invoke(entity, event);
                     }
@@ -189,22 +210,138 @@ public class PojoEventSystem implements EventSystem {
         }
     }
 
-    private Set<EventHandlerInfo> selectEventHandlers(Class<? extends Event> eventType, EntityRef entity) {
-        Set<EventHandlerInfo> result = Sets.newHashSet();
-        Multimap<Class<? extends Component>, EventHandlerInfo> handlers = componentSpecificHandlers.get(eventType);
-        if (handlers == null)
-            return result;
+    /**
+     * Drops the cached component signature of the entity. Must be called whenever a component is added to or removed
+     * from the entity, and when the entity is destroyed.
+     */
+    void invalidateSignature(int entityId) {
+        entitySignatures.remove(entityId);
+    }
 
-        for (Class<? extends Component> compClass : handlers.keySet()) {
-            if (entity.hasComponent(compClass)) {
-                for (EventHandlerInfo eventHandler : handlers.get(compClass)) {
-                    if (eventHandler.isValidFor(entity)) {
-                        result.add(eventHandler);
+    /**
+     * Drops the cached component signatures of all entities, for when entity ids are reset.
+     */
+    void invalidateSignatures() {
+        entitySignatures.clear();
+    }
+
+    private DispatchTable getDispatchTable(Class<? extends Event> eventType) {
+        DispatchTable table = dispatchTables.get(eventType);
+        if (table == null) {
+            Multimap<Class<? extends Component>, EventHandlerInfo> handlers = componentSpecificHandlers.get(eventType);
+            if (handlers == null) {
+                return null;
+            }
+            table = new DispatchTable(handlers);
+            dispatchTables.put(eventType, table);
+        }
+        return table;
+    }
+
+    private int getComponentIndex(Class<? extends Component> componentClass) {
+        Integer index = componentIndices.get(componentClass);
+        if (index == null) {
+            index = componentIndices.size();
+            componentIndices.put(componentClass, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the shared signature of the set of components of the entity. Entities with the same set of components
+     * share the same signature instance.
+     */
+    private ComponentSignature getSignature(EntityRef entity) {
+        if (!entity.exists()) {
+            return getSignature(new BitSet());
+        }
+        ComponentSignature signature = entitySignatures.get(entity.getId());
+        if (signature == null) {
+            BitSet components = new BitSet();
+            for (Component component : entity.iterateComponents()) {
+                components.set(getComponentIndex(component.getClass()));
+            }
+            signature = getSignature(components);
+            entitySignatures.put(entity.getId(), signature);
+        }
+        return signature;
+    }
+
+    private ComponentSignature getSignature(BitSet components) {
+        ComponentSignature signature = signatures.get(components);
+        if (signature == null) {
+            signature = new ComponentSignature(signatures.size(), components);
+            signatures.put(components, signature);
+        }
+        return signature;
+    }
+
+    private static class ComponentSignature {
+        private final int id;
+        private final BitSet components;
+
+        public ComponentSignature(int id, BitSet components) {
+            this.id = id;
+            this.components = components;
+        }
+
+        public boolean containsAll(int[] componentIndices) {
+            for (int index : componentIndices) {
+                if (!components.get(index)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The handlers of a single event type, sorted by priority. The handlers matching an entity are selected once per
+     * component signature and cached.
+     */
+    private class DispatchTable {
+        private final EventHandlerInfo[] handlers;
+        private final int[][] requiredComponents;
+        private final Map<Class<? extends Component>, EventHandlerInfo[]> componentHandlers = Maps.newHashMap();
+        private final TIntObjectMap<EventHandlerInfo[]> handlersBySignature = new TIntObjectHashMap<EventHandlerInfo[]>();
+
+        public DispatchTable(Multimap<Class<? extends Component>, EventHandlerInfo> handlerMap) {
+            List<EventHandlerInfo> sortedHandlers = Lists.newArrayList(Sets.newLinkedHashSet(handlerMap.values()));
+            Collections.sort(sortedHandlers, priorityComparator);
+            handlers = sortedHandlers.toArray(new EventHandlerInfo[sortedHandlers.size()]);
+            requiredComponents = new int[handlers.length][];
+            for (int i = 0; i < handlers.length; i++) {
+                Class<? extends Component>[] components = handlers[i].getComponents();
+                requiredComponents[i] = new int[components.length];
+                for (int j = 0; j < components.length; j++) {
+                    requiredComponents[i][j] = getComponentIndex(components[j]);
+                }
+            }
+            for (Class<? extends Component> componentClass : handlerMap.keySet()) {
+                Collection<EventHandlerInfo> handlersForComponent = handlerMap.get(componentClass);
+                componentHandlers.put(componentClass, handlersForComponent.toArray(new EventHandlerInfo[handlersForComponent.size()]));
+            }
+        }
+
+        public EventHandlerInfo[] getHandlers(ComponentSignature signature) {
+            EventHandlerInfo[] result = handlersBySignature.get(signature.id);
+            if (result == null) {
+                List<EventHandlerInfo> selected = Lists.newArrayList();
+                for (int i = 0; i < handlers.length; i++) {
+                    if (signature.containsAll(requiredComponents[i])) {
+                        selected.add(handlers[i]);
                     }
                 }
+                result = selected.toArray(new EventHandlerInfo[selected.size()]);
+                handlersBySignature.put(signature.id, result);
             }
+            return result;
+        }
+
+        public EventHandlerInfo[] getHandlers(Class<? extends Component> componentClass) {
+            EventHandlerInfo[] result = componentHandlers.get(componentClass);
+            return (result == null) ? NO_HANDLERS : result;
         }
-        return result;
     }
 
     private static class EventHandlerPriorityComparator implements Comparator<EventHandlerInfo> {
@@ -216,6 +353,8 @@ public class PojoEventSystem implements EventSystem {
     }
 
     private interface EventHandlerInfo {
+        public Class<? extends Component>[] getComponents();
+
         public boolean isValidFor(EntityRef entity);
 
         public void invoke(EntityRef entity, Event event);
@@ -225,18 +364,21 @@ public class PojoEventSystem implements EventSystem {
 
 
     private class ReflectedEventHandlerInfo implements EventHandlerInfo {
-        private EventHandlerSystem handler;
-        private Method method;
+        private MethodHandle invoker;
         private Class<? extends Component>[] components;
         private int priority;
 
-        public ReflectedEventHandlerInfo(EventHandlerSystem handler, Method method, int priority, Class<? extends Component>... components) {
-            this.handler = handler;
-            this.method = method;
+        public ReflectedEventHandlerInfo(EventHandlerSystem handler, Method method, int priority, Class<? extends Component>... components) throws IllegalAccessException {
+            this.invoker = MethodHandles.lookup().unreflect(method).bindTo(handler).asType(MethodType.methodType(void.class, Event.class, EntityRef.class));
             this.components = Arrays.copyOf(components, components.length);
             this.priority = priority;
         }
 
+        @Override
+        public Class<? extends Component>[] getComponents() {
+            return components;
+        }
+
         public boolean isValidFor(EntityRef entity) {
             for (Class<? extends Component> component : components) {
                 if (!entity.hasComponent(component)) {
@@ -248,12 +390,8 @@ public class PojoEventSystem implements EventSystem {
 
         public void invoke(EntityRef entity, Event event) {
             try {
-                method.invoke(handler, event, entity);
-            } catch (IllegalAccessException ex) {
-                logger.error("Failed to invoke event", ex);
-            } catch (IllegalArgumentException ex) {
-                logger.error("Failed to invoke event", ex);
-            } catch (InvocationTargetException ex) {
+                invoker.invokeExact(event, entity);
+            } catch (Throwable ex) {
                 logger.error("Failed to invoke event", ex);
             }
         }
@@ -274,6 +412,11 @@ public class PojoEventSystem implements EventSystem {
             this.components = Arrays.copyOf(components, components.length);
         }
 
+        @Override
+        public Class<? extends Component>[] getComponents() {
+            return components;
+        }
+
         @Override
         public boolean isValidFor(EntityRef entity) {
             for (Class<? extends Component> component : components) {
@@ -26,6 +26,7 @@ import javax.vecmath.Vector3f;
 import org.reflections.Reflections;
 import org.terasology.asset.AssetType;
 import org.terasology.audio.Sound;
+import org.terasology.config.Config;
 import org.terasology.entitySystem.Component;
 import org.terasology.entitySystem.EntityManager;
 import org.terasology.entitySystem.Event;
@@ -43,6 +44,7 @@ import org.terasology.entitySystem.metadata.extension.Region3iTypeHandler;
 import org.terasology.entitySystem.metadata.extension.Vector2fTypeHandler;
 import org.terasology.entitySystem.metadata.extension.Vector3fTypeHandler;
 import org.terasology.entitySystem.metadata.extension.Vector3iTypeHandler;
+import org.terasology.entitySystem.pojo.ArchetypeComponentStore;
 import org.terasology.entitySystem.pojo.PojoEntityManager;
 import org.terasology.entitySystem.pojo.PojoEventSystem;
 import org.terasology.entitySystem.pojo.PojoPrefabManager;
@@ -71,7 +73,13 @@ public class EntitySystemBuilder {
         PrefabManager prefabManager = new PojoPrefabManager(library);
         CoreRegistry.put(PrefabManager.class, prefabManager);
 
-        PersistableEntityManager entityManager = new PojoEntityManager(library, prefabManager);
+        PersistableEntityManager entityManager;
+        Config config = CoreRegistry.get(Config.class);
+        if (config != null && config.getAdvanced().isArchetypeEntityStoreEnabled()) {
+            entityManager = new PojoEntityManager(library, prefabManager, new ArchetypeComponentStore());
+        } else {
+            entityManager = new PojoEntityManager(library, prefabManager);
+        }
         entityManager.setEventSystem(new PojoEventSystem());
         CoreRegistry.put(EntityManager.class, entityManager);
         CoreRegistry.put(EventSystem.class, entityManager.getEventSystem());
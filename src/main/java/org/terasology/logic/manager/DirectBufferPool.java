@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.logic.manager;
+
+import com.google.common.collect.Lists;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Pools direct byte buffers, so short lived buffers like the vertex data of chunk meshes do not have to allocate
+ * native memory every time.
+ * <p/>
+ * Buffers are handed out in power of two size classes. Released buffers are kept for reuse until the pool holds
+ * maxPooledBytes, further buffers are left to the garbage collector. Buffers larger than the largest size class are
+ * never pooled.
+ */
+public class DirectBufferPool {
+
+    private static final int MIN_SIZE_CLASS = 12;
+    private static final int MAX_SIZE_CLASS = 24;
+    private static final long DEFAULT_MAX_POOLED_BYTES = 64L << 20;
+
+    private static final ByteBuffer EMPTY = BufferUtils.createByteBuffer(0);
+
+    private static final DirectBufferPool instance = new DirectBufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final List<Deque<ByteBuffer>> freeBuffers = Lists.newArrayList();
+    private final long maxPooledBytes;
+    private long pooledBytes;
+
+    public static DirectBufferPool getInstance() {
+        return instance;
+    }
+
+    public DirectBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        for (int i = MIN_SIZE_CLASS; i <= MAX_SIZE_CLASS; i++) {
+            freeBuffers.add(new ArrayDeque<ByteBuffer>());
+        }
+    }
+
+    /**
+     * @param size The number of bytes needed
+     * @return A direct buffer in native byte order, with position 0 and limit size. The capacity may be larger.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        int sizeClass = sizeClassOf(size);
+        if (sizeClass > MAX_SIZE_CLASS) {
+            return BufferUtils.createByteBuffer(size);
+        }
+
+        ByteBuffer buffer = null;
+        synchronized (this) {
+            Deque<ByteBuffer> buffers = freeBuffers.get(sizeClass - MIN_SIZE_CLASS);
+            if (!buffers.isEmpty()) {
+                buffer = buffers.pop();
+                pooledBytes -= buffer.capacity();
+            }
+        }
+        if (buffer == null) {
+            buffer = BufferUtils.createByteBuffer(1 << sizeClass);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer acquired from this pool. The buffer must not be used afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity == 0 || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int sizeClass = Integer.numberOfTrailingZeros(capacity);
+        if (sizeClass < MIN_SIZE_CLASS || sizeClass > MAX_SIZE_CLASS) {
+            return;
+        }
+
+        synchronized (this) {
+            if (pooledBytes + capacity <= maxPooledBytes) {
+                freeBuffers.get(sizeClass - MIN_SIZE_CLASS).push(buffer);
+                pooledBytes += capacity;
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes held by released buffers
+     */
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    private static int sizeClassOf(int size) {
+        return Math.max(MIN_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+}
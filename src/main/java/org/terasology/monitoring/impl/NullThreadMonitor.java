@@ -77,6 +77,9 @@ public class NullThreadMonitor implements SingleThreadMonitor {
     @Override
     public void increment(int index) {}
 
+    @Override
+    public void increment(int index, long amount) {}
+
     @Override
     public int compareTo(SingleThreadMonitor o) {
         return 0;
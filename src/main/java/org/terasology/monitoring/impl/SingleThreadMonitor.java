@@ -31,5 +31,7 @@ public interface SingleThreadMonitor extends Comparable<SingleThreadMonitor> {
     public long getCounter(int index);
     
     public void increment(int index);
+
+    public void increment(int index, long amount);
     
 }
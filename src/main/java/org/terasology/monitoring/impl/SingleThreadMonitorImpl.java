@@ -111,6 +111,11 @@ public class SingleThreadMonitorImpl implements SingleThreadMonitor {
     public final void increment(int index) {
         counters[index]++;
     }
+
+    @Override
+    public final void increment(int index, long amount) {
+        counters[index] += amount;
+    }
     
     @Override
     public String toString() {
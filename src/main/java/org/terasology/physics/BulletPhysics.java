@@ -27,7 +27,7 @@ import javax.vecmath.Vector3f;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.terasology.world.block.BlockComponent;
+import org.terasology.components.world.WorldComponent;
 import org.terasology.entitySystem.EntityRef;
 import org.terasology.entitySystem.EventReceiver;
 import org.terasology.entitySystem.EventSystem;
@@ -38,6 +38,7 @@ import org.terasology.monitoring.PerformanceMonitor;
 import org.terasology.world.BlockChangedEvent;
 import org.terasology.world.BlockEntityRegistry;
 import org.terasology.world.WorldProvider;
+import org.terasology.world.chunks.ChunkReadyEvent;
 
 import com.bulletphysics.collision.broadphase.BroadphaseInterface;
 import com.bulletphysics.collision.broadphase.CollisionFilterGroups;
@@ -72,6 +73,7 @@ import com.google.common.collect.Lists;
 public class BulletPhysics implements EventReceiver<BlockChangedEvent> {
 
     private static final Logger logger = LoggerFactory.getLogger(BulletPhysics.class);
+    private static final int PRUNE_INTERVAL = 300;
     
     private final Deque<RigidBodyRequest> _insertionQueue = new LinkedList<RigidBodyRequest>();
     private final Deque<RigidBody> _removalQueue = new LinkedList<RigidBody>();
@@ -83,6 +85,8 @@ public class BulletPhysics implements EventReceiver<BlockChangedEvent> {
     private final DiscreteDynamicsWorld _discreteDynamicsWorld;
     private final BlockEntityRegistry blockEntityRegistry;
     private final CollisionGroupManager collisionGroupManager;
+    private final PhysicsWorldWrapper worldWrapper;
+    private int updatesSincePrune;
 
 
     public BulletPhysics(WorldProvider world) {
@@ -96,10 +100,16 @@ public class BulletPhysics implements EventReceiver<BlockChangedEvent> {
         _discreteDynamicsWorld = new DiscreteDynamicsWorld(_dispatcher, _broadphase, _sequentialImpulseConstraintSolver, _defaultCollisionConfiguration);
         _discreteDynamicsWorld.setGravity(new Vector3f(0f, -15f, 0f));
         blockEntityRegistry = CoreRegistry.get(BlockEntityRegistry.class);
-        CoreRegistry.get(EventSystem.class).registerEventReceiver(this, BlockChangedEvent.class, BlockComponent.class);
+        CoreRegistry.get(EventSystem.class).registerEventReceiver(this, BlockChangedEvent.class, WorldComponent.class);
 
-        PhysicsWorldWrapper wrapper = new PhysicsWorldWrapper(world);
-        VoxelWorldShape worldShape = new VoxelWorldShape(wrapper);
+        worldWrapper = new PhysicsWorldWrapper(world);
+        CoreRegistry.get(EventSystem.class).registerEventReceiver(new EventReceiver<ChunkReadyEvent>() {
+            @Override
+            public void onEvent(ChunkReadyEvent event, EntityRef entity) {
+                worldWrapper.chunkReady(event.getChunkPos());
+            }
+        }, ChunkReadyEvent.class, WorldComponent.class);
+        VoxelWorldShape worldShape = new VoxelWorldShape(worldWrapper);
 
         Matrix3f rot = new Matrix3f();
         rot.setIdentity();
@@ -220,6 +230,7 @@ public class BulletPhysics implements EventReceiver<BlockChangedEvent> {
 
     @Override
     public void onEvent(BlockChangedEvent event, EntityRef entity) {
+        worldWrapper.blockChanged(event.getBlockPosition());
         Vector3f min = event.getBlockPosition().toVector3f();
         min.sub(new Vector3f(0.6f, 0.6f, 0.6f));
         Vector3f max = event.getBlockPosition().toVector3f();
@@ -229,6 +240,11 @@ public class BulletPhysics implements EventReceiver<BlockChangedEvent> {
 
     public void update(float delta) {
         processQueuedBodies();
+        worldWrapper.commitChanges();
+        if (++updatesSincePrune >= PRUNE_INTERVAL) {
+            worldWrapper.pruneSnapshots();
+            updatesSincePrune = 0;
+        }
         try {
             PerformanceMonitor.startActivity("Step Simulation");
             _discreteDynamicsWorld.stepSimulation(delta, 8);
@@ -16,22 +16,53 @@
 
 package org.terasology.physics;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
 import javax.vecmath.Vector3f;
 
+import org.terasology.math.TeraMath;
 import org.terasology.math.Vector3i;
+import org.terasology.utilities.collection.ConcurrentLongObjectMap;
 import org.terasology.world.WorldProvider;
 import org.terasology.world.block.Block;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.chunks.provider.ChunkCache;
 
 import com.bulletphysics.collision.shapes.CollisionShape;
 import com.bulletphysics.collision.shapes.voxel.VoxelInfo;
 import com.bulletphysics.collision.shapes.voxel.VoxelPhysicsWorld;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
 
 /**
+ * Provides the voxels of the world to the physics engine.
+ * <p/>
+ * The collision relevant data of the world is read from immutable snapshots of the block ids of each chunk, which are
+ * taken when the physics engine first touches a chunk. Changed positions are queued by {@link #blockChanged(Vector3i)}
+ * and re-read into to the snapshots by {@link #commitChanges()} before the simulation is stepped, so a step always sees a
+ * consistent world and never calls into the world provider. Chunks may still be changed by the generator without block
+ * change events until they are ready, so their snapshots are dropped by {@link #chunkReady(Vector3i)} and taken again.
+ * The voxel info of a block type is only created once.
+ *
  * @author Immortius
  */
 public class PhysicsWorldWrapper implements VoxelPhysicsWorld {
 
-    private WorldProvider world;
+    private static final int SNAPSHOT_SIZE = Chunk.SIZE_X * Chunk.SIZE_Y * Chunk.SIZE_Z;
+
+    private final WorldProvider world;
+    private final BlockManager blockManager = BlockManager.getInstance();
+    private final TeraVoxelInfo[] voxelInfos = new TeraVoxelInfo[1 << 16];
+    private final ConcurrentLongObjectMap<ChunkSnapshot> snapshots = new ConcurrentLongObjectMap<ChunkSnapshot>();
+    private final Queue<BlockChange> pendingChanges = Queues.newConcurrentLinkedQueue();
+    private final Queue<Vector3i> readyChunks = Queues.newConcurrentLinkedQueue();
+
+    // the snapshot looked up last, replaced without synchronization since snapshots are immutable
+    private ChunkSnapshot lastSnapshot;
 
     public PhysicsWorldWrapper(WorldProvider world) {
         this.world = world;
@@ -39,24 +70,198 @@ public class PhysicsWorldWrapper implements VoxelPhysicsWorld {
 
     @Override
     public VoxelInfo getCollisionShapeAt(int x, int y, int z) {
-        Block block = world.getBlock(x, y, z);
-        return new TeraVoxelInfo(block, block.isTargetable(), !block.isPenetrable(), new Vector3i(x, y, z));
+        if (y < 0 || y >= Chunk.SIZE_Y) {
+            return getVoxelInfo(blockManager.getAir());
+        }
+        ChunkSnapshot snapshot = getSnapshot(TeraMath.calcChunkPosX(x), TeraMath.calcChunkPosZ(z));
+        TeraVoxelInfo info;
+        if (snapshot == null) {
+            info = getVoxelInfo(blockManager.getAir());
+        } else {
+            info = getVoxelInfo(snapshot.blockIds[index(TeraMath.calcBlockPosX(x), y, TeraMath.calcBlockPosZ(z))]);
+        }
+        if (info.isColliding()) {
+            // ray tests report the position of the hit voxel through the user data
+            return new PositionedVoxelInfo(info, x, y, z);
+        }
+        return info;
+    }
+
+    /**
+     * Queues a block change, which will be visible to the physics engine after the next call to {@link #commitChanges()}.
+     */
+    public void blockChanged(Vector3i pos) {
+        pendingChanges.add(new BlockChange(pos));
+    }
+
+    /**
+     * Queues dropping the snapshot of a chunk which has become ready, since it may have been taken before the generation
+     * of the chunk was finished. Takes effect with the next call to {@link #commitChanges()}.
+     */
+    public void chunkReady(Vector3i chunkPos) {
+        readyChunks.add(new Vector3i(chunkPos));
+    }
+
+    /**
+     * Applies all queued block changes, creating one new snapshot per affected chunk, and drops the snapshots of chunks
+     * which have become ready. The blocks are read from the world again, so changes reported out of order still end up
+     * with the current block. Must not be called while the simulation is stepped.
+     */
+    public void commitChanges() {
+        for (Vector3i chunkPos = readyChunks.poll(); chunkPos != null; chunkPos = readyChunks.poll()) {
+            if (snapshots.remove(ChunkCache.key(chunkPos.x, 0, chunkPos.z)) != null) {
+                lastSnapshot = null;
+            }
+        }
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        Map<ChunkSnapshot, short[]> updated = Maps.newHashMap();
+        BlockChange change = pendingChanges.poll();
+        while (change != null) {
+            ChunkSnapshot snapshot = snapshots.get(ChunkCache.key(TeraMath.calcChunkPosX(change.x), 0, TeraMath.calcChunkPosZ(change.z)));
+            if (snapshot != null && change.y >= 0 && change.y < Chunk.SIZE_Y) {
+                short[] blockIds = updated.get(snapshot);
+                if (blockIds == null) {
+                    blockIds = snapshot.blockIds.clone();
+                    updated.put(snapshot, blockIds);
+                }
+                blockIds[index(TeraMath.calcBlockPosX(change.x), change.y, TeraMath.calcBlockPosZ(change.z))] = world.getBlock(change.x, change.y, change.z).getId();
+            }
+            change = pendingChanges.poll();
+        }
+        for (Map.Entry<ChunkSnapshot, short[]> entry : updated.entrySet()) {
+            ChunkSnapshot old = entry.getKey();
+            snapshots.put(old.key, new ChunkSnapshot(old.key, old, entry.getValue()));
+        }
+        lastSnapshot = null;
+    }
+
+    /**
+     * Drops the snapshots of chunks which are no longer loaded.
+     */
+    public void pruneSnapshots() {
+        List<ChunkSnapshot> stale = Lists.newArrayList();
+        for (ChunkSnapshot snapshot : snapshots.values()) {
+            if (!world.isBlockActive(snapshot.chunkX * Chunk.SIZE_X, 0, snapshot.chunkZ * Chunk.SIZE_Z)) {
+                stale.add(snapshot);
+            }
+        }
+        for (ChunkSnapshot snapshot : stale) {
+            snapshots.remove(snapshot.key, snapshot);
+        }
+        if (!stale.isEmpty()) {
+            lastSnapshot = null;
+        }
+    }
+
+    public int getSnapshotCount() {
+        return snapshots.size();
+    }
+
+    private static int index(int x, int y, int z) {
+        return x + Chunk.SIZE_X * (z + Chunk.SIZE_Z * y);
+    }
+
+    private ChunkSnapshot getSnapshot(int chunkX, int chunkZ) {
+        long key = ChunkCache.key(chunkX, 0, chunkZ);
+        ChunkSnapshot snapshot = lastSnapshot;
+        if (snapshot != null && snapshot.key == key) {
+            return snapshot;
+        }
+        snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            snapshot = createSnapshot(chunkX, chunkZ, key);
+            if (snapshot == null) {
+                return null;
+            }
+            ChunkSnapshot existing = snapshots.putIfAbsent(key, snapshot);
+            if (existing != null) {
+                snapshot = existing;
+            }
+        }
+        lastSnapshot = snapshot;
+        return snapshot;
+    }
+
+    private ChunkSnapshot createSnapshot(int chunkX, int chunkZ, long key) {
+        int minX = chunkX * Chunk.SIZE_X;
+        int minZ = chunkZ * Chunk.SIZE_Z;
+        if (!world.isBlockActive(minX, 0, minZ)) {
+            return null;
+        }
+        short[] blockIds = new short[SNAPSHOT_SIZE];
+        int i = 0;
+        for (int y = 0; y < Chunk.SIZE_Y; y++) {
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                for (int x = 0; x < Chunk.SIZE_X; x++) {
+                    blockIds[i++] = world.getBlock(minX + x, y, minZ + z).getId();
+                }
+            }
+        }
+        return new ChunkSnapshot(key, chunkX, chunkZ, blockIds);
+    }
+
+    private TeraVoxelInfo getVoxelInfo(Block block) {
+        TeraVoxelInfo info = voxelInfos[block.getId() & 0xFFFF];
+        if (info == null || info.block != block) {
+            info = new TeraVoxelInfo(block);
+            voxelInfos[block.getId() & 0xFFFF] = info;
+        }
+        return info;
     }
 
-    private static class TeraVoxelInfo implements VoxelInfo {
+    private TeraVoxelInfo getVoxelInfo(short blockId) {
+        return getVoxelInfo(blockManager.getBlock(blockId));
+    }
+
+    private static final class ChunkSnapshot {
+        private final long key;
+        private final int chunkX;
+        private final int chunkZ;
+        private final short[] blockIds;
+
+        public ChunkSnapshot(long key, int chunkX, int chunkZ, short[] blockIds) {
+            this.key = key;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.blockIds = blockIds;
+        }
+
+        public ChunkSnapshot(long key, ChunkSnapshot previous, short[] blockIds) {
+            this(key, previous.chunkX, previous.chunkZ, blockIds);
+        }
+    }
+
+    private static final class BlockChange {
+        private final int x;
+        private final int y;
+        private final int z;
 
-        private boolean colliding;
-        private boolean blocking;
-        private CollisionShape shape;
-        private Vector3i position;
-        private Vector3f offset;
+        public BlockChange(Vector3i pos) {
+            this.x = pos.x;
+            this.y = pos.y;
+            this.z = pos.z;
+        }
+    }
 
-        public TeraVoxelInfo(Block block, boolean colliding, boolean blocking, Vector3i position) {
+    /**
+     * The collision data of a block type, shared by all voxels of that type.
+     */
+    private static final class TeraVoxelInfo implements VoxelInfo {
+
+        private final Block block;
+        private final boolean colliding;
+        private final boolean blocking;
+        private final CollisionShape shape;
+        private final Vector3f offset;
+
+        public TeraVoxelInfo(Block block) {
+            this.block = block;
             this.shape = block.getCollisionShape();
             this.offset = block.getCollisionOffset();
-            this.colliding = shape != null && colliding;
-            this.blocking = shape != null && blocking;
-            this.position = position;
+            this.colliding = shape != null && block.isTargetable();
+            this.blocking = shape != null && !block.isPenetrable();
         }
 
         @Override
@@ -66,7 +271,7 @@ public class PhysicsWorldWrapper implements VoxelPhysicsWorld {
 
         @Override
         public Object getUserData() {
-            return position;
+            return null;
         }
 
         @Override
@@ -84,4 +289,47 @@ public class PhysicsWorldWrapper implements VoxelPhysicsWorld {
             return blocking;
         }
     }
+
+    /**
+     * The voxel info of a colliding voxel, which knows its position.
+     */
+    private static final class PositionedVoxelInfo implements VoxelInfo {
+
+        private final TeraVoxelInfo info;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        public PositionedVoxelInfo(TeraVoxelInfo info, int x, int y, int z) {
+            this.info = info;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public boolean isColliding() {
+            return info.colliding;
+        }
+
+        @Override
+        public Object getUserData() {
+            return new Vector3i(x, y, z);
+        }
+
+        @Override
+        public CollisionShape getCollisionShape() {
+            return info.shape;
+        }
+
+        @Override
+        public Vector3f getCollisionOffset() {
+            return info.offset;
+        }
+
+        @Override
+        public boolean isBlocking() {
+            return info.blocking;
+        }
+    }
 }
@@ -17,6 +17,7 @@ public final class ChunksProtobuf {
     SparseArray4Bit(4, 4),
     SparseArray8Bit(5, 5),
     SparseArray16Bit(6, 6),
+    PaletteArray16Bit(7, 7),
     ;
     
     public static final int Unknown_VALUE = 0;
@@ -26,6 +27,7 @@ public final class ChunksProtobuf {
     public static final int SparseArray4Bit_VALUE = 4;
     public static final int SparseArray8Bit_VALUE = 5;
     public static final int SparseArray16Bit_VALUE = 6;
+    public static final int PaletteArray16Bit_VALUE = 7;
     
     
     public final int getNumber() { return value; }
@@ -39,6 +41,7 @@ public final class ChunksProtobuf {
         case 4: return SparseArray4Bit;
         case 5: return SparseArray8Bit;
         case 6: return SparseArray16Bit;
+        case 7: return PaletteArray16Bit;
         default: return null;
       }
     }
@@ -69,7 +72,7 @@ public final class ChunksProtobuf {
     }
     
     private static final Type[] VALUES = {
-      Unknown, DenseArray4Bit, DenseArray8Bit, DenseArray16Bit, SparseArray4Bit, SparseArray8Bit, SparseArray16Bit, 
+      Unknown, DenseArray4Bit, DenseArray8Bit, DenseArray16Bit, SparseArray4Bit, SparseArray8Bit, SparseArray16Bit, PaletteArray16Bit, 
     };
     
     public static Type valueOf(
@@ -2606,9 +2609,15 @@ public final class ChunksProtobuf {
     public enum CompressionMethod
         implements com.google.protobuf.ProtocolMessageEnum {
       GZIP(0, 0),
+      NONE(1, 1),
+      LZ4(2, 2),
+      LZMA(3, 3),
       ;
       
       public static final int GZIP_VALUE = 0;
+      public static final int NONE_VALUE = 1;
+      public static final int LZ4_VALUE = 2;
+      public static final int LZMA_VALUE = 3;
       
       
       public final int getNumber() { return value; }
@@ -2616,6 +2625,9 @@ public final class ChunksProtobuf {
       public static CompressionMethod valueOf(int value) {
         switch (value) {
           case 0: return GZIP;
+          case 1: return NONE;
+          case 2: return LZ4;
+          case 3: return LZMA;
           default: return null;
         }
       }
@@ -2646,7 +2658,7 @@ public final class ChunksProtobuf {
       }
       
       private static final CompressionMethod[] VALUES = {
-        GZIP, 
+        GZIP, NONE, LZ4, LZMA, 
       };
       
       public static CompressionMethod valueOf(
@@ -2687,6 +2699,10 @@ public final class ChunksProtobuf {
       // optional bytes data = 4;
       boolean hasData();
       com.google.protobuf.ByteString getData();
+      
+      // optional .CompressedChunks.CompressionMethod method = 5;
+      boolean hasMethod();
+      org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod getMethod();
     }
     public static final class CompressedChunk extends
         com.google.protobuf.GeneratedMessage
@@ -2757,11 +2773,22 @@ public final class ChunksProtobuf {
         return data_;
       }
       
+      // optional .CompressedChunks.CompressionMethod method = 5;
+      public static final int METHOD_FIELD_NUMBER = 5;
+      private org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod method_;
+      public boolean hasMethod() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      public org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod getMethod() {
+        return method_;
+      }
+      
       private void initFields() {
         x_ = 0;
         y_ = 0;
         z_ = 0;
         data_ = com.google.protobuf.ByteString.EMPTY;
+        method_ = org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod.GZIP;
       }
       private byte memoizedIsInitialized = -1;
       public final boolean isInitialized() {
@@ -2787,6 +2814,9 @@ public final class ChunksProtobuf {
         if (((bitField0_ & 0x00000008) == 0x00000008)) {
           output.writeBytes(4, data_);
         }
+        if (((bitField0_ & 0x00000010) == 0x00000010)) {
+          output.writeEnum(5, method_.getNumber());
+        }
         getUnknownFields().writeTo(output);
       }
       
@@ -2812,6 +2842,10 @@ public final class ChunksProtobuf {
           size += com.google.protobuf.CodedOutputStream
             .computeBytesSize(4, data_);
         }
+        if (((bitField0_ & 0x00000010) == 0x00000010)) {
+          size += com.google.protobuf.CodedOutputStream
+            .computeEnumSize(5, method_.getNumber());
+        }
         size += getUnknownFields().getSerializedSize();
         memoizedSerializedSize = size;
         return size;
@@ -2944,6 +2978,8 @@ public final class ChunksProtobuf {
           bitField0_ = (bitField0_ & ~0x00000004);
           data_ = com.google.protobuf.ByteString.EMPTY;
           bitField0_ = (bitField0_ & ~0x00000008);
+          method_ = org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod.GZIP;
+          bitField0_ = (bitField0_ & ~0x00000010);
           return this;
         }
         
@@ -2998,6 +3034,10 @@ public final class ChunksProtobuf {
             to_bitField0_ |= 0x00000008;
           }
           result.data_ = data_;
+          if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+            to_bitField0_ |= 0x00000010;
+          }
+          result.method_ = method_;
           result.bitField0_ = to_bitField0_;
           onBuilt();
           return result;
@@ -3026,6 +3066,9 @@ public final class ChunksProtobuf {
           if (other.hasData()) {
             setData(other.getData());
           }
+          if (other.hasMethod()) {
+            setMethod(other.getMethod());
+          }
           this.mergeUnknownFields(other.getUnknownFields());
           return this;
         }
@@ -3077,6 +3120,17 @@ public final class ChunksProtobuf {
                 data_ = input.readBytes();
                 break;
               }
+              case 40: {
+                int rawValue = input.readEnum();
+                org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod value = org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod.valueOf(rawValue);
+                if (value == null) {
+                  unknownFields.mergeVarintField(5, rawValue);
+                } else {
+                  bitField0_ |= 0x00000010;
+                  method_ = value;
+                }
+                break;
+              }
             }
           }
         }
@@ -3170,6 +3224,30 @@ public final class ChunksProtobuf {
           return this;
         }
         
+        // optional .CompressedChunks.CompressionMethod method = 5;
+        private org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod method_ = org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod.GZIP;
+        public boolean hasMethod() {
+          return ((bitField0_ & 0x00000010) == 0x00000010);
+        }
+        public org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod getMethod() {
+          return method_;
+        }
+        public Builder setMethod(org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod value) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          bitField0_ |= 0x00000010;
+          method_ = value;
+          onChanged();
+          return this;
+        }
+        public Builder clearMethod() {
+          bitField0_ = (bitField0_ & ~0x00000010);
+          method_ = org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod.GZIP;
+          onChanged();
+          return this;
+        }
+        
         // @@protoc_insertion_point(builder_scope:CompressedChunks.CompressedChunk)
       }
       
@@ -3798,22 +3876,24 @@ public final class ChunksProtobuf {
       "ata\030\005 \001(\0132\n.TeraArray\022!\n\rsunlight_data\030\006" +
       " \001(\0132\n.TeraArray\022\036\n\nlight_data\030\007 \001(\0132\n.T" +
       "eraArray\022\036\n\nextra_data\030\010 \001(\0132\n.TeraArray" +
-      "\022\032\n\010mod_data\030\t \003(\0132\010.ModData*\005\010d\020\351\007\"\341\001\n\020" +
+      "\022\032\n\010mod_data\030\t \003(\0132\010.ModData*\005\010d\020\351\007\"\263\002\n\020" +
       "CompressedChunks\0229\n\006method\030\001 \001(\0162#.Compr",
       "essedChunks.CompressionMethod:\004GZIP\0221\n\006c" +
       "hunks\030\002 \003(\0132!.CompressedChunks.Compresse" +
-      "dChunk\032@\n\017CompressedChunk\022\t\n\001x\030\001 \001(\021\022\t\n\001" +
-      "y\030\002 \001(\021\022\t\n\001z\030\003 \001(\021\022\014\n\004data\030\004 \001(\014\"\035\n\021Comp" +
-      "ressionMethod\022\010\n\004GZIP\020\000*\220\001\n\004Type\022\013\n\007Unkn" +
-      "own\020\000\022\022\n\016DenseArray4Bit\020\001\022\022\n\016DenseArray8" +
-      "Bit\020\002\022\023\n\017DenseArray16Bit\020\003\022\023\n\017SparseArra" +
-      "y4Bit\020\004\022\023\n\017SparseArray8Bit\020\005\022\024\n\020SparseAr" +
-      "ray16Bit\020\006*\242\001\n\005State\022 \n\034ADJACENCY_GENERA" +
-      "TION_PENDING\020\000\022%\n!INTERNAL_LIGHT_GENERAT",
-      "ION_PENDING\020\001\022\035\n\031LIGHT_PROPAGATION_PENDI" +
-      "NG\020\002\022#\n\037FULL_LIGHT_CONNECTIVITY_PENDING\020" +
-      "\003\022\014\n\010COMPLETE\020\004B+\n\027org.terasology.protob" +
-      "ufB\016ChunksProtobufH\001"
+      "dChunk\032u\n\017CompressedChunk\022\t\n\001x\030\001 \001(\021\022\t\n\001" +
+      "y\030\002 \001(\021\022\t\n\001z\030\003 \001(\021\022\014\n\004data\030\004 \001(\014\0223\n\006meth" +
+      "od\030\005 \001(\0162#.CompressedChunks.CompressionM" +
+      "ethod\":\n\021CompressionMethod\022\010\n\004GZIP\020\000\022\010\n\004" +
+      "NONE\020\001\022\007\n\003LZ4\020\002\022\010\n\004LZMA\020\003*\247\001\n\004Type\022\013\n\007Un" +
+      "known\020\000\022\022\n\016DenseArray4Bit\020\001\022\022\n\016DenseArra" +
+      "y8Bit\020\002\022\023\n\017DenseArray16Bit\020\003\022\023\n\017SparseAr" +
+      "ray4Bit\020\004\022\023\n\017SparseArray8Bit\020\005\022\024\n\020Sparse",
+      "Array16Bit\020\006\022\025\n\021PaletteArray16Bit\020\007*\242\001\n\005State\022 \n\034ADJACENCY_GENE" +
+      "RATION_PENDING\020\000\022%\n!INTERNAL_LIGHT_GENER" +
+      "ATION_PENDING\020\001\022\035\n\031LIGHT_PROPAGATION_PEN" +
+      "DING\020\002\022#\n\037FULL_LIGHT_CONNECTIVITY_PENDIN" +
+      "G\020\003\022\014\n\010COMPLETE\020\004B+\n\027org.terasology.prot" +
+      "obufB\016ChunksProtobufH\001"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -3857,7 +3937,7 @@ public final class ChunksProtobuf {
           internal_static_CompressedChunks_CompressedChunk_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CompressedChunks_CompressedChunk_descriptor,
-              new java.lang.String[] { "X", "Y", "Z", "Data", },
+              new java.lang.String[] { "X", "Y", "Z", "Data", "Method", },
               org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressedChunk.class,
               org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressedChunk.Builder.class);
           return null;
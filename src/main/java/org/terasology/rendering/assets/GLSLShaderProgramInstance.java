@@ -32,6 +32,7 @@ import org.terasology.game.paths.PathManager;
 import org.terasology.logic.manager.ShaderManager;
 import org.terasology.math.TeraMath;
 import org.terasology.rendering.cameras.Camera;
+import org.terasology.rendering.primitives.ChunkMesh;
 import org.terasology.rendering.primitives.ChunkTessellator;
 import org.terasology.rendering.shader.IShaderParameters;
 import org.terasology.rendering.shader.ShaderParametersSSAO;
@@ -141,6 +142,9 @@ public class GLSLShaderProgramInstance {
         String preProcessorPreamble = "#version 120\n";
 
         preProcessorPreamble += "#define TEXTURE_OFFSET " + Block.calcRelativeTileSize() + "\n";
+        preProcessorPreamble += "#define TILED_TEXTURE_SPAN " + (float) ChunkTessellator.TILED_TEXTURE_SPAN + "\n";
+        preProcessorPreamble += "#define CHUNK_POSITION_SCALE " + 1.0f / ChunkMesh.POSITION_SCALE + "\n";
+        preProcessorPreamble += "#define CHUNK_LIGHT_SCALE " + 1.0f / ChunkMesh.LIGHT_SCALE + "\n";
         preProcessorPreamble += "#define BLOCK_LIGHT_POW " + WorldRenderer.BLOCK_LIGHT_POW + "\n";
         preProcessorPreamble += "#define BLOCK_LIGHT_SUN_POW " + WorldRenderer.BLOCK_LIGHT_SUN_POW + "\n";
         preProcessorPreamble += "#define BLOCK_INTENSITY_FACTOR " + WorldRenderer.BLOCK_INTENSITY_FACTOR + "\n";
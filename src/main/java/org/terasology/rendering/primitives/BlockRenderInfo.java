@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.rendering.primitives;
+
+import org.terasology.math.Side;
+import org.terasology.math.Vector3i;
+import org.terasology.world.block.Block;
+import org.terasology.world.block.BlockPart;
+import org.terasology.world.block.shapes.BlockMeshPart;
+
+import javax.vecmath.Vector3f;
+import javax.vecmath.Vector4f;
+
+/**
+ * Everything the chunk tessellator needs to know about a block, compiled once per block type.
+ * <p/>
+ * Flags and mesh parts are stored in arrays indexed by side or block part ordinal, so tessellating a block does not
+ * compare uris or look up enum maps. Color offsets of parts that do not depend on the biome are precomputed. The sides
+ * of opaque cubes, which the tessellator may merge with adjacent faces, are validated once here.
+ *
+ * @see org.terasology.world.block.management.BlockManager#getRenderInfo(short)
+ */
+public final class BlockRenderInfo {
+
+    private static final int SIDE_COUNT = Side.values().length;
+    private static final BlockPart[] PARTS = BlockPart.values();
+
+    private final Block block;
+    private final boolean air;
+    private final boolean invisible;
+    private final boolean liquid;
+    private final boolean translucent;
+    private final boolean shadowCasting;
+    private final int renderType;
+    private final int vertexFlags;
+    private final int[] sideVertexFlags = new int[SIDE_COUNT];
+    private final int sidePartMask;
+    private final int fullSideMask;
+    private final BlockMeshPart[] meshParts = new BlockMeshPart[PARTS.length];
+    private final BlockMeshPart[] loweredLiquidMeshes = new BlockMeshPart[SIDE_COUNT];
+    private final Vector4f[] fixedColorOffsets = new Vector4f[PARTS.length];
+
+    // Faces which can be merged with adjacent faces of the same block type, see ChunkTessellator
+    private final int mergeableSideMask;
+    private final int[] tileU = new int[SIDE_COUNT];
+    private final int[] tileV = new int[SIDE_COUNT];
+    private final boolean[] uAlongFirstAxis = new boolean[SIDE_COUNT];
+
+    public BlockRenderInfo(Block block) {
+        this.block = block;
+        String uri = (block.getURI() != null) ? block.getURI().toString() : "";
+
+        air = block.getId() == 0x0;
+        invisible = block.isInvisible();
+        liquid = block.isLiquid();
+        translucent = block.isTranslucent();
+        shadowCasting = block.isShadowCasting();
+
+        // TODO: Needs review since the new per-vertex flags introduce a lot of special scenarios
+        int flags = 0;
+        if (uri.equals("engine:water")) {
+            flags = ChunkTessellator.ChunkVertexFlags.BLOCK_HINT_WATER.getValue();
+        } else if (uri.equals("engine:lava")) {
+            flags = ChunkTessellator.ChunkVertexFlags.BLOCK_HINT_LAVA.getValue();
+        } else if (block.isWaving() && block.isDoubleSided()) {
+            flags = ChunkTessellator.ChunkVertexFlags.BLOCK_HINT_WAVING.getValue();
+        } else if (block.isWaving() && !block.isDoubleSided()) {
+            flags = ChunkTessellator.ChunkVertexFlags.BLOCK_HINT_WAVING_BLOCK.getValue();
+        }
+        vertexFlags = flags;
+
+        ChunkMesh.RENDER_TYPE type = ChunkMesh.RENDER_TYPE.TRANSLUCENT;
+        if (!block.isTranslucent())
+            type = ChunkMesh.RENDER_TYPE.OPAQUE;
+        // TODO: Review special case, or alternatively compare uris.
+        if (uri.equals("engine:water") || uri.equals("engine:ice"))
+            type = ChunkMesh.RENDER_TYPE.WATER_AND_ICE;
+        if (block.isDoubleSided())
+            type = ChunkMesh.RENDER_TYPE.BILLBOARD;
+        renderType = type.getIndex();
+
+        boolean grass = uri.equals("engine:grass");
+        int sideParts = 0;
+        int fullSides = 0;
+        for (Side side : Side.values()) {
+            int index = side.ordinal();
+            // Don't mask grass on the top or bottom side...
+            if (grass) {
+                sideVertexFlags[index] = (side != Side.TOP && side != Side.BOTTOM) ? ChunkTessellator.ChunkVertexFlags.BLOCK_HINT_GRASS.getValue() : 0;
+            } else {
+                sideVertexFlags[index] = vertexFlags;
+            }
+            if (block.getMeshPart(BlockPart.fromSide(side)) != null)
+                sideParts |= 1 << index;
+            if (block.isFullSide(side))
+                fullSides |= 1 << index;
+            loweredLiquidMeshes[index] = block.getLoweredLiquidMesh(side);
+        }
+        sidePartMask = sideParts;
+        fullSideMask = fullSides;
+
+        for (BlockPart part : PARTS) {
+            meshParts[part.ordinal()] = block.getMeshPart(part);
+            if (block.getColorSource(part) == Block.ColorSource.DEFAULT)
+                fixedColorOffsets[part.ordinal()] = block.calcColorOffsetFor(part, 0.0f, 0.0f);
+        }
+
+        int mergeableSides = 0;
+        if (type == ChunkMesh.RENDER_TYPE.OPAQUE && !liquid && meshParts[BlockPart.CENTER.ordinal()] == null) {
+            for (Side side : Side.values()) {
+                if (sideVertexFlags[side.ordinal()] == 0 && isFullSide(side) && initMergeableFace(side))
+                    mergeableSides |= 1 << side.ordinal();
+            }
+        }
+        mergeableSideMask = mergeableSides;
+    }
+
+    /**
+     * A face can be merged, if it is a square covering the whole side of the block and showing exactly one tile of
+     * the atlas, with the texture axes following the block axes.
+     */
+    private boolean initMergeableFace(Side side) {
+        BlockMeshPart part = block.getMeshPart(BlockPart.fromSide(side));
+        if (part == null || part.size() != 4 || part.indicesSize() != 6)
+            return false;
+
+        int normalAxis = getNormalAxis(side);
+        int firstAxis = getFirstAxis(side);
+        int secondAxis = getSecondAxis(side);
+        Vector3i normal = side.getVector3i();
+
+        float minU = Float.MAX_VALUE;
+        float minV = Float.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            minU = Math.min(minU, part.getTexCoord(i).x);
+            minV = Math.min(minV, part.getTexCoord(i).y);
+        }
+        float tileSize = Block.calcRelativeTileSize();
+        if (!isWhole(minU / tileSize) || !isWhole(minV / tileSize))
+            return false;
+
+        float[] position = new float[3];
+        boolean[] first = new boolean[4];
+        boolean[] second = new boolean[4];
+        boolean[] u = new boolean[4];
+        boolean[] v = new boolean[4];
+        int corners = 0;
+        for (int i = 0; i < 4; i++) {
+            Vector3f vertexNormal = part.getNormal(i);
+            if (vertexNormal.x != normal.x || vertexNormal.y != normal.y || vertexNormal.z != normal.z)
+                return false;
+            part.getVertex(i).get(position);
+            if (position[normalAxis] * 2 != normal.x + normal.y + normal.z
+                    || Math.abs(position[firstAxis]) != 0.5f || Math.abs(position[secondAxis]) != 0.5f)
+                return false;
+
+            float tileU = (part.getTexCoord(i).x - minU) / Block.calcRelativeTileSizeWithOffset();
+            float tileV = (part.getTexCoord(i).y - minV) / Block.calcRelativeTileSizeWithOffset();
+            if (!isCorner(tileU) || !isCorner(tileV))
+                return false;
+
+            first[i] = position[firstAxis] > 0;
+            second[i] = position[secondAxis] > 0;
+            u[i] = tileU > 0.5f;
+            v[i] = tileV > 0.5f;
+            corners |= 1 << ((first[i] ? 1 : 0) + (second[i] ? 2 : 0));
+        }
+        if (corners != 0xf)
+            return false;
+
+        boolean uFirst = follows(u, first) && follows(v, second);
+        if (!uFirst && !(follows(u, second) && follows(v, first)))
+            return false;
+
+        tileU[side.ordinal()] = Math.round(minU / tileSize);
+        tileV[side.ordinal()] = Math.round(minV / tileSize);
+        uAlongFirstAxis[side.ordinal()] = uFirst;
+        return true;
+    }
+
+    /**
+     * @return Whether the texture coordinate changes exactly where the position changes, in either direction
+     */
+    private static boolean follows(boolean[] texture, boolean[] position) {
+        boolean same = texture[0] == position[0];
+        for (int i = 1; i < texture.length; i++) {
+            if ((texture[i] == position[i]) != same)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isWhole(float value) {
+        return Math.abs(value - Math.round(value)) < 0.001f;
+    }
+
+    private static boolean isCorner(float value) {
+        return Math.abs(value) < 0.001f || Math.abs(value - 1.0f) < 0.001f;
+    }
+
+    /**
+     * @return The index of the axis the side faces along, 0 for x, 1 for y and 2 for z
+     */
+    public static int getNormalAxis(Side side) {
+        Vector3i normal = side.getVector3i();
+        return (normal.x != 0) ? 0 : (normal.y != 0) ? 1 : 2;
+    }
+
+    /**
+     * @return The index of the first axis within the plane of the side
+     */
+    public static int getFirstAxis(Side side) {
+        return (getNormalAxis(side) == 0) ? 1 : 0;
+    }
+
+    /**
+     * @return The index of the second axis within the plane of the side
+     */
+    public static int getSecondAxis(Side side) {
+        return (getNormalAxis(side) == 2) ? 1 : 2;
+    }
+
+    public Block getBlock() {
+        return block;
+    }
+
+    public boolean isAir() {
+        return air;
+    }
+
+    public boolean isInvisible() {
+        return invisible;
+    }
+
+    public boolean isLiquid() {
+        return liquid;
+    }
+
+    public boolean isTranslucent() {
+        return translucent;
+    }
+
+    public boolean isShadowCasting() {
+        return shadowCasting;
+    }
+
+    /**
+     * @return The index of the chunk mesh this block is rendered into
+     */
+    public int getRenderType() {
+        return renderType;
+    }
+
+    public int getVertexFlags() {
+        return vertexFlags;
+    }
+
+    public int getVertexFlags(Side side) {
+        return sideVertexFlags[side.ordinal()];
+    }
+
+    public boolean hasMeshPart(Side side) {
+        return (sidePartMask & (1 << side.ordinal())) != 0;
+    }
+
+    public boolean isFullSide(Side side) {
+        return (fullSideMask & (1 << side.ordinal())) != 0;
+    }
+
+    public BlockMeshPart getMeshPart(BlockPart part) {
+        return meshParts[part.ordinal()];
+    }
+
+    public BlockMeshPart getLoweredLiquidMesh(Side side) {
+        return loweredLiquidMeshes[side.ordinal()];
+    }
+
+    public boolean isMergeable(Side side) {
+        return (mergeableSideMask & (1 << side.ordinal())) != 0;
+    }
+
+    /**
+     * @return The column of the atlas tile shown on the given side, if the side is mergeable
+     */
+    public int getTileU(Side side) {
+        return tileU[side.ordinal()];
+    }
+
+    /**
+     * @return The row of the atlas tile shown on the given side, if the side is mergeable
+     */
+    public int getTileV(Side side) {
+        return tileV[side.ordinal()];
+    }
+
+    /**
+     * @return True if the u texture axis of the given side runs along the first axis of the side, false if it runs
+     *         along the second one
+     */
+    public boolean isUAlongFirstAxis(Side side) {
+        return uAlongFirstAxis[side.ordinal()];
+    }
+
+    /**
+     * The returned vector is shared and must not be modified.
+     *
+     * @return The color offset for the given part of the block
+     */
+    public Vector4f getColorOffset(BlockPart part, float temperature, float humidity) {
+        Vector4f fixed = fixedColorOffsets[part.ordinal()];
+        if (fixed != null)
+            return fixed;
+        return block.calcColorOffsetFor(part, temperature, humidity);
+    }
+}
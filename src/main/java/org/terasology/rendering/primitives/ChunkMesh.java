@@ -40,6 +40,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL15;
+import org.terasology.logic.manager.DirectBufferPool;
 import org.terasology.logic.manager.VertexBufferObjectManager;
 
 import com.bulletphysics.collision.shapes.IndexedMesh;
@@ -75,6 +76,8 @@ public class ChunkMesh {
 
         public ByteBuffer finalVertices;
         public IntBuffer finalIndices;
+        /* Backs finalIndices, kept to return it to the pool */
+        ByteBuffer finalIndexData;
     }
 
     /**
@@ -105,18 +108,29 @@ public class ChunkMesh {
     }
 
     /* CONST */
+    /*
+     * Vertices are packed into STRIDE bytes: the position as shorts in 1/POSITION_SCALE blocks, the texture
+     * coordinates as floats, the lighting values as shorts in 1/LIGHT_SCALE steps followed by the vertex flags, the
+     * packed color and the normal as signed bytes.
+     */
     public static final int SIZE_VERTEX = 3;
-    public static final int SIZE_TEX0 = 3;
-    public static final int SIZE_TEX1 = 3;
+    public static final int SIZE_TEX0 = 2;
+    public static final int SIZE_TEX1 = 4;
     public static final int SIZE_COLOR = 1;
     public static final int SIZE_NORMAL = 3;
 
     public static final int OFFSET_VERTEX = 0;
-    public static final int OFFSET_TEX_0 = OFFSET_VERTEX + SIZE_VERTEX * 4;
+    public static final int OFFSET_TEX_0 = OFFSET_VERTEX + (SIZE_VERTEX + 1) * 2;
     public static final int OFFSET_TEX_1 = OFFSET_TEX_0 + SIZE_TEX0 * 4;
-    public static final int OFFSET_COLOR = OFFSET_TEX_1 + SIZE_TEX1 * 4;
+    public static final int OFFSET_COLOR = OFFSET_TEX_1 + SIZE_TEX1 * 2;
     public static final int OFFSET_NORMAL = OFFSET_COLOR + SIZE_COLOR * 4;
-    public static final int STRIDE = OFFSET_NORMAL + SIZE_NORMAL * 4;
+    public static final int STRIDE = OFFSET_NORMAL + (SIZE_NORMAL + 1);
+
+    /**
+     * Positions are stored in steps of 1/POSITION_SCALE blocks, which covers the 512 blocks of miniature chunks.
+     */
+    public static final int POSITION_SCALE = 64;
+    public static final int LIGHT_SCALE = 255;
 
     /* VERTEX DATA */
     private final int[] vertexBuffers = new int[4];
@@ -162,7 +176,8 @@ public class ChunkMesh {
                 for (int i = 0; i < vertexBuffers.length; i++)
                     generateVBO(i);
 
-                // Free unused space on the heap
+                // Free unused space on the heap, the buffers have been copied to the VBOs
+                releaseBuffers();
                 vertexElements = null;
                 // Calculate the final amount of triangles
                 triangleCount = (vertexCount[0] + vertexCount[1] + vertexCount[2] + vertexCount[3]) / 3;
@@ -211,17 +226,17 @@ public class ChunkMesh {
                 GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, idxBuffers[id]);
                 GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffers[id]);
 
-                glVertexPointer(SIZE_VERTEX, GL11.GL_FLOAT, STRIDE, OFFSET_VERTEX);
+                glVertexPointer(SIZE_VERTEX, GL11.GL_SHORT, STRIDE, OFFSET_VERTEX);
 
                 GL13.glClientActiveTexture(GL13.GL_TEXTURE0);
                 glTexCoordPointer(SIZE_TEX0, GL11.GL_FLOAT, STRIDE, OFFSET_TEX_0);
 
                 GL13.glClientActiveTexture(GL13.GL_TEXTURE1);
-                glTexCoordPointer(SIZE_TEX1, GL11.GL_FLOAT, STRIDE, OFFSET_TEX_1);
+                glTexCoordPointer(SIZE_TEX1, GL11.GL_SHORT, STRIDE, OFFSET_TEX_1);
 
                 glColorPointer(SIZE_COLOR*4, GL11.GL_UNSIGNED_BYTE, STRIDE, OFFSET_COLOR);
 
-                glNormalPointer(GL11.GL_FLOAT, STRIDE, OFFSET_NORMAL);
+                glNormalPointer(GL11.GL_BYTE, STRIDE, OFFSET_NORMAL);
 
                 GL11.glDrawElements(GL11.GL_TRIANGLES, vertexCount[id], GL11.GL_UNSIGNED_INT, 0);
 
@@ -273,6 +288,7 @@ public class ChunkMesh {
                 }
 
                 disposed = true;
+                releaseBuffers();
                 vertexElements = null;
                 indexedMesh = null;
             }
@@ -281,6 +297,23 @@ public class ChunkMesh {
         }
     }
 
+    private void releaseBuffers() {
+        if (vertexElements == null)
+            return;
+
+        for (VertexElements elements : vertexElements) {
+            if (elements.finalVertices != null) {
+                DirectBufferPool.getInstance().release(elements.finalVertices);
+                elements.finalVertices = null;
+            }
+            if (elements.finalIndexData != null) {
+                DirectBufferPool.getInstance().release(elements.finalIndexData);
+                elements.finalIndexData = null;
+                elements.finalIndices = null;
+            }
+        }
+    }
+
     public boolean isDisposed() {
         return disposed;
     }
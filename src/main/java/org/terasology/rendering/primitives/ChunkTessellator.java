@@ -16,11 +16,15 @@
 package org.terasology.rendering.primitives;
 
 import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.array.TFloatArrayList;
 
 import javax.vecmath.Vector3f;
 import javax.vecmath.Vector4f;
 
-import org.lwjgl.BufferUtils;
+import org.terasology.config.Config;
+import org.terasology.logic.manager.DirectBufferPool;
+import org.terasology.game.CoreRegistry;
 import org.terasology.math.*;
 import org.terasology.monitoring.PerformanceMonitor;
 import org.terasology.world.chunks.MiniatureChunk;
@@ -28,10 +32,17 @@ import org.terasology.world.WorldBiomeProvider;
 import org.terasology.world.WorldView;
 import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockPart;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.block.shapes.BlockMeshPart;
 import org.terasology.world.chunks.Chunk;
+import org.terasology.world.chunks.ChunkSnapshot;
 
 import com.google.common.base.Stopwatch;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
 /**
  * Generates tessellated chunk meshes from chunks.
  *
@@ -41,14 +52,39 @@ public final class ChunkTessellator {
 
     private static int statVertexArrayUpdateCount = 0;
 
+    private static final Side[] SIDES = Side.values();
+
+    /**
+     * Texture coordinates of merged faces store the atlas tile times this span plus the position within the face,
+     * measured in blocks. The chunk shader repeats the tile across the face.
+     */
+    public static final int TILED_TEXTURE_SPAN = 32;
+    private static final int MAX_MERGED_EXTENT = 16;
+
+    private static final ThreadLocal<MergeableFaces> mergeableFaces = new ThreadLocal<MergeableFaces>() {
+        @Override
+        protected MergeableFaces initialValue() {
+            return new MergeableFaces();
+        }
+    };
+
+    private static final ThreadLocal<ChunkSnapshot> snapshots = new ThreadLocal<ChunkSnapshot>() {
+        @Override
+        protected ChunkSnapshot initialValue() {
+            return new ChunkSnapshot();
+        }
+    };
+
     private WorldBiomeProvider biomeProvider;
+    private final BlockManager blockManager = BlockManager.getInstance();
 
     public enum ChunkVertexFlags {
         BLOCK_HINT_WATER(1),
         BLOCK_HINT_LAVA(2),
         BLOCK_HINT_GRASS(3),
         BLOCK_HINT_WAVING(4),
-        BLOCK_HINT_WAVING_BLOCK(5);
+        BLOCK_HINT_WAVING_BLOCK(5),
+        BLOCK_HINT_TILED(6);
 
         private int value;
         private ChunkVertexFlags(int value) {
@@ -71,28 +107,20 @@ public final class ChunkTessellator {
 
         final Stopwatch watch = new Stopwatch();
         watch.start();
-        
-        for (int x = 0; x < Chunk.SIZE_X; x++) {
-            for (int z = 0; z < Chunk.SIZE_Z; z++) {
-                float biomeTemp = biomeProvider.getTemperatureAt(chunkOffset.x + x, chunkOffset.z + z);
-                float biomeHumidity = biomeProvider.getHumidityAt(chunkOffset.x + x, chunkOffset.z + z);
 
-                for (int y = verticalOffset; y < verticalOffset + meshHeight; y++) {
-                    Block block = worldView.getBlock(x, y, z);
+        // The view is not touched after this, all further reads go to the snapshot
+        ChunkSnapshot snapshot = snapshots.get();
+        snapshot.fill(worldView, 0, 0, verticalOffset, verticalOffset + meshHeight);
 
-                    if (block == null || block.isInvisible())
-                        continue;
-
-                    generateBlockVertices(worldView, mesh, x, y, z, biomeTemp, biomeHumidity);
-                }
-            }
-        }
+        TFloatList[] lighting = createLightingLists(mesh);
+        MergeableFaces faces = CoreRegistry.get(Config.class).getRendering().isGreedyMeshing() ? mergeableFaces.get() : null;
+        generateColumnVertices(snapshot, mesh, lighting, faces, 0, 0, verticalOffset, verticalOffset + meshHeight, chunkOffset);
 
         watch.stop();
         mesh.timeToGenerateBlockVertices = (int) watch.elapsedMillis();
         
         watch.reset().start();
-        generateOptimizedBuffers(worldView, mesh);
+        generateOptimizedBuffers(mesh, lighting);
         watch.stop();
         mesh.timeToGenerateOptimizedBuffers = (int) watch.elapsedMillis();
         
@@ -111,173 +139,206 @@ public final class ChunkTessellator {
         WorldView localWorldView = new WorldView(chunks, Region3i.createFromCenterExtents(Vector3i.zero(), Vector3i.zero()), Vector3i.zero());
         localWorldView.setChunkSize(new Vector3i(MiniatureChunk.CHUNK_SIZE));
 
-        for (int x = 0; x < MiniatureChunk.SIZE_X; x++) {
-            for (int z = 0; z < MiniatureChunk.SIZE_Z; z++) {
-                for (int y = 0; y < MiniatureChunk.SIZE_Y; y++) {
-                    Block block = miniatureChunk.getBlock(x,y,z);
+        // Miniatures are larger than a chunk, so they are tessellated in chunk sized columns
+        ChunkSnapshot snapshot = snapshots.get();
+        TFloatList[] lighting = createLightingLists(mesh);
+        for (int x = 0; x < MiniatureChunk.SIZE_X; x += Chunk.SIZE_X) {
+            for (int z = 0; z < MiniatureChunk.SIZE_Z; z += Chunk.SIZE_Z) {
+                snapshot.fill(localWorldView, x, z, 0, MiniatureChunk.SIZE_Y);
+                generateColumnVertices(snapshot, mesh, lighting, null, x, z, 0, MiniatureChunk.SIZE_Y, null);
+            }
+        }
+
+        generateOptimizedBuffers(mesh, lighting);
+        statVertexArrayUpdateCount++;
+
+        PerformanceMonitor.endActivity();
+        return mesh;
+    }
+
+    private TFloatList[] createLightingLists(ChunkMesh mesh) {
+        TFloatList[] lighting = new TFloatList[mesh.vertexElements.length];
+        for (int j = 0; j < lighting.length; j++) {
+            lighting[j] = new TFloatArrayList();
+        }
+        return lighting;
+    }
+
+    /**
+     * Generates the vertices of the blocks in the snapshot, and the lighting values of these vertices.
+     *
+     * @param faces       Collects the faces to be merged. No faces are merged if null.
+     * @param chunkOffset The world position of the snapshot, used to look up the biome. No biome colors are used if null.
+     */
+    private void generateColumnVertices(ChunkSnapshot snapshot, ChunkMesh mesh, TFloatList[] lighting, MergeableFaces faces, int originX, int originZ, int minY, int maxY, Vector3i chunkOffset) {
+        int[] firstVertex = new int[mesh.vertexElements.length];
+        for (int j = 0; j < firstVertex.length; j++) {
+            firstVertex[j] = mesh.vertexElements[j].vtxCount;
+        }
+
+        for (int x = 0; x < Chunk.SIZE_X; x++) {
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                float biomeTemp = 0.0f;
+                float biomeHumidity = 0.0f;
+                if (chunkOffset != null) {
+                    biomeTemp = biomeProvider.getTemperatureAt(chunkOffset.x + x, chunkOffset.z + z);
+                    biomeHumidity = biomeProvider.getHumidityAt(chunkOffset.x + x, chunkOffset.z + z);
+                }
+
+                for (int y = minY; y < maxY; y++) {
+                    BlockRenderInfo block = blockManager.getRenderInfo(snapshot.getBlockId(x, y, z));
 
                     if (block == null || block.isInvisible())
                         continue;
 
-                    generateBlockVertices(localWorldView, mesh, x, y, z, 0.0f, 0.0f);
+                    generateBlockVertices(snapshot, mesh, faces, block, x, y, z, originX, originZ, biomeTemp, biomeHumidity);
                 }
             }
         }
 
-        generateOptimizedBuffers(localWorldView, mesh);
-        statVertexArrayUpdateCount++;
+        if (faces != null) {
+            mergeFaces(mesh, faces, originX, originZ, maxY);
+        }
 
+        PerformanceMonitor.startActivity("calcLighting");
+        float[] result = new float[3];
+        for (int j = 0; j < mesh.vertexElements.length; j++) {
+            TFloatList vertices = mesh.vertexElements[j].vertices;
+            TFloatList normals = mesh.vertexElements[j].normals;
+            for (int i = firstVertex[j] * 3; i < vertices.size(); i += 3) {
+                calcLightingValuesForVertexPos(snapshot, vertices.get(i) - originX, vertices.get(i + 1), vertices.get(i + 2) - originZ,
+                        normals.get(i), normals.get(i + 1), normals.get(i + 2), result);
+                lighting[j].add(result);
+            }
+        }
         PerformanceMonitor.endActivity();
-        return mesh;
     }
 
-    private void generateOptimizedBuffers(WorldView worldView, ChunkMesh mesh) {
+    private void generateOptimizedBuffers(ChunkMesh mesh, TFloatList[] lighting) {
         PerformanceMonitor.startActivity("OptimizeBuffers");
 
         for (int j = 0; j < mesh.vertexElements.length; j++) {
-            // Vertices double to account for light info
-            mesh.vertexElements[j].finalVertices = BufferUtils.createByteBuffer(
-                    mesh.vertexElements[j].vertices.size() * 4 /* POSITION */
-                    + mesh.vertexElements[j].tex.size() * 4 /* TEX0 (UV0 and flags) */
-                    + mesh.vertexElements[j].tex.size() * 4 /* TEX1 (lighting data) */
-                    + mesh.vertexElements[j].flags.size() * 4 /* FLAGS */
-                    + mesh.vertexElements[j].color.size() * 4 /* COLOR */
-                    + mesh.vertexElements[j].normals.size() * 4 /* NORMALS */
-            );
+            ChunkMesh.VertexElements elements = mesh.vertexElements[j];
+            ByteBuffer vertexData = DirectBufferPool.getInstance().acquire(elements.vtxCount * ChunkMesh.STRIDE);
 
             int cTex = 0;
             int cColor = 0;
             int cFlags = 0;
-            for (int i = 0; i < mesh.vertexElements[j].vertices.size(); i += 3, cTex += 2, cColor += 4, cFlags++) {
-
-                Vector3f vertexPos = new Vector3f(mesh.vertexElements[j].vertices.get(i), mesh.vertexElements[j].vertices.get(i + 1), mesh.vertexElements[j].vertices.get(i + 2));
+            for (int i = 0; i < elements.vertices.size(); i += 3, cTex += 2, cColor += 4, cFlags++) {
 
                 /* POSITION */
-                mesh.vertexElements[j].finalVertices.putFloat(vertexPos.x);
-                mesh.vertexElements[j].finalVertices.putFloat(vertexPos.y);
-                mesh.vertexElements[j].finalVertices.putFloat(vertexPos.z);
+                vertexData.putShort(packPosition(elements.vertices.get(i)));
+                vertexData.putShort(packPosition(elements.vertices.get(i + 1)));
+                vertexData.putShort(packPosition(elements.vertices.get(i + 2)));
+                vertexData.putShort((short) 0);
 
                 /* UV0 / TEX DATA 0 */
-                mesh.vertexElements[j].finalVertices.putFloat(mesh.vertexElements[j].tex.get(cTex));
-                mesh.vertexElements[j].finalVertices.putFloat(mesh.vertexElements[j].tex.get(cTex + 1));
-
-                /* FLAGS */
-                mesh.vertexElements[j].finalVertices.putFloat(mesh.vertexElements[j].flags.get(cFlags));
+                vertexData.putFloat(elements.tex.get(cTex));
+                vertexData.putFloat(elements.tex.get(cTex + 1));
 
-                float[] result = new float[3];
-                Vector3f normal = new Vector3f(mesh.vertexElements[j].normals.get(i), mesh.vertexElements[j].normals.get(i+1), mesh.vertexElements[j].normals.get(i+2));
-                calcLightingValuesForVertexPos(worldView, vertexPos, result, normal);
-
-                /* LIGHTING DATA / TEX DATA 1 */
-                mesh.vertexElements[j].finalVertices.putFloat(result[0]);
-                mesh.vertexElements[j].finalVertices.putFloat(result[1]);
-                mesh.vertexElements[j].finalVertices.putFloat(result[2]);
+                /* LIGHTING DATA AND FLAGS / TEX DATA 1 */
+                vertexData.putShort(packLight(lighting[j].get(i)));
+                vertexData.putShort(packLight(lighting[j].get(i + 1)));
+                vertexData.putShort(packLight(lighting[j].get(i + 2)));
+                vertexData.putShort((short) elements.flags.get(cFlags));
 
                 final int packedColor = TeraMath.packColor(
-                        mesh.vertexElements[j].color.get(cColor),
-                        mesh.vertexElements[j].color.get(cColor + 1),
-                        mesh.vertexElements[j].color.get(cColor + 2),
-                        mesh.vertexElements[j].color.get(cColor) + 3);
+                        elements.color.get(cColor),
+                        elements.color.get(cColor + 1),
+                        elements.color.get(cColor + 2),
+                        elements.color.get(cColor) + 3);
 
                 /* PACKED PACKED COLOR */
-                mesh.vertexElements[j].finalVertices.putInt(packedColor);
+                vertexData.putInt(packedColor);
 
                 /* NORMALS */
-                mesh.vertexElements[j].finalVertices.putFloat(normal.x);
-                mesh.vertexElements[j].finalVertices.putFloat(normal.y);
-                mesh.vertexElements[j].finalVertices.putFloat(normal.z);
+                vertexData.put(packNormal(elements.normals.get(i)));
+                vertexData.put(packNormal(elements.normals.get(i + 1)));
+                vertexData.put(packNormal(elements.normals.get(i + 2)));
+                vertexData.put((byte) 0);
             }
 
-            mesh.vertexElements[j].finalIndices = BufferUtils.createIntBuffer(mesh.vertexElements[j].indices.size());
-            TIntIterator indexIterator = mesh.vertexElements[j].indices.iterator();
+            ByteBuffer indexData = DirectBufferPool.getInstance().acquire(elements.indices.size() * 4);
+            IntBuffer indices = indexData.asIntBuffer();
+            TIntIterator indexIterator = elements.indices.iterator();
             while (indexIterator.hasNext()) {
-                mesh.vertexElements[j].finalIndices.put(indexIterator.next());
+                indices.put(indexIterator.next());
             }
 
-            mesh.vertexElements[j].finalVertices.flip();
-            mesh.vertexElements[j].finalIndices.flip();
+            vertexData.flip();
+            indices.flip();
+            elements.finalVertices = vertexData;
+            elements.finalIndices = indices;
+            elements.finalIndexData = indexData;
         }
         PerformanceMonitor.endActivity();
     }
 
-    private void calcLightingValuesForVertexPos(WorldView worldView, Vector3f vertexPos, float[] output, Vector3f normal) {
-        PerformanceMonitor.startActivity("calcLighting");
-        float[] lights = new float[8];
-        float[] blockLights = new float[8];
-        Block[] blocks = new Block[4];
-
-        PerformanceMonitor.startActivity("gatherLightInfo");
-        Direction dir = Direction.inDirection(normal);
-        switch (dir) {
-            case LEFT:
-            case RIGHT:
-                blocks[0] = worldView.getBlock((vertexPos.x + 0.8f * normal.x), (vertexPos.y + 0.1f), (vertexPos.z + 0.1f));
-                blocks[1] = worldView.getBlock((vertexPos.x + 0.8f * normal.x), (vertexPos.y + 0.1f), (vertexPos.z - 0.1f));
-                blocks[2] = worldView.getBlock((vertexPos.x + 0.8f * normal.x), (vertexPos.y - 0.1f), (vertexPos.z - 0.1f));
-                blocks[3] = worldView.getBlock((vertexPos.x + 0.8f * normal.x), (vertexPos.y - 0.1f), (vertexPos.z + 0.1f));
-                break;
-            case FORWARD:
-            case BACKWARD:
-                blocks[0] = worldView.getBlock((vertexPos.x + 0.1f), (vertexPos.y + 0.1f), (vertexPos.z + 0.8f * normal.z));
-                blocks[1] = worldView.getBlock((vertexPos.x + 0.1f), (vertexPos.y - 0.1f), (vertexPos.z + 0.8f * normal.z));
-                blocks[2] = worldView.getBlock((vertexPos.x - 0.1f), (vertexPos.y - 0.1f), (vertexPos.z + 0.8f * normal.z));
-                blocks[3] = worldView.getBlock((vertexPos.x - 0.1f), (vertexPos.y + 0.1f), (vertexPos.z + 0.8f * normal.z));
-                break;
-            default:
-                blocks[0] = worldView.getBlock((vertexPos.x + 0.1f), (vertexPos.y + 0.8f * normal.y), (vertexPos.z + 0.1f));
-                blocks[1] = worldView.getBlock((vertexPos.x + 0.1f), (vertexPos.y + 0.8f * normal.y), (vertexPos.z - 0.1f));
-                blocks[2] = worldView.getBlock((vertexPos.x - 0.1f), (vertexPos.y + 0.8f * normal.y), (vertexPos.z - 0.1f));
-                blocks[3] = worldView.getBlock((vertexPos.x - 0.1f), (vertexPos.y + 0.8f * normal.y), (vertexPos.z + 0.1f));
-                break;
-        }
+    private static short packPosition(float value) {
+        return (short) Math.round(value * ChunkMesh.POSITION_SCALE);
+    }
 
-        lights[0] = worldView.getSunlight((vertexPos.x + 0.1f), (vertexPos.y + 0.8f), (vertexPos.z + 0.1f));
-        lights[1] = worldView.getSunlight((vertexPos.x + 0.1f), (vertexPos.y + 0.8f), (vertexPos.z - 0.1f));
-        lights[2] = worldView.getSunlight((vertexPos.x - 0.1f), (vertexPos.y + 0.8f), (vertexPos.z - 0.1f));
-        lights[3] = worldView.getSunlight((vertexPos.x - 0.1f), (vertexPos.y + 0.8f), (vertexPos.z + 0.1f));
-
-        lights[4] = worldView.getSunlight((vertexPos.x + 0.1f), (vertexPos.y - 0.1f), (vertexPos.z + 0.1f));
-        lights[5] = worldView.getSunlight((vertexPos.x + 0.1f), (vertexPos.y - 0.1f), (vertexPos.z - 0.1f));
-        lights[6] = worldView.getSunlight((vertexPos.x - 0.1f), (vertexPos.y - 0.1f), (vertexPos.z - 0.1f));
-        lights[7] = worldView.getSunlight((vertexPos.x - 0.1f), (vertexPos.y - 0.1f), (vertexPos.z + 0.1f));
-
-        blockLights[0] = worldView.getLight((vertexPos.x + 0.1f), (vertexPos.y + 0.8f), (vertexPos.z + 0.1f));
-        blockLights[1] = worldView.getLight((vertexPos.x + 0.1f), (vertexPos.y + 0.8f), (vertexPos.z - 0.1f));
-        blockLights[2] = worldView.getLight((vertexPos.x - 0.1f), (vertexPos.y + 0.8f), (vertexPos.z - 0.1f));
-        blockLights[3] = worldView.getLight((vertexPos.x - 0.1f), (vertexPos.y + 0.8f), (vertexPos.z + 0.1f));
-
-        blockLights[4] = worldView.getLight((vertexPos.x + 0.1f), (vertexPos.y - 0.1f), (vertexPos.z + 0.1f));
-        blockLights[5] = worldView.getLight((vertexPos.x + 0.1f), (vertexPos.y - 0.1f), (vertexPos.z - 0.1f));
-        blockLights[6] = worldView.getLight((vertexPos.x - 0.1f), (vertexPos.y - 0.1f), (vertexPos.z - 0.1f));
-        blockLights[7] = worldView.getLight((vertexPos.x - 0.1f), (vertexPos.y - 0.1f), (vertexPos.z + 0.1f));
-        PerformanceMonitor.endActivity();
+    private static short packLight(float value) {
+        return (short) Math.round(value * ChunkMesh.LIGHT_SCALE);
+    }
+
+    private static byte packNormal(float value) {
+        return (byte) Math.round(value * Byte.MAX_VALUE);
+    }
+
+    private void calcLightingValuesForVertexPos(ChunkSnapshot snapshot, float x, float y, float z, float normalX, float normalY, float normalZ, float[] output) {
+        int occCounter = 0;
+        int occCounterBillboard = 0;
+
+        Direction dir = Direction.inDirection(normalX, normalY, normalZ);
+        for (int i = 0; i < 4; i++) {
+            // Samples the four blocks in front of the vertex, rotating around it
+            float u = (i < 2) ? 0.1f : -0.1f;
+            float v = (i == 0 || i == 3) ? 0.1f : -0.1f;
+            short blockId;
+            switch (dir) {
+                case LEFT:
+                case RIGHT:
+                    blockId = snapshot.getBlockId(x + 0.8f * normalX, y + u, z + v);
+                    break;
+                case FORWARD:
+                case BACKWARD:
+                    blockId = snapshot.getBlockId(x + v, y + u, z + 0.8f * normalZ);
+                    break;
+                default:
+                    blockId = snapshot.getBlockId(x + u, y + 0.8f * normalY, z + v);
+                    break;
+            }
+
+            BlockRenderInfo b = blockManager.getRenderInfo(blockId);
+            if (b.isShadowCasting() && !b.isTranslucent()) {
+                occCounter++;
+            } else if (b.isShadowCasting()) {
+                occCounterBillboard++;
+            }
+        }
 
         float resultLight = 0;
         float resultBlockLight = 0;
         int counterLight = 0;
         int counterBlockLight = 0;
 
-        int occCounter = 0;
-        int occCounterBillboard = 0;
         for (int i = 0; i < 8; i++) {
-            if (lights[i] > 0) {
-                resultLight += lights[i];
+            // Samples the eight blocks around the vertex
+            float offsetX = (i % 4 < 2) ? 0.1f : -0.1f;
+            float offsetY = (i < 4) ? 0.8f : -0.1f;
+            float offsetZ = (i % 4 == 0 || i % 4 == 3) ? 0.1f : -0.1f;
+
+            byte light = snapshot.getSunlight(x + offsetX, y + offsetY, z + offsetZ);
+            if (light > 0) {
+                resultLight += light;
                 counterLight++;
             }
-            if (blockLights[i] > 0) {
-                resultBlockLight += blockLights[i];
+            byte blockLight = snapshot.getLight(x + offsetX, y + offsetY, z + offsetZ);
+            if (blockLight > 0) {
+                resultBlockLight += blockLight;
                 counterBlockLight++;
             }
-
-            if (i < 4) {
-                Block b = blocks[i];
-
-                if (b.isShadowCasting() && !b.isTranslucent()) {
-                    occCounter++;
-                } else if (b.isShadowCasting()) {
-                    occCounterBillboard++;
-                }
-            }
         }
 
         double resultAmbientOcclusion = (Math.pow(0.40, occCounter) + Math.pow(0.80, occCounterBillboard)) / 2.0;
@@ -293,96 +354,191 @@ public final class ChunkTessellator {
             output[1] = resultBlockLight / counterBlockLight / 15f;
 
         output[2] = (float) resultAmbientOcclusion;
-        PerformanceMonitor.endActivity();
     }
 
-    private void generateBlockVertices(WorldView view, ChunkMesh mesh, int x, int y, int z, float temp, float hum) {
-        Block block = view.getBlock(x, y, z);
-        int vertexFlags = 0;
-
-        // TODO: Needs review since the new per-vertex flags introduce a lot of special scenarios
-        if (block.getURI().toString().equals("engine:water")) {
-            vertexFlags = ChunkVertexFlags.BLOCK_HINT_WATER.getValue();
-        } else if (block.getURI().toString().equals("engine:lava")) {
-            vertexFlags = ChunkVertexFlags.BLOCK_HINT_LAVA.getValue();
-        } else if (block.isWaving() && block.isDoubleSided()) {
-            vertexFlags = ChunkVertexFlags.BLOCK_HINT_WAVING.getValue();
-        } else if (block.isWaving() && !block.isDoubleSided()) {
-            vertexFlags = ChunkVertexFlags.BLOCK_HINT_WAVING_BLOCK.getValue();
-        }
+    private void generateBlockVertices(ChunkSnapshot view, ChunkMesh mesh, MergeableFaces faces, BlockRenderInfo block, int x, int y, int z, int originX, int originZ, float temp, float hum) {
+        int renderType = block.getRenderType();
+        int meshX = originX + x;
+        int meshZ = originZ + z;
 
-        /*
-         * Determine the render process.
-         */
-        ChunkMesh.RENDER_TYPE renderType = ChunkMesh.RENDER_TYPE.TRANSLUCENT;
-
-        if (!block.isTranslucent())
-            renderType = ChunkMesh.RENDER_TYPE.OPAQUE;
-        // TODO: Review special case, or alternatively compare uris.
-        if (block.getURI().toString().equals("engine:water") || block.getURI().toString().equals("engine:ice"))
-            renderType = ChunkMesh.RENDER_TYPE.WATER_AND_ICE;
-        if (block.isDoubleSided())
-            renderType = ChunkMesh.RENDER_TYPE.BILLBOARD;
-
-        if (block.getMeshPart(BlockPart.CENTER) != null) {
-            Vector4f colorOffset = block.calcColorOffsetFor(BlockPart.CENTER, temp, hum);
-            block.getMeshPart(BlockPart.CENTER).appendTo(mesh, x, y, z, colorOffset, renderType.getIndex(), vertexFlags);
+        BlockMeshPart centerPart = block.getMeshPart(BlockPart.CENTER);
+        if (centerPart != null) {
+            Vector4f colorOffset = block.getColorOffset(BlockPart.CENTER, temp, hum);
+            centerPart.appendTo(mesh, meshX, y, meshZ, colorOffset, renderType, block.getVertexFlags());
         }
 
-        boolean[] drawDir = new boolean[6];
+        int drawDir = 0;
 
-        for (Side side : Side.values()) {
+        for (Side side : SIDES) {
             Vector3i offset = side.getVector3i();
-            Block blockToCheck = view.getBlock(x + offset.x, y + offset.y, z + offset.z);
-            drawDir[side.ordinal()] = isSideVisibleForBlockTypes(blockToCheck, block, side);
+            BlockRenderInfo blockToCheck = renderInfoAt(view, x + offset.x, y + offset.y, z + offset.z);
+            if (isSideVisibleForBlockTypes(blockToCheck, block, side))
+                drawDir |= 1 << side.ordinal();
         }
 
         if (y == 0) {
-            drawDir[Side.BOTTOM.ordinal()] = false;
+            drawDir &= ~(1 << Side.BOTTOM.ordinal());
         }
 
         // If the block is lowered, some more faces may have to be drawn
         if (block.isLiquid()) {
+            BlockRenderInfo below = renderInfoAt(view, x, y - 1, z);
+
             // Draw horizontal sides if visible from below
             for (Side side : Side.horizontalSides()) {
                 Vector3i offset = side.getVector3i();
-                Block adjacentBelow = view.getBlock(x + offset.x, y - 1, z + offset.z);
-                Block adjacent = view.getBlock(x + offset.x, y, z + offset.z);
-                Block below = view.getBlock(x, y - 1, z);
+                BlockRenderInfo adjacentBelow = renderInfoAt(view, x + offset.x, y - 1, z + offset.z);
+                BlockRenderInfo adjacent = renderInfoAt(view, x + offset.x, y, z + offset.z);
 
-                drawDir[side.ordinal()] |= (isSideVisibleForBlockTypes(adjacentBelow, block, side) && !isSideVisibleForBlockTypes(below, adjacent, side.reverse()));
+                if (isSideVisibleForBlockTypes(adjacentBelow, block, side) && !isSideVisibleForBlockTypes(below, adjacent, side.reverse()))
+                    drawDir |= 1 << side.ordinal();
             }
 
             // Draw the top if below a non-lowered block
             // TODO: Don't need to render the top if each side and the block above each side are either liquid or opaque solids.
-            Block blockToCheck = view.getBlock(x, y + 1, z);
-            drawDir[Side.TOP.ordinal()] |= !blockToCheck.isLiquid();
-
-            Block bottomBlock = view.getBlock(x, y - 1, z);
-            if (bottomBlock.isLiquid() || bottomBlock.getId() == 0x0) {
-                for (Side dir : Side.values()) {
-                    if (drawDir[dir.ordinal()]) {
-                        Vector4f colorOffset = block.calcColorOffsetFor(BlockPart.fromSide(dir), temp, hum);
-                        block.getLoweredLiquidMesh(dir).appendTo(mesh, x, y, z, colorOffset, renderType.getIndex(), vertexFlags);
+            if (!renderInfoAt(view, x, y + 1, z).isLiquid())
+                drawDir |= 1 << Side.TOP.ordinal();
+
+            if (below.isLiquid() || below.isAir()) {
+                for (Side dir : SIDES) {
+                    if ((drawDir & (1 << dir.ordinal())) != 0) {
+                        Vector4f colorOffset = block.getColorOffset(BlockPart.fromSide(dir), temp, hum);
+                        block.getLoweredLiquidMesh(dir).appendTo(mesh, meshX, y, meshZ, colorOffset, renderType, block.getVertexFlags());
                     }
                 }
                 return;
             }
         }
 
-        for (Side dir : Side.values()) {
-            if (drawDir[dir.ordinal()]) {
-                Vector4f colorOffset = block.calcColorOffsetFor(BlockPart.fromSide(dir), temp, hum);
+        for (Side dir : SIDES) {
+            if ((drawDir & (1 << dir.ordinal())) != 0) {
+                BlockPart part = BlockPart.fromSide(dir);
+                Vector4f colorOffset = block.getColorOffset(part, temp, hum);
+                if (faces != null && block.isMergeable(dir) && faces.add(view, this, block, dir, x, y, z, colorOffset))
+                    continue;
+                block.getMeshPart(part).appendTo(mesh, meshX, y, meshZ, colorOffset, renderType, block.getVertexFlags(dir));
+            }
+        }
+    }
+
+    /**
+     * Merges the collected faces into as few rectangles as possible and appends them to the mesh.
+     * <p/>
+     * Each rectangle is grown from its first face along the first axis of the side, then along the second one, over
+     * faces of the same block type, color and lighting.
+     */
+    private void mergeFaces(ChunkMesh mesh, MergeableFaces faces, int originX, int originZ, int maxY) {
+        PerformanceMonitor.startActivity("mergeFaces");
+        int[] min = new int[3];
+        int[] max = {Chunk.SIZE_X, maxY, Chunk.SIZE_Z};
+        int[] cell = new int[3];
+
+        for (int face = 0; face < faces.count; face++) {
+            int cellIndex = faces.cellIndices[face];
+            Side side = SIDES[faces.sides[face]];
+            int[] cells = faces.cells[side.ordinal()];
+            if (cells[cellIndex] != face + 1) {
+                // already merged into another rectangle
+                continue;
+            }
+
+            int firstAxis = BlockRenderInfo.getFirstAxis(side);
+            int secondAxis = BlockRenderInfo.getSecondAxis(side);
+            MergeableFaces.decodeCell(cellIndex, min);
+
+            int firstExtent = 1;
+            System.arraycopy(min, 0, cell, 0, 3);
+            while (firstExtent < MAX_MERGED_EXTENT) {
+                cell[firstAxis] = min[firstAxis] + firstExtent;
+                if (cell[firstAxis] >= max[firstAxis] || !faces.matches(side, cell, face))
+                    break;
+                firstExtent++;
+            }
 
-                // TODO: Needs review since the new per-vertex flags introduce a lot of special scenarios
-                // Don't mask grass on the top or bottom side...
-                if (block.getURI().toString().equals("engine:grass")) {
-                    vertexFlags = (dir != Side.TOP && dir != Side.BOTTOM) ? ChunkVertexFlags.BLOCK_HINT_GRASS.getValue() : 0;
+            int secondExtent = 1;
+            rows:
+            while (secondExtent < MAX_MERGED_EXTENT) {
+                cell[secondAxis] = min[secondAxis] + secondExtent;
+                if (cell[secondAxis] >= max[secondAxis])
+                    break;
+                for (int i = 0; i < firstExtent; i++) {
+                    cell[firstAxis] = min[firstAxis] + i;
+                    if (!faces.matches(side, cell, face))
+                        break rows;
                 }
+                secondExtent++;
+            }
 
-                block.getMeshPart(BlockPart.fromSide(dir)).appendTo(mesh, x, y, z, colorOffset, renderType.getIndex(), vertexFlags);
+            for (int j = 0; j < secondExtent; j++) {
+                for (int i = 0; i < firstExtent; i++) {
+                    System.arraycopy(min, 0, cell, 0, 3);
+                    cell[firstAxis] += i;
+                    cell[secondAxis] += j;
+                    cells[MergeableFaces.encodeCell(cell)] = 0;
+                }
             }
+
+            BlockRenderInfo block = blockManager.getRenderInfo(faces.blockIds[face]);
+            appendMergedFace(mesh, block, side, min, firstExtent, secondExtent, originX, originZ, faces.colorOffsets[face]);
         }
+
+        faces.clear();
+        PerformanceMonitor.endActivity();
+    }
+
+    private void appendMergedFace(ChunkMesh mesh, BlockRenderInfo block, Side side, int[] min, int firstExtent, int secondExtent, int originX, int originZ, Vector4f colorOffset) {
+        ChunkMesh.VertexElements elements = mesh.vertexElements[block.getRenderType()];
+        BlockMeshPart part = block.getMeshPart(BlockPart.fromSide(side));
+        int firstAxis = BlockRenderInfo.getFirstAxis(side);
+        int secondAxis = BlockRenderInfo.getSecondAxis(side);
+        boolean uFirst = block.isUAlongFirstAxis(side);
+        float tileU = block.getTileU(side) * TILED_TEXTURE_SPAN;
+        float tileV = block.getTileV(side) * TILED_TEXTURE_SPAN;
+        float minU = Math.min(Math.min(part.getTexCoord(0).x, part.getTexCoord(1).x), Math.min(part.getTexCoord(2).x, part.getTexCoord(3).x));
+        float minV = Math.min(Math.min(part.getTexCoord(0).y, part.getTexCoord(1).y), Math.min(part.getTexCoord(2).y, part.getTexCoord(3).y));
+        float halfTile = Block.calcRelativeTileSize() / 2;
+
+        float[] position = new float[3];
+        int nextIndex = elements.vtxCount;
+        for (int i = 0; i < part.size(); i++) {
+            part.getVertex(i).get(position);
+            for (int axis = 0; axis < 3; axis++) {
+                if (axis == firstAxis) {
+                    position[axis] = min[axis] + ((position[axis] > 0) ? firstExtent - 0.5f : -0.5f);
+                } else if (axis == secondAxis) {
+                    position[axis] = min[axis] + ((position[axis] > 0) ? secondExtent - 0.5f : -0.5f);
+                } else {
+                    position[axis] += min[axis];
+                }
+            }
+
+            // Corners of the tile become corners of the face, repeating the tile once per block
+            boolean uCorner = part.getTexCoord(i).x - minU > halfTile;
+            boolean vCorner = part.getTexCoord(i).y - minV > halfTile;
+            elements.tex.add(tileU + (uCorner ? (uFirst ? firstExtent : secondExtent) : 0));
+            elements.tex.add(tileV + (vCorner ? (uFirst ? secondExtent : firstExtent) : 0));
+
+            elements.color.add(colorOffset.x);
+            elements.color.add(colorOffset.y);
+            elements.color.add(colorOffset.z);
+            elements.color.add(colorOffset.w);
+            elements.vertices.add(position[0] + originX);
+            elements.vertices.add(position[1]);
+            elements.vertices.add(position[2] + originZ);
+            elements.normals.add(part.getNormal(i).x);
+            elements.normals.add(part.getNormal(i).y);
+            elements.normals.add(part.getNormal(i).z);
+            elements.flags.add(ChunkVertexFlags.BLOCK_HINT_TILED.getValue());
+        }
+        elements.vtxCount += part.size();
+
+        for (int i = 0; i < part.indicesSize(); ++i) {
+            elements.indices.add(part.getIndex(i) + nextIndex);
+        }
+    }
+
+    private BlockRenderInfo renderInfoAt(ChunkSnapshot view, int x, int y, int z) {
+        return blockManager.getRenderInfo(view.getBlockId(x, y, z));
     }
 
     /**
@@ -392,8 +548,8 @@ public final class ChunkTessellator {
      * @param currentBlock The current block
      * @return True if the side is visible for the given block types
      */
-    private boolean isSideVisibleForBlockTypes(Block blockToCheck, Block currentBlock, Side side) {
-        if (currentBlock.getMeshPart(BlockPart.fromSide(side)) == null) return false;
+    private boolean isSideVisibleForBlockTypes(BlockRenderInfo blockToCheck, BlockRenderInfo currentBlock, Side side) {
+        if (!currentBlock.hasMeshPart(side)) return false;
 
         // Liquids can be transparent but there should be no visible adjacent faces
         if (currentBlock.isLiquid() && blockToCheck.isLiquid()) return false;
@@ -401,7 +557,7 @@ public final class ChunkTessellator {
         // Draw faces adjacent to animated blocks (which are of different types)
         //if (blockToCheck.isWaving() && !blockToCheck.isDoubleSided() && currentBlock.getId() != blockToCheck.getId()) return true;
 
-        return blockToCheck.getId() == 0x0 ||
+        return blockToCheck.isAir() ||
                 !blockToCheck.isFullSide(side.reverse()) ||
                 (!currentBlock.isTranslucent() && blockToCheck.isTranslucent());
     }
@@ -409,4 +565,81 @@ public final class ChunkTessellator {
     public static int getVertexArrayUpdateCount() {
         return statVertexArrayUpdateCount;
     }
+
+    /**
+     * Faces collected for merging, kept per thread. Each cell of the column holds the index of its face plus one, or
+     * zero if the face is not to be merged.
+     */
+    private static final class MergeableFaces {
+        private final int[][] cells = new int[Side.values().length][Chunk.SIZE_X * Chunk.SIZE_Y * Chunk.SIZE_Z];
+        private final float[] light = new float[3];
+        private final float[] cornerLight = new float[3];
+
+        private int count;
+        private byte[] sides = new byte[256];
+        private int[] cellIndices = new int[256];
+        private short[] blockIds = new short[256];
+        private int[] packedColors = new int[256];
+        private float[] lights = new float[256 * 3];
+        private Vector4f[] colorOffsets = new Vector4f[256];
+
+        private static int encodeCell(int[] cell) {
+            return (cell[0] * Chunk.SIZE_Z + cell[2]) * Chunk.SIZE_Y + cell[1];
+        }
+
+        private static void decodeCell(int index, int[] cell) {
+            cell[1] = index % Chunk.SIZE_Y;
+            cell[2] = (index / Chunk.SIZE_Y) % Chunk.SIZE_Z;
+            cell[0] = index / (Chunk.SIZE_Y * Chunk.SIZE_Z);
+        }
+
+        /**
+         * Collects a face, if its lighting is the same at all corners.
+         *
+         * @return True if the face has been collected, false if it has to be tessellated on its own
+         */
+        private boolean add(ChunkSnapshot snapshot, ChunkTessellator tessellator, BlockRenderInfo block, Side side, int x, int y, int z, Vector4f colorOffset) {
+            BlockMeshPart part = block.getMeshPart(BlockPart.fromSide(side));
+            for (int i = 0; i < part.size(); i++) {
+                Vector3f vertex = part.getVertex(i);
+                Vector3f normal = part.getNormal(i);
+                tessellator.calcLightingValuesForVertexPos(snapshot, x + vertex.x, y + vertex.y, z + vertex.z, normal.x, normal.y, normal.z, i == 0 ? light : cornerLight);
+                if (i > 0 && (cornerLight[0] != light[0] || cornerLight[1] != light[1] || cornerLight[2] != light[2]))
+                    return false;
+            }
+
+            if (count == sides.length) {
+                int capacity = count * 2;
+                sides = Arrays.copyOf(sides, capacity);
+                cellIndices = Arrays.copyOf(cellIndices, capacity);
+                blockIds = Arrays.copyOf(blockIds, capacity);
+                packedColors = Arrays.copyOf(packedColors, capacity);
+                lights = Arrays.copyOf(lights, capacity * 3);
+                colorOffsets = Arrays.copyOf(colorOffsets, capacity);
+            }
+            int cellIndex = (x * Chunk.SIZE_Z + z) * Chunk.SIZE_Y + y;
+            sides[count] = (byte) side.ordinal();
+            cellIndices[count] = cellIndex;
+            blockIds[count] = block.getBlock().getId();
+            // Faces with the same packed color end up with the same vertex color
+            packedColors[count] = TeraMath.packColor(colorOffset.x, colorOffset.y, colorOffset.z, colorOffset.x + 3);
+            System.arraycopy(light, 0, lights, count * 3, 3);
+            colorOffsets[count] = colorOffset;
+            count++;
+            cells[side.ordinal()][cellIndex] = count;
+            return true;
+        }
+
+        private boolean matches(Side side, int[] cell, int face) {
+            int other = cells[side.ordinal()][encodeCell(cell)] - 1;
+            return other >= 0 && blockIds[other] == blockIds[face] && packedColors[other] == packedColors[face]
+                    && lights[other * 3] == lights[face * 3] && lights[other * 3 + 1] == lights[face * 3 + 1]
+                    && lights[other * 3 + 2] == lights[face * 3 + 2];
+        }
+
+        private void clear() {
+            Arrays.fill(colorOffsets, 0, count, null);
+            count = 0;
+        }
+    }
 }
@@ -79,17 +79,21 @@ public final class ChunkUpdateManager {
         Runnable r = new Runnable() {
             @Override
             public void run() {
-                ChunkMesh[] newMeshes = new ChunkMesh[WorldRenderer.VERTICAL_SEGMENTS];
-                WorldView worldView = worldProvider.getLocalView(c.getPos());
-                if (worldView != null) {
-                    c.setDirty(false);
-                    for (int seg = 0; seg < WorldRenderer.VERTICAL_SEGMENTS; seg++) {
-                        newMeshes[seg] = tessellator.generateMesh(worldView, c.getPos(), Chunk.SIZE_Y / WorldRenderer.VERTICAL_SEGMENTS, seg * (Chunk.SIZE_Y / WorldRenderer.VERTICAL_SEGMENTS));
+                try {
+                    ChunkMesh[] newMeshes = new ChunkMesh[WorldRenderer.VERTICAL_SEGMENTS];
+                    WorldView worldView = worldProvider.getLocalView(c.getPos());
+                    if (worldView != null) {
+                        c.setDirty(false);
+                        for (int seg = 0; seg < WorldRenderer.VERTICAL_SEGMENTS; seg++) {
+                            newMeshes[seg] = tessellator.generateMesh(worldView, c.getPos(), Chunk.SIZE_Y / WorldRenderer.VERTICAL_SEGMENTS, seg * (Chunk.SIZE_Y / WorldRenderer.VERTICAL_SEGMENTS));
+                        }
+                        // The monitor reads the mesh buffers, which the main thread releases once the mesh is uploaded
+                        ChunkMonitor.fireChunkTessellated(c.getPos(), newMeshes);
+                        c.setPendingMesh(newMeshes);
                     }
-                    c.setPendingMesh(newMeshes);
-                    ChunkMonitor.fireChunkTessellated(c.getPos(), newMeshes);
+                } finally {
+                    currentlyProcessedChunks.remove(c);
                 }
-                currentlyProcessedChunks.remove(c);
             }
         };
 
@@ -63,6 +63,7 @@ import org.terasology.world.chunks.provider.ChunkProvider;
 import org.terasology.world.chunks.provider.LocalChunkProvider;
 import org.terasology.world.chunks.store.ChunkStore;
 import org.terasology.world.chunks.store.ChunkStoreProtobuf;
+import org.terasology.world.chunks.store.ChunkStoreRegionFile;
 import org.terasology.world.generator.MapGenerator;
 
 import javax.vecmath.Matrix4f;
@@ -92,12 +93,15 @@ public final class WorldRenderer {
 
     private static final Logger logger = LoggerFactory.getLogger(WorldRenderer.class);
 
+    private static final String REGION_DIRECTORY = "regions";
+
     private Config config = CoreRegistry.get(Config.class);
 
     /* WORLD PROVIDER */
     private final WorldProvider worldProvider;
     private ChunkProvider chunkProvider;
     private ChunkStore chunkStore;
+    private File chunkStoreFile;
 
     /* PLAYER */
     private LocalPlayer player;
@@ -215,8 +219,20 @@ public final class WorldRenderer {
         try {
             final long time = System.currentTimeMillis();
             boolean loaded = false;
-            File f = new File(PathManager.getInstance().getWorldSavePath(worldInfo.getTitle()), worldInfo.getTitle() + ".chunks");
-            if (f.exists()) {
+            final File savePath = PathManager.getInstance().getWorldSavePath(worldInfo.getTitle());
+            final File regionDir = new File(savePath, REGION_DIRECTORY);
+            File f = new File(savePath, worldInfo.getTitle() + ".chunks");
+            if (regionDir.isDirectory() || config.getAdvanced().isRegionChunkStoreEnabled()) {
+                final boolean existed = regionDir.isDirectory();
+                final ChunkStoreRegionFile store = new ChunkStoreRegionFile(regionDir);
+                if (!existed && f.exists()) {
+                    store.loadFromFile(f);
+                }
+                chunkStore = store;
+                chunkStoreFile = regionDir;
+                f = regionDir;
+                loaded = true;
+            } else if (f.exists()) {
                 final ChunkStoreProtobuf store = new ChunkStoreProtobuf(false);
                 store.loadFromFile(f);
                 store.setup();
@@ -241,6 +257,8 @@ public final class WorldRenderer {
 
         if (chunkStore == null)
             chunkStore = new ChunkStoreProtobuf();
+        if (chunkStoreFile == null)
+            chunkStoreFile = new File(PathManager.getInstance().getWorldSavePath(worldInfo.getTitle()), worldInfo.getTitle() + ".chunks");
 
         chunkProvider = new LocalChunkProvider(chunkStore, mapGenerator);
         EntityAwareWorldProvider entityWorldProvider = new EntityAwareWorldProvider(new WorldProviderCoreImpl(worldInfo, chunkProvider));
@@ -1291,10 +1309,9 @@ public final class WorldRenderer {
 
         chunkStore.dispose();
 
-        File chunkFile = new File(PathManager.getInstance().getWorldSavePath(worldProvider.getTitle()), worldProvider.getTitle() + ".chunks");
         final long time = System.currentTimeMillis();
-        chunkStore.saveToFile(chunkFile);
-        logger.info("It took {} ms to save chunks to file {}", (System.currentTimeMillis() - time), chunkFile);
+        chunkStore.saveToFile(chunkStoreFile);
+        logger.info("It took {} ms to save chunks to file {}", (System.currentTimeMillis() - time), chunkStoreFile);
     }
 
     /**
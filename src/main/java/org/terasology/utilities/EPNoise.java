@@ -239,6 +239,17 @@ public class EPNoise implements Noise {
 		return result;
 	}
 
+	public void fBm(double[] xs, double[] ys, double[] zs, double[] output) {
+		int index = 0;
+		for (double x : xs) {
+			for (double z : zs) {
+				for (double y : ys) {
+					output[index++] = fBm(x, y, z);
+				}
+			}
+		}
+	}
+
 	private static double fade(double t) {
 		return t * t * t * (t * (t * 6 - 15) + 10);
 	}
@@ -42,6 +42,18 @@ public interface Noise {
      */
     public double fBm(double x, double y, double z) ;
 
+    /**
+     * Computes Fractional Brownian Motion for every point of the grid spanned by the given positions. The values are
+     * the same as calling {@link #fBm(double, double, double)} for every point.
+     *
+     * @param xs     Positions on the x-axis
+     * @param ys     Positions on the y-axis
+     * @param zs     Positions on the z-axis
+     * @param output Receives the values ordered by x, then z, then y, i.e. the value of the point (xs[i], ys[j], zs[k])
+     *               is stored at {@code output[(i * zs.length + k) * ys.length + j]}
+     */
+    public void fBm(double[] xs, double[] ys, double[] zs, double[] output);
+
 
 
     public void setOctaves(int octaves);
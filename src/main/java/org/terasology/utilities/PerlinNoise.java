@@ -15,6 +15,8 @@
  */
 package org.terasology.utilities;
 
+import java.util.Arrays;
+
 import org.terasology.math.TeraMath;
 
 /**
@@ -27,10 +29,22 @@ public class PerlinNoise implements Noise{
     private static final double LACUNARITY = 2.1379201;
     private static final double H = 0.836281;
 
-    private double[] _spectralWeights;
+    /**
+     * The gradient vectors selected by {@link #grad(int, double, double, double)}, as x, y and z components per hash.
+     */
+    private static final double[] GRADIENTS = new double[16 * 3];
+
+    static {
+        for (int h = 0; h < 16; h++) {
+            GRADIENTS[h * 3] = grad(h, 1, 0, 0);
+            GRADIENTS[h * 3 + 1] = grad(h, 0, 1, 0);
+            GRADIENTS[h * 3 + 2] = grad(h, 0, 0, 1);
+        }
+    }
+
+    private volatile double[] _spectralWeights;
 
     private final int[] _noisePermutations;
-    private boolean _recomputeSpectralWeights = true;
     private int _octaves = 9;
 
     /**
@@ -103,18 +117,10 @@ public class PerlinNoise implements Noise{
      */
     public double fBm(double x, double y, double z) {
         double result = 0.0;
+        double[] spectralWeights = getSpectralWeights();
 
-        if (_recomputeSpectralWeights) {
-            _spectralWeights = new double[_octaves];
-
-            for (int i = 0; i < _octaves; i++)
-                _spectralWeights[i] = java.lang.Math.pow(LACUNARITY, -H * i);
-
-            _recomputeSpectralWeights = false;
-        }
-
-        for (int i = 0; i < _octaves; i++) {
-            result += noise(x, y, z) * _spectralWeights[i];
+        for (int i = 0; i < spectralWeights.length; i++) {
+            result += noise(x, y, z) * spectralWeights[i];
 
             x *= LACUNARITY;
             y *= LACUNARITY;
@@ -124,6 +130,87 @@ public class PerlinNoise implements Noise{
         return result;
     }
 
+    /**
+     * Computes Fractional Brownian Motion for every point of a grid.
+     * <p/>
+     * Floor, fraction and fade of each position are computed once per axis and octave instead of once per point, and
+     * the gradients are looked up in a table. The results are identical to calling {@link #fBm(double, double, double)}
+     * for every point. This method can be called by several threads at once.
+     */
+    @Override
+    public void fBm(double[] xs, double[] ys, double[] zs, double[] output) {
+        final int sizeX = xs.length, sizeY = ys.length, sizeZ = zs.length;
+        if (output.length < sizeX * sizeY * sizeZ) {
+            throw new IllegalArgumentException("The output array is too small: " + output.length + " < " + sizeX * sizeY * sizeZ);
+        }
+        final double[] spectralWeights = getSpectralWeights();
+        final int[] p = _noisePermutations;
+
+        final double[] posX = xs.clone(), posY = ys.clone(), posZ = zs.clone();
+        final int[] cellX = new int[sizeX], cellY = new int[sizeY], cellZ = new int[sizeZ];
+        final double[] fracX = new double[sizeX], fracY = new double[sizeY], fracZ = new double[sizeZ];
+        final double[] fadeX = new double[sizeX], fadeY = new double[sizeY], fadeZ = new double[sizeZ];
+
+        Arrays.fill(output, 0, sizeX * sizeY * sizeZ, 0.0);
+        for (int octave = 0; octave < spectralWeights.length; octave++) {
+            final double weight = spectralWeights[octave];
+            prepareAxis(posX, cellX, fracX, fadeX);
+            prepareAxis(posY, cellY, fracY, fadeY);
+            prepareAxis(posZ, cellZ, fracZ, fadeZ);
+
+            int index = 0;
+            for (int i = 0; i < sizeX; i++) {
+                final double x = fracX[i], u = fadeX[i];
+                final int pX = p[cellX[i]], pX1 = p[cellX[i] + 1];
+                for (int k = 0; k < sizeZ; k++) {
+                    final double z = fracZ[k], w = fadeZ[k];
+                    final int Z = cellZ[k];
+                    for (int j = 0; j < sizeY; j++) {
+                        final double y = fracY[j], v = fadeY[j];
+                        final int A = pX + cellY[j], AA = p[A] + Z, AB = p[A + 1] + Z,
+                                B = pX1 + cellY[j], BA = p[B] + Z, BB = p[B + 1] + Z;
+
+                        final double noise = lerp(w, lerp(v, lerp(u, dot(p[AA], x, y, z),
+                                dot(p[BA], x - 1, y, z)),
+                                lerp(u, dot(p[AB], x, y - 1, z),
+                                        dot(p[BB], x - 1, y - 1, z))),
+                                lerp(v, lerp(u, dot(p[AA + 1], x, y, z - 1),
+                                        dot(p[BA + 1], x - 1, y, z - 1)),
+                                        lerp(u, dot(p[AB + 1], x, y - 1, z - 1),
+                                                dot(p[BB + 1], x - 1, y - 1, z - 1))));
+                        output[index++] += noise * weight;
+                    }
+                }
+            }
+
+            for (int i = 0; i < sizeX; i++) posX[i] *= LACUNARITY;
+            for (int j = 0; j < sizeY; j++) posY[j] *= LACUNARITY;
+            for (int k = 0; k < sizeZ; k++) posZ[k] *= LACUNARITY;
+        }
+    }
+
+    private static void prepareAxis(double[] positions, int[] cells, double[] fractions, double[] fades) {
+        for (int i = 0; i < positions.length; i++) {
+            final double floor = TeraMath.fastFloor(positions[i]);
+            cells[i] = (int) floor & 255;
+            fractions[i] = positions[i] - floor;
+            fades[i] = fade(fractions[i]);
+        }
+    }
+
+    private double[] getSpectralWeights() {
+        double[] spectralWeights = _spectralWeights;
+        if (spectralWeights == null || spectralWeights.length != _octaves) {
+            spectralWeights = new double[_octaves];
+
+            for (int i = 0; i < _octaves; i++)
+                spectralWeights[i] = java.lang.Math.pow(LACUNARITY, -H * i);
+
+            _spectralWeights = spectralWeights;
+        }
+        return spectralWeights;
+    }
+
     private static double fade(double t) {
         return t * t * t * (t * (t * 6 - 15) + 10);
     }
@@ -132,6 +219,11 @@ public class PerlinNoise implements Noise{
         return a + t * (b - a);
     }
 
+    private static double dot(int hash, double x, double y, double z) {
+        final int h = (hash & 15) * 3;
+        return GRADIENTS[h] * x + GRADIENTS[h + 1] * y + GRADIENTS[h + 2] * z;
+    }
+
     private static double grad(int hash, double x, double y, double z) {
         int h = hash & 15;
         double u = h < 8 ? x : y, v = h < 4 ? y : h == 12 || h == 14 ? x : z;
@@ -140,7 +232,7 @@ public class PerlinNoise implements Noise{
 
     public void setOctaves(int octaves) {
         _octaves = octaves;
-        _recomputeSpectralWeights = true;
+        _spectralWeights = null;
     }
 
     public int getOctaves() {
@@ -89,6 +89,17 @@ public class WhiteNoise implements Noise{
         return result;
     }
 
+    public void fBm(double[] xs, double[] ys, double[] zs, double[] output) {
+        int index = 0;
+        for (double x : xs) {
+            for (double z : zs) {
+                for (double y : ys) {
+                    output[index++] = fBm(x, y, z);
+                }
+            }
+        }
+    }
+
     public void setOctaves(int octaves) {
         _octaves = octaves;
         _recomputeSpectralWeights = true;
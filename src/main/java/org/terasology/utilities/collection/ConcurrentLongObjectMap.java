@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.utilities.collection;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * A concurrent map from primitive longs to objects, which avoids boxing the keys.
+ * <p/>
+ * The map uses open addressing with linear probing. Lookups don't lock, modifications are serialized on the map.
+ * Removing a mapping leaves its key in the table, the slot is reused if the same key is put again and dropped
+ * when the table is rebuilt. {@link #NO_KEY} is reserved and can't be used as key.
+ */
+public final class ConcurrentLongObjectMap<V> {
+
+    public static final long NO_KEY = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile Table<V> table;
+    private int size;
+    private int usedSlots;
+
+    public ConcurrentLongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public ConcurrentLongObjectMap(int expectedSize) {
+        table = new Table<V>(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public V get(long key) {
+        final Table<V> t = table;
+        final int mask = t.mask;
+        int index = hash(key) & mask;
+        while (true) {
+            final long k = t.keys.get(index);
+            if (k == key) {
+                return t.values.get(index);
+            }
+            if (k == NO_KEY) {
+                return null;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return The previous value, or null if there was none
+     */
+    public synchronized V put(long key, V value) {
+        Preconditions.checkNotNull(value, "The parameter 'value' must not be null");
+        Preconditions.checkArgument(key != NO_KEY, "The key %s is reserved", key);
+        final int index = slot(key);
+        final V old = table.values.get(index);
+        store(index, key, value, old);
+        return old;
+    }
+
+    /**
+     * @return The value already mapped to the key, or null if the value was added
+     */
+    public synchronized V putIfAbsent(long key, V value) {
+        Preconditions.checkNotNull(value, "The parameter 'value' must not be null");
+        Preconditions.checkArgument(key != NO_KEY, "The key %s is reserved", key);
+        final int index = slot(key);
+        final V old = table.values.get(index);
+        if (old == null) {
+            store(index, key, value, null);
+        }
+        return old;
+    }
+
+    public synchronized V remove(long key) {
+        final int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+        final V old = table.values.getAndSet(index, null);
+        if (old != null) {
+            size--;
+        }
+        return old;
+    }
+
+    /**
+     * Removes the mapping only if the key is mapped to the given value.
+     */
+    public synchronized boolean remove(long key, V value) {
+        final int index = find(key);
+        if (index < 0 || table.values.get(index) != value || value == null) {
+            return false;
+        }
+        table.values.set(index, null);
+        size--;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        table = new Table<V>(MIN_CAPACITY);
+        size = 0;
+        usedSlots = 0;
+    }
+
+    /**
+     * @return A snapshot of the values currently in the map
+     */
+    public List<V> values() {
+        final Table<V> t = table;
+        final List<V> result = Lists.newArrayList();
+        for (int i = 0; i < t.values.length(); i++) {
+            final V value = t.values.get(i);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    private void store(int index, long key, V value, V old) {
+        final Table<V> t = table;
+        // the value has to be visible before the key, lookups stop at the first matching key
+        t.values.set(index, value);
+        if (t.keys.get(index) == NO_KEY) {
+            t.keys.set(index, key);
+            usedSlots++;
+        }
+        if (old == null) {
+            size++;
+        }
+        if (usedSlots * 2 > t.keys.length()) {
+            rebuild();
+        }
+    }
+
+    private int find(long key) {
+        final Table<V> t = table;
+        int index = hash(key) & t.mask;
+        while (true) {
+            final long k = t.keys.get(index);
+            if (k == key) {
+                return index;
+            }
+            if (k == NO_KEY) {
+                return -1;
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    /**
+     * Returns the slot holding the key, or the empty slot the key would be stored in.
+     */
+    private int slot(long key) {
+        final Table<V> t = table;
+        int index = hash(key) & t.mask;
+        while (true) {
+            final long k = t.keys.get(index);
+            if (k == key || k == NO_KEY) {
+                return index;
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    private void rebuild() {
+        final Table<V> old = table;
+        final Table<V> t = new Table<V>(capacityFor(size * 2));
+        for (int i = 0; i < old.keys.length(); i++) {
+            final V value = old.values.get(i);
+            if (value == null) {
+                continue;
+            }
+            final long key = old.keys.get(i);
+            int index = hash(key) & t.mask;
+            while (t.keys.get(index) != NO_KEY) {
+                index = (index + 1) & t.mask;
+            }
+            t.values.set(index, value);
+            t.keys.set(index, key);
+        }
+        usedSlots = size;
+        table = t;
+    }
+
+    private static final class Table<V> {
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+
+        public Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                keys.lazySet(i, NO_KEY);
+            }
+            values = new AtomicReferenceArray<V>(capacity);
+            mask = capacity - 1;
+        }
+    }
+}
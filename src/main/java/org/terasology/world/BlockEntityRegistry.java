@@ -18,6 +18,7 @@ package org.terasology.world;
 import org.terasology.entitySystem.EntityRef;
 import org.terasology.math.Vector3i;
 import org.terasology.world.block.Block;
+import org.terasology.world.block.family.BlockFamily;
 
 /**
  * Manages creation and lookup of entities linked to blocks
@@ -26,6 +27,14 @@ import org.terasology.world.block.Block;
  */
 public interface BlockEntityRegistry {
 
+    /**
+     * Block changes are sent to the world entity, and to the block entity only if one exists or the block keeps one.
+     * Systems that handle BlockChangedEvent on the block entity of blocks without one register their family here.
+     *
+     * @param family
+     */
+    void registerBlockEntityEvents(BlockFamily family);
+
     /**
      * @param blockPosition
      * @return The block entity for the location if it exists, or the null entity
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.terasology.math.Vector3i;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Schedules delayed updates of blocks against the world time.
+ * <p/>
+ * Updates are sharded by chunk, each shard is meant to be consumed by a single thread via {@link #take(int)}. Within
+ * a shard the updates are kept in a hashed timing wheel with slots of {@code tickLength} milliseconds, so scheduling
+ * and expiring an update is constant time and a consumer only wakes up once per tick while updates are pending.
+ * An update is delivered at the first tick boundary at or after its due time, so it is never early and at most one
+ * tick late.
+ * <p/>
+ * Updates are de-duplicated by equality: scheduling an update which is already pending has no effect, unless it is due
+ * earlier, in which case the pending update is moved to the earlier time.
+ *
+ * @param <T> The type of the updates, which must implement equals and hashCode
+ */
+public final class BlockUpdateScheduler<T> {
+
+    /**
+     * Provides the current time in milliseconds, usually {@link WorldProvider#getTime()}.
+     */
+    public static interface TimeSource {
+        long getTime();
+    }
+
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final List<Shard> shards;
+    private final long tickLength;
+    private final TimeSource timeSource;
+    private volatile boolean shutdown = false;
+
+    public BlockUpdateScheduler(int shardCount, long tickLength, TimeSource timeSource) {
+        Preconditions.checkArgument(shardCount > 0, "The parameter 'shardCount' must be positive");
+        Preconditions.checkArgument(tickLength > 0, "The parameter 'tickLength' must be positive");
+        Preconditions.checkNotNull(timeSource, "The parameter 'timeSource' must not be null");
+        this.tickLength = tickLength;
+        this.timeSource = timeSource;
+        this.shards = Lists.newArrayListWithCapacity(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard());
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int getShard(int chunkX, int chunkZ) {
+        int hash = chunkX * 31 + chunkZ;
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % shards.size();
+    }
+
+    /**
+     * Schedules an update in the shard of the given chunk.
+     *
+     * @return Whether the update was scheduled, false if it was already pending with the same or an earlier time
+     */
+    public boolean schedule(Vector3i chunkPos, T update, long dueTime) {
+        Preconditions.checkNotNull(update, "The parameter 'update' must not be null");
+        return shards.get(getShard(chunkPos.x, chunkPos.z)).schedule(update, dueTime);
+    }
+
+    /**
+     * Waits until an update of the given shard is due and removes it from the scheduler.
+     *
+     * @return The update, or null if the scheduler has been shut down
+     */
+    public T take(int shard) throws InterruptedException {
+        return shards.get(shard).take();
+    }
+
+    /**
+     * Returns the number of pending updates over all shards.
+     */
+    public int size() {
+        int result = 0;
+        for (Shard shard : shards) {
+            result += shard.size();
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+    }
+
+    /**
+     * Discards all pending updates and releases all threads waiting in {@link #take(int)}.
+     */
+    public void shutdown() {
+        shutdown = true;
+        clear();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * @return The tick the given time falls into, rounded towards negative infinity
+     */
+    private long toTick(long time) {
+        return (time >= 0) ? time / tickLength : (time - tickLength + 1) / tickLength;
+    }
+
+    /**
+     * @return The first tick starting at or after the given due time. An update expires once the current tick reaches
+     *         it, so it is never delivered before its due time
+     */
+    private long toDueTick(long dueTime) {
+        return -toTick(-dueTime);
+    }
+
+    private final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        /* The slots of the wheel, a slot's list is created when the first update is scheduled into it */
+        private final List<List<Entry<T>>> wheel = new ArrayList<List<Entry<T>>>(Collections.<List<Entry<T>>>nCopies(WHEEL_SIZE, null));
+        private final ArrayDeque<Entry<T>> due = new ArrayDeque<Entry<T>>();
+        private final Map<T, Entry<T>> pending = Maps.newHashMap();
+        private long currentTick;
+        private boolean started = false;
+        private int entriesInWheel;
+
+        public boolean schedule(T update, long dueTime) {
+            lock.lock();
+            try {
+                if (shutdown) {
+                    return false;
+                }
+                Entry<T> existing = pending.get(update);
+                if (existing != null) {
+                    if (existing.dueTime <= dueTime) {
+                        return false;
+                    }
+                    existing.cancelled = true;
+                }
+                if (!started) {
+                    currentTick = toTick(timeSource.getTime());
+                    started = true;
+                }
+                Entry<T> entry = new Entry<T>(update, dueTime, toDueTick(dueTime));
+                pending.put(update, entry);
+                if (entry.tick <= currentTick) {
+                    due.add(entry);
+                } else {
+                    int slot = (int) (entry.tick & WHEEL_MASK);
+                    List<Entry<T>> entries = wheel.get(slot);
+                    if (entries == null) {
+                        entries = new ArrayList<Entry<T>>();
+                        wheel.set(slot, entries);
+                    }
+                    entries.add(entry);
+                    entriesInWheel++;
+                }
+                changed.signal();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public T take() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (!shutdown) {
+                    if (entriesInWheel > 0) {
+                        advance(toTick(timeSource.getTime()));
+                    }
+                    Entry<T> entry = due.poll();
+                    while (entry != null && entry.cancelled) {
+                        entry = due.poll();
+                    }
+                    if (entry != null) {
+                        pending.remove(entry.update);
+                        if (!due.isEmpty()) {
+                            // hand the remaining updates to another waiting thread, if any
+                            changed.signal();
+                        }
+                        return entry.update;
+                    }
+                    if (entriesInWheel > 0) {
+                        changed.await(tickLength, TimeUnit.MILLISECONDS);
+                    } else {
+                        changed.await();
+                    }
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int size() {
+            lock.lock();
+            try {
+                return pending.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void clear() {
+            lock.lock();
+            try {
+                Collections.fill(wheel, null);
+                due.clear();
+                pending.clear();
+                entriesInWheel = 0;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void advance(long tick) {
+            if (tick <= currentTick) {
+                return;
+            }
+            if (tick - currentTick >= WHEEL_SIZE) {
+                for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                    expire(slot, tick);
+                }
+            } else {
+                for (long t = currentTick + 1; t <= tick; t++) {
+                    expire((int) (t & WHEEL_MASK), tick);
+                }
+            }
+            currentTick = tick;
+        }
+
+        private void expire(int slot, long tick) {
+            List<Entry<T>> entries = wheel.get(slot);
+            if (entries == null || entries.isEmpty()) {
+                return;
+            }
+            int kept = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.get(i);
+                if (entry.tick > tick) {
+                    // due in a later round of the wheel
+                    entries.set(kept++, entry);
+                    continue;
+                }
+                entriesInWheel--;
+                if (!entry.cancelled) {
+                    due.add(entry);
+                }
+            }
+            entries.subList(kept, entries.size()).clear();
+        }
+    }
+
+    private static final class Entry<T> {
+        private final T update;
+        private final long dueTime;
+        private final long tick;
+        private boolean cancelled = false;
+
+        public Entry(T update, long dueTime, long tick) {
+            this.update = update;
+            this.dueTime = dueTime;
+            this.tick = tick;
+        }
+    }
+}
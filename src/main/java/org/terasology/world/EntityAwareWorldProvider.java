@@ -19,9 +19,12 @@ package org.terasology.world;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
 import org.terasology.componentSystem.UpdateSubscriberSystem;
 import org.terasology.components.HealthComponent;
 import org.terasology.components.world.LocationComponent;
+import org.terasology.components.world.WorldComponent;
+import org.terasology.config.Config;
 import org.terasology.entitySystem.EntityManager;
 import org.terasology.entitySystem.EntityRef;
 import org.terasology.entitySystem.EventHandlerSystem;
@@ -30,6 +33,7 @@ import org.terasology.entitySystem.ReceiveEvent;
 import org.terasology.entitySystem.event.AddComponentEvent;
 import org.terasology.entitySystem.event.ChangedComponentEvent;
 import org.terasology.entitySystem.event.RemovedComponentEvent;
+import org.terasology.game.CoreRegistry;
 import org.terasology.math.Region3i;
 import org.terasology.math.Vector3i;
 import org.terasology.monitoring.PerformanceMonitor;
@@ -37,10 +41,14 @@ import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockComponent;
 import org.terasology.world.block.BlockEntityMode;
 import org.terasology.world.block.BlockRegionComponent;
+import org.terasology.world.block.family.BlockFamily;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.Set;
 
 /**
  * @author Immortius
@@ -58,8 +66,20 @@ public class EntityAwareWorldProvider extends AbstractWorldProviderDecorator imp
 
     private List<EntityRef> tempBlocks = Lists.newArrayList();
 
+    // Block families whose changes are also delivered to a (temporary) block entity
+    private Set<BlockFamily> blockEntityEventFamilies = Sets.newHashSet();
+    private EntityRef worldEntity = EntityRef.NULL;
+
+    private static final int EVENT_BATCH_SIZE = 64;
+    private static final int DEFAULT_EVENT_BUDGET = 2;
+
     private Thread mainThread;
-    private BlockingQueue<BlockChangedEvent> eventQueue = Queues.newLinkedBlockingQueue();
+
+    // Changes made outside of the main thread, by position. Guarded by itself.
+    private final Map<Vector3i, BlockChangedEvent> pendingEvents = Maps.newLinkedHashMap();
+    // Events taken from the pending events, but not delivered within the budget of the last frame
+    private final Queue<BlockChangedEvent> eventBatch = Queues.newArrayDeque();
+    private long eventBudgetNanos = DEFAULT_EVENT_BUDGET * 1000000L;
 
     public EntityAwareWorldProvider(WorldProviderCore base) {
         super(base);
@@ -68,6 +88,11 @@ public class EntityAwareWorldProvider extends AbstractWorldProviderDecorator imp
 
     @Override
     public void initialise() {
+        Config config = CoreRegistry.get(Config.class);
+        if (config != null) {
+            eventBudgetNanos = config.getAdvanced().getBlockEventBudget() * 1000000L;
+        }
+
         for (EntityRef blockComp : entityManager.iteratorEntities(BlockComponent.class)) {
             BlockComponent comp = blockComp.getComponent(BlockComponent.class);
             blockComponentLookup.put(new Vector3i(comp.getPosition()), blockComp);
@@ -86,22 +111,134 @@ public class EntityAwareWorldProvider extends AbstractWorldProviderDecorator imp
 
     @Override
     public void shutdown() {
-
+        synchronized (pendingEvents) {
+            pendingEvents.clear();
+        }
+        eventBatch.clear();
+        blockEntityEventFamilies.clear();
+        worldEntity = EntityRef.NULL;
     }
 
     @Override
     public boolean setBlock(int x, int y, int z, Block type, Block oldType) {
         if (super.setBlock(x, y, z, type, oldType)) {
             if (Thread.currentThread().equals(mainThread)) {
-                getOrCreateEntityAt(new Vector3i(x, y, z)).send(new BlockChangedEvent(new Vector3i(x, y, z), type, oldType));
+                deliver(new BlockChangedEvent(new Vector3i(x, y, z), type, oldType));
             } else {
-                eventQueue.add(new BlockChangedEvent(new Vector3i(x, y, z), type, oldType));
+                queueEvent(new BlockChangedEvent(new Vector3i(x, y, z), type, oldType));
             }
             return true;
         }
         return false;
     }
 
+    @Override
+    public boolean setBlocks(BlockUpdate... updates) {
+        return setBlocks(Arrays.asList(updates));
+    }
+
+    @Override
+    public boolean setBlocks(Iterable<BlockUpdate> updates) {
+        List<BlockUpdate> updateList = Lists.newArrayList(updates);
+        if (super.setBlocks(updateList)) {
+            List<BlockChangedEvent> events = Lists.newArrayListWithCapacity(updateList.size());
+            for (BlockUpdate update : updateList) {
+                if (update.getNewType() != update.getOldType()) {
+                    events.add(new BlockChangedEvent(update.getPosition(), update.getNewType(), update.getOldType()));
+                }
+            }
+            if (Thread.currentThread().equals(mainThread)) {
+                for (BlockChangedEvent event : events) {
+                    deliver(event);
+                }
+            } else {
+                for (BlockChangedEvent event : events) {
+                    queueEvent(event);
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queues an event for delivery on the main thread. An event for a position which already has a pending event
+     * is merged into it, so only the change from the first old type to the last new type is delivered.
+     */
+    private void queueEvent(BlockChangedEvent event) {
+        synchronized (pendingEvents) {
+            BlockChangedEvent pending = pendingEvents.remove(event.getBlockPosition());
+            if (pending != null) {
+                if (pending.getOldType() == event.getNewType()) {
+                    return;
+                }
+                event = new BlockChangedEvent(event.getBlockPosition(), event.getNewType(), pending.getOldType());
+            }
+            pendingEvents.put(event.getBlockPosition(), event);
+        }
+    }
+
+    /**
+     * Sends the event to the entity at its position, if there is one, and to the world entity. A block entity is only
+     * created for the event if the new block keeps an entity or either block's family was registered through
+     * {@link #registerBlockEntityEvents(BlockFamily)}. A temporary entity created just for the event is destroyed
+     * right after delivery, unless a handler made use of it.
+     */
+    private void deliver(BlockChangedEvent event) {
+        Vector3i pos = event.getBlockPosition();
+        EntityRef entity = getEntityAt(pos);
+        if (entity.exists()) {
+            entity.send(event);
+        } else if (needsBlockEntity(event)) {
+            entity = getOrCreateBlockEntityAt(pos);
+            entity.send(event);
+            if (isUnusedTemporaryBlock(entity)) {
+                entity.destroy();
+            }
+        }
+        EntityRef world = getWorldEntity();
+        if (world.exists()) {
+            world.send(event);
+        }
+    }
+
+    private boolean needsBlockEntity(BlockChangedEvent event) {
+        return event.getNewType().getEntityMode() != BlockEntityMode.ON_INTERACTION
+                || blockEntityEventFamilies.contains(event.getNewType().getBlockFamily())
+                || blockEntityEventFamilies.contains(event.getOldType().getBlockFamily());
+    }
+
+    private EntityRef getWorldEntity() {
+        if (!worldEntity.exists()) {
+            Iterator<EntityRef> worldEntityIterator = entityManager.iteratorEntities(WorldComponent.class).iterator();
+            worldEntity = (worldEntityIterator.hasNext()) ? worldEntityIterator.next() : EntityRef.NULL;
+        }
+        return worldEntity;
+    }
+
+    private boolean isUnusedTemporaryBlock(EntityRef entity) {
+        BlockComponent blockComp = entity.getComponent(BlockComponent.class);
+        if (blockComp == null || !blockComp.temporary) {
+            return false;
+        }
+        HealthComponent healthComp = entity.getComponent(HealthComponent.class);
+        return healthComp == null || healthComp.currentHealth == healthComp.maxHealth;
+    }
+
+    /**
+     * @return The number of changes waiting for delivery on the main thread
+     */
+    public int getPendingEventCount() {
+        synchronized (pendingEvents) {
+            return pendingEvents.size() + eventBatch.size();
+        }
+    }
+
+    @Override
+    public void registerBlockEntityEvents(BlockFamily family) {
+        blockEntityEventFamilies.add(family);
+    }
+
     @Override
     public EntityRef getBlockEntityAt(Vector3i blockPosition) {
         EntityRef result = blockComponentLookup.get(blockPosition);
@@ -171,9 +308,9 @@ public class EntityAwareWorldProvider extends AbstractWorldProviderDecorator imp
     public boolean setBlockRetainEntity(Vector3i pos, Block type, Block oldType) {
         if (super.setBlock(pos.x, pos.y, pos.z, type, oldType)) {
             if (Thread.currentThread().equals(mainThread)) {
-                getOrCreateEntityAt(pos).send(new BlockChangedEvent(pos, type, oldType));
+                deliver(new BlockChangedEvent(pos, type, oldType));
             } else {
-                eventQueue.add(new BlockChangedEvent(pos, type, oldType));
+                queueEvent(new BlockChangedEvent(pos, type, oldType));
             }
             return true;
         }
@@ -239,25 +376,27 @@ public class EntityAwareWorldProvider extends AbstractWorldProviderDecorator imp
 
     @Override
     public void update(float delta) {
-        int processed = 0;
         PerformanceMonitor.startActivity("BlockChangedEventQueue");
-        BlockChangedEvent event = eventQueue.poll();
-        while (event != null) {
-            getOrCreateEntityAt(event.getBlockPosition()).send(event);
-            if (processed++ >= 4) {
-                break;
+        long deadline = System.nanoTime() + eventBudgetNanos;
+        do {
+            if (eventBatch.isEmpty()) {
+                synchronized (pendingEvents) {
+                    Iterator<BlockChangedEvent> iterator = pendingEvents.values().iterator();
+                    for (int i = 0; i < EVENT_BATCH_SIZE && iterator.hasNext(); i++) {
+                        eventBatch.add(iterator.next());
+                        iterator.remove();
+                    }
+                }
+                if (eventBatch.isEmpty()) {
+                    break;
+                }
             }
-            event = eventQueue.poll();
-        }
+            deliver(eventBatch.poll());
+        } while (System.nanoTime() < deadline);
         PerformanceMonitor.endActivity();
         PerformanceMonitor.startActivity("Temp Blocks Cleanup");
         for (EntityRef entity : tempBlocks) {
-            BlockComponent blockComp = entity.getComponent(BlockComponent.class);
-            if (blockComp == null || !blockComp.temporary)
-                continue;
-
-            HealthComponent healthComp = entity.getComponent(HealthComponent.class);
-            if (healthComp == null || healthComp.currentHealth == healthComp.maxHealth) {
+            if (isUnusedTemporaryBlock(entity)) {
                 entity.destroy();
             }
         }
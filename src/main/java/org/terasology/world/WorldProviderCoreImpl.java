@@ -16,6 +16,9 @@
 
 package org.terasology.world;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.terasology.config.Config;
 import org.terasology.config.ModConfig;
 import org.terasology.game.CoreRegistry;
@@ -37,6 +40,11 @@ import org.terasology.world.lighting.LightingUtil;
 import org.terasology.world.lighting.PropagationComparison;
 import org.terasology.world.liquid.LiquidData;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * @author Immortius
  */
@@ -120,12 +128,76 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
 
     @Override
     public boolean setBlocks(BlockUpdate... updates) {
-        return false;  //To change body of implemented methods use File | Settings | File Templates.
+        return setBlocks(Arrays.asList(updates));
     }
 
+    /**
+     * Applies all updates within a single world view over exactly the chunks they affect, so every affected chunk is
+     * locked and marked dirty only once, and chunks between the updates are neither locked nor required to be loaded.
+     * The updates are validated before any of them is applied, the batch is either applied completely or not at all.
+     * Updates are applied in order, so a later update may change a block set by an earlier one.
+     */
     @Override
     public boolean setBlocks(Iterable<BlockUpdate> updates) {
-        return false;  //To change body of implemented methods use File | Settings | File Templates.
+        List<BlockUpdate> updateList = Lists.newArrayList(updates);
+        if (updateList.isEmpty()) {
+            return true;
+        }
+
+        Set<Vector3i> affectedChunks = Sets.newLinkedHashSet();
+        for (BlockUpdate update : updateList) {
+            Vector3i pos = update.getPosition();
+            if (pos.y < 0 || pos.y >= Chunk.SIZE_Y) {
+                return false;
+            }
+            int extent = affectsLighting(update.getNewType(), update.getOldType()) ? Chunk.MAX_LIGHT + 1 : 1;
+            for (Vector3i chunkPos : TeraMath.getChunkRegionAroundBlockPos(pos, extent)) {
+                affectedChunks.add(chunkPos);
+            }
+        }
+        WorldView worldView = WorldView.createSparseWorldView(affectedChunks, chunkProvider);
+        if (worldView == null) {
+            return false;
+        }
+
+        worldView.lock();
+        try {
+            Map<Vector3i, Block> pendingTypes = Maps.newHashMapWithExpectedSize(updateList.size());
+            for (BlockUpdate update : updateList) {
+                Vector3i pos = update.getPosition();
+                Block current = pendingTypes.get(pos);
+                if (current == null) {
+                    current = worldView.getBlock(pos);
+                }
+                if (current.getId() != update.getOldType().getId()) {
+                    return false;
+                }
+                pendingTypes.put(pos, update.getNewType());
+            }
+
+            LightPropagator lightPropagator = new LightPropagator(worldView);
+            List<Region3i> dirtyRegions = Lists.newArrayListWithCapacity(updateList.size());
+            for (BlockUpdate update : updateList) {
+                Vector3i pos = update.getPosition();
+                if (!worldView.setBlock(pos, update.getNewType(), update.getOldType())) {
+                    continue;
+                }
+                Region3i affected = lightPropagator.update(pos, update.getNewType(), update.getOldType());
+                if (affected.isEmpty()) {
+                    dirtyRegions.add(Region3i.createFromMinAndSize(pos, Vector3i.one()));
+                } else {
+                    dirtyRegions.add(affected);
+                }
+            }
+            worldView.setDirtyAround(dirtyRegions);
+            return true;
+        } finally {
+            worldView.unlock();
+        }
+    }
+
+    private static boolean affectsLighting(Block type, Block oldType) {
+        return LightingUtil.compareLightingPropagation(type, oldType) != PropagationComparison.IDENTICAL || type.getLuminance() != oldType.getLuminance();
     }
 
     @Override
@@ -133,7 +205,7 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
         Vector3i blockPos = new Vector3i(x, y, z);
         WorldView worldView;
 
-        if (LightingUtil.compareLightingPropagation(type, oldType) != PropagationComparison.IDENTICAL || type.getLuminance() != oldType.getLuminance()) {
+        if (affectsLighting(type, oldType)) {
             worldView = WorldView.createSubviewAroundBlock(blockPos, Chunk.MAX_LIGHT + 1, chunkProvider);
         } else {
             worldView = WorldView.createSubviewAroundBlock(blockPos, 1, chunkProvider);
@@ -162,11 +234,11 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
     @Override
     public boolean setLiquid(int x, int y, int z, LiquidData newState, LiquidData oldState) {
         // TODO: Locking, light changes
-        Vector3i chunkPos = TeraMath.calcChunkPos(x, y, z);
-        Chunk chunk = chunkProvider.getChunk(chunkPos);
+        Chunk chunk = chunkProvider.getChunk(TeraMath.calcChunkPosX(x), TeraMath.calcChunkPosY(y), TeraMath.calcChunkPosZ(z));
         if (chunk != null) {
-            Vector3i blockPos = TeraMath.calcBlockPos(x, y, z);
-            return chunk.setLiquid(blockPos, newState, oldState);
+            int blockX = TeraMath.calcBlockPosX(x);
+            int blockZ = TeraMath.calcBlockPosZ(z);
+            return chunk.setLiquid(blockX, y, blockZ, newState, oldState);
         }
         return false;
     }
@@ -175,11 +247,11 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
     public LiquidData getLiquid(int x, int y, int z) {
         y = TeraMath.clamp(y, 0, Chunk.SIZE_Y - 1);
 
-        Vector3i chunkPos = TeraMath.calcChunkPos(x, y, z);
-        Chunk chunk = chunkProvider.getChunk(chunkPos);
+        Chunk chunk = chunkProvider.getChunk(TeraMath.calcChunkPosX(x), TeraMath.calcChunkPosY(y), TeraMath.calcChunkPosZ(z));
         if (chunk != null) {
-            Vector3i blockPos = TeraMath.calcBlockPos(x, y, z);
-            return chunk.getLiquid(blockPos);
+            int blockX = TeraMath.calcBlockPosX(x);
+            int blockZ = TeraMath.calcBlockPosZ(z);
+            return chunk.getLiquid(blockX, y, blockZ);
         }
         return new LiquidData();
     }
@@ -190,11 +262,11 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
             return BlockManager.getInstance().getAir();
         }
 
-        Vector3i chunkPos = TeraMath.calcChunkPos(x, y, z);
-        Chunk chunk = chunkProvider.getChunk(chunkPos);
+        Chunk chunk = chunkProvider.getChunk(TeraMath.calcChunkPosX(x), TeraMath.calcChunkPosY(y), TeraMath.calcChunkPosZ(z));
         if (chunk != null) {
-            Vector3i blockPos = TeraMath.calcBlockPos(x, y, z);
-            return chunk.getBlock(blockPos);
+            int blockX = TeraMath.calcBlockPosX(x);
+            int blockZ = TeraMath.calcBlockPosZ(z);
+            return chunk.getBlock(blockX, y, blockZ);
         }
         return BlockManager.getInstance().getAir();
     }
@@ -203,11 +275,11 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
     public byte getLight(int x, int y, int z) {
         y = TeraMath.clamp(y, 0, Chunk.SIZE_Y - 1);
 
-        Vector3i chunkPos = TeraMath.calcChunkPos(x, y, z);
-        Chunk chunk = chunkProvider.getChunk(chunkPos);
+        Chunk chunk = chunkProvider.getChunk(TeraMath.calcChunkPosX(x), TeraMath.calcChunkPosY(y), TeraMath.calcChunkPosZ(z));
         if (chunk != null) {
-            Vector3i blockPos = TeraMath.calcBlockPos(x, y, z);
-            return chunk.getLight(blockPos);
+            int blockX = TeraMath.calcBlockPosX(x);
+            int blockZ = TeraMath.calcBlockPosZ(z);
+            return chunk.getLight(blockX, y, blockZ);
         }
         return 0;
     }
@@ -216,11 +288,11 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
     public byte getSunlight(int x, int y, int z) {
         y = TeraMath.clamp(y, 0, Chunk.SIZE_Y - 1);
 
-        Vector3i chunkPos = TeraMath.calcChunkPos(x, y, z);
-        Chunk chunk = chunkProvider.getChunk(chunkPos);
+        Chunk chunk = chunkProvider.getChunk(TeraMath.calcChunkPosX(x), TeraMath.calcChunkPosY(y), TeraMath.calcChunkPosZ(z));
         if (chunk != null) {
-            Vector3i blockPos = TeraMath.calcBlockPos(x, y, z);
-            return chunk.getSunlight(blockPos);
+            int blockX = TeraMath.calcBlockPosX(x);
+            int blockZ = TeraMath.calcBlockPosZ(z);
+            return chunk.getSunlight(blockX, y, blockZ);
         }
         return 0;
     }
@@ -229,11 +301,11 @@ public class WorldProviderCoreImpl implements WorldProviderCore {
     public byte getTotalLight(int x, int y, int z) {
         y = TeraMath.clamp(y, 0, Chunk.SIZE_Y - 1);
 
-        Vector3i chunkPos = TeraMath.calcChunkPos(x, y, z);
-        Chunk chunk = chunkProvider.getChunk(chunkPos);
+        Chunk chunk = chunkProvider.getChunk(TeraMath.calcChunkPosX(x), TeraMath.calcChunkPosY(y), TeraMath.calcChunkPosZ(z));
         if (chunk != null) {
-            Vector3i blockPos = TeraMath.calcBlockPos(x, y, z);
-            return (byte) Math.max(chunk.getSunlight(blockPos), chunk.getLight(blockPos));
+            int blockX = TeraMath.calcBlockPosX(x);
+            int blockZ = TeraMath.calcBlockPosZ(z);
+            return (byte) Math.max(chunk.getSunlight(blockX, y, blockZ), chunk.getLight(blockX, y, blockZ));
         }
         return 0;
     }
@@ -25,6 +25,9 @@ import org.terasology.world.chunks.Chunk;
 import org.terasology.world.chunks.provider.ChunkProvider;
 import org.terasology.world.liquid.LiquidData;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * @author Immortius
  */
@@ -32,6 +35,7 @@ public class WorldView {
 
     private Vector3i offset;
     private Region3i chunkRegion;
+    private int chunkRegionSizeX;
     private Region3i blockRegion;
     private Chunk[] chunks;
 
@@ -67,8 +71,32 @@ public class WorldView {
         return new WorldView(chunks, region, offset);
     }
 
+    /**
+     * Creates a view containing only the given chunks. Other chunks within the encompassing region are left out: they
+     * need not be loaded, are not locked, and read as air.
+     *
+     * @return The view, or null if any of the given chunks is unavailable
+     */
+    public static WorldView createSparseWorldView(Collection<Vector3i> chunkPositions, ChunkProvider chunkProvider) {
+        Region3i region = Region3i.EMPTY;
+        for (Vector3i chunkPos : chunkPositions) {
+            region = Region3i.createEncompassing(region, Region3i.createFromMinAndSize(chunkPos, Vector3i.one()));
+        }
+        Chunk[] chunks = new Chunk[region.size().x * region.size().z];
+        for (Vector3i chunkPos : chunkPositions) {
+            Chunk chunk = chunkProvider.getChunk(chunkPos);
+            if (chunk == null) {
+                return null;
+            }
+            int index = (chunkPos.x - region.min().x) + region.size().x * (chunkPos.z - region.min().z);
+            chunks[index] = chunk;
+        }
+        return new WorldView(chunks, region, new Vector3i(-region.min().x, 0, -region.min().z));
+    }
+
     public WorldView(Chunk[] chunks, Region3i chunkRegion, Vector3i offset) {
         this.chunkRegion = chunkRegion;
+        this.chunkRegionSizeX = chunkRegion.size().x;
         this.chunks = chunks;
         this.offset = offset;
         setChunkSize(new Vector3i(Chunk.SIZE_X, Chunk.SIZE_Y, Chunk.SIZE_Z));
@@ -88,12 +116,26 @@ public class WorldView {
 
     // TODO: Review
     public Block getBlock(int blockX, int blockY, int blockZ) {
-        if (!blockRegion.encompasses(blockX, blockY, blockZ)) {
+        Chunk chunk = getChunkAt(blockX, blockY, blockZ);
+        if (chunk == null) {
             return BlockManager.getInstance().getAir();
         }
+        return chunk.getBlock(TeraMath.calcBlockPosX(blockX, chunkFilterSize.x), blockY, TeraMath.calcBlockPosZ(blockZ, chunkFilterSize.z));
+    }
+
+    public short getBlockId(float x, float y, float z) {
+        return getBlockId(TeraMath.floorToInt(x + 0.5f), TeraMath.floorToInt(y + 0.5f), TeraMath.floorToInt(z + 0.5f));
+    }
 
-        int chunkIndex = relChunkIndex(blockX, blockY, blockZ);
-        return chunks[chunkIndex].getBlock(TeraMath.calcBlockPos(blockX, blockY, blockZ, chunkFilterSize));
+    /**
+     * @return The id of the block at the given position, air outside of the view
+     */
+    public short getBlockId(int blockX, int blockY, int blockZ) {
+        Chunk chunk = getChunkAt(blockX, blockY, blockZ);
+        if (chunk == null) {
+            return 0;
+        }
+        return chunk.getBlockId(TeraMath.calcBlockPosX(blockX, chunkFilterSize.x), blockY, TeraMath.calcBlockPosZ(blockZ, chunkFilterSize.z));
     }
 
     public byte getSunlight(float x, float y, float z) {
@@ -113,21 +155,19 @@ public class WorldView {
     }
 
     public byte getSunlight(int blockX, int blockY, int blockZ) {
-        if (!blockRegion.encompasses(blockX, blockY, blockZ)) {
+        Chunk chunk = getChunkAt(blockX, blockY, blockZ);
+        if (chunk == null) {
             return 0;
         }
-
-        int chunkIndex = relChunkIndex(blockX, blockY, blockZ);
-        return chunks[chunkIndex].getSunlight(TeraMath.calcBlockPos(blockX, blockY, blockZ, chunkFilterSize));
+        return chunk.getSunlight(TeraMath.calcBlockPosX(blockX, chunkFilterSize.x), blockY, TeraMath.calcBlockPosZ(blockZ, chunkFilterSize.z));
     }
 
     public byte getLight(int blockX, int blockY, int blockZ) {
-        if (!blockRegion.encompasses(blockX, blockY, blockZ)) {
+        Chunk chunk = getChunkAt(blockX, blockY, blockZ);
+        if (chunk == null) {
             return 0;
         }
-
-        int chunkIndex = relChunkIndex(blockX, blockY, blockZ);
-        return chunks[chunkIndex].getLight(TeraMath.calcBlockPos(blockX, blockY, blockZ, chunkFilterSize));
+        return chunk.getLight(TeraMath.calcBlockPosX(blockX, chunkFilterSize.x), blockY, TeraMath.calcBlockPosZ(blockZ, chunkFilterSize.z));
     }
 
     public boolean setBlock(Vector3i pos, Block type, Block oldType) {
@@ -135,12 +175,11 @@ public class WorldView {
     }
 
     public boolean setBlock(int blockX, int blockY, int blockZ, Block type, Block oldType) {
-        if (!blockRegion.encompasses(blockX, blockY, blockZ)) {
+        Chunk chunk = getChunkAt(blockX, blockY, blockZ);
+        if (chunk == null) {
             return false;
         }
-
-        int chunkIndex = relChunkIndex(blockX, blockY, blockZ);
-        return chunks[chunkIndex].setBlock(TeraMath.calcBlockPos(blockX, blockY, blockZ, chunkFilterSize), type, oldType);
+        return chunk.setBlock(TeraMath.calcBlockPosX(blockX, chunkFilterSize.x), blockY, TeraMath.calcBlockPosZ(blockZ, chunkFilterSize.z), type, oldType);
     }
 
     public LiquidData getLiquid(Vector3i pos) {
@@ -148,12 +187,11 @@ public class WorldView {
     }
 
     public LiquidData getLiquid(int x, int y, int z) {
-        if (!blockRegion.encompasses(x, y, z)) {
+        Chunk chunk = getChunkAt(x, y, z);
+        if (chunk == null) {
             return new LiquidData();
         }
-
-        int chunkIndex = relChunkIndex(x, y, z);
-        return chunks[chunkIndex].getLiquid(TeraMath.calcBlockPos(x, y, z, chunkFilterSize));
+        return chunk.getLiquid(TeraMath.calcBlockPosX(x, chunkFilterSize.x), y, TeraMath.calcBlockPosZ(z, chunkFilterSize.z));
     }
 
     public boolean setLiquid(Vector3i pos, LiquidData newState, LiquidData oldState) {
@@ -161,9 +199,9 @@ public class WorldView {
     }
 
     public boolean setLiquid(int x, int y, int z, LiquidData newState, LiquidData oldState) {
-        if (blockRegion.encompasses(x, y, z)) {
-            int chunkIndex = relChunkIndex(x, y, z);
-            return chunks[chunkIndex].setLiquid(TeraMath.calcBlockPos(x, y, z, chunkFilterSize), newState, oldState);
+        Chunk chunk = getChunkAt(x, y, z);
+        if (chunk != null) {
+            return chunk.setLiquid(TeraMath.calcBlockPosX(x, chunkFilterSize.x), y, TeraMath.calcBlockPosZ(z, chunkFilterSize.z), newState, oldState);
         }
         return false;
     }
@@ -177,26 +215,56 @@ public class WorldView {
     }
 
     public void setSunlight(int blockX, int blockY, int blockZ, byte light) {
-        if (blockRegion.encompasses(blockX, blockY, blockZ)) {
-            int chunkIndex = relChunkIndex(blockX, blockY, blockZ);
-            chunks[chunkIndex].setSunlight(TeraMath.calcBlockPos(blockX, blockY, blockZ, chunkFilterSize), light);
+        Chunk chunk = getChunkAt(blockX, blockY, blockZ);
+        if (chunk != null) {
+            chunk.setSunlight(TeraMath.calcBlockPosX(blockX, chunkFilterSize.x), blockY, TeraMath.calcBlockPosZ(blockZ, chunkFilterSize.z), light);
         }
     }
 
     public void setLight(int blockX, int blockY, int blockZ, byte light) {
-        if (blockRegion.encompasses(blockX, blockY, blockZ)) {
-            int chunkIndex = relChunkIndex(blockX, blockY, blockZ);
-            chunks[chunkIndex].setLight(TeraMath.calcBlockPos(blockX, blockY, blockZ, chunkFilterSize), light);
+        Chunk chunk = getChunkAt(blockX, blockY, blockZ);
+        if (chunk != null) {
+            chunk.setLight(TeraMath.calcBlockPosX(blockX, chunkFilterSize.x), blockY, TeraMath.calcBlockPosZ(blockZ, chunkFilterSize.z), light);
         }
     }
 
     public void setDirtyAround(Vector3i blockPos) {
         for (Vector3i pos : TeraMath.getChunkRegionAroundBlockPos(blockPos, 1)) {
-            chunks[pos.x + offset.x + chunkRegion.size().x * (pos.z + offset.z)].setDirty(true);
+            setDirty(pos);
         }
     }
 
     public void setDirtyAround(Region3i blockRegion) {
+        for (Vector3i pos : getChunkRegionAround(blockRegion)) {
+            setDirty(pos);
+        }
+    }
+
+    private void setDirty(Vector3i chunkPos) {
+        Chunk chunk = chunks[chunkPos.x + offset.x + chunkRegionSizeX * (chunkPos.z + offset.z)];
+        if (chunk != null) {
+            chunk.setDirty(true);
+        }
+    }
+
+    /**
+     * Marks the chunks around all given regions dirty, setting each chunk dirty only once.
+     */
+    public void setDirtyAround(List<Region3i> blockRegions) {
+        boolean[] dirty = new boolean[chunks.length];
+        for (Region3i blockRegion : blockRegions) {
+            for (Vector3i pos : getChunkRegionAround(blockRegion)) {
+                dirty[pos.x + offset.x + chunkRegionSizeX * (pos.z + offset.z)] = true;
+            }
+        }
+        for (int i = 0; i < chunks.length; i++) {
+            if (dirty[i] && chunks[i] != null) {
+                chunks[i].setDirty(true);
+            }
+        }
+    }
+
+    private Region3i getChunkRegionAround(Region3i blockRegion) {
         Vector3i minPos = new Vector3i(blockRegion.min());
         minPos.sub(1, 0, 1);
         Vector3i maxPos = new Vector3i(blockRegion.max());
@@ -204,35 +272,43 @@ public class WorldView {
 
         Vector3i minChunk = TeraMath.calcChunkPos(minPos, chunkPower);
         Vector3i maxChunk = TeraMath.calcChunkPos(maxPos, chunkPower);
-
-        for (Vector3i pos : Region3i.createFromMinMax(minChunk, maxChunk)) {
-            chunks[pos.x + offset.x + chunkRegion.size().x * (pos.z + offset.z)].setDirty(true);
-        }
+        return Region3i.createFromMinMax(minChunk, maxChunk);
     }
 
     public void lock() {
         for (Chunk chunk : chunks) {
-            chunk.lock();
+            if (chunk != null) {
+                chunk.lock();
+            }
         }
     }
 
     public void unlock() {
         for (Chunk chunk : chunks) {
-            chunk.unlock();
+            if (chunk != null) {
+                chunk.unlock();
+            }
         }
     }
 
     public boolean isValidView() {
         for (Chunk chunk : chunks) {
-            if (chunk.isDisposed()) {
+            if (chunk != null && chunk.isDisposed()) {
                 return false;
             }
         }
         return true;
     }
 
+    private Chunk getChunkAt(int blockX, int blockY, int blockZ) {
+        if (!blockRegion.encompasses(blockX, blockY, blockZ)) {
+            return null;
+        }
+        return chunks[relChunkIndex(blockX, blockY, blockZ)];
+    }
+
     int relChunkIndex(int x, int y, int z) {
-        return TeraMath.calcChunkPosX(x, chunkPower.x) + offset.x + chunkRegion.size().x * (TeraMath.calcChunkPosZ(z, chunkPower.z) + offset.z);
+        return TeraMath.calcChunkPosX(x, chunkPower.x) + offset.x + chunkRegionSizeX * (TeraMath.calcChunkPosZ(z, chunkPower.z) + offset.z);
     }
 
     public void setChunkSize(Vector3i chunkSize) {
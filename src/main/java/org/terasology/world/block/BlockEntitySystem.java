@@ -21,6 +21,7 @@ import org.terasology.components.BlockParticleEffectComponent;
 import org.terasology.components.HealthComponent;
 import org.terasology.components.ItemComponent;
 import org.terasology.components.world.LocationComponent;
+import org.terasology.components.world.WorldComponent;
 import org.terasology.entityFactory.BlockItemFactory;
 import org.terasology.entityFactory.DroppedBlockFactory;
 import org.terasology.entitySystem.EntityManager;
@@ -169,8 +170,8 @@ public class BlockEntitySystem implements EventHandlerSystem {
         audioManager.playSound(Assets.getSound("engine:Dig"), 1.0f);
     }
 
-    @ReceiveEvent(components = {BlockComponent.class})
-    public void onReplaceAroundBlocks(BlockChangedEvent event, EntityRef entity) {
+    @ReceiveEvent(components = {WorldComponent.class})
+    public void onReplaceAroundBlocks(BlockChangedEvent event, EntityRef worldEntity) {
         Vector3i placementPos = event.getBlockPosition();
 
         // Updating only non-diagonal neighbours
@@ -26,12 +26,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.entitySystem.Prefab;
 import org.terasology.logic.mod.ModManager;
+import org.terasology.rendering.primitives.BlockRenderInfo;
 import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockUri;
 import org.terasology.world.block.family.BlockFamily;
 import org.terasology.world.block.family.SymmetricFamily;
 import org.terasology.world.block.loader.BlockLoader;
 
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -58,6 +60,9 @@ public class BlockManager {
     private int nextId = 1;
     private final TObjectShortHashMap<BlockUri> idByUri = new TObjectShortHashMap<BlockUri>(256);
 
+    /* Render descriptors by block id, compiled on first use */
+    private volatile BlockRenderInfo[] renderInfoById = new BlockRenderInfo[256];
+
     /* Families */
     private final Set<BlockUri> shapelessBlockDefinition = Sets.newHashSet();
     private final Map<BlockUri, BlockFamily> partiallyRegisteredFamilies = Maps.newHashMap();
@@ -89,6 +94,7 @@ public class BlockManager {
         nextId = 1;
         blockLoader = new BlockLoader();
         categoryLookup.clear();
+        renderInfoById = new BlockRenderInfo[256];
 
         Block air = new Block();
         air.setTranslucent(true);
@@ -214,6 +220,33 @@ public class BlockManager {
         return result;
     }
 
+    /**
+     * Returns the render descriptor of the block with the given id. Unknown ids are rendered as air.
+     * <p/>
+     * Descriptors are compiled when first requested after the block has been registered, so it is safe to call this
+     * from the chunk update threads.
+     */
+    public BlockRenderInfo getRenderInfo(short id) {
+        BlockRenderInfo[] table = renderInfoById;
+        if (id >= 0 && id < table.length && table[id] != null) {
+            return table[id];
+        }
+        Block block = blocksById.get(id);
+        if (block == null) {
+            return id == 0 ? null : getRenderInfo((short) 0);
+        }
+        BlockRenderInfo info = new BlockRenderInfo(block);
+        synchronized (this) {
+            table = renderInfoById;
+            if (id >= table.length) {
+                table = Arrays.copyOf(table, Math.max(id + 1, table.length * 2));
+            }
+            table[id] = info;
+            renderInfoById = table;
+        }
+        return info;
+    }
+
     public Block getAir() {
         return blocksById.get((short) 0);
     }
@@ -250,6 +283,7 @@ public class BlockManager {
             }
             block.setId(id);
             blocksById.put(block.getId(), block);
+            dropRenderInfo(id);
             blocksByUri.put(block.getURI(), block);
 
             if( !block.getEntityPrefab().isEmpty() ){
@@ -258,6 +292,15 @@ public class BlockManager {
         }
     }
 
+    private synchronized void dropRenderInfo(short id) {
+        BlockRenderInfo[] table = renderInfoById;
+        if (id < table.length && table[id] != null) {
+            table = table.clone();
+            table[id] = null;
+            renderInfoById = table;
+        }
+    }
+
     /**
      * @return An iterator over the registered block families
      */
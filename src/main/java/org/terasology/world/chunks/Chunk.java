@@ -212,6 +212,10 @@ public class Chunk {
         lock.lock();
     }
 
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
     public void unlock() {
         lock.unlock();
     }
@@ -259,6 +263,22 @@ public class Chunk {
             + lightData.getEstimatedMemoryConsumptionInBytes() + extraData.getEstimatedMemoryConsumptionInBytes();
     }
 
+    TeraArray getBlockData() {
+        return blockData;
+    }
+
+    TeraArray getSunlightData() {
+        return sunlightData;
+    }
+
+    TeraArray getLightData() {
+        return lightData;
+    }
+
+    TeraArray getExtraData() {
+        return extraData;
+    }
+
     public Block getBlock(Vector3i pos) {
         return BlockManager.getInstance().getBlock((short) blockData.get(pos.x, pos.y, pos.z));
     }
@@ -267,6 +287,10 @@ public class Chunk {
         return BlockManager.getInstance().getBlock((short) blockData.get(x, y, z));
     }
 
+    public short getBlockId(int x, int y, int z) {
+        return (short) blockData.get(x, y, z);
+    }
+
     public boolean setBlock(int x, int y, int z, Block block) {
         int oldValue = blockData.set(x, y, z, block.getId());
         if (oldValue != block.getId()) {
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.terasology.math.Vector3i;
+import org.terasology.protobuf.ChunksProtobuf;
+import org.terasology.world.chunks.blockdata.TeraArray;
+import org.terasology.world.chunks.blockdata.TeraArrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * ChunkSerializer serializes chunks directly into byte buffers, without building intermediate protobuf messages.
+ * <p/>
+ * The produced data is a valid {@code Chunk} message as defined in {@code Chunks.proto}, so it can also be parsed with
+ * {@code ChunksProtobuf.Chunk.parseFrom()} and vice versa. The tera arrays are written into the buffer by their
+ * {@link TeraArray.SerializationHandler}, which avoids copying them into {@code ByteString}s first. The lengths of
+ * embedded messages are written as padded five byte varints, which allows to write them after the content is known.
+ * <p/>
+ * Serialization uses a buffer which is cached per thread and grown on demand. The buffer returned by
+ * {@code ChunkSerializer.serialize(Chunk)} is only valid until the next call on the same thread.
+ *
+ * @see org.terasology.world.chunks.Chunk.ProtobufHandler
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public final class ChunkSerializer {
+
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRETYPE_FIXED32 = 5;
+
+    private static final int FIELD_X = 1;
+    private static final int FIELD_Y = 2;
+    private static final int FIELD_Z = 3;
+    private static final int FIELD_STATE = 4;
+    private static final int FIELD_BLOCK_DATA = 5;
+    private static final int FIELD_SUNLIGHT_DATA = 6;
+    private static final int FIELD_LIGHT_DATA = 7;
+    private static final int FIELD_EXTRA_DATA = 8;
+
+    private static final int FIELD_ARRAY_TYPE = 1;
+    private static final int FIELD_ARRAY_CLASS_NAME = 2;
+    private static final int FIELD_ARRAY_DATA = 3;
+
+    private static final int PADDED_VARINT_SIZE = 5;
+    private static final int HEADER_SIZE = 64;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>();
+
+    /**
+     * Serializes the chunk into a buffer cached for the current thread.
+     *
+     * @return The buffer, positioned at the start of the data and limited to its end
+     */
+    public ByteBuffer serialize(Chunk chunk) {
+        Preconditions.checkNotNull(chunk, "The parameter 'chunk' must not be null");
+        final TeraArrays t = TeraArrays.getInstance();
+        final TeraArrays.Entry blockEntry = getEntry(t, chunk.getBlockData());
+        final TeraArrays.Entry sunlightEntry = getEntry(t, chunk.getSunlightData());
+        final TeraArrays.Entry lightEntry = getEntry(t, chunk.getLightData());
+        final TeraArrays.Entry extraEntry = getEntry(t, chunk.getExtraData());
+
+        final int size = HEADER_SIZE
+                + computeArraySize(blockEntry, chunk.getBlockData())
+                + computeArraySize(sunlightEntry, chunk.getSunlightData())
+                + computeArraySize(lightEntry, chunk.getLightData())
+                + computeArraySize(extraEntry, chunk.getExtraData());
+        ByteBuffer buffer = buffers.get();
+        if (buffer == null || buffer.capacity() < size) {
+            // grow generously, dense and sparse chunks get serialized by the same threads
+            buffer = ByteBuffer.allocate(Math.max(size, buffer == null ? 0 : buffer.capacity() * 3 / 2));
+            buffers.set(buffer);
+        }
+        buffer.clear();
+
+        final Vector3i pos = chunk.getPos();
+        writeTag(buffer, FIELD_X, WIRETYPE_VARINT);
+        writeVarint(buffer, encodeZigZag(pos.x));
+        writeTag(buffer, FIELD_Y, WIRETYPE_VARINT);
+        writeVarint(buffer, encodeZigZag(pos.y));
+        writeTag(buffer, FIELD_Z, WIRETYPE_VARINT);
+        writeVarint(buffer, encodeZigZag(pos.z));
+        writeTag(buffer, FIELD_STATE, WIRETYPE_VARINT);
+        writeVarint(buffer, chunk.getChunkState().id);
+        writeArray(buffer, FIELD_BLOCK_DATA, blockEntry, chunk.getBlockData());
+        writeArray(buffer, FIELD_SUNLIGHT_DATA, sunlightEntry, chunk.getSunlightData());
+        writeArray(buffer, FIELD_LIGHT_DATA, lightEntry, chunk.getLightData());
+        writeArray(buffer, FIELD_EXTRA_DATA, extraEntry, chunk.getExtraData());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Deserializes a chunk from the remaining content of the buffer.
+     */
+    public Chunk deserialize(ByteBuffer buffer) {
+        Preconditions.checkNotNull(buffer, "The parameter 'buffer' must not be null");
+        Integer x = null, y = null, z = null, stateId = null;
+        TeraArray blockData = null, sunlightData = null, lightData = null, extraData = null;
+        try {
+            while (buffer.hasRemaining()) {
+                final int tag = readVarint(buffer);
+                switch (tag >>> 3) {
+                    case FIELD_X:
+                        x = decodeZigZag(readVarint(buffer));
+                        break;
+                    case FIELD_Y:
+                        y = decodeZigZag(readVarint(buffer));
+                        break;
+                    case FIELD_Z:
+                        z = decodeZigZag(readVarint(buffer));
+                        break;
+                    case FIELD_STATE:
+                        stateId = readVarint(buffer);
+                        break;
+                    case FIELD_BLOCK_DATA:
+                        blockData = readArray(buffer);
+                        break;
+                    case FIELD_SUNLIGHT_DATA:
+                        sunlightData = readArray(buffer);
+                        break;
+                    case FIELD_LIGHT_DATA:
+                        lightData = readArray(buffer);
+                        break;
+                    case FIELD_EXTRA_DATA:
+                        extraData = readArray(buffer);
+                        break;
+                    default:
+                        skipField(buffer, tag);
+                        break;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Illformed chunk data. Unexpected end of data.", e);
+        }
+        if (x == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing x coordinate.");
+        }
+        if (y == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing y coordinate.");
+        }
+        if (z == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing z coordinate.");
+        }
+        if (stateId == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing chunk state.");
+        }
+        final ChunkState state = ChunkState.getStateById(stateId);
+        if (state == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Unknown chunk state: " + stateId);
+        }
+        if (blockData == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing block data.");
+        }
+        if (sunlightData == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing sunlight data.");
+        }
+        if (lightData == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing light data.");
+        }
+        if (extraData == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing extra data.");
+        }
+        return new Chunk(new Vector3i(x, y, z), state, blockData, sunlightData, lightData, extraData);
+    }
+
+    private static TeraArrays.Entry getEntry(TeraArrays t, TeraArray array) {
+        final TeraArrays.Entry entry = t.getEntry(array.getClass());
+        if (entry == null) {
+            throw new IllegalArgumentException("Unable to encode the supplied array of class: " + array.getClass().getName());
+        }
+        return entry;
+    }
+
+    private static int computeArraySize(TeraArrays.Entry entry, TeraArray array) {
+        int size = 3 * (1 + PADDED_VARINT_SIZE) + entry.handler.computeMinimumBufferSize(array);
+        if (entry.protobufType == ChunksProtobuf.Type.Unknown) {
+            size += 1 + PADDED_VARINT_SIZE + entry.arrayClassName.length() * 3;
+        }
+        return size;
+    }
+
+    private static void writeArray(ByteBuffer buffer, int field, TeraArrays.Entry entry, TeraArray array) {
+        writeTag(buffer, field, WIRETYPE_LENGTH_DELIMITED);
+        final int messageLengthPos = reservePaddedVarint(buffer);
+        writeTag(buffer, FIELD_ARRAY_TYPE, WIRETYPE_VARINT);
+        writeVarint(buffer, entry.protobufType.getNumber());
+        if (entry.protobufType == ChunksProtobuf.Type.Unknown) {
+            final byte[] className = entry.arrayClassName.getBytes(UTF8);
+            writeTag(buffer, FIELD_ARRAY_CLASS_NAME, WIRETYPE_LENGTH_DELIMITED);
+            writeVarint(buffer, className.length);
+            buffer.put(className);
+        }
+        writeTag(buffer, FIELD_ARRAY_DATA, WIRETYPE_LENGTH_DELIMITED);
+        final int dataLengthPos = reservePaddedVarint(buffer);
+        entry.handler.serialize(array, buffer);
+        writePaddedVarint(buffer, dataLengthPos, buffer.position() - dataLengthPos - PADDED_VARINT_SIZE);
+        writePaddedVarint(buffer, messageLengthPos, buffer.position() - messageLengthPos - PADDED_VARINT_SIZE);
+    }
+
+    private static TeraArray readArray(ByteBuffer buffer) {
+        final ByteBuffer message = slice(buffer, readVarint(buffer));
+        ChunksProtobuf.Type type = null;
+        String className = null;
+        ByteBuffer data = null;
+        while (message.hasRemaining()) {
+            final int tag = readVarint(message);
+            switch (tag >>> 3) {
+                case FIELD_ARRAY_TYPE:
+                    final int number = readVarint(message);
+                    type = ChunksProtobuf.Type.valueOf(number);
+                    if (type == null) {
+                        throw new IllegalArgumentException("Illformed chunk data. Unknown array type: " + number);
+                    }
+                    break;
+                case FIELD_ARRAY_CLASS_NAME:
+                    final ByteBuffer name = slice(message, readVarint(message));
+                    final byte[] bytes = new byte[name.remaining()];
+                    name.get(bytes);
+                    className = new String(bytes, UTF8);
+                    break;
+                case FIELD_ARRAY_DATA:
+                    data = slice(message, readVarint(message));
+                    break;
+                default:
+                    skipField(message, tag);
+                    break;
+            }
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing type information.");
+        }
+        final TeraArrays t = TeraArrays.getInstance();
+        final TeraArrays.Entry entry;
+        if (type == ChunksProtobuf.Type.Unknown) {
+            if (className == null) {
+                throw new IllegalArgumentException("Illformed chunk data. Missing class name.");
+            }
+            entry = t.getEntry(className);
+            if (entry == null) {
+                throw new IllegalArgumentException("Unable to decode chunk data. No entry found for class name: " + className);
+            }
+        } else {
+            entry = t.getEntry(type);
+            if (entry == null) {
+                throw new IllegalArgumentException("Unable to decode chunk data. No entry found for type: " + type);
+            }
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("Illformed chunk data. Missing byte sequence.");
+        }
+        return entry.handler.deserialize(data);
+    }
+
+    /**
+     * Returns a view of the next {@code length} bytes of the buffer and advances the buffer past them.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final ByteBuffer result = buffer.slice();
+        result.limit(length);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+
+    private static void skipField(ByteBuffer buffer, int tag) {
+        switch (tag & 7) {
+            case WIRETYPE_VARINT:
+                readVarint(buffer);
+                break;
+            case WIRETYPE_FIXED64:
+                slice(buffer, 8);
+                break;
+            case WIRETYPE_LENGTH_DELIMITED:
+                slice(buffer, readVarint(buffer));
+                break;
+            case WIRETYPE_FIXED32:
+                slice(buffer, 4);
+                break;
+            default:
+                throw new IllegalArgumentException("Illformed chunk data. Unsupported wire type: " + (tag & 7));
+        }
+    }
+
+    private static void writeTag(ByteBuffer buffer, int field, int wireType) {
+        writeVarint(buffer, (field << 3) | wireType);
+    }
+
+    private static void writeVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int reservePaddedVarint(ByteBuffer buffer) {
+        final int pos = buffer.position();
+        buffer.position(pos + PADDED_VARINT_SIZE);
+        return pos;
+    }
+
+    private static void writePaddedVarint(ByteBuffer buffer, int pos, int value) {
+        for (int i = 0; i < PADDED_VARINT_SIZE - 1; i++) {
+            buffer.put(pos + i, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(pos + PADDED_VARINT_SIZE - 1, (byte) (value & 0x7F));
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        // protobuf allows negative int32 values to be encoded as ten byte varints
+        for (int i = 0; i < 5; i++) {
+            if (buffer.get() >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Illformed chunk data. Malformed varint.");
+    }
+
+    private static int encodeZigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int decodeZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks;
+
+import org.terasology.math.TeraMath;
+import org.terasology.world.WorldView;
+
+/**
+ * A copy of the block ids, sunlight and light of one chunk sized column of blocks plus a border of one block on
+ * each side, stored in flat arrays.
+ * <p/>
+ * Reads use coordinates relative to the origin of the column, from -1 to the chunk size on each axis. Reads outside
+ * of the copied region return air and no light. A snapshot can be refilled, so a thread can reuse one instead of
+ * allocating a new one per chunk.
+ *
+ * @see org.terasology.rendering.primitives.ChunkTessellator
+ */
+public final class ChunkSnapshot {
+
+    public static final int SIZE_X = Chunk.SIZE_X + 2;
+    public static final int SIZE_Y = Chunk.SIZE_Y + 2;
+    public static final int SIZE_Z = Chunk.SIZE_Z + 2;
+
+    private final short[] blockIds = new short[SIZE_X * SIZE_Y * SIZE_Z];
+    private final byte[] sunlight = new byte[SIZE_X * SIZE_Y * SIZE_Z];
+    private final byte[] light = new byte[SIZE_X * SIZE_Y * SIZE_Z];
+
+    private int minY;
+    private int maxY;
+
+    /**
+     * Copies a column of blocks from the given view.
+     *
+     * @param view    The view to copy from
+     * @param originX The x coordinate of the column in the view
+     * @param originZ The z coordinate of the column in the view
+     * @param minY    The lowest layer to copy, without the border
+     * @param maxY    The highest layer to copy (exclusive), without the border
+     */
+    public void fill(WorldView view, int originX, int originZ, int minY, int maxY) {
+        this.minY = Math.max(-1, minY - 1);
+        this.maxY = Math.min(Chunk.SIZE_Y, maxY);
+
+        for (int x = -1; x <= Chunk.SIZE_X; x++) {
+            for (int z = -1; z <= Chunk.SIZE_Z; z++) {
+                int column = index(x, 0, z);
+                for (int y = this.minY; y <= this.maxY; y++) {
+                    int index = column + y;
+                    blockIds[index] = view.getBlockId(originX + x, y, originZ + z);
+                    sunlight[index] = view.getSunlight(originX + x, y, originZ + z);
+                    light[index] = view.getLight(originX + x, y, originZ + z);
+                }
+            }
+        }
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((x + 1) * SIZE_Z + (z + 1)) * SIZE_Y + (y + 1);
+    }
+
+    private boolean contains(int x, int y, int z) {
+        return y >= minY && y <= maxY && x >= -1 && x <= Chunk.SIZE_X && z >= -1 && z <= Chunk.SIZE_Z;
+    }
+
+    public short getBlockId(int x, int y, int z) {
+        return contains(x, y, z) ? blockIds[index(x, y, z)] : 0;
+    }
+
+    public byte getSunlight(int x, int y, int z) {
+        return contains(x, y, z) ? sunlight[index(x, y, z)] : 0;
+    }
+
+    public byte getLight(int x, int y, int z) {
+        return contains(x, y, z) ? light[index(x, y, z)] : 0;
+    }
+
+    public short getBlockId(float x, float y, float z) {
+        return getBlockId(TeraMath.floorToInt(x + 0.5f), TeraMath.floorToInt(y + 0.5f), TeraMath.floorToInt(z + 0.5f));
+    }
+
+    public byte getSunlight(float x, float y, float z) {
+        return getSunlight(TeraMath.floorToInt(x + 0.5f), TeraMath.floorToInt(y + 0.5f), TeraMath.floorToInt(z + 0.5f));
+    }
+
+    public byte getLight(float x, float y, float z) {
+        return getLight(TeraMath.floorToInt(x + 0.5f), TeraMath.floorToInt(y + 0.5f), TeraMath.floorToInt(z + 0.5f));
+    }
+}
@@ -1,5 +1,6 @@
 package org.terasology.world.chunks;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import org.terasology.config.Config;
@@ -14,7 +15,9 @@ import com.google.common.collect.Maps;
  * Chunks is the central registration point for chunk data. 
  * <p/>
  * Serialization and deserialization of Chunks into/from protobuf messages is supported through the methods
- * {@code Chunks.encode(Chunk)} and {@code Chunks.decode(ChunksProtobuf.Chunk)}.
+ * {@code Chunks.encode(Chunk)} and {@code Chunks.decode(ChunksProtobuf.Chunk)}. The methods
+ * {@code Chunks.serialize(Chunk)} and {@code Chunks.deserialize(ByteBuffer)} produce and consume the same wire format
+ * without building protobuf messages, see {@link ChunkSerializer}.
  * <p/>
  * Mods can register chunk data extensions through the method {@code Chunks.register(String, TeraArrays.Entry)}.
  * 
@@ -36,6 +39,7 @@ public final class Chunks {
     private final Map<String, TeraArrays.Entry> modDataEntries;
     
     private final Chunk.ProtobufHandler handler;
+    private final ChunkSerializer serializer;
     
     private Chunks() {
         config = CoreRegistry.get(Config.class);
@@ -49,6 +53,7 @@ public final class Chunks {
         modDataEntries = Maps.newHashMap();
         
         handler = new Chunk.ProtobufHandler();
+        serializer = new ChunkSerializer();
     }
     
     public final TeraArrays.Entry getBlockDataEntry() {
@@ -82,6 +87,14 @@ public final class Chunks {
     public final Chunk decode(ChunksProtobuf.Chunk message) {
         return handler.decode(message);
     }
+
+    public final ByteBuffer serialize(Chunk chunk) {
+        return serializer.serialize(chunk);
+    }
+
+    public final Chunk deserialize(ByteBuffer buffer) {
+        return serializer.deserialize(buffer);
+    }
     
     public static final Chunks getInstance() {
         return instance;
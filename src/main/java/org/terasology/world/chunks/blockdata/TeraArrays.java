@@ -51,6 +51,7 @@ public final class TeraArrays {
             register(new TeraSparseArray4Bit.Factory(), Type.SparseArray4Bit);
             register(new TeraSparseArray8Bit.Factory(), Type.SparseArray8Bit);
             register(new TeraSparseArray16Bit.Factory(), Type.SparseArray16Bit);
+            register(new TeraPaletteArray16Bit.Factory(), Type.PaletteArray16Bit);
         } finally {
             lock.writeLock().unlock();
         }
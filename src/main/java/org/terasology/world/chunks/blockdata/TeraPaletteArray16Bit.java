@@ -0,0 +1,470 @@
+package org.terasology.world.chunks.blockdata;
+
+import gnu.trove.map.hash.TShortIntHashMap;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import org.terasology.world.chunks.deflate.TeraVisitingDeflator;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * TeraPaletteArray16Bit implements an array with elements of 16 bit size, which stores each distinct element once in a
+ * palette and the elements themselves as indices into the palette.
+ * Its elements are in the range -32'768 through +32'767. The indices are 1, 2, 4 or 8 bits wide, packed into ints
+ * starting at the lowest bits. The index width grows as new elements are added to the palette. A palette of more than
+ * 256 elements would need 16 bit indices, which take more memory than a dense array, so the array switches to a
+ * TeraDenseArray16Bit for storage instead.
+ * <p/>
+ * Elements are never removed from the palette when they are overwritten, deflation drops the unused ones.
+ * <p/>
+ * Writing is synchronized. Reading is lock free: every new palette element is published with a new storage object
+ * through a volatile field, before any index refers to it. A reader only trusts indices within the palette size of the
+ * storage it has read, and reads again while holding the lock otherwise.
+ */
+public class TeraPaletteArray16Bit extends TeraArray {
+
+    private static final int MAX_BITS_PER_ENTRY = 8;
+
+    /* The index width used for serializing dense storage, the indices are the elements themselves */
+    private static final int DENSE_BITS_PER_ENTRY = 16;
+
+    /* Palettes larger than this are looked up through a hash map instead of a linear search */
+    private static final int LINEAR_SEARCH_LIMIT = 16;
+
+    private volatile Storage storage;
+
+    private static final class Storage {
+        private final int bitsPerEntry;
+        private final int entriesPerWordShift;
+        private final int mask;
+        private final short[] palette;
+        private final int[] data;
+        private final int paletteSize;
+        private final TShortIntHashMap paletteIndex;
+        private final TeraDenseArray16Bit dense;
+
+        private Storage(int bitsPerEntry, short[] palette, int paletteSize, int[] data, TShortIntHashMap paletteIndex) {
+            this.bitsPerEntry = bitsPerEntry;
+            this.entriesPerWordShift = 5 - Integer.numberOfTrailingZeros(bitsPerEntry);
+            this.mask = (1 << bitsPerEntry) - 1;
+            this.palette = palette;
+            this.paletteSize = paletteSize;
+            this.data = data;
+            if (paletteIndex == null && paletteSize > LINEAR_SEARCH_LIMIT) {
+                paletteIndex = new TShortIntHashMap(palette.length, 0.5f, (short) 0, -1);
+                for (int i = 0; i < paletteSize; i++) {
+                    paletteIndex.put(palette[i], i);
+                }
+            }
+            this.paletteIndex = paletteIndex;
+            this.dense = null;
+        }
+
+        private Storage(TeraDenseArray16Bit dense) {
+            this.bitsPerEntry = DENSE_BITS_PER_ENTRY;
+            this.entriesPerWordShift = 0;
+            this.mask = 0;
+            this.palette = null;
+            this.paletteSize = 0;
+            this.data = null;
+            this.paletteIndex = null;
+            this.dense = dense;
+        }
+
+        private int get(int pos) {
+            final int shift = (pos & ((1 << entriesPerWordShift) - 1)) * bitsPerEntry;
+            return (data[pos >>> entriesPerWordShift] >>> shift) & mask;
+        }
+
+        private void set(int pos, int index) {
+            final int word = pos >>> entriesPerWordShift;
+            final int shift = (pos & ((1 << entriesPerWordShift) - 1)) * bitsPerEntry;
+            data[word] = (data[word] & ~(mask << shift)) | (index << shift);
+        }
+
+        private int indexOf(short value) {
+            if (paletteIndex != null) {
+                return paletteIndex.get(value);
+            }
+            for (int i = 0; i < paletteSize; i++) {
+                if (palette[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isFull() {
+            return paletteSize == palette.length;
+        }
+
+        /**
+         * @return A storage sharing the palette and the indices with this one, with the value appended to the palette
+         */
+        private Storage add(short value) {
+            palette[paletteSize] = value;
+            if (paletteIndex != null) {
+                paletteIndex.put(value, paletteSize);
+            }
+            return new Storage(bitsPerEntry, palette, paletteSize + 1, data, paletteIndex);
+        }
+    }
+
+    @Override
+    protected void initialize() {
+        storage = new Storage(1, new short[2], 1, new int[wordCount(getSizeXYZ(), 1)], null);
+    }
+
+    /**
+     * @return The number of ints needed to store size indices of the given width
+     */
+    public static int wordCount(int size, int bitsPerEntry) {
+        return (size * bitsPerEntry + 31) / 32;
+    }
+
+    /**
+     * @return The smallest index width able to address a palette of the given size
+     */
+    public static int bitsPerEntry(int paletteSize) {
+        int bits = 1;
+        while (bits < MAX_BITS_PER_ENTRY && (1 << bits) < paletteSize) {
+            bits *= 2;
+        }
+        return bits;
+    }
+
+    /**
+     * @return The index stored at position pos of the packed data
+     */
+    public static int getIndex(int[] data, int bitsPerEntry, int pos) {
+        final int entriesPerWord = 32 / bitsPerEntry;
+        return (data[pos / entriesPerWord] >>> ((pos % entriesPerWord) * bitsPerEntry)) & ((1 << bitsPerEntry) - 1);
+    }
+
+    /**
+     * Stores an index at position pos of the packed data.
+     */
+    public static void setIndex(int[] data, int bitsPerEntry, int pos, int index) {
+        final int entriesPerWord = 32 / bitsPerEntry;
+        final int shift = (pos % entriesPerWord) * bitsPerEntry;
+        final int mask = (1 << bitsPerEntry) - 1;
+        data[pos / entriesPerWord] = (data[pos / entriesPerWord] & ~(mask << shift)) | (index << shift);
+    }
+
+    private static boolean isValidBitsPerEntry(int bitsPerEntry) {
+        return bitsPerEntry > 0 && bitsPerEntry <= MAX_BITS_PER_ENTRY && Integer.bitCount(bitsPerEntry) == 1;
+    }
+
+    public static class SerializationHandler extends TeraArray.BasicSerializationHandler<TeraPaletteArray16Bit> {
+
+        @Override
+        public boolean canHandle(Class<?> clazz) {
+            return TeraPaletteArray16Bit.class.equals(clazz);
+        }
+
+        @Override
+        protected int internalComputeMinimumBufferSize(TeraPaletteArray16Bit array) {
+            synchronized (array) {
+                final Storage storage = array.storage;
+                return 12 + storage.paletteSize * 2 + wordCount(array.getSizeXYZ(), storage.bitsPerEntry) * 4;
+            }
+        }
+
+        @Override
+        protected void internalSerialize(TeraPaletteArray16Bit array, ByteBuffer buffer) {
+            synchronized (array) {
+                final Storage storage = array.storage;
+                final int[] data = storage.dense != null ? pack(storage.dense) : storage.data;
+                buffer.putInt(storage.bitsPerEntry);
+                buffer.putInt(storage.paletteSize);
+                if (storage.palette != null) {
+                    final ShortBuffer sbuffer = buffer.asShortBuffer();
+                    sbuffer.put(storage.palette, 0, storage.paletteSize);
+                    buffer.position(buffer.position() + storage.paletteSize * 2);
+                }
+                buffer.putInt(data.length);
+                final IntBuffer ibuffer = buffer.asIntBuffer();
+                ibuffer.put(data);
+                buffer.position(buffer.position() + data.length * 4);
+            }
+        }
+
+        @Override
+        protected TeraPaletteArray16Bit internalDeserialize(int sizeX, int sizeY, int sizeZ, ByteBuffer buffer) {
+            final int bitsPerEntry = buffer.getInt();
+            final int paletteSize = buffer.getInt();
+            final short[] palette = new short[paletteSize];
+            final ShortBuffer sbuffer = buffer.asShortBuffer();
+            sbuffer.get(palette, 0, paletteSize);
+            buffer.position(buffer.position() + paletteSize * 2);
+            final int length = buffer.getInt();
+            final int[] data = new int[length];
+            final IntBuffer ibuffer = buffer.asIntBuffer();
+            ibuffer.get(data, 0, length);
+            buffer.position(buffer.position() + length * 4);
+            if (bitsPerEntry == DENSE_BITS_PER_ENTRY) {
+                return new TeraPaletteArray16Bit(unpack(sizeX, sizeY, sizeZ, palette, paletteSize, data));
+            }
+            return new TeraPaletteArray16Bit(sizeX, sizeY, sizeZ, palette, paletteSize, bitsPerEntry, data);
+        }
+    }
+
+    public static class Factory implements TeraArray.Factory<TeraPaletteArray16Bit> {
+
+        @Override
+        public Class<TeraPaletteArray16Bit> getArrayClass() {
+            return TeraPaletteArray16Bit.class;
+        }
+
+        @Override
+        public SerializationHandler createSerializationHandler() {
+            return new SerializationHandler();
+        }
+
+        @Override
+        public TeraPaletteArray16Bit create() {
+            return new TeraPaletteArray16Bit();
+        }
+
+        @Override
+        public TeraPaletteArray16Bit create(int sizeX, int sizeY, int sizeZ) {
+            return new TeraPaletteArray16Bit(sizeX, sizeY, sizeZ);
+        }
+    }
+
+    public TeraPaletteArray16Bit() {
+        super();
+    }
+
+    public TeraPaletteArray16Bit(int sizeX, int sizeY, int sizeZ) {
+        super(sizeX, sizeY, sizeZ, true);
+    }
+
+    /**
+     * @param palette      The distinct elements, only the first paletteSize are used
+     * @param bitsPerEntry The width of the indices, has to be able to address the palette
+     * @param data         The indices into the palette, packed as described above
+     */
+    public TeraPaletteArray16Bit(int sizeX, int sizeY, int sizeZ, short[] palette, int paletteSize, int bitsPerEntry, int[] data) {
+        super(sizeX, sizeY, sizeZ, false);
+        Preconditions.checkNotNull(palette);
+        Preconditions.checkNotNull(data);
+        Preconditions.checkArgument(isValidBitsPerEntry(bitsPerEntry), "The parameter 'bitsPerEntry' has to be 1, 2, 4 or 8 but is " + bitsPerEntry);
+        Preconditions.checkArgument(paletteSize > 0 && paletteSize <= palette.length && paletteSize <= (1 << bitsPerEntry), "The parameter 'paletteSize' is out of range (" + paletteSize + ")");
+        Preconditions.checkArgument(data.length == wordCount(getSizeXYZ(), bitsPerEntry), "The length of parameter 'data' has to be " + wordCount(getSizeXYZ(), bitsPerEntry) + " but is " + data.length);
+        final short[] tmp = new short[1 << bitsPerEntry];
+        System.arraycopy(palette, 0, tmp, 0, paletteSize);
+        storage = new Storage(bitsPerEntry, tmp, paletteSize, data, null);
+    }
+
+    private TeraPaletteArray16Bit(TeraDenseArray16Bit dense) {
+        super(dense.getSizeX(), dense.getSizeY(), dense.getSizeZ(), false);
+        storage = new Storage(dense);
+    }
+
+    public TeraPaletteArray16Bit(TeraArray in) {
+        super(Preconditions.checkNotNull(in).getSizeX(), in.getSizeY(), in.getSizeZ(), true);
+        for (int y = 0; y < getSizeY(); y++) {
+            for (int x = 0; x < getSizeX(); x++) {
+                for (int z = 0; z < getSizeZ(); z++) {
+                    set(x, y, z, in.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of elements in the palette, including the ones no longer used, or 0 once the array has
+     *         switched to dense storage
+     */
+    public int getPaletteSize() {
+        return storage.paletteSize;
+    }
+
+    @Override
+    public boolean isSparse() {
+        return false;
+    }
+
+    @Override
+    public synchronized TeraArray copy() {
+        final Storage s = storage;
+        if (s.dense != null) {
+            return s.dense.copy();
+        }
+        final int[] tmp = new int[s.data.length];
+        System.arraycopy(s.data, 0, tmp, 0, s.data.length);
+        return new TeraPaletteArray16Bit(getSizeX(), getSizeY(), getSizeZ(), s.palette, s.paletteSize, s.bitsPerEntry, tmp);
+    }
+
+    @Override
+    public synchronized TeraArray deflate(TeraVisitingDeflator deflator) {
+        final Storage s = storage;
+        if (s.dense != null) {
+            final TeraArray deflated = s.dense.deflate(deflator);
+            return deflated != null ? deflated : s.dense;
+        }
+        return Preconditions.checkNotNull(deflator).deflatePaletteArray16Bit(s.palette, s.paletteSize, s.data, s.bitsPerEntry, getSizeX(), getSizeY(), getSizeZ());
+    }
+
+    @Override
+    public int getEstimatedMemoryConsumptionInBytes() {
+        final Storage s = storage;
+        if (s.dense != null) {
+            return 32 + s.dense.getEstimatedMemoryConsumptionInBytes();
+        }
+        return 32 + s.palette.length * 2 + s.data.length * 4;
+    }
+
+    @Override
+    public int getElementSizeInBits() {
+        return 16;
+    }
+
+    @Override
+    public int get(int x, int y, int z) {
+        final Storage s = storage;
+        if (s.dense != null) {
+            return s.dense.get(x, y, z);
+        }
+        final int index = s.get(pos(x, y, z));
+        if (index < s.paletteSize) {
+            return s.palette[index];
+        }
+        // The index refers to a palette element published after the storage was read
+        return getLocked(x, y, z);
+    }
+
+    private synchronized int getLocked(int x, int y, int z) {
+        final Storage s = storage;
+        if (s.dense != null) {
+            return s.dense.get(x, y, z);
+        }
+        return s.palette[s.get(pos(x, y, z))];
+    }
+
+    @Override
+    public synchronized int set(int x, int y, int z, int value) {
+        final int index = indexOf((short) value);
+        final Storage s = storage;
+        if (s.dense != null) {
+            return s.dense.set(x, y, z, value);
+        }
+        final int pos = pos(x, y, z);
+        final int old = s.palette[s.get(pos)];
+        s.set(pos, index);
+        return old;
+    }
+
+    @Override
+    public synchronized boolean set(int x, int y, int z, int value, int expected) {
+        if (getLocked(x, y, z) == expected) {
+            set(x, y, z, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks up the palette index of the value, adding the value to the palette if necessary. If the palette is full
+     * already at the maximum index width, the array switches to dense storage.
+     *
+     * @return The palette index of the value, or -1 if the array uses dense storage
+     */
+    private int indexOf(short value) {
+        Storage s = storage;
+        if (s.dense != null) {
+            return -1;
+        }
+        int index = s.indexOf(value);
+        if (index < 0) {
+            if (s.isFull()) {
+                if (s.bitsPerEntry == MAX_BITS_PER_ENTRY) {
+                    storage = new Storage(toDense(s));
+                    return -1;
+                }
+                s = grow(s);
+            }
+            index = s.paletteSize;
+            storage = s.add(value);
+        }
+        return index;
+    }
+
+    private Storage grow(Storage s) {
+        final int bitsPerEntry = s.bitsPerEntry * 2;
+        final short[] palette = new short[1 << bitsPerEntry];
+        System.arraycopy(s.palette, 0, palette, 0, s.paletteSize);
+        final int[] data = new int[wordCount(getSizeXYZ(), bitsPerEntry)];
+        final Storage grown = new Storage(bitsPerEntry, palette, s.paletteSize, data, null);
+        for (int pos = 0; pos < getSizeXYZ(); pos++) {
+            grown.set(pos, s.get(pos));
+        }
+        return grown;
+    }
+
+    private TeraDenseArray16Bit toDense(Storage s) {
+        final short[] data = new short[getSizeXYZ()];
+        for (int pos = 0; pos < data.length; pos++) {
+            data[pos] = s.palette[s.get(pos)];
+        }
+        return new TeraDenseArray16Bit(getSizeX(), getSizeY(), getSizeZ(), data);
+    }
+
+    private static int[] pack(TeraDenseArray16Bit dense) {
+        final short[] elements = dense.data;
+        final int[] data = new int[wordCount(elements.length, DENSE_BITS_PER_ENTRY)];
+        for (int pos = 0; pos < elements.length; pos++) {
+            setIndex(data, DENSE_BITS_PER_ENTRY, pos, elements[pos] & 0xFFFF);
+        }
+        return data;
+    }
+
+    /**
+     * Unpacks elements serialized with 16 bit indices. These are the elements themselves if there is no palette.
+     */
+    private static TeraDenseArray16Bit unpack(int sizeX, int sizeY, int sizeZ, short[] palette, int paletteSize, int[] data) {
+        final short[] elements = new short[sizeX * sizeY * sizeZ];
+        for (int pos = 0; pos < elements.length; pos++) {
+            final int index = getIndex(data, DENSE_BITS_PER_ENTRY, pos);
+            elements[pos] = paletteSize > 0 ? palette[index] : (short) index;
+        }
+        return new TeraDenseArray16Bit(sizeX, sizeY, sizeZ, elements);
+    }
+
+    @Override
+    public synchronized void writeExternal(ObjectOutput out) throws IOException {
+        final Storage s = storage;
+        writeExternalHeader(out);
+        out.writeInt(s.bitsPerEntry);
+        out.writeInt(s.paletteSize);
+        if (s.dense != null) {
+            out.writeObject(new short[0]);
+            out.writeObject(pack(s.dense));
+        } else {
+            out.writeObject(s.palette);
+            out.writeObject(s.data);
+        }
+    }
+
+    @Override
+    public synchronized void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        readExternalHeader(in);
+        final int bitsPerEntry = in.readInt();
+        final int paletteSize = in.readInt();
+        final short[] palette = (short[]) in.readObject();
+        final int[] data = (int[]) in.readObject();
+        if (bitsPerEntry == DENSE_BITS_PER_ENTRY) {
+            storage = new Storage(unpack(getSizeX(), getSizeY(), getSizeZ(), palette, paletteSize, data));
+        } else {
+            storage = new Storage(bitsPerEntry, palette, paletteSize, data, null);
+        }
+    }
+
+}
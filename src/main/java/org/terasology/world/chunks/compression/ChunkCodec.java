@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.compression;
+
+import java.io.IOException;
+
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+
+/**
+ * A ChunkCodec compresses and decompresses serialized chunks.
+ * <p/>
+ * Codecs have to be thread safe, because chunks are compressed and decompressed concurrently by the chunk stores.
+ * Every codec is identified by its {@link CompressionMethod}, which gets stored along with the compressed data.
+ */
+public interface ChunkCodec {
+
+    public CompressionMethod getMethod();
+
+    public byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+    public byte[] decompress(byte[] data, int offset, int length) throws IOException;
+}
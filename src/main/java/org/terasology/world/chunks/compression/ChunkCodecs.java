@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.compression;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * ChunkCodecs is the central registration point for chunk compression codecs.
+ * <p/>
+ * Chunk stores compress chunks with the codec configured in {@code AdvancedConfig.getChunkCompressionMethod()} and
+ * record the compression method along with every chunk, so stores containing chunks compressed with different codecs
+ * can still be loaded.
+ * <p/>
+ * The methods {@code ChunkCodecs.encode(byte[], int, int)} and {@code ChunkCodecs.decode(byte[])} prefix the
+ * compressed data with a single byte holding the number of the compression method. This framing is used by the chunk
+ * stores to keep the compression method and the data of a chunk together.
+ */
+public final class ChunkCodecs {
+
+    private static final ChunkCodecs instance = new ChunkCodecs();
+
+    private final Map<CompressionMethod, ChunkCodec> codecs = new EnumMap<CompressionMethod, ChunkCodec>(CompressionMethod.class);
+
+    private ChunkCodecs() {
+        register(new GzipCodec());
+        register(new NullCodec());
+        register(new Lz4Codec());
+        register(new LzmaCodec());
+    }
+
+    public synchronized void register(ChunkCodec codec) {
+        Preconditions.checkNotNull(codec, "The parameter 'codec' must not be null");
+        Preconditions.checkNotNull(codec.getMethod(), "The compression method of the codec must not be null");
+        codecs.put(codec.getMethod(), codec);
+    }
+
+    public synchronized boolean isSupported(CompressionMethod method) {
+        return method != null && codecs.containsKey(method);
+    }
+
+    public synchronized ChunkCodec getCodec(CompressionMethod method) {
+        Preconditions.checkNotNull(method, "The parameter 'method' must not be null");
+        final ChunkCodec codec = codecs.get(method);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unsupported compression method: " + method);
+        }
+        return codec;
+    }
+
+    /**
+     * Returns the codec selected in the advanced configuration, or the GZIP codec if no configuration is available.
+     */
+    public ChunkCodec getDefaultCodec() {
+        final Config config = CoreRegistry.get(Config.class);
+        if (config == null) {
+            return getCodec(CompressionMethod.GZIP);
+        }
+        return getCodec(config.getAdvanced().getChunkCompressionMethod());
+    }
+
+    /**
+     * Compresses the data using the given codec and prefixes the result with the number of the compression method.
+     */
+    public byte[] encode(ChunkCodec codec, byte[] data, int offset, int length) throws IOException {
+        Preconditions.checkNotNull(codec, "The parameter 'codec' must not be null");
+        Preconditions.checkNotNull(data, "The parameter 'data' must not be null");
+        return frame(codec.getMethod(), codec.compress(data, offset, length));
+    }
+
+    /**
+     * Decompresses data produced by {@code ChunkCodecs.encode(ChunkCodec, byte[], int, int)}.
+     */
+    public byte[] decode(byte[] data) throws IOException {
+        Preconditions.checkNotNull(data, "The parameter 'data' must not be null");
+        if (data.length == 0) {
+            throw new IOException("Missing compression method");
+        }
+        return getCodec(getMethod(data)).decompress(data, 1, data.length - 1);
+    }
+
+    /**
+     * Returns the compression method of data produced by {@code ChunkCodecs.encode(ChunkCodec, byte[], int, int)}.
+     */
+    public CompressionMethod getMethod(byte[] data) throws IOException {
+        final CompressionMethod method = CompressionMethod.valueOf(data[0] & 0xFF);
+        if (method == null) {
+            throw new IOException("Unknown compression method: " + (data[0] & 0xFF));
+        }
+        return method;
+    }
+
+    /**
+     * Prefixes data compressed with the given method, as found in older chunk stores, with the number of the method.
+     */
+    public byte[] frame(CompressionMethod method, byte[] compressed) {
+        Preconditions.checkNotNull(method, "The parameter 'method' must not be null");
+        Preconditions.checkNotNull(compressed, "The parameter 'compressed' must not be null");
+        final byte[] result = new byte[compressed.length + 1];
+        result[0] = (byte) method.getNumber();
+        System.arraycopy(compressed, 0, result, 1, compressed.length);
+        return result;
+    }
+
+    public static ChunkCodecs getInstance() {
+        return instance;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * GzipCodec compresses chunks using GZIP. This has been the only compression method before codecs were introduced,
+ * so all older chunk stores contain GZIP compressed chunks.
+ */
+public final class GzipCodec implements ChunkCodec {
+
+    @Override
+    public CompressionMethod getMethod() {
+        return CompressionMethod.GZIP;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        final ByteArrayOutputStream baOut = new ByteArrayOutputStream(length / 4 + 64);
+        final GZIPOutputStream gzOut = new GZIPOutputStream(baOut);
+        gzOut.write(data, offset, length);
+        gzOut.close();
+        return baOut.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length) throws IOException {
+        final GZIPInputStream gzIn = new GZIPInputStream(new ByteArrayInputStream(data, offset, length));
+        try {
+            return ByteStreams.toByteArray(gzIn);
+        } finally {
+            gzIn.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+
+/**
+ * Lz4Codec is a fast byte oriented LZ77 codec producing data in the LZ4 block format.
+ * <p/>
+ * The compressed data starts with the length of the uncompressed data as a big endian int, followed by a single
+ * LZ4 block. Compression uses a greedy single probe hash chain, which trades compression ratio for speed. Chunk data
+ * usually contains long runs of identical values, which this handles well.
+ */
+public final class Lz4Codec implements ChunkCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_LOG = 14;
+    private static final int RUN_MASK = 0x0F;
+
+    private static final ThreadLocal<int[]> hashTables = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1 << HASH_LOG];
+        }
+    };
+
+    @Override
+    public CompressionMethod getMethod() {
+        return CompressionMethod.LZ4;
+    }
+
+    private static int readInt(byte[] buf, int i) {
+        return (buf[i] & 0xFF) | ((buf[i + 1] & 0xFF) << 8) | ((buf[i + 2] & 0xFF) << 16) | ((buf[i + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        while (length >= 0xFF) {
+            dst[op++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int writeLiterals(byte[] dst, int op, byte[] src, int start, int length, int matchToken) {
+        if (length >= RUN_MASK) {
+            dst[op++] = (byte) ((RUN_MASK << 4) | matchToken);
+            op = writeLength(dst, op, length - RUN_MASK);
+        } else {
+            dst[op++] = (byte) ((length << 4) | matchToken);
+        }
+        System.arraycopy(src, start, dst, op, length);
+        return op + length;
+    }
+
+    @Override
+    public byte[] compress(byte[] src, int offset, int length) {
+        final byte[] dst = new byte[4 + length + length / 255 + 16];
+        dst[0] = (byte) (length >>> 24);
+        dst[1] = (byte) (length >>> 16);
+        dst[2] = (byte) (length >>> 8);
+        dst[3] = (byte) length;
+        int op = 4;
+
+        final int srcEnd = offset + length;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+        final int mfLimit = srcEnd - MF_LIMIT;
+        int anchor = offset;
+        int ip = offset;
+
+        if (length >= MF_LIMIT) {
+            final int[] table = hashTables.get();
+            Arrays.fill(table, -1);
+            while (ip < mfLimit) {
+                final int sequence = readInt(src, ip);
+                final int h = hash(sequence);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+                while (ip > anchor && ref > offset && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                    matchLength++;
+                }
+                final int matchToken = Math.min(matchLength - MIN_MATCH, RUN_MASK);
+                op = writeLiterals(dst, op, src, anchor, ip - anchor, matchToken);
+                final int matchOffset = ip - ref;
+                dst[op++] = (byte) matchOffset;
+                dst[op++] = (byte) (matchOffset >>> 8);
+                if (matchToken == RUN_MASK) {
+                    op = writeLength(dst, op, matchLength - MIN_MATCH - RUN_MASK);
+                }
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        op = writeLiterals(dst, op, src, anchor, srcEnd - anchor, 0);
+        return Arrays.copyOf(dst, op);
+    }
+
+    @Override
+    public byte[] decompress(byte[] src, int offset, int length) throws IOException {
+        try {
+            final int size = ((src[offset] & 0xFF) << 24) | ((src[offset + 1] & 0xFF) << 16)
+                    | ((src[offset + 2] & 0xFF) << 8) | (src[offset + 3] & 0xFF);
+            if (size < 0) throw new IOException("Corrupt LZ4 data, negative length");
+            final byte[] dst = new byte[size];
+            final int srcEnd = offset + length;
+            int ip = offset + 4;
+            int op = 0;
+            while (true) {
+                final int token = src[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 0xFF);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip >= srcEnd) {
+                    break;
+                }
+                final int matchOffset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+                ip += 2;
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 0xFF);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - matchOffset;
+                if (matchOffset == 0 || ref < 0) throw new IOException("Corrupt LZ4 data, invalid match offset");
+                if (op + matchLength > size) throw new IOException("Corrupt LZ4 data, match exceeds length");
+                if (matchOffset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // overlapping match, has to be copied byte by byte
+                    for (int i = 0; i < matchLength; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+            if (op != size) throw new IOException("Corrupt LZ4 data, expected " + size + " bytes but got " + op);
+            return dst;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZ4 data", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import lzma.sdk.lzma.Decoder;
+import lzma.sdk.lzma.Encoder;
+
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+
+/**
+ * LzmaCodec compresses chunks using LZMA. It is considerably slower than the other codecs, but produces the smallest
+ * data, so it is meant for archiving worlds rather than for chunks which are swapped in and out during play.
+ * <p/>
+ * The compressed data starts with the length of the uncompressed data as a big endian int, followed by the
+ * encoder properties and the raw LZMA stream.
+ */
+public final class LzmaCodec implements ChunkCodec {
+
+    private static final int DICTIONARY_SIZE = 1 << 20;
+
+    @Override
+    public CompressionMethod getMethod() {
+        return CompressionMethod.LZMA;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        final ByteArrayOutputStream baOut = new ByteArrayOutputStream(length / 8 + 64);
+        baOut.write(length >>> 24);
+        baOut.write(length >>> 16);
+        baOut.write(length >>> 8);
+        baOut.write(length);
+        final Encoder encoder = new Encoder();
+        encoder.setDictionarySize(DICTIONARY_SIZE);
+        encoder.setEndMarkerMode(false);
+        encoder.writeCoderProperties(baOut);
+        encoder.code(new ByteArrayInputStream(data, offset, length), baOut, length, -1, null);
+        return baOut.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length) throws IOException {
+        if (length < 4 + Encoder.kPropSize) throw new IOException("Corrupt LZMA data, header is truncated");
+        final int size = ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+        if (size < 0) throw new IOException("Corrupt LZMA data, negative length");
+        final Decoder decoder = new Decoder();
+        if (!decoder.setDecoderProperties(Arrays.copyOfRange(data, offset + 4, offset + 4 + Encoder.kPropSize))) {
+            throw new IOException("Corrupt LZMA data, invalid properties");
+        }
+        final int headerSize = 4 + Encoder.kPropSize;
+        final ByteArrayOutputStream baOut = new ByteArrayOutputStream(size);
+        if (!decoder.code(new ByteArrayInputStream(data, offset + headerSize, length - headerSize), baOut, size)) {
+            throw new IOException("Corrupt LZMA data");
+        }
+        if (baOut.size() != size) throw new IOException("Corrupt LZMA data, expected " + size + " bytes but got " + baOut.size());
+        return baOut.toByteArray();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.compression;
+
+import java.util.Arrays;
+
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+
+/**
+ * NullCodec stores chunks without compressing them.
+ */
+public final class NullCodec implements ChunkCodec {
+
+    @Override
+    public CompressionMethod getMethod() {
+        return CompressionMethod.NONE;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length) {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+}
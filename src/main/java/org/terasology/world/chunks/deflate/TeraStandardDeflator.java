@@ -1,12 +1,19 @@
 package org.terasology.world.chunks.deflate;
 
+import gnu.trove.map.hash.TShortIntHashMap;
+
+import java.util.Arrays;
+
 import org.terasology.world.chunks.blockdata.TeraArray;
+import org.terasology.world.chunks.blockdata.TeraPaletteArray16Bit;
 import org.terasology.world.chunks.blockdata.TeraSparseArray16Bit;
 import org.terasology.world.chunks.blockdata.TeraSparseArray4Bit;
 import org.terasology.world.chunks.blockdata.TeraSparseArray8Bit;
 
 /**
  * TeraStandardDeflator implements a simple deflation algorithm for 4, 8 and 16-bit dense and sparse arrays.
+ * 16-bit dense arrays with few distinct values are deflated into palette arrays, if these are smaller than the sparse
+ * variant.
  * 
  * @note Currently it is optimized for chunks of size 16x256x16 blocks.
  * @todo Implement deflation for sparse arrays.
@@ -48,6 +55,11 @@ public class TeraStandardDeflator extends TeraVisitingDeflator {
     protected final static int DEFLATE_MINIMUM_16BIT = 8;
     protected final static int DEFLATE_MINIMUM_8BIT = 16;
     protected final static int DEFLATE_MINIMUM_4BIT = 31;
+
+    /*
+     *  Palette variant, 16x256x16 blocks with 8-bit indices: 4 + 12 + (256 * 2) + (65536 / 4 * 4) = 66064
+     */
+    protected final static int DEFLATE_MAXIMUM_PALETTE_16BIT = 256;
     
     public TeraStandardDeflator() {}
 
@@ -87,10 +99,37 @@ public class TeraStandardDeflator extends TeraVisitingDeflator {
             if (packable)
                 return new TeraSparseArray16Bit(sizeX, sizeY, sizeZ, first);
         }
+        TeraArray sparse = null;
         if (packed > DEFLATE_MINIMUM_16BIT) {
-            return new TeraSparseArray16Bit(sizeX, sizeY, sizeZ, inflated, deflated);
+            sparse = new TeraSparseArray16Bit(sizeX, sizeY, sizeZ, inflated, deflated);
         }
-        return null;
+        TeraArray palette = createPaletteArray16Bit(data, sizeX, sizeY, sizeZ);
+        if (sparse == null || (palette != null && palette.getEstimatedMemoryConsumptionInBytes() < sparse.getEstimatedMemoryConsumptionInBytes()))
+            return palette;
+        return sparse;
+    }
+
+    /**
+     * Creates a palette array of the data, if it contains no more than DEFLATE_MAXIMUM_PALETTE_16BIT distinct values.
+     */
+    protected TeraPaletteArray16Bit createPaletteArray16Bit(short[] data, int sizeX, int sizeY, int sizeZ) {
+        final TShortIntHashMap indices = new TShortIntHashMap(DEFLATE_MAXIMUM_PALETTE_16BIT * 2, 0.5f, (short) 0, -1);
+        final short[] palette = new short[DEFLATE_MAXIMUM_PALETTE_16BIT];
+        int paletteSize = 0;
+        for (short value : data) {
+            if (!indices.containsKey(value)) {
+                if (paletteSize == DEFLATE_MAXIMUM_PALETTE_16BIT)
+                    return null;
+                indices.put(value, paletteSize);
+                palette[paletteSize++] = value;
+            }
+        }
+        final int bitsPerEntry = TeraPaletteArray16Bit.bitsPerEntry(paletteSize);
+        final int[] packed = new int[TeraPaletteArray16Bit.wordCount(data.length, bitsPerEntry)];
+        for (int pos = 0; pos < data.length; pos++) {
+            TeraPaletteArray16Bit.setIndex(packed, bitsPerEntry, pos, indices.get(data[pos]));
+        }
+        return new TeraPaletteArray16Bit(sizeX, sizeY, sizeZ, palette, paletteSize, bitsPerEntry, packed);
     }
 
     @Override
@@ -192,4 +231,34 @@ public class TeraStandardDeflator extends TeraVisitingDeflator {
         return null;
     }
 
+    @Override
+    public TeraArray deflatePaletteArray16Bit(short[] palette, int paletteSize, int[] data, int bitsPerEntry, int sizeX, int sizeY, int sizeZ) {
+        final int size = sizeX * sizeY * sizeZ;
+        final int[] remap = new int[paletteSize];
+        Arrays.fill(remap, -1);
+        int used = 0;
+        for (int pos = 0; pos < size; pos++) {
+            final int index = TeraPaletteArray16Bit.getIndex(data, bitsPerEntry, pos);
+            if (remap[index] < 0)
+                remap[index] = used++;
+        }
+        if (used == 1)
+            return new TeraSparseArray16Bit(sizeX, sizeY, sizeZ, palette[TeraPaletteArray16Bit.getIndex(data, bitsPerEntry, 0)]);
+        final int compactBitsPerEntry = TeraPaletteArray16Bit.bitsPerEntry(used);
+        if (used == paletteSize && compactBitsPerEntry == bitsPerEntry)
+            return null;
+
+        // Drops the palette entries no longer used
+        final short[] compactPalette = new short[used];
+        for (int i = 0; i < paletteSize; i++) {
+            if (remap[i] >= 0)
+                compactPalette[remap[i]] = palette[i];
+        }
+        final int[] compactData = new int[TeraPaletteArray16Bit.wordCount(size, compactBitsPerEntry)];
+        for (int pos = 0; pos < size; pos++) {
+            TeraPaletteArray16Bit.setIndex(compactData, compactBitsPerEntry, pos, remap[TeraPaletteArray16Bit.getIndex(data, bitsPerEntry, pos)]);
+        }
+        return new TeraPaletteArray16Bit(sizeX, sizeY, sizeZ, compactPalette, used, compactBitsPerEntry, compactData);
+    }
+
 }
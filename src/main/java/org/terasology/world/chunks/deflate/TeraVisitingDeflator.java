@@ -36,4 +36,6 @@ public abstract class TeraVisitingDeflator extends TeraDeflator {
     
     public abstract TeraArray deflateSparseArray4Bit(byte[][] inflated, byte[] deflated, byte fill, int rowSize, int sizeX, int sizeY, int sizeZ);
 
+    public abstract TeraArray deflatePaletteArray16Bit(short[] palette, int paletteSize, int[] data, int bitsPerEntry, int sizeX, int sizeY, int sizeZ);
+
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.provider;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.terasology.math.Vector3i;
+import org.terasology.utilities.collection.ConcurrentLongObjectMap;
+import org.terasology.world.chunks.Chunk;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.Queues;
+
+/**
+ * ChunkCache keeps the chunks near the players in memory and evicts chunks with the CLOCK algorithm once their
+ * estimated memory consumption exceeds a budget.
+ * <p/>
+ * Every access to a chunk sets its reference bit. Eviction moves a clock hand over the cached chunks: referenced
+ * chunks get their bit cleared and a second chance, the first unreferenced chunk the handler agrees to is evicted.
+ * The memory consumption of a chunk is refreshed whenever the hand passes it, so deflated chunks are accounted
+ * with their reduced size. Each call to {@link #evict(long, int, EvictionHandler)} visits a limited number of chunks,
+ * which allows to evict incrementally.
+ * <p/>
+ * Chunks are keyed by their position packed into a long, see {@link #key(int, int, int)}. Every thread remembers the
+ * last chunk it looked up, so that consecutive lookups within the same chunk don't touch the map at all.
+ */
+public final class ChunkCache {
+
+    /**
+     * Decides which chunks may be evicted and moves them out of memory. All methods are called while the chunk is locked.
+     */
+    public static interface EvictionHandler {
+
+        boolean isEvictable(Chunk chunk);
+
+        /**
+         * Called before the chunk is removed from the cache, so that it can be loaded again as soon as it is no longer cached.
+         */
+        void store(Chunk chunk);
+
+        /**
+         * Called after the chunk has been removed from the cache.
+         */
+        void evicted(Chunk chunk);
+    }
+
+    private static final int KEY_BITS = 21;
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+    private final ConcurrentLongObjectMap<Entry> entries = new ConcurrentLongObjectMap<Entry>(1024);
+    private final Queue<Entry> clock = Queues.newConcurrentLinkedQueue();
+    private final AtomicLong sizeInBytes = new AtomicLong();
+    private final ThreadLocal<Entry> lastEntry = new ThreadLocal<Entry>();
+
+    /**
+     * Packs a chunk position into a long, using 21 bits per axis.
+     */
+    public static long key(int x, int y, int z) {
+        return ((x & KEY_MASK) << (2 * KEY_BITS)) | ((y & KEY_MASK) << KEY_BITS) | (z & KEY_MASK);
+    }
+
+    public Chunk get(Vector3i pos) {
+        return get(pos.x, pos.y, pos.z);
+    }
+
+    public Chunk get(int x, int y, int z) {
+        final long key = key(x, y, z);
+        Entry entry = lastEntry.get();
+        if (entry == null || entry.key != key || entry.removed) {
+            entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            lastEntry.set(entry);
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.chunk;
+    }
+
+    public boolean contains(Vector3i pos) {
+        return entries.containsKey(key(pos.x, pos.y, pos.z));
+    }
+
+    /**
+     * Adds a chunk to the cache, unless a chunk with the same position is already cached.
+     *
+     * @return The chunk which was already cached, or null if the chunk was added
+     */
+    public Chunk putIfAbsent(Vector3i pos, Chunk chunk) {
+        Preconditions.checkNotNull(chunk, "The parameter 'chunk' must not be null");
+        final Entry entry = new Entry(key(pos.x, pos.y, pos.z), chunk);
+        final Entry existing = entries.putIfAbsent(entry.key, entry);
+        if (existing != null) {
+            return existing.chunk;
+        }
+        sizeInBytes.addAndGet(entry.size);
+        clock.offer(entry);
+        return null;
+    }
+
+    public Collection<Chunk> values() {
+        return Collections2.transform(entries.values(), new Function<Entry, Chunk>() {
+            @Override
+            public Chunk apply(Entry entry) {
+                return entry.chunk;
+            }
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated memory consumption of all cached chunks, as of the last time the clock hand passed them.
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            entry.removed = true;
+        }
+        entries.clear();
+        clock.clear();
+        sizeInBytes.set(0);
+    }
+
+    /**
+     * Evicts chunks until the cached chunks fit into the budget or the maximum number of chunks has been visited.
+     *
+     * @return The number of evicted chunks
+     */
+    public int evict(long budgetInBytes, int maxVisits, EvictionHandler handler) {
+        Preconditions.checkNotNull(handler, "The parameter 'handler' must not be null");
+        int evicted = 0;
+        for (int visits = 0; visits < maxVisits && sizeInBytes.get() > budgetInBytes; visits++) {
+            final Entry entry = clock.poll();
+            if (entry == null) {
+                break;
+            }
+            if (entries.get(entry.key) != entry) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                updateSize(entry);
+                clock.offer(entry);
+                continue;
+            }
+            if (!entry.chunk.tryLock()) {
+                clock.offer(entry);
+                continue;
+            }
+            try {
+                updateSize(entry);
+                if (entry.chunk.isDisposed() || !handler.isEvictable(entry.chunk)) {
+                    clock.offer(entry);
+                    continue;
+                }
+                handler.store(entry.chunk);
+                entry.removed = true;
+                entries.remove(entry.key, entry);
+                sizeInBytes.addAndGet(-entry.size);
+                handler.evicted(entry.chunk);
+                evicted++;
+            } finally {
+                entry.chunk.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    private void updateSize(Entry entry) {
+        final int size = entry.chunk.getEstimatedMemoryConsumptionInBytes();
+        sizeInBytes.addAndGet(size - entry.size);
+        entry.size = size;
+    }
+
+    private static class Entry {
+        private final long key;
+        private final Chunk chunk;
+        private int size;
+        // written without synchronization on every access, a lost update only delays the eviction
+        private boolean referenced = true;
+        // checked by the per thread lookup cache, set before the entry leaves the map
+        private volatile boolean removed;
+
+        public Entry(long key, Chunk chunk) {
+            this.key = key;
+            this.chunk = chunk;
+            this.size = chunk.getEstimatedMemoryConsumptionInBytes();
+        }
+    }
+}
@@ -16,14 +16,17 @@
 
 package org.terasology.world.chunks.provider;
 
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -51,76 +54,83 @@ import org.terasology.world.chunks.ChunkReadyEvent;
 import org.terasology.world.chunks.ChunkState;
 import org.terasology.world.chunks.store.ChunkStore;
 import org.terasology.world.localChunkProvider.AbstractChunkTask;
+import org.terasology.world.localChunkProvider.ChunkPipeline;
 import org.terasology.world.localChunkProvider.ChunkRequest;
 import org.terasology.world.localChunkProvider.ChunkTask;
 import org.terasology.world.lighting.InternalLightProcessor;
-import org.terasology.world.localChunkProvider.ShutdownTask;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
 
 /**
  * @author Immortius
  */
-public class LocalChunkProvider implements ChunkProvider {
-    private static final int CACHE_SIZE = (int) (2 * Runtime.getRuntime().maxMemory() / 1048576);
+public class LocalChunkProvider implements ChunkProvider, ChunkPipeline.StageTaskFactory {
     private static final int REQUEST_CHUNK_THREADS = 1;
-    private static final int CHUNK_PROCESSING_THREADS = 8;
+    private static final long EVICTION_INTERVAL = 100;
+    private static final int EVICTION_MAX_VISITS = 256;
+    private static final Vector3i KEEP_REGION_EXTENTS = new Vector3i(4, 0, 4);
     private static final Vector3i LOCAL_REGION_EXTENTS = new Vector3i(1, 0, 1);
 
     private static final Logger logger = LoggerFactory.getLogger(LocalChunkProvider.class);
 
     private final ChunkStore farStore;
 
-    private BlockingQueue<ChunkTask> chunkTasksQueue;
-    private BlockingQueue<ChunkRequest> reviewChunkQueue;
-    private ExecutorService reviewThreads;
-    private ExecutorService chunkProcessingThreads;
+    private ChunkPipeline pipeline;
+    private BlockingQueue<ChunkRequest> chunkRequestQueue;
+    private ExecutorService requestThreads;
+    private ScheduledExecutorService evictionThread;
     private MapGenerator generator;
 
     private Set<CacheRegion> regions = Sets.newHashSet();
 
-    private ConcurrentMap<Vector3i, Chunk> nearCache = Maps.newConcurrentMap();
+    private final ChunkCache nearCache;
+    private volatile List<Region3i> keepRegions = Collections.emptyList();
     private final Set<Vector3i> preparingChunks = Sets.newSetFromMap(Maps.<Vector3i, Boolean>newConcurrentMap());
+    /* Evicted chunks are disposed on the main thread, which may still render their meshes */
+    private final Queue<Chunk> evictedChunks = Queues.newConcurrentLinkedQueue();
     
     private EntityRef worldEntity = EntityRef.NULL;
 
     private ReadWriteLock regionLock = new ReentrantReadWriteLock();
 
     public LocalChunkProvider(ChunkStore farStore, MapGenerator generator) {
+        this(farStore, generator, new ChunkCache());
+    }
+
+    LocalChunkProvider(ChunkStore farStore, MapGenerator generator, ChunkCache nearCache) {
         this.farStore = farStore;
         this.generator = generator;
+        this.nearCache = nearCache;
         
         ChunkMonitor.fireChunkProviderInitialized(this, farStore);
         
-        logger.info("CACHE_SIZE = {} for nearby chunks", CACHE_SIZE);
+        logger.info("Memory budget of {} MB for nearby chunks", getCacheBudget() / 1048576);
+
+        pipeline = new ChunkPipeline(this, new ChunkTaskRelevanceComparator());
 
-        reviewChunkQueue = new PriorityBlockingQueue<ChunkRequest>(32);
-        reviewThreads = Executors.newFixedThreadPool(REQUEST_CHUNK_THREADS);
+        chunkRequestQueue = new PriorityBlockingQueue<ChunkRequest>(32);
+        requestThreads = Executors.newFixedThreadPool(REQUEST_CHUNK_THREADS);
         for (int i = 0; i < REQUEST_CHUNK_THREADS; ++i) {
-            reviewThreads.execute(new Runnable() {
+            requestThreads.execute(new Runnable() {
                 @Override
                 public void run() {
-                    final SingleThreadMonitor monitor = ThreadMonitor.create("Terasology.Chunks.Requests", "Review", "Produce");
+                    final SingleThreadMonitor monitor = ThreadMonitor.create("Terasology.Chunks.Requests", "Produce");
                     try {
                         boolean running = true;
                         Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
                         while (running) {
                             try {
-                                ChunkRequest request = reviewChunkQueue.take();
+                                ChunkRequest request = chunkRequestQueue.take();
                                 switch (request.getType()) {
-                                case REVIEW:
-                                    for (Vector3i pos : request.getRegion()) {
-                                        checkState(pos);
-                                    }
-                                    monitor.increment(0);
-                                    break;
                                 case PRODUCE:
                                     for (Vector3i pos : request.getRegion()) {
                                         checkOrCreateChunk(pos);
                                     }
-                                    monitor.increment(1);
+                                    monitor.increment(0);
                                     break;
                                 case EXIT:
                                     running = false;
@@ -142,46 +152,68 @@ public class LocalChunkProvider implements ChunkProvider {
             });
         }
 
-        chunkTasksQueue = new PriorityBlockingQueue<ChunkTask>(128, new ChunkTaskRelevanceComparator());
-        chunkProcessingThreads = Executors.newFixedThreadPool(CHUNK_PROCESSING_THREADS);
-        for (int i = 0; i < CHUNK_PROCESSING_THREADS; ++i) {
-            chunkProcessingThreads.submit(new Runnable() {
-                @Override
-                public void run() {
-                    final SingleThreadMonitor monitor = ThreadMonitor.create("Terasology.Chunks.Processing", "Tasks");
-                    try {
-                        boolean running = true;
-                        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-                        while (running) {
-                            try {
-                                ChunkTask request = chunkTasksQueue.take();
-                                if (request.isShutdownRequest()) {
-                                    running = false;
-                                    break;
-                                }
-                                request.enact();
-                                monitor.increment(0);
-                            } catch (InterruptedException e) {
-                                monitor.addError(e);
-                                logger.error("Thread interrupted", e);
-                            } catch (Exception e) {
-                                monitor.addError(e);
-                                logger.error("Error in thread", e);
-                            }
-                        }
-                        logger.debug("Thread shutdown safely");
-                    } finally {
-                        monitor.setActive(false);
-                    }
+        startEvictionThread();
+    }
+
+    private void startEvictionThread() {
+        evictionThread = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Chunk Eviction");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        evictionThread.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evict(getCacheBudget());
+                } catch (Exception e) {
+                    logger.error("Error evicting chunks", e);
                 }
-            });
+            }
+        }, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evicts chunks until the cache fits the budget. The evicted chunks are stored right away, but only disposed by
+     * the next {@link #update()}.
+     *
+     * @return The number of evicted chunks
+     */
+    int evict(long budgetInBytes) {
+        int evicted = nearCache.evict(budgetInBytes, EVICTION_MAX_VISITS, evictionHandler);
+        if (evicted > 0) {
+            logger.debug("Evicted {} chunks, {} chunks with {} bytes remain in the cache", evicted, nearCache.size(), nearCache.getSizeInBytes());
         }
+        return evicted;
+    }
+
+    private void disposeEvictedChunks() {
+        Chunk chunk;
+        while ((chunk = evictedChunks.poll()) != null) {
+            chunk.dispose();
+        }
+    }
+
+    private long getCacheBudget() {
+        int budget = CoreRegistry.get(org.terasology.config.Config.class).getAdvanced().getChunkCacheBudget();
+        if (budget > 0) {
+            return budget * 1048576L;
+        }
+        return Runtime.getRuntime().maxMemory() / 2;
     }
 
     public void setWorldEntity(EntityRef worldEntity) {
         this.worldEntity = worldEntity;
     }
 
+    public ChunkPipeline getPipeline() {
+        return pipeline;
+    }
+
     @Override
     public void addRegionEntity(EntityRef entity, int distance) {
         CacheRegion region = new CacheRegion(entity, distance);
@@ -192,7 +224,7 @@ public class LocalChunkProvider implements ChunkProvider {
         } finally  {
             regionLock.writeLock().unlock();
         }
-        reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.PRODUCE, region.getRegion().expand(new Vector3i(2, 0, 2))));
+        chunkRequestQueue.offer(new ChunkRequest(ChunkRequest.RequestType.PRODUCE, region.getRegion().expand(new Vector3i(2, 0, 2))));
     }
 
     @Override
@@ -207,47 +239,23 @@ public class LocalChunkProvider implements ChunkProvider {
 
     @Override
     public void update() {
+        disposeEvictedChunks();
         regionLock.readLock().lock();
         try {
             for (CacheRegion cacheRegion : regions) {
                 cacheRegion.update();
                 if (cacheRegion.isDirty()) {
                     cacheRegion.setUpToDate();
-                    reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.PRODUCE, cacheRegion.getRegion().expand(new Vector3i(2, 0, 2))));
+                    chunkRequestQueue.offer(new ChunkRequest(ChunkRequest.RequestType.PRODUCE, cacheRegion.getRegion().expand(new Vector3i(2, 0, 2))));
                 }
             }
 
-            PerformanceMonitor.startActivity("Review cache size");
-            if (nearCache.size() > CACHE_SIZE) {
-                logger.debug("Compacting cache");
-                Iterator<Vector3i> iterator = nearCache.keySet().iterator();
-                while (iterator.hasNext()) {
-                    Vector3i pos = iterator.next();
-                    boolean keep = false;
-                    for (CacheRegion region : regions) {
-                        if (region.getRegion().expand(new Vector3i(4, 0, 4)).encompasses(pos)) {
-                            keep = true;
-                            break;
-                        }
-                    }
-                    if (!keep) {
-                        // TODO: need some way to not dispose chunks being edited or processed (or do so safely)
-                        Chunk chunk = nearCache.get(pos);
-                        if (chunk.isLocked()) {
-                            continue;
-                        }
-                        chunk.lock();
-                        try {
-                            farStore.put(chunk);
-                            iterator.remove();
-                            chunk.dispose();
-                        } finally {
-                            chunk.unlock();
-                        }
-                    }
-
-                }
+            PerformanceMonitor.startActivity("Review cache regions");
+            List<Region3i> newKeepRegions = Lists.newArrayListWithCapacity(regions.size());
+            for (CacheRegion region : regions) {
+                newKeepRegions.add(region.getRegion().expand(KEEP_REGION_EXTENTS));
             }
+            keepRegions = newKeepRegions;
             PerformanceMonitor.endActivity();
         } finally {
             regionLock.readLock().unlock();
@@ -256,12 +264,12 @@ public class LocalChunkProvider implements ChunkProvider {
 
     @Override
     public boolean isChunkAvailable(Vector3i pos) {
-        return nearCache.containsKey(pos);
+        return nearCache.contains(pos);
     }
 
     @Override
     public Chunk getChunk(int x, int y, int z) {
-        return getChunk(new Vector3i(x, y, z));
+        return nearCache.get(x, y, z);
     }
 
     @Override
@@ -271,25 +279,28 @@ public class LocalChunkProvider implements ChunkProvider {
 
     @Override
     public void dispose() {
-        for (int i = 0; i < REQUEST_CHUNK_THREADS; ++i) {
-            reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.EXIT, Region3i.EMPTY));
+        evictionThread.shutdown();
+        try {
+            if (!evictionThread.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Timed out awaiting chunk eviction thread termination");
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted awaiting chunk eviction thread termination");
         }
-        for (int i = 0; i < CHUNK_PROCESSING_THREADS; ++i) {
-            chunkTasksQueue.offer(new ShutdownTask());
+        for (int i = 0; i < REQUEST_CHUNK_THREADS; ++i) {
+            chunkRequestQueue.offer(new ChunkRequest(ChunkRequest.RequestType.EXIT, Region3i.EMPTY));
         }
-        reviewThreads.shutdown();
-        chunkProcessingThreads.shutdown();
+        requestThreads.shutdown();
         try {
-            if (!reviewThreads.awaitTermination(10, TimeUnit.SECONDS)) {
-                logger.warn("Timed out awaiting chunk review thread termination");
-            }
-            if (!chunkProcessingThreads.awaitTermination(10, TimeUnit.SECONDS)) {
-                logger.warn("Timed out awaiting chunk processing thread termination");
+            if (!requestThreads.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Timed out awaiting chunk request thread termination");
             }
         } catch (InterruptedException e) {
-            logger.warn("Interrupted awaiting chunk thread termination");
+            logger.warn("Interrupted awaiting chunk request thread termination");
         }
+        pipeline.shutdown(10, TimeUnit.SECONDS);
 
+        disposeEvictedChunks();
         for (Chunk chunk : nearCache.values()) {
             farStore.put(chunk);
             chunk.dispose();
@@ -314,7 +325,7 @@ public class LocalChunkProvider implements ChunkProvider {
             PerformanceMonitor.startActivity("Check chunk in cache");
             if (preparingChunks.add(chunkPos)) {
                 if (farStore.contains(chunkPos)) {
-                    chunkTasksQueue.offer(new AbstractChunkTask(chunkPos, this) {
+                    pipeline.submit(ChunkPipeline.Stage.LOAD, new AbstractChunkTask(chunkPos, this) {
                         @Override
                         public void enact() {
                             Chunk chunk = farStore.get(getPosition());
@@ -322,16 +333,16 @@ public class LocalChunkProvider implements ChunkProvider {
                                 logger.warn("Chunk {} is already in the near cache", getPosition());
                             }
                             preparingChunks.remove(getPosition());
+                            pipeline.setState(getPosition(), chunk.getChunkState());
                             if (chunk.getChunkState() == ChunkState.COMPLETE) {
                                 for (Vector3i adjPos : Region3i.createFromCenterExtents(getPosition(), LOCAL_REGION_EXTENTS)) {
                                     checkChunkReady(adjPos);
                                 }
                             }
-                            reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.REVIEW, Region3i.createFromCenterExtents(getPosition(), LOCAL_REGION_EXTENTS)));
                         }
                     });
                 } else {
-                    chunkTasksQueue.offer(new AbstractChunkTask(chunkPos, this) {
+                    pipeline.submit(ChunkPipeline.Stage.GENERATE, new AbstractChunkTask(chunkPos, this) {
                         @Override
                         public void enact() {
                             Chunk chunk = generator.generateChunk(getPosition());
@@ -339,190 +350,144 @@ public class LocalChunkProvider implements ChunkProvider {
                                 logger.warn("Chunk {} is already in the near cache", getPosition());
                             }
                             preparingChunks.remove(getPosition());
-                            reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.REVIEW, Region3i.createFromCenterExtents(getPosition(), LOCAL_REGION_EXTENTS)));
+                            pipeline.setState(getPosition(), chunk.getChunkState());
                         }
                     });
                 }
             }
             PerformanceMonitor.endActivity();
-        } else {
-            checkState(chunk);
+        } else if (chunk.getChunkState() != ChunkState.COMPLETE) {
+            pipeline.review(chunkPos);
         }
     }
 
-    private void checkState(Vector3i pos) {
-        Chunk chunk = getChunk(pos);
-        if (chunk != null) {
-            checkState(chunk);
-        }
-    }
-
-    private void checkState(Chunk chunk) {
-        switch (chunk.getChunkState()) {
+    @Override
+    public ChunkTask createStageTask(Vector3i pos, ChunkState state) {
+        switch (state) {
             case ADJACENCY_GENERATION_PENDING:
-                checkReadyForSecondPass(chunk.getPos());
-                break;
+                return createSecondPassTask(pos);
             case INTERNAL_LIGHT_GENERATION_PENDING:
-                checkReadyToDoInternalLighting(chunk.getPos());
-                break;
+                return createInternalLightingTask(pos);
             case LIGHT_PROPAGATION_PENDING:
-                checkReadyToPropagateLighting(chunk.getPos());
-                break;
+                return createLightPropagationTask(pos);
             case FULL_LIGHT_CONNECTIVITY_PENDING:
-                checkComplete(chunk.getPos());
-                break;
+                return createCompletionTask(pos);
             default:
-                break;
+                return null;
         }
     }
 
-    private void checkReadyForSecondPass(Vector3i pos) {
-        Chunk chunk = getChunk(pos);
-        if (chunk != null && chunk.getChunkState() == ChunkState.ADJACENCY_GENERATION_PENDING) {
-            for (Vector3i adjPos : Region3i.createFromCenterExtents(pos, LOCAL_REGION_EXTENTS)) {
-                if (!adjPos.equals(pos)) {
-                    Chunk adjChunk = getChunk(adjPos);
-                    if (adjChunk == null) {
+    private ChunkTask createSecondPassTask(Vector3i pos) {
+        logger.debug("Queueing for adjacency generation {}", pos);
+        return new AbstractChunkTask(pos, this) {
+            @Override
+            public void enact() {
+                WorldView view = WorldView.createLocalView(getPosition(), getProvider());
+                if (view == null) {
+                    return;
+                }
+                view.lock();
+                try {
+                    if (!view.isValidView()) {
                         return;
                     }
-                }
-            }
-            logger.debug("Queueing for adjacency generation {}", pos);
-            chunkTasksQueue.offer(new AbstractChunkTask(pos, this) {
-                @Override
-                public void enact() {
-                    WorldView view = WorldView.createLocalView(getPosition(), getProvider());
-                    if (view == null) {
+                    Chunk chunk = getProvider().getChunk(getPosition());
+                    if (chunk.getChunkState() != ChunkState.ADJACENCY_GENERATION_PENDING) {
                         return;
                     }
-                    view.lock();
-                    try {
-                        if (!view.isValidView()) {
-                            return;
-                        }
-                        Chunk chunk = getProvider().getChunk(getPosition());
-                        if (chunk.getChunkState() != ChunkState.ADJACENCY_GENERATION_PENDING) {
-                            return;
-                        }
 
-                        generator.secondPassChunk(getPosition(), view);
-                        chunk.setChunkState(ChunkState.INTERNAL_LIGHT_GENERATION_PENDING);
-                        reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.REVIEW, Region3i.createFromCenterExtents(getPosition(), LOCAL_REGION_EXTENTS)));
-                    } finally {
-                        view.unlock();
-                    }
+                    generator.secondPassChunk(getPosition(), view);
+                    chunk.setChunkState(ChunkState.INTERNAL_LIGHT_GENERATION_PENDING);
+                    pipeline.setState(getPosition(), ChunkState.INTERNAL_LIGHT_GENERATION_PENDING);
+                } finally {
+                    view.unlock();
                 }
-            });
-        }
+            }
+        };
     }
 
-    private void checkReadyToDoInternalLighting(Vector3i pos) {
-        Chunk chunk = getChunk(pos);
-        if (chunk != null && chunk.getChunkState() == ChunkState.INTERNAL_LIGHT_GENERATION_PENDING) {
-            for (Vector3i adjPos : Region3i.createFromCenterExtents(pos, LOCAL_REGION_EXTENTS)) {
-                if (!adjPos.equals(pos)) {
-                    Chunk adjChunk = getChunk(adjPos);
-                    if (adjChunk == null || adjChunk.getChunkState().compareTo(ChunkState.INTERNAL_LIGHT_GENERATION_PENDING) < 0) {
-                        return;
-                    }
+    private ChunkTask createInternalLightingTask(Vector3i pos) {
+        logger.debug("Queueing for internal light generation {}", pos);
+        return new AbstractChunkTask(pos, this) {
+            @Override
+            public void enact() {
+                Chunk chunk = getProvider().getChunk(getPosition());
+                if (chunk == null) {
+                    return;
                 }
-            }
-            logger.debug("Queueing for internal light generation {}", pos);
-            chunkTasksQueue.offer(new AbstractChunkTask(pos, this) {
-                @Override
-                public void enact() {
-                    Chunk chunk = getProvider().getChunk(getPosition());
-                    if (chunk == null) {
-                        return;
-                    }
 
-                    chunk.lock();
-                    try {
-                        if (chunk.isDisposed() || chunk.getChunkState() != ChunkState.INTERNAL_LIGHT_GENERATION_PENDING) {
-                            return;
-                        }
-                        InternalLightProcessor.generateInternalLighting(chunk);
-                        chunk.setChunkState(ChunkState.LIGHT_PROPAGATION_PENDING);
-                        reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.REVIEW, Region3i.createFromCenterExtents(getPosition(), LOCAL_REGION_EXTENTS)));
-                    } finally {
-                        chunk.unlock();
+                chunk.lock();
+                try {
+                    if (chunk.isDisposed() || chunk.getChunkState() != ChunkState.INTERNAL_LIGHT_GENERATION_PENDING) {
+                        return;
                     }
+                    InternalLightProcessor.generateInternalLighting(chunk);
+                    chunk.setChunkState(ChunkState.LIGHT_PROPAGATION_PENDING);
+                    pipeline.setState(getPosition(), ChunkState.LIGHT_PROPAGATION_PENDING);
+                } finally {
+                    chunk.unlock();
                 }
-            });
-        }
+            }
+        };
     }
 
-    private void checkReadyToPropagateLighting(Vector3i pos) {
-        Chunk chunk = getChunk(pos);
-        if (chunk != null && chunk.getChunkState() == ChunkState.LIGHT_PROPAGATION_PENDING) {
-            for (Vector3i adjPos : Region3i.createFromCenterExtents(pos, LOCAL_REGION_EXTENTS)) {
-                if (!adjPos.equals(pos)) {
-                    Chunk adjChunk = getChunk(adjPos);
-                    if (adjChunk == null || adjChunk.getChunkState().compareTo(ChunkState.LIGHT_PROPAGATION_PENDING) < 0) {
+    private ChunkTask createLightPropagationTask(Vector3i pos) {
+        logger.debug("Queueing for light propagation pass {}", pos);
+        return new AbstractChunkTask(pos, this) {
+            @Override
+            public void enact() {
+                WorldView worldView = WorldView.createLocalView(getPosition(), getProvider());
+                if (worldView == null) {
+                    return;
+                }
+                worldView.lock();
+                try {
+                    if (!worldView.isValidView()) {
                         return;
                     }
-                }
-            }
-            logger.debug("Queueing for light propagation pass {}", pos);
-            chunkTasksQueue.offer(new AbstractChunkTask(pos, this) {
-                @Override
-                public void enact() {
-                    WorldView worldView = WorldView.createLocalView(getPosition(), getProvider());
-                    if (worldView == null) {
+                    Chunk chunk = getProvider().getChunk(getPosition());
+                    if (chunk.getChunkState() != ChunkState.LIGHT_PROPAGATION_PENDING) {
                         return;
                     }
-                    worldView.lock();
-                    try {
-                        if (!worldView.isValidView()) {
-                            return;
-                        }
-                        Chunk chunk = getProvider().getChunk(getPosition());
-                        if (chunk.getChunkState() != ChunkState.LIGHT_PROPAGATION_PENDING) {
-                            return;
-                        }
 
-                        new LightPropagator(worldView).propagateOutOfTargetChunk();
-                        chunk.setChunkState(ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING);
-                        reviewChunkQueue.offer(new ChunkRequest(ChunkRequest.RequestType.REVIEW, Region3i.createFromCenterExtents(getPosition(), LOCAL_REGION_EXTENTS)));
-                    } finally {
-                        worldView.unlock();
-                    }
+                    new LightPropagator(worldView).propagateOutOfTargetChunk();
+                    chunk.setChunkState(ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING);
+                    pipeline.setState(getPosition(), ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING);
+                } finally {
+                    worldView.unlock();
                 }
-            });
-        }
+            }
+        };
     }
 
-    private void checkComplete(Vector3i pos) {
-        Chunk chunk = getChunk(pos);
-        if (chunk != null && chunk.getChunkState() == ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING) {
-            for (Vector3i adjPos : Region3i.createFromCenterExtents(pos, LOCAL_REGION_EXTENTS)) {
-                if (!adjPos.equals(pos)) {
-                    Chunk adjChunk = getChunk(adjPos);
-                    if (adjChunk == null || adjChunk.getChunkState().compareTo(ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING) < 0) {
-                        return;
-                    }
+    private ChunkTask createCompletionTask(Vector3i pos) {
+        return new AbstractChunkTask(pos, this) {
+            @Override
+            public void enact() {
+                Chunk chunk = getChunk(getPosition());
+                if (chunk == null || chunk.getChunkState() != ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING) {
+                    return;
                 }
-            }
-            logger.debug("Now complete {}", pos);
-            chunk.setChunkState(ChunkState.COMPLETE);
-            AdvancedConfig config = CoreRegistry.get(org.terasology.config.Config.class).getAdvanced();
-            if (config.isChunkDeflationEnabled()) {
-                if (!chunkTasksQueue.offer(new AbstractChunkTask(pos, this) {
-                    @Override
-                    public void enact() {
-                        Chunk chunk = getChunk(getPosition());
-                        if (chunk != null) {
-                            chunk.deflate();
+                logger.debug("Now complete {}", getPosition());
+                chunk.setChunkState(ChunkState.COMPLETE);
+                pipeline.setState(getPosition(), ChunkState.COMPLETE);
+                AdvancedConfig config = CoreRegistry.get(org.terasology.config.Config.class).getAdvanced();
+                if (config.isChunkDeflationEnabled()) {
+                    pipeline.submit(ChunkPipeline.Stage.DEFLATION, new AbstractChunkTask(getPosition(), getProvider()) {
+                        @Override
+                        public void enact() {
+                            Chunk chunk = getChunk(getPosition());
+                            if (chunk != null) {
+                                chunk.deflate();
+                            }
                         }
-                    }
-                })) {
-                    logger.warn("LocalChunkProvider.chunkTasksQueue rejected deflation task for chunk {}", pos);
+                    });
+                }
+                for (Vector3i adjPos : Region3i.createFromCenterExtents(getPosition(), LOCAL_REGION_EXTENTS)) {
+                    checkChunkReady(adjPos);
                 }
             }
-            for (Vector3i adjPos : Region3i.createFromCenterExtents(pos, LOCAL_REGION_EXTENTS)) {
-                checkChunkReady(adjPos);
-            }
-        }
+        };
     }
 
     private void checkChunkReady(Vector3i pos) {
@@ -537,6 +502,30 @@ public class LocalChunkProvider implements ChunkProvider {
         }
     }
 
+    private final ChunkCache.EvictionHandler evictionHandler = new ChunkCache.EvictionHandler() {
+        @Override
+        public boolean isEvictable(Chunk chunk) {
+            Vector3i pos = chunk.getPos();
+            for (Region3i region : keepRegions) {
+                if (region.encompasses(pos)) {
+                    return false;
+                }
+            }
+            return !pipeline.isScheduled(pos);
+        }
+
+        @Override
+        public void store(Chunk chunk) {
+            farStore.put(chunk);
+        }
+
+        @Override
+        public void evicted(Chunk chunk) {
+            pipeline.remove(chunk.getPos());
+            evictedChunks.offer(chunk);
+        }
+    };
+
     private static class CacheRegion {
         private EntityRef entity;
         private int distance;
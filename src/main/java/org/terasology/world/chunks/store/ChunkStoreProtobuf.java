@@ -17,13 +17,12 @@ package org.terasology.world.chunks.store;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
@@ -33,20 +32,19 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.math.Vector3i;
 import org.terasology.monitoring.ThreadMonitor;
 import org.terasology.monitoring.impl.SingleThreadMonitor;
-import org.terasology.protobuf.ChunksProtobuf;
 import org.terasology.protobuf.ChunksProtobuf.CompressedChunks;
 import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressedChunk;
 import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
 import org.terasology.world.chunks.Chunk;
 import org.terasology.world.chunks.Chunks;
+import org.terasology.world.chunks.compression.ChunkCodec;
+import org.terasology.world.chunks.compression.ChunkCodecs;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
@@ -58,7 +56,9 @@ import com.google.protobuf.CodedOutputStream;
 /**
  * ChunkStoreProtobuf implements a compressed storage for chunks.
  * <p/>
- * Chunks are serialized using protobuf and compressed using GZIP. Serialization and compression are delegated to background threads, 
+ * Chunks are serialized using protobuf and compressed using the configured {@link ChunkCodec}. The compression method is
+ * stored along with every chunk, so a store can contain chunks compressed with different codecs.
+ * Serialization and compression are delegated to background threads, 
  * whereas decompression and deserialization happen on retrieval in the calling thread.
  * 
  * @author Manuel Brotz <manu.brotz@gmx.ch>
@@ -68,6 +68,7 @@ public class ChunkStoreProtobuf implements ChunkStore, Serializable {
     static final long serialVersionUID = -8168985892342356264L;
 
     private static final int NUM_DISPOSAL_THREADS = 2;
+    private static final int FORMAT_VERSION = 1;
 
     private static final Logger logger = LoggerFactory.getLogger(ChunkStoreProtobuf.class);
 
@@ -77,29 +78,33 @@ public class ChunkStoreProtobuf implements ChunkStore, Serializable {
     private transient ExecutorService compressionThreads;
     private transient AtomicInteger finishedThreads;
 
+    /* 
+     * Stores of format version 0 contain GZIP compressed chunks, since version 1 the compressed data of every chunk 
+     * is prefixed with its compression method. Stores deserialized from the old java object serialization format
+     * are of version 0, because field initializers are not run on deserialization.
+     */
+    private int formatVersion = FORMAT_VERSION;
     private final ConcurrentMap<Vector3i, byte[]> serializedChunks = Maps.newConcurrentMap();
     private final AtomicInteger sizeInByte = new AtomicInteger(0);
     private final AtomicBoolean running = new AtomicBoolean(true);
 
+    /**
+     * Decodes a chunk from data produced by {@code ChunkStoreProtobuf.encode(Chunk)}.
+     */
     protected Chunk decode(byte[] data) throws IOException {
         Preconditions.checkNotNull(data, "The parameter 'data' must not be null");
-        final ByteArrayInputStream baIn = new ByteArrayInputStream(data);
-        final GZIPInputStream gzIn = new GZIPInputStream(baIn);
-        final CodedInputStream cIn = CodedInputStream.newInstance(gzIn);
-        final ChunksProtobuf.Chunk message = ChunksProtobuf.Chunk.parseFrom(cIn);
-        return Chunks.getInstance().decode(message); 
+        return Chunks.getInstance().deserialize(ByteBuffer.wrap(ChunkCodecs.getInstance().decode(data)));
     }
     
+    /**
+     * Encodes a chunk using the configured compression codec. The returned data is prefixed with the compression method.
+     */
     protected byte[] encode(Chunk chunk) throws IOException {
         Preconditions.checkNotNull(chunk, "The parameter 'chunk' must not be null");
-        final ChunksProtobuf.Chunk message = Chunks.getInstance().encode(chunk);
-        final ByteArrayOutputStream baOut = new ByteArrayOutputStream();
-        final GZIPOutputStream gzOut = new GZIPOutputStream(baOut);
-        final CodedOutputStream cOut = CodedOutputStream.newInstance(gzOut);
-        message.writeTo(cOut);
-        cOut.flush();
-        gzOut.close();
-        return baOut.toByteArray();
+        final ByteBuffer serialized = Chunks.getInstance().serialize(chunk);
+        final ChunkCodecs codecs = ChunkCodecs.getInstance();
+        return codecs.encode(codecs.getDefaultCodec(), serialized.array(), serialized.arrayOffset() + serialized.position(),
+                serialized.remaining());
     }
     
     protected void saveChunk(Chunk chunk) {
@@ -180,7 +185,8 @@ public class ChunkStoreProtobuf implements ChunkStore, Serializable {
     
     /**
      * ProtobufHandler implements support for encoding/decoding the entire chunk store into/from protobuf messages.
-     * Chunks are compressed using GZIP.
+     * The compression method of every chunk is stored in the chunk message, chunks without a compression method
+     * fall back to the compression method of the enclosing message.
      *
      * @author Manuel Brotz <manu.brotz@gmx.ch>
      */
@@ -200,15 +206,23 @@ public class ChunkStoreProtobuf implements ChunkStore, Serializable {
                 logger.error("The chunk store is not ready to be encoded");
                 throw new ChunkStoreNotReadyException("The chunk store is not ready to be encoded");
             }
+            final ChunkCodecs codecs = ChunkCodecs.getInstance();
             final CompressedChunks.Builder chunksBuilder = CompressedChunks.newBuilder();
             chunksBuilder.setMethod(CompressionMethod.GZIP);
             for (final Entry<Vector3i, byte[]> chunk : chunks.serializedChunks.entrySet()) {
                 final Vector3i key = chunk.getKey();
+                final byte[] data = chunk.getValue();
                 final CompressedChunk.Builder chunkBuilder = CompressedChunk.newBuilder();
                 chunkBuilder.setX(key.x);
                 chunkBuilder.setY(key.y);
                 chunkBuilder.setZ(key.z);
-                chunkBuilder.setData(ByteString.copyFrom(chunk.getValue()));
+                try {
+                    chunkBuilder.setMethod(codecs.getMethod(data));
+                } catch (IOException e) {
+                    logger.error("Skipping chunk {} with unknown compression method", key);
+                    continue;
+                }
+                chunkBuilder.setData(ByteString.copyFrom(data, 1, data.length - 1));
                 chunksBuilder.addChunks(chunkBuilder.build());
             }
             return chunksBuilder.build();
@@ -228,8 +242,7 @@ public class ChunkStoreProtobuf implements ChunkStore, Serializable {
             if (store.initialized) throw new IllegalStateException("The chunk store has already been initialized");
             if (!message.hasMethod())
                 throw new IllegalArgumentException("Illformed protobuf message. Missing compression method");
-            if (message.getMethod() != CompressionMethod.GZIP)
-                throw new IllegalArgumentException("Unsupported compression method: " + message.getMethod());
+            final ChunkCodecs codecs = ChunkCodecs.getInstance();
             for (final CompressedChunk chunk : message.getChunksList()) {
                 if (!chunk.hasX())
                     throw new IllegalArgumentException("Illformed protobuf message. Missing x-coordinate");
@@ -239,8 +252,11 @@ public class ChunkStoreProtobuf implements ChunkStore, Serializable {
                     throw new IllegalArgumentException("Illformed protobuf message. Missing z-coordinate");
                 if (!chunk.hasData())
                     throw new IllegalArgumentException("Illformed protobuf message. Missing chunk data");
+                final CompressionMethod method = chunk.hasMethod() ? chunk.getMethod() : message.getMethod();
+                if (!codecs.isSupported(method))
+                    throw new IllegalArgumentException("Unsupported compression method: " + method);
                 final Vector3i pos = new Vector3i(chunk.getX(), chunk.getY(), chunk.getZ());
-                final byte[] data = chunk.getData().toByteArray();
+                final byte[] data = codecs.frame(method, chunk.getData().toByteArray());
                 store.serializedChunks.put(pos, data);
                 store.sizeInByte.addAndGet(data.length);
             }
@@ -250,6 +266,14 @@ public class ChunkStoreProtobuf implements ChunkStore, Serializable {
     public void setup() {
         if (initialized) return;
         initialized = true;
+        if (formatVersion < FORMAT_VERSION) {
+            final ChunkCodecs codecs = ChunkCodecs.getInstance();
+            for (final Entry<Vector3i, byte[]> entry : serializedChunks.entrySet()) {
+                entry.setValue(codecs.frame(CompressionMethod.GZIP, entry.getValue()));
+                sizeInByte.incrementAndGet();
+            }
+            formatVersion = FORMAT_VERSION;
+        }
         queuedChunks = Maps.newConcurrentMap();
         compressionQueue = Queues.newLinkedBlockingDeque();
         finishedThreads = new AtomicInteger(0);
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.math.Vector3i;
+import org.terasology.monitoring.ThreadMonitor;
+import org.terasology.monitoring.impl.SingleThreadMonitor;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.chunks.Chunks;
+import org.terasology.world.chunks.compression.ChunkCodecs;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+
+/**
+ * ChunkStoreRegionFile implements a disk backed storage for chunks.
+ * <p/>
+ * Chunks are grouped into regions of {@code RegionFile.REGION_SIZE * RegionFile.REGION_SIZE} chunks and every region
+ * is stored in its own {@link RegionFile} inside the store directory. Only a bounded number of region files is kept
+ * open at any time, so the heap usage of the store does not depend on the number of stored chunks.
+ * <p/>
+ * Like {@link ChunkStoreProtobuf} chunks are serialized using protobuf and compressed using the configured
+ * {@link org.terasology.world.chunks.compression.ChunkCodec}. Every chunk is prefixed with its compression method
+ * as described in {@link ChunkCodecs}. Serialization, compression and writing are delegated to background threads,
+ * whereas reading, decompression and deserialization happen on retrieval in the calling thread.
+ */
+public class ChunkStoreRegionFile implements ChunkStore {
+
+    private static final int NUM_DISPOSAL_THREADS = 2;
+    private static final int MAX_OPEN_REGIONS = 32;
+
+    private static final Pattern REGION_FILE_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.(-?\\d+)\\.region");
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkStoreRegionFile.class);
+
+    private final File directory;
+
+    private final ConcurrentMap<Vector3i, Chunk> queuedChunks = Maps.newConcurrentMap();
+    private final BlockingQueue<Chunk> compressionQueue = Queues.newLinkedBlockingDeque();
+    private final ExecutorService compressionThreads;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    private final Map<Vector3i, RegionFile> openRegions = new LinkedHashMap<Vector3i, RegionFile>(MAX_OPEN_REGIONS, 0.75f, true);
+    private final AtomicLong sizeInBytes = new AtomicLong(0);
+
+    public ChunkStoreRegionFile(File directory) {
+        Preconditions.checkNotNull(directory, "The parameter 'directory' must not be null");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create the chunk store directory " + directory);
+        }
+        this.directory = directory;
+
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (REGION_FILE_NAME.matcher(file.getName()).matches()) {
+                    sizeInBytes.addAndGet(file.length());
+                }
+            }
+        }
+
+        compressionThreads = Executors.newFixedThreadPool(NUM_DISPOSAL_THREADS);
+        for (int i = 0; i < NUM_DISPOSAL_THREADS; ++i) {
+            compressionThreads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final SingleThreadMonitor monitor = ThreadMonitor.create("Terasology.Chunks.Storage", "Stored Chunks");
+                    try {
+                        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                        while (running.get()) {
+                            try {
+                                Chunk chunk = compressionQueue.poll(500, TimeUnit.MILLISECONDS);
+                                if (chunk != null) {
+                                    saveChunk(chunk);
+                                    monitor.increment(0);
+                                }
+                            } catch (InterruptedException e) {
+                                monitor.addError(e);
+                                logger.error("Thread interrupted", e);
+                            } catch (Exception e) {
+                                monitor.addError(e);
+                                logger.error("Error in thread", e);
+                            }
+                        }
+                        Chunk chunk;
+                        while ((chunk = compressionQueue.poll()) != null) {
+                            try {
+                                saveChunk(chunk);
+                                monitor.increment(0);
+                            } catch (Exception e) {
+                                monitor.addError(e);
+                                logger.error("Error in thread", e);
+                            }
+                        }
+                        logger.debug("Thread shutdown safely");
+                    } finally {
+                        monitor.setActive(false);
+                    }
+                }
+            });
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    protected Chunk decode(byte[] data) throws IOException {
+        Preconditions.checkNotNull(data, "The parameter 'data' must not be null");
+        return Chunks.getInstance().deserialize(ByteBuffer.wrap(ChunkCodecs.getInstance().decode(data)));
+    }
+
+    protected byte[] encode(Chunk chunk) throws IOException {
+        Preconditions.checkNotNull(chunk, "The parameter 'chunk' must not be null");
+        final ByteBuffer serialized = Chunks.getInstance().serialize(chunk);
+        final ChunkCodecs codecs = ChunkCodecs.getInstance();
+        return codecs.encode(codecs.getDefaultCodec(), serialized.array(), serialized.arrayOffset() + serialized.position(),
+                serialized.remaining());
+    }
+
+    protected void saveChunk(Chunk chunk) {
+        Preconditions.checkNotNull(chunk, "The parameter 'chunk' must not be null");
+        final Vector3i pos = chunk.getPos();
+        try {
+            try {
+                final byte[] data = encode(chunk);
+                synchronized (openRegions) {
+                    // skip the write if a newer version of the chunk has been queued in the meantime
+                    if (queuedChunks.get(pos) == chunk) {
+                        final RegionFile region = getRegion(pos, true);
+                        sizeInBytes.addAndGet(region.write(RegionFile.slotIndex(pos.x, pos.z), data));
+                    }
+                }
+            } finally {
+                queuedChunks.remove(pos, chunk);
+            }
+        } catch (Exception e) {
+            logger.error("Failed saving chunk {}", e, pos);
+            throw new RuntimeException("Failed saving chunk " + pos);
+        }
+    }
+
+    private static Vector3i regionPosFor(Vector3i chunkPos) {
+        return new Vector3i(RegionFile.regionPos(chunkPos.x), chunkPos.y, RegionFile.regionPos(chunkPos.z));
+    }
+
+    private File regionFileFor(Vector3i regionPos) {
+        return new File(directory, "r." + regionPos.x + "." + regionPos.y + "." + regionPos.z + ".region");
+    }
+
+    /**
+     * Returns the region file containing the given chunk, opening it if necessary. The least recently used region
+     * file gets closed if too many are open, therefore callers must hold the lock on {@code openRegions} as long as
+     * they use the returned region file.
+     *
+     * @param create Whether the region file should be created if it does not exist yet
+     * @return The region file or null if it does not exist and create is false
+     */
+    private RegionFile getRegion(Vector3i chunkPos, boolean create) throws IOException {
+        final Vector3i regionPos = regionPosFor(chunkPos);
+        RegionFile region = openRegions.get(regionPos);
+        if (region != null) return region;
+        final File file = regionFileFor(regionPos);
+        final boolean existed = file.isFile();
+        if (!create && !existed) return null;
+        region = new RegionFile(file);
+        if (!existed) {
+            sizeInBytes.addAndGet(region.sizeInBytes());
+        }
+        openRegions.put(regionPos, region);
+        if (openRegions.size() > MAX_OPEN_REGIONS) {
+            final Iterator<RegionFile> it = openRegions.values().iterator();
+            final RegionFile eldest = it.next();
+            it.remove();
+            eldest.close();
+        }
+        return region;
+    }
+
+    @Override
+    public Chunk get(Vector3i position) {
+        final Chunk c = queuedChunks.get(position);
+        if (c != null)
+            return new Chunk(c);
+        try {
+            final byte[] data;
+            synchronized (openRegions) {
+                final RegionFile region = getRegion(position, false);
+                if (region == null) return null;
+                data = region.read(RegionFile.slotIndex(position.x, position.z));
+            }
+            if (data == null) return null;
+            return decode(data);
+        } catch (Exception e) {
+            logger.error("Error loading chunk {}", e, position);
+            throw new RuntimeException("Error loading chunk " + position);
+        }
+    }
+
+    @Override
+    public void put(Chunk c) {
+        Preconditions.checkNotNull(c, "The parameter 'c' must not be null");
+        final Vector3i pos = c.getPos();
+        queuedChunks.put(pos, c);
+        if (!compressionQueue.offer(c)) {
+            queuedChunks.remove(pos, c);
+            logger.error("Failed to add chunk to compression queue {}", pos);
+        }
+    }
+
+    @Override
+    public boolean contains(Vector3i position) {
+        if (queuedChunks.containsKey(position)) return true;
+        try {
+            synchronized (openRegions) {
+                final RegionFile region = getRegion(position, false);
+                return region != null && region.contains(RegionFile.slotIndex(position.x, position.z));
+            }
+        } catch (IOException e) {
+            logger.error("Error reading region of chunk {}", e, position);
+            return false;
+        }
+    }
+
+    @Override
+    public int list(List<Vector3i> output) {
+        Preconditions.checkNotNull(output, "The parameter 'output' must not be null");
+        final int size = output.size();
+        final Set<Vector3i> listed = Sets.newHashSet();
+        final File[] files = directory.listFiles();
+        if (files == null) return 0;
+        for (final File file : files) {
+            final Matcher m = REGION_FILE_NAME.matcher(file.getName());
+            if (!m.matches()) continue;
+            final int rx = Integer.parseInt(m.group(1));
+            final int y = Integer.parseInt(m.group(2));
+            final int rz = Integer.parseInt(m.group(3));
+            final Vector3i chunkPos = new Vector3i(rx << RegionFile.REGION_POWER, y, rz << RegionFile.REGION_POWER);
+            try {
+                final int[] slots;
+                synchronized (openRegions) {
+                    final RegionFile region = getRegion(chunkPos, false);
+                    if (region == null) continue;
+                    slots = region.listSlots();
+                }
+                for (final int slot : slots) {
+                    final Vector3i pos = new Vector3i(chunkPos.x + (slot & RegionFile.REGION_MASK), y, chunkPos.z + (slot >> RegionFile.REGION_POWER));
+                    if (listed.add(pos)) {
+                        output.add(pos);
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Error reading region file {}", e, file);
+            }
+        }
+        for (final Vector3i pos : queuedChunks.keySet()) {
+            if (listed.add(pos)) {
+                output.add(pos);
+            }
+        }
+        return output.size() - size;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    @Override
+    public float size() {
+        return (float) sizeInBytes.get() / (1 << 20);
+    }
+
+    /**
+     * Waits for all queued chunks to be written and closes all open region files.
+     */
+    @Override
+    public void dispose() {
+        if (!running.getAndSet(false)) return;
+        compressionThreads.shutdown();
+        try {
+            compressionThreads.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while awaiting thread disposal");
+        }
+        synchronized (openRegions) {
+            for (final RegionFile region : openRegions.values()) {
+                try {
+                    region.close();
+                } catch (IOException e) {
+                    logger.error("Error closing region file {}", e, region.getFile());
+                }
+            }
+            openRegions.clear();
+        }
+    }
+
+    /**
+     * Flushes all dirty region files. Region files are always written in place, so the parameter {@code file} must
+     * denote the directory of this store.
+     */
+    @Override
+    public void saveToFile(File file) {
+        Preconditions.checkNotNull(file, "The parameter 'file' must not be null");
+        Preconditions.checkArgument(file.getAbsoluteFile().equals(directory.getAbsoluteFile()),
+                "Region files can only be saved in place: " + file);
+        final List<RegionFile> regions;
+        synchronized (openRegions) {
+            regions = Lists.newArrayList(openRegions.values());
+        }
+        for (final RegionFile region : regions) {
+            try {
+                region.flush();
+            } catch (IOException e) {
+                logger.error("Error saving region file {}", e, region.getFile());
+            }
+        }
+    }
+
+    /**
+     * Imports all chunks of a chunk file written by {@link ChunkStoreProtobuf#saveToFile(File)} into this store.
+     */
+    @Override
+    public void loadFromFile(File file) {
+        Preconditions.checkNotNull(file, "The parameter 'file' must not be null");
+        final ChunkStoreProtobuf legacy = new ChunkStoreProtobuf(false);
+        legacy.loadFromFile(file);
+        legacy.setup();
+        try {
+            final List<Vector3i> positions = new LinkedList<Vector3i>();
+            legacy.list(positions);
+            for (final Vector3i pos : positions) {
+                final Chunk chunk = legacy.get(pos);
+                if (chunk != null) {
+                    put(chunk);
+                }
+            }
+            logger.info("Imported {} chunks from {}", positions.size(), file);
+        } finally {
+            legacy.dispose();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * RegionFile stores the serialized data of up to {@code REGION_SIZE * REGION_SIZE} chunks in a single file.
+ * <p/>
+ * The file starts with a header consisting of a magic number, a format version and an index with one entry per chunk
+ * slot. Each index entry holds the first sector and the length in bytes of the chunk data. Chunk data is stored in
+ * sectors of {@code SECTOR_SIZE} bytes. The header is memory mapped, chunk data is read and written through the
+ * {@link FileChannel}, so accessing a chunk only touches the sectors of that chunk.
+ * <p/>
+ * Changes to the header are only guaranteed to be on disk after {@link #flush()} has been called.
+ */
+public final class RegionFile {
+
+    public static final int REGION_POWER = 5;
+    public static final int REGION_SIZE = 1 << REGION_POWER;
+    public static final int REGION_MASK = REGION_SIZE - 1;
+    public static final int SLOTS = REGION_SIZE * REGION_SIZE;
+
+    public static final int SECTOR_SIZE = 4096;
+
+    public static final int MAGIC = 0x5452474e; // "TRGN"
+    public static final int VERSION = 1;
+
+    private static final int INDEX_OFFSET = 8;
+    private static final int INDEX_ENTRY_SIZE = 8;
+    private static final int HEADER_SIZE = INDEX_OFFSET + SLOTS * INDEX_ENTRY_SIZE;
+    private static final int HEADER_SECTORS = (HEADER_SIZE + SECTOR_SIZE - 1) / SECTOR_SIZE;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final BitSet usedSectors = new BitSet();
+
+    private int totalSectors;
+    private boolean dirty = false;
+    private boolean closed = false;
+
+    public RegionFile(File file) throws IOException {
+        Preconditions.checkNotNull(file, "The parameter 'file' must not be null");
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        final boolean created = channel.size() == 0;
+        if (created) {
+            raf.setLength(HEADER_SECTORS * SECTOR_SIZE);
+        } else if (channel.size() < HEADER_SECTORS * SECTOR_SIZE) {
+            close();
+            throw new IOException("Region file is truncated: " + file);
+        }
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            dirty = true;
+        } else {
+            if (header.getInt(0) != MAGIC) {
+                close();
+                throw new IOException("Not a region file: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                final int version = header.getInt(4);
+                close();
+                throw new IOException("Unsupported region file version " + version + ": " + file);
+            }
+        }
+        this.totalSectors = (int) ((channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE);
+        usedSectors.set(0, HEADER_SECTORS);
+        for (int i = 0; i < SLOTS; i++) {
+            final int offset = getSectorOffset(i);
+            final int length = getLength(i);
+            if (offset == 0) continue;
+            if (offset < HEADER_SECTORS || offset + sectorsFor(length) > totalSectors) {
+                // the index entry is corrupt, dropping the chunk is the only sensible thing to do here
+                setEntry(i, 0, 0);
+                continue;
+            }
+            usedSectors.set(offset, offset + sectorsFor(length));
+        }
+    }
+
+    public static int slotIndex(int chunkX, int chunkZ) {
+        return (chunkX & REGION_MASK) + ((chunkZ & REGION_MASK) << REGION_POWER);
+    }
+
+    public static int regionPos(int chunkPos) {
+        return chunkPos >> REGION_POWER;
+    }
+
+    private static int sectorsFor(int length) {
+        return (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+
+    private int getSectorOffset(int slot) {
+        return header.getInt(INDEX_OFFSET + slot * INDEX_ENTRY_SIZE);
+    }
+
+    private int getLength(int slot) {
+        return header.getInt(INDEX_OFFSET + slot * INDEX_ENTRY_SIZE + 4);
+    }
+
+    private void setEntry(int slot, int sectorOffset, int length) {
+        header.putInt(INDEX_OFFSET + slot * INDEX_ENTRY_SIZE, sectorOffset);
+        header.putInt(INDEX_OFFSET + slot * INDEX_ENTRY_SIZE + 4, length);
+        dirty = true;
+    }
+
+    private int allocate(int sectors) {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+        while (start < totalSectors) {
+            final int end = usedSectors.nextSetBit(start);
+            if (end < 0 || end - start >= sectors) {
+                break;
+            }
+            start = usedSectors.nextClearBit(end);
+        }
+        if (start + sectors > totalSectors) {
+            totalSectors = start + sectors;
+        }
+        usedSectors.set(start, start + sectors);
+        return start;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized boolean contains(int slot) {
+        Preconditions.checkState(!closed, "The region file is closed");
+        return getSectorOffset(slot) != 0;
+    }
+
+    /**
+     * Reads the data of the chunk stored in the specified slot.
+     *
+     * @return The data or null if the slot is empty
+     */
+    public synchronized byte[] read(int slot) throws IOException {
+        Preconditions.checkState(!closed, "The region file is closed");
+        final int offset = getSectorOffset(slot);
+        if (offset == 0) return null;
+        final byte[] data = new byte[getLength(slot)];
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = (long) offset * SECTOR_SIZE;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of region file " + file + " in slot " + slot);
+            position += read;
+        }
+        return data;
+    }
+
+    /**
+     * Writes the data of a chunk into the specified slot. The sectors previously used by the slot are reused if the
+     * new data fits, otherwise they are released and the data is written into the first free run of sectors.
+     *
+     * @return The number of bytes the file grew by
+     */
+    public synchronized long write(int slot, byte[] data) throws IOException {
+        Preconditions.checkNotNull(data, "The parameter 'data' must not be null");
+        Preconditions.checkArgument(data.length > 0, "The parameter 'data' must not be empty");
+        Preconditions.checkState(!closed, "The region file is closed");
+        final int sectors = sectorsFor(data.length);
+        final int oldOffset = getSectorOffset(slot);
+        final int oldSectors = oldOffset == 0 ? 0 : sectorsFor(getLength(slot));
+        final int oldTotal = totalSectors;
+        int offset;
+        if (oldOffset != 0 && sectors <= oldSectors) {
+            offset = oldOffset;
+            usedSectors.clear(offset + sectors, offset + oldSectors);
+        } else {
+            if (oldOffset != 0) {
+                usedSectors.clear(oldOffset, oldOffset + oldSectors);
+            }
+            offset = allocate(sectors);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = (long) offset * SECTOR_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        if (totalSectors > oldTotal) {
+            // keep the file length a multiple of the sector size
+            raf.setLength((long) totalSectors * SECTOR_SIZE);
+        }
+        setEntry(slot, offset, data.length);
+        return (long) (totalSectors - oldTotal) * SECTOR_SIZE;
+    }
+
+    public synchronized void remove(int slot) {
+        Preconditions.checkState(!closed, "The region file is closed");
+        final int offset = getSectorOffset(slot);
+        if (offset == 0) return;
+        usedSectors.clear(offset, offset + sectorsFor(getLength(slot)));
+        setEntry(slot, 0, 0);
+    }
+
+    /**
+     * Lists the indices of all occupied slots.
+     */
+    public synchronized int[] listSlots() {
+        Preconditions.checkState(!closed, "The region file is closed");
+        int count = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (getSectorOffset(i) != 0) count++;
+        }
+        final int[] result = new int[count];
+        int j = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (getSectorOffset(i) != 0) result[j++] = i;
+        }
+        return result;
+    }
+
+    public synchronized long sizeInBytes() {
+        return (long) totalSectors * SECTOR_SIZE;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Forces the header and all chunk data of this region to disk, if anything has changed since the last flush.
+     */
+    public synchronized void flush() throws IOException {
+        if (closed || !dirty) return;
+        header.force();
+        channel.force(false);
+        dirty = false;
+    }
+
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        try {
+            if (header != null) flush();
+        } finally {
+            closed = true;
+            channel.close();
+            raf.close();
+        }
+    }
+}
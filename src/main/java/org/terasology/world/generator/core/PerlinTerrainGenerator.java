@@ -17,9 +17,13 @@
 package org.terasology.world.generator.core;
 
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.vecmath.Vector2f;
 
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
 import org.terasology.math.TeraMath;
 import org.terasology.utilities.PerlinNoise;
 import org.terasology.world.WorldBiomeProvider;
@@ -39,6 +43,16 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
     private static final int SAMPLE_RATE_3D_HOR = 4;
     private static final int SAMPLE_RATE_3D_VERT = 4;
 
+    private static final int SAMPLES_X = Chunk.SIZE_X / SAMPLE_RATE_3D_HOR + 1;
+    private static final int SAMPLES_Y = Chunk.SIZE_Y / SAMPLE_RATE_3D_VERT + 1;
+    private static final int SAMPLES_Z = Chunk.SIZE_Z / SAMPLE_RATE_3D_HOR + 1;
+
+    private static final int DENSITY_SIZE_Y = Chunk.SIZE_Y + 1;
+    private static final int DENSITY_SIZE_Z = Chunk.SIZE_Z + 1;
+    private static final double[] ORIGIN = new double[]{0.0};
+
+    private static ForkJoinPool densityPool;
+
     private PerlinNoise _pGen1, _pGen2, _pGen3, _pGen4, _pGen5, _pGen8;
     private WorldBiomeProvider biomeProvider;
 
@@ -77,17 +91,16 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
 
     @Override
     public void generateChunk(Chunk c) {
-        double[][][] densityMap = new double[Chunk.SIZE_X + 1][Chunk.SIZE_Y + 1][Chunk.SIZE_Z + 1];
+        double[] densityMap = new double[(Chunk.SIZE_X + 1) * DENSITY_SIZE_Z * DENSITY_SIZE_Y];
 
         /*
          * Create the density map at a lower sample rate.
          */
-        for (int x = 0; x <= Chunk.SIZE_X; x += SAMPLE_RATE_3D_HOR) {
-            for (int z = 0; z <= Chunk.SIZE_Z; z += SAMPLE_RATE_3D_HOR) {
-                for (int y = 0; y <= Chunk.SIZE_Y; y += SAMPLE_RATE_3D_VERT) {
-                    densityMap[x][y][z] = calcDensity(c.getBlockWorldPosX(x), y, c.getBlockWorldPosZ(z));
-                }
-            }
+        Config config = CoreRegistry.get(Config.class);
+        if (config != null && config.getAdvanced().isParallelTerrainGenerationEnabled()) {
+            getDensityPool().invoke(new DensityTask(c, densityMap, 0, SAMPLES_X));
+        } else {
+            calcDensitySamples(c, densityMap, 0, SAMPLES_X);
         }
 
         /*
@@ -98,10 +111,12 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
         /*
          * Generate the chunk from the density map.
          */
+        double[] caveDensity = new double[Chunk.SIZE_Y];
         for (int x = 0; x < Chunk.SIZE_X; x++) {
             for (int z = 0; z < Chunk.SIZE_Z; z++) {
                 WorldBiomeProvider.Biome type = biomeProvider.getBiomeAt(c.getBlockWorldPosX(x), c.getBlockWorldPosZ(z));
                 int firstBlockHeight = -1;
+                calcCaveDensityColumn(c, x, z, densityMap, caveDensity);
 
                 for (int y = Chunk.SIZE_Y-1; y >= 0; y--) {
 
@@ -121,7 +136,7 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
                         }
                     }
 
-                    double dens = densityMap[x][y][z];
+                    double dens = densityMap[densityIndex(x, y, z)];
 
                     if ((dens >= 0 && dens < 32)) {
 
@@ -129,7 +144,7 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
                         if (firstBlockHeight == -1)
                             firstBlockHeight = y;
 
-                        if (calcCaveDensity(c.getBlockWorldPosX(x), y, c.getBlockWorldPosZ(z)) > -0.7)
+                        if (caveDensity[y] > -0.7)
                             GenerateOuterLayer(x, y, z, firstBlockHeight, c, type);
                         else
                             c.setBlock(x, y, z, air);
@@ -141,7 +156,7 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
                         if (firstBlockHeight == -1)
                             firstBlockHeight = y;
 
-                        if (calcCaveDensity(c.getBlockWorldPosX(x), y, c.getBlockWorldPosZ(z)) > -0.6)
+                        if (caveDensity[y] > -0.6)
                             GenerateInnerLayer(x, y, z, c, type);
                         else
                             c.setBlock(x, y, z, air);
@@ -213,7 +228,11 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
         }
     }
 
-    private void triLerpDensityMap(double[][][] densityMap) {
+    private static int densityIndex(int x, int y, int z) {
+        return (x * DENSITY_SIZE_Z + z) * DENSITY_SIZE_Y + y;
+    }
+
+    private void triLerpDensityMap(double[] densityMap) {
         for (int x = 0; x < Chunk.SIZE_X; x++) {
             for (int y = 0; y < Chunk.SIZE_Y; y++) {
                 for (int z = 0; z < Chunk.SIZE_Z; z++) {
@@ -221,13 +240,136 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
                         int offsetX = (x / SAMPLE_RATE_3D_HOR) * SAMPLE_RATE_3D_HOR;
                         int offsetY = (y / SAMPLE_RATE_3D_VERT) * SAMPLE_RATE_3D_VERT;
                         int offsetZ = (z / SAMPLE_RATE_3D_HOR) * SAMPLE_RATE_3D_HOR;
-                        densityMap[x][y][z] = TeraMath.triLerp(x, y, z, densityMap[offsetX][offsetY][offsetZ], densityMap[offsetX][SAMPLE_RATE_3D_VERT + offsetY][offsetZ], densityMap[offsetX][offsetY][offsetZ + SAMPLE_RATE_3D_HOR], densityMap[offsetX][offsetY + SAMPLE_RATE_3D_VERT][offsetZ + SAMPLE_RATE_3D_HOR], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY][offsetZ], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY + SAMPLE_RATE_3D_VERT][offsetZ], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY][offsetZ + SAMPLE_RATE_3D_HOR], densityMap[SAMPLE_RATE_3D_HOR + offsetX][offsetY + SAMPLE_RATE_3D_VERT][offsetZ + SAMPLE_RATE_3D_HOR], offsetX, SAMPLE_RATE_3D_HOR + offsetX, offsetY, SAMPLE_RATE_3D_VERT + offsetY, offsetZ, offsetZ + SAMPLE_RATE_3D_HOR);
+                        densityMap[densityIndex(x, y, z)] = TeraMath.triLerp(x, y, z, densityMap[densityIndex(offsetX, offsetY, offsetZ)], densityMap[densityIndex(offsetX, SAMPLE_RATE_3D_VERT + offsetY, offsetZ)], densityMap[densityIndex(offsetX, offsetY, offsetZ + SAMPLE_RATE_3D_HOR)], densityMap[densityIndex(offsetX, offsetY + SAMPLE_RATE_3D_VERT, offsetZ + SAMPLE_RATE_3D_HOR)], densityMap[densityIndex(SAMPLE_RATE_3D_HOR + offsetX, offsetY, offsetZ)], densityMap[densityIndex(SAMPLE_RATE_3D_HOR + offsetX, offsetY + SAMPLE_RATE_3D_VERT, offsetZ)], densityMap[densityIndex(SAMPLE_RATE_3D_HOR + offsetX, offsetY, offsetZ + SAMPLE_RATE_3D_HOR)], densityMap[densityIndex(SAMPLE_RATE_3D_HOR + offsetX, offsetY + SAMPLE_RATE_3D_VERT, offsetZ + SAMPLE_RATE_3D_HOR)], offsetX, SAMPLE_RATE_3D_HOR + offsetX, offsetY, SAMPLE_RATE_3D_VERT + offsetY, offsetZ, offsetZ + SAMPLE_RATE_3D_HOR);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Computes the density at the sample points of the density map with the given x indices. Produces the same values
+     * as {@link #calcDensity(int, int, int)}, but evaluates the noise for all sample points at once.
+     */
+    private void calcDensitySamples(Chunk c, double[] densityMap, int fromSampleX, int toSampleX) {
+        final int samplesX = toSampleX - fromSampleX;
+        final int[] worldX = new int[samplesX];
+        final int[] worldZ = new int[SAMPLES_Z];
+        final double[] sampleY = new double[SAMPLES_Y];
+        for (int i = 0; i < samplesX; i++) {
+            worldX[i] = c.getBlockWorldPosX((fromSampleX + i) * SAMPLE_RATE_3D_HOR);
+        }
+        for (int k = 0; k < SAMPLES_Z; k++) {
+            worldZ[k] = c.getBlockWorldPosZ(k * SAMPLE_RATE_3D_HOR);
+        }
+        for (int j = 0; j < SAMPLES_Y; j++) {
+            sampleY[j] = j * SAMPLE_RATE_3D_VERT;
+        }
+
+        final double[] base = new double[samplesX * SAMPLES_Z];
+        final double[] ocean = new double[samplesX * SAMPLES_Z];
+        final double[] river = new double[samplesX * SAMPLES_Z];
+        _pGen1.fBm(scale(worldX, 0.004), ORIGIN, scale(worldZ, 0.004), base);
+        _pGen2.fBm(scale(worldX, 0.0009), ORIGIN, scale(worldZ, 0.0009), ocean);
+        _pGen3.fBm(scale(worldX, 0.0008), ORIGIN, scale(worldZ, 0.0008), river);
+
+        final double[] mountains = new double[samplesX * SAMPLES_Z * SAMPLES_Y];
+        final double[] hills = new double[samplesX * SAMPLES_Z * SAMPLES_Y];
+        _pGen4.fBm(scale(worldX, 0.002), scale(sampleY, 0.001), scale(worldZ, 0.002), mountains);
+        _pGen5.fBm(scale(worldX, 0.008), scale(sampleY, 0.006), scale(worldZ, 0.008), hills);
+
+        int plateauArea = (int) (Chunk.SIZE_Y * 0.10);
+        for (int i = 0; i < samplesX; i++) {
+            for (int k = 0; k < SAMPLES_Z; k++) {
+                final int column = i * SAMPLES_Z + k;
+                double height = TeraMath.clamp((base[column] + 1.0) / 2.0);
+                double oceanTerrain = TeraMath.clamp(ocean[column] * 8.0);
+                double riverTerrain = TeraMath.clamp((java.lang.Math.sqrt(java.lang.Math.abs(river[column])) - 0.1) * 7.0);
+
+                float temp = biomeProvider.getTemperatureAt(worldX[i], worldZ[k]);
+                float humidity = biomeProvider.getHumidityAt(worldX[i], worldZ[k]) * temp;
+                Vector2f distanceToMountainBiome = new Vector2f(temp - 0.25f, humidity - 0.35f);
+                double mIntens = TeraMath.clamp(1.0 - distanceToMountainBiome.length() * 3.0);
+
+                for (int j = 0; j < SAMPLES_Y; j++) {
+                    final int y = j * SAMPLE_RATE_3D_VERT;
+                    final double mountain = mountains[column * SAMPLES_Y + j];
+                    final double hill = hills[column * SAMPLES_Y + j] - 0.1;
+                    double densityMountains = (mountain > 0.0 ? mountain : 0) * mIntens;
+                    double densityHills = (hill > 0.0 ? hill : 0) * (1.0 - mIntens);
+                    double flatten = TeraMath.clamp(((Chunk.SIZE_Y - 16) - y) / plateauArea);
+
+                    densityMap[densityIndex((fromSampleX + i) * SAMPLE_RATE_3D_HOR, y, k * SAMPLE_RATE_3D_HOR)] = -y + (((32.0 + height * 32.0) * TeraMath.clamp(riverTerrain + 0.25) * TeraMath.clamp(oceanTerrain + 0.25)) + densityMountains * 1024.0 + densityHills * 128.0) * flatten;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the cave density of a column of the chunk, up to the highest block with a positive density.
+     */
+    private void calcCaveDensityColumn(Chunk c, int x, int z, double[] densityMap, double[] caveDensity) {
+        int top = Chunk.SIZE_Y - 1;
+        while (top > 0 && densityMap[densityIndex(x, top, z)] < 0) {
+            top--;
+        }
+        double[] caveY = new double[top + 1];
+        for (int y = 0; y <= top; y++) {
+            caveY[y] = y * 0.02;
+        }
+        _pGen8.fBm(new double[]{c.getBlockWorldPosX(x) * 0.02}, caveY, new double[]{c.getBlockWorldPosZ(z) * 0.02}, caveDensity);
+    }
+
+    private static double[] scale(int[] positions, double factor) {
+        double[] result = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = positions[i] * factor;
+        }
+        return result;
+    }
+
+    private static double[] scale(double[] positions, double factor) {
+        double[] result = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = positions[i] * factor;
+        }
+        return result;
+    }
+
+    private static synchronized ForkJoinPool getDensityPool() {
+        if (densityPool == null) {
+            densityPool = new ForkJoinPool();
+        }
+        return densityPool;
+    }
+
+    /**
+     * Splits the computation of the density samples of a chunk along the x-axis.
+     */
+    private class DensityTask extends RecursiveAction {
+        private final Chunk chunk;
+        private final double[] densityMap;
+        private final int fromSampleX;
+        private final int toSampleX;
+
+        public DensityTask(Chunk chunk, double[] densityMap, int fromSampleX, int toSampleX) {
+            this.chunk = chunk;
+            this.densityMap = densityMap;
+            this.fromSampleX = fromSampleX;
+            this.toSampleX = toSampleX;
+        }
+
+        @Override
+        protected void compute() {
+            if (toSampleX - fromSampleX <= 1) {
+                calcDensitySamples(chunk, densityMap, fromSampleX, toSampleX);
+            } else {
+                int middle = (fromSampleX + toSampleX) >>> 1;
+                invokeAll(new DensityTask(chunk, densityMap, fromSampleX, middle), new DensityTask(chunk, densityMap, middle, toSampleX));
+            }
+        }
+    }
+
     public double calcDensity(int x, int y, int z) {
         double height = calcBaseTerrain(x, z);
         double ocean = calcOceanTerrain(x, z);
@@ -276,10 +418,6 @@ public class PerlinTerrainGenerator implements ChunkGenerator {
         return result > 0.0 ? result : 0;
     }
 
-    private double calcCaveDensity(double x, double y, double z) {
-        return _pGen8.fBm(x * 0.02, y * 0.02, z * 0.02);
-    }
-
     @Override
     public Map<String, String> getInitParameters() {
         return null;
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.liquid;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.terasology.math.Side;
+import org.terasology.math.TeraMath;
+import org.terasology.math.Vector3i;
+import org.terasology.world.BlockUpdate;
+import org.terasology.world.WorldProvider;
+import org.terasology.world.WorldView;
+import org.terasology.world.block.Block;
+import org.terasology.world.chunks.Chunk;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Simulates liquids a chunk at a time, as a cellular automaton over the liquid data of the chunks.
+ * <p/>
+ * Every chunk has a set of active cells, which might change their liquid state. A step reads the new state of all
+ * active cells of a chunk from one local world view before anything is written, so all cells of the chunk see the
+ * same generation. The changes are then written in one pass and the resulting block changes are committed as a single
+ * batched world update, instead of a world view, lighting update and block event round trip per cell.
+ * Cells next to a changed cell become active for the next step.
+ */
+public class BulkLiquidSimulation {
+
+    private final WorldProvider world;
+    private final Block air;
+    private final Block water;
+    private final Block lava;
+    private final Block grass;
+    private final Block snow;
+    private final Block dirt;
+
+    private final ConcurrentMap<Vector3i, TIntSet> activeCells = Maps.newConcurrentMap();
+
+    public BulkLiquidSimulation(WorldProvider world, Block air, Block water, Block lava, Block grass, Block snow, Block dirt) {
+        this.world = world;
+        this.air = air;
+        this.water = water;
+        this.lava = lava;
+        this.grass = grass;
+        this.snow = snow;
+        this.dirt = dirt;
+    }
+
+    private static int cellIndex(int x, int y, int z) {
+        return x + Chunk.SIZE_X * (z + Chunk.SIZE_Z * y);
+    }
+
+    /**
+     * Marks the block at the given world position as active.
+     *
+     * @return The position of the chunk containing the block, which has to be stepped
+     */
+    public Vector3i activate(Vector3i blockPos) {
+        Vector3i chunkPos = TeraMath.calcChunkPos(blockPos);
+        if (blockPos.y < 0 || blockPos.y >= Chunk.SIZE_Y) {
+            return chunkPos;
+        }
+        int index = cellIndex(TeraMath.calcBlockPosX(blockPos.x), blockPos.y, TeraMath.calcBlockPosZ(blockPos.z));
+        while (true) {
+            TIntSet cells = activeCells.get(chunkPos);
+            if (cells == null) {
+                cells = new TIntHashSet();
+                TIntSet existing = activeCells.putIfAbsent(chunkPos, cells);
+                if (existing != null) {
+                    cells = existing;
+                }
+            }
+            synchronized (cells) {
+                cells.add(index);
+            }
+            // the set may have been taken by a step which already passed the cell, retry with the new set
+            if (activeCells.get(chunkPos) == cells) {
+                return chunkPos;
+            }
+        }
+    }
+
+    public int getActiveCellCount(Vector3i chunkPos) {
+        TIntSet cells = activeCells.get(chunkPos);
+        if (cells == null) {
+            return 0;
+        }
+        synchronized (cells) {
+            return cells.size();
+        }
+    }
+
+    public void clear() {
+        activeCells.clear();
+    }
+
+    /**
+     * Returns cells taken by a step which could not be done back to the active cells of the chunk.
+     */
+    private void requeue(Vector3i chunkPos, TIntSet cells) {
+        TIntSet existing = activeCells.putIfAbsent(chunkPos, cells);
+        if (existing != null) {
+            synchronized (cells) {
+                synchronized (existing) {
+                    existing.addAll(cells);
+                }
+            }
+        }
+    }
+
+    /**
+     * Steps all active cells of a chunk once.
+     *
+     * @return The positions of the chunks which have active cells after this step
+     */
+    public Set<Vector3i> step(Vector3i chunkPos) {
+        TIntSet cells = activeCells.remove(chunkPos);
+        if (cells == null) {
+            return Sets.newHashSet();
+        }
+        WorldView view = world.getLocalView(chunkPos);
+        if (view == null || !view.isValidView()) {
+            // keep the cells until the chunk and its neighbours are ready again
+            requeue(chunkPos, cells);
+            return Sets.newHashSet();
+        }
+
+        List<Vector3i> changedCells = Lists.newArrayList();
+        List<LiquidData> oldStates = Lists.newArrayList();
+        List<LiquidData> newStates = Lists.newArrayList();
+        synchronized (cells) {
+            TIntIterator iterator = cells.iterator();
+            while (iterator.hasNext()) {
+                int index = iterator.next();
+                Vector3i pos = new Vector3i(index % Chunk.SIZE_X, index / (Chunk.SIZE_X * Chunk.SIZE_Z), (index / Chunk.SIZE_X) % Chunk.SIZE_Z);
+                LiquidData current = view.getLiquid(pos);
+                LiquidData newState = LiquidSimulator.calcStateFor(pos, view);
+                if (!newState.equals(current)) {
+                    changedCells.add(pos);
+                    oldStates.add(current);
+                    newStates.add(newState);
+                }
+            }
+        }
+
+        List<BlockUpdate> updates = Lists.newArrayListWithCapacity(changedCells.size());
+        List<Vector3i> committed = Lists.newArrayListWithCapacity(changedCells.size());
+        view.lock();
+        try {
+            if (!view.isValidView()) {
+                requeue(chunkPos, cells);
+                return Sets.newHashSet();
+            }
+            for (int i = 0; i < changedCells.size(); i++) {
+                Vector3i pos = changedCells.get(i);
+                LiquidData newState = newStates.get(i);
+                if (!view.setLiquid(pos, newState, oldStates.get(i))) {
+                    continue;
+                }
+                Vector3i worldPos = view.toWorldPos(pos);
+                committed.add(worldPos);
+                Block block = view.getBlock(pos);
+                Block newBlock = air;
+                if (newState.getDepth() > 0) {
+                    newBlock = (newState.getType() == LiquidType.WATER) ? water : lava;
+                    Block below = view.getBlock(pos.x, pos.y - 1, pos.z);
+                    if (grass.equals(below) || snow.equals(below)) {
+                        updates.add(new BlockUpdate(new Vector3i(worldPos.x, worldPos.y - 1, worldPos.z), dirt, below));
+                    }
+                }
+                if (newBlock != block) {
+                    updates.add(new BlockUpdate(worldPos, newBlock, block));
+                }
+            }
+        } finally {
+            view.unlock();
+        }
+
+        if (!updates.isEmpty() && !world.setBlocks(updates)) {
+            // a block changed in the meantime, fall back to validating the updates one by one
+            for (BlockUpdate update : updates) {
+                world.setBlock(update.getPosition(), update.getNewType(), update.getOldType());
+            }
+        }
+
+        Set<Vector3i> result = Sets.newHashSet();
+        for (Vector3i pos : committed) {
+            result.add(activate(pos));
+            for (Side side : Side.values()) {
+                Vector3i adjPos = new Vector3i(pos);
+                adjPos.add(side.getVector3i());
+                result.add(activate(adjPos));
+            }
+        }
+        return result;
+    }
+}
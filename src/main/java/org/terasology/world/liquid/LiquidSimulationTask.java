@@ -17,9 +17,11 @@
 package org.terasology.world.liquid;
 
 /**
+ * A task of the liquid simulation. Tasks are de-duplicated by the scheduler, so implementations must implement
+ * equals and hashCode.
+ *
  * @author Immortius
  */
 public interface LiquidSimulationTask {
-    boolean shutdownThread();
     void run();
 }
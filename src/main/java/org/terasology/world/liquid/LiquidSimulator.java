@@ -15,15 +15,14 @@
  */
 package org.terasology.world.liquid;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.terasology.world.block.BlockComponent;
 import org.terasology.components.world.WorldComponent;
+import org.terasology.config.Config;
 import org.terasology.entitySystem.EntityRef;
 import org.terasology.entitySystem.EventHandlerSystem;
 import org.terasology.entitySystem.ReceiveEvent;
@@ -36,6 +35,7 @@ import org.terasology.math.Vector3i;
 import org.terasology.monitoring.ThreadMonitor;
 import org.terasology.monitoring.impl.SingleThreadMonitor;
 import org.terasology.world.BlockChangedEvent;
+import org.terasology.world.BlockUpdateScheduler;
 import org.terasology.world.WorldProvider;
 import org.terasology.world.WorldView;
 import org.terasology.world.block.Block;
@@ -43,8 +43,6 @@ import org.terasology.world.block.management.BlockManager;
 import org.terasology.world.chunks.Chunk;
 import org.terasology.world.chunks.ChunkReadyEvent;
 
-import com.google.common.collect.Queues;
-
 /**
  * Rough draft of Minecraft-like behavior of liquids. Will be replaced with some
  * more fancy stuff later on.
@@ -57,6 +55,7 @@ public class LiquidSimulator implements EventHandlerSystem {
     private static int NUM_THREADS = 2;
     private static byte MAX_LIQUID_DEPTH = 0x7;
     public static final int PROPAGATION_DELAY = 200;
+    private static final long TICK_LENGTH = 50;
 
     private static final Logger logger = LoggerFactory.getLogger(LiquidSimulator.class);
 
@@ -67,8 +66,9 @@ public class LiquidSimulator implements EventHandlerSystem {
     private Block dirt;
     private Block water;
     private Block lava;
-    private BlockingQueue<LiquidSimulationTask> blockQueue;
+    private BlockUpdateScheduler<LiquidSimulationTask> scheduler;
     private ExecutorService executor;
+    private BulkLiquidSimulation bulkSimulation;
 
     @Override
     public void initialise() {
@@ -80,10 +80,20 @@ public class LiquidSimulator implements EventHandlerSystem {
         water = BlockManager.getInstance().getBlock("engine:Water");
         lava = BlockManager.getInstance().getBlock("engine:Lava");
 
-        blockQueue = Queues.newLinkedBlockingQueue();
+        if (CoreRegistry.get(Config.class).getAdvanced().isBulkLiquidSimulationEnabled()) {
+            bulkSimulation = new BulkLiquidSimulation(world, air, water, lava, grass, snow, dirt);
+        }
+
+        scheduler = new BlockUpdateScheduler<LiquidSimulationTask>(NUM_THREADS, TICK_LENGTH, new BlockUpdateScheduler.TimeSource() {
+            @Override
+            public long getTime() {
+                return world.getTime();
+            }
+        });
 
         executor = Executors.newFixedThreadPool(NUM_THREADS);
         for (int i = 0; i < NUM_THREADS; ++i) {
+            final int shard = i;
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
@@ -92,8 +102,8 @@ public class LiquidSimulator implements EventHandlerSystem {
                         Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
                         while (true) {
                             try {
-                                LiquidSimulationTask task = blockQueue.take();
-                                if (task.shutdownThread()) {
+                                LiquidSimulationTask task = scheduler.take(shard);
+                                if (task == null) {
                                     break;
                                 }
                                 task.run();
@@ -101,6 +111,7 @@ public class LiquidSimulator implements EventHandlerSystem {
                             } catch (InterruptedException e) {
                                 monitor.addError(e);
                                 logger.debug("Interrupted");
+                                break;
                             } catch (Exception e) {
                                 monitor.addError(e);
                                 logger.error("Error in water simulation", e);
@@ -117,47 +128,46 @@ public class LiquidSimulator implements EventHandlerSystem {
     @Override
     public void shutdown() {
         executor.shutdown();
-        for (int i = 0; i < NUM_THREADS; ++i) {
-            blockQueue.offer(new LiquidSimulationTask() {
-                @Override
-                public boolean shutdownThread() {
-                    return true;
-                }
-
-                @Override
-                public void run() {
-                }
-            });
+        scheduler.shutdown();
+        if (bulkSimulation != null) {
+            bulkSimulation.clear();
         }
         try {
             executor.awaitTermination(1, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             logger.error("Interrupted awaiting shutdown");
         }
-        if (blockQueue.isEmpty()) {
-            executor.shutdownNow();
-        }
+        executor.shutdownNow();
     }
 
     @ReceiveEvent(components = WorldComponent.class)
     public void chunkReady(ChunkReadyEvent event, EntityRef worldEntity) {
-        blockQueue.offer(new ReviewChunk(event.getChunkPos()));
+        scheduler.schedule(event.getChunkPos(), new ReviewChunk(event.getChunkPos()), 0);
+        if (bulkSimulation != null) {
+            // steps of the surrounding chunks may have been waiting for this chunk
+            for (Vector3i chunkPos : Region3i.createFromCenterExtents(event.getChunkPos(), new Vector3i(1, 0, 1))) {
+                if (bulkSimulation.getActiveCellCount(chunkPos) > 0) {
+                    scheduler.schedule(chunkPos, new StepChunk(chunkPos), 0);
+                }
+            }
+        }
     }
 
-    @ReceiveEvent(components = BlockComponent.class)
-    public void blockChanged(BlockChangedEvent event, EntityRef blockEntity) {
+    @ReceiveEvent(components = WorldComponent.class)
+    public void blockChanged(BlockChangedEvent event, EntityRef worldEntity) {
+        long dueTime = world.getTime() + PROPAGATION_DELAY;
         if (!event.getNewType().isLiquid()) {
             LiquidData currentState = world.getLiquid(event.getBlockPosition());
             if (currentState.getDepth() > 0) {
                 world.setLiquid(event.getBlockPosition(), new LiquidData(), currentState);
             }
             if (event.getNewType().isPenetrable()) {
-                blockQueue.offer(new SimulateBlock(event.getBlockPosition(), world.getTime() + PROPAGATION_DELAY));
+                scheduleSimulation(new Vector3i(event.getBlockPosition()), dueTime);
             }
             for (Side side : Side.values()) {
                 Vector3i adjPos = new Vector3i(event.getBlockPosition());
                 adjPos.add(side.getVector3i());
-                blockQueue.offer(new SimulateBlock(adjPos, world.getTime() + PROPAGATION_DELAY));
+                scheduleSimulation(adjPos, dueTime);
             }
         } else {
             LiquidData currentState = world.getLiquid(event.getBlockPosition());
@@ -168,11 +178,20 @@ public class LiquidSimulator implements EventHandlerSystem {
             for (Side side : Side.values()) {
                 Vector3i adjPos = new Vector3i(event.getBlockPosition());
                 adjPos.add(side.getVector3i());
-                blockQueue.offer(new SimulateBlock(adjPos, world.getTime() + PROPAGATION_DELAY));
+                scheduleSimulation(adjPos, dueTime);
             }
         }
     }
 
+    private void scheduleSimulation(Vector3i blockPos, long dueTime) {
+        if (bulkSimulation != null) {
+            Vector3i chunkPos = bulkSimulation.activate(blockPos);
+            scheduler.schedule(chunkPos, new StepChunk(chunkPos), dueTime);
+        } else {
+            scheduler.schedule(TeraMath.calcChunkPos(blockPos), new SimulateBlock(blockPos), dueTime);
+        }
+    }
+
     public void simulate(Vector3i blockPos, WorldView view) {
         Block block = view.getBlock(blockPos);
         LiquidData current = view.getLiquid(blockPos);
@@ -292,46 +311,80 @@ public class LiquidSimulator implements EventHandlerSystem {
         return !block.isPenetrable();
     }
 
-    private class SimulateBlock implements LiquidSimulationTask{
+    private class SimulateBlock implements LiquidSimulationTask {
 
-        private Vector3i blockPos;
-        private long waitForTime;
+        private final Vector3i blockPos;
 
-        public SimulateBlock(Vector3i blockPos, long time) {
+        public SimulateBlock(Vector3i blockPos) {
             this.blockPos = blockPos;
-            this.waitForTime = time;
-        }
-
-        @Override
-        public boolean shutdownThread() {
-            return false;
         }
 
         @Override
         public void run() {
-            if (world.getTime() < waitForTime) {
-                blockQueue.offer(this);
-            } else if (world.isBlockActive(blockPos)) {
+            if (world.isBlockActive(blockPos)) {
                 WorldView view = world.getWorldViewAround(TeraMath.calcChunkPos(blockPos));
                 if (view != null && view.isValidView()) {
                     simulate(blockPos, view);
                 }
             }
         }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof SimulateBlock) {
+                return blockPos.equals(((SimulateBlock) obj).blockPos);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return blockPos.hashCode();
+        }
     }
 
-    private class ReviewChunk implements LiquidSimulationTask {
-        private Vector3i chunkPos;
+    private class StepChunk implements LiquidSimulationTask {
+        private final Vector3i chunkPos;
 
-        public ReviewChunk(Vector3i chunkPos) {
+        public StepChunk(Vector3i chunkPos) {
             this.chunkPos = chunkPos;
         }
 
         @Override
-        public boolean shutdownThread() {
+        public void run() {
+            long dueTime = world.getTime() + PROPAGATION_DELAY;
+            for (Vector3i activeChunk : bulkSimulation.step(chunkPos)) {
+                scheduler.schedule(activeChunk, new StepChunk(activeChunk), dueTime);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof StepChunk) {
+                return chunkPos.equals(((StepChunk) obj).chunkPos);
+            }
             return false;
         }
 
+        @Override
+        public int hashCode() {
+            return chunkPos.hashCode();
+        }
+    }
+
+    private class ReviewChunk implements LiquidSimulationTask {
+        private final Vector3i chunkPos;
+
+        public ReviewChunk(Vector3i chunkPos) {
+            this.chunkPos = new Vector3i(chunkPos);
+        }
+
         @Override
         public void run() {
             WorldView view = world.getLocalView(chunkPos);
@@ -340,11 +393,27 @@ public class LiquidSimulator implements EventHandlerSystem {
                     LiquidData state = view.getLiquid(pos);
                     LiquidData newState = calcStateFor(pos, view);
                     if (!newState.equals(state)) {
-                        blockQueue.offer(new SimulateBlock(view.toWorldPos(pos), 0));
+                        scheduleSimulation(view.toWorldPos(pos), 0);
                     }
                 }
             }
         }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof ReviewChunk) {
+                return chunkPos.equals(((ReviewChunk) obj).chunkPos);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return chunkPos.hashCode();
+        }
     }
 
 }
@@ -31,11 +31,6 @@ public abstract class AbstractChunkTask implements ChunkTask {
         this.provider = provider;
     }
 
-    @Override
-    public boolean isShutdownRequest() {
-        return false;
-    }
-
     @Override
     public Vector3i getPosition() {
         return position;
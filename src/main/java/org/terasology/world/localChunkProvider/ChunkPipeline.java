@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.localChunkProvider;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.math.Vector3i;
+import org.terasology.monitoring.ThreadMonitor;
+import org.terasology.monitoring.impl.NullThreadMonitor;
+import org.terasology.monitoring.impl.SingleThreadMonitor;
+import org.terasology.world.chunks.ChunkState;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * ChunkPipeline schedules the tasks which move chunks through the stages described by {@link ChunkState}.
+ * <p/>
+ * The task for the next stage of a chunk depends on all eight adjacent chunks having reached at least the same stage.
+ * The pipeline tracks the known state of every chunk and counts the unsatisfied dependencies of its next stage. When a
+ * chunk advances, only the counters of its neighbours are updated, and a stage task is scheduled as soon as its counter
+ * drops to zero. Stage tasks report their result through {@link #setState(Vector3i, ChunkState)}. A stage task which
+ * could not advance its chunk is scheduled again as soon as one of the neighbours changes its state.
+ * <p/>
+ * Tasks are run by a work stealing fork-join pool sized to the available cores. Ready tasks are kept ordered by
+ * relevance, each worker runs the most relevant task available when it becomes idle.
+ * <p/>
+ * For every stage the pipeline counts the queued and completed tasks and the time from scheduling to completion.
+ */
+public class ChunkPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkPipeline.class);
+
+    private static final Vector3i[] NEIGHBOURS = {
+            new Vector3i(-1, 0, -1), new Vector3i(0, 0, -1), new Vector3i(1, 0, -1),
+            new Vector3i(-1, 0, 0), new Vector3i(1, 0, 0),
+            new Vector3i(-1, 0, 1), new Vector3i(0, 0, 1), new Vector3i(1, 0, 1)};
+
+    public static enum Stage {
+        LOAD("Load"),
+        GENERATE("Generate"),
+        ADJACENCY_GENERATION("Adjacency"),
+        INTERNAL_LIGHT_GENERATION("Internal Light"),
+        LIGHT_PROPAGATION("Light Propagation"),
+        COMPLETION("Completion"),
+        DEFLATION("Deflation");
+
+        private final String displayName;
+
+        private Stage(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * Returns the stage which processes chunks in the given state, or null for complete chunks.
+         */
+        public static Stage forState(ChunkState state) {
+            switch (state) {
+                case ADJACENCY_GENERATION_PENDING:
+                    return ADJACENCY_GENERATION;
+                case INTERNAL_LIGHT_GENERATION_PENDING:
+                    return INTERNAL_LIGHT_GENERATION;
+                case LIGHT_PROPAGATION_PENDING:
+                    return LIGHT_PROPAGATION;
+                case FULL_LIGHT_CONNECTIVITY_PENDING:
+                    return COMPLETION;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Creates the task which advances a chunk from the given state into the next one. The task has to call
+     * {@code ChunkPipeline.setState(Vector3i, ChunkState)} once the chunk has advanced.
+     */
+    public static interface StageTaskFactory {
+        ChunkTask createStageTask(Vector3i position, ChunkState state);
+    }
+
+    private static final String[] STAGE_NAMES;
+
+    static {
+        final Stage[] stages = Stage.values();
+        STAGE_NAMES = new String[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            STAGE_NAMES[i] = stages[i].getDisplayName();
+        }
+    }
+
+    private final StageTaskFactory factory;
+    private final Comparator<ChunkTask> relevance;
+    private final ForkJoinPool pool;
+    private final BlockingQueue<Entry> readyTasks;
+
+    private final Map<Vector3i, Node> nodes = Maps.newHashMap();
+
+    private final AtomicInteger[] queued = new AtomicInteger[Stage.values().length];
+    private final AtomicLong[] completed = new AtomicLong[Stage.values().length];
+    private final AtomicLong[] latency = new AtomicLong[Stage.values().length];
+
+    private final Runnable runNextTask = new Runnable() {
+        @Override
+        public void run() {
+            runNextTask();
+        }
+    };
+
+    public ChunkPipeline(StageTaskFactory factory, Comparator<ChunkTask> relevance) {
+        // leave one core to the main thread
+        this(factory, relevance, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public ChunkPipeline(StageTaskFactory factory, Comparator<ChunkTask> relevance, int threads) {
+        Preconditions.checkNotNull(factory, "The parameter 'factory' must not be null");
+        Preconditions.checkNotNull(relevance, "The parameter 'relevance' must not be null");
+        Preconditions.checkArgument(threads > 0, "The parameter 'threads' must be greater than 0");
+        this.factory = factory;
+        this.relevance = relevance;
+        this.readyTasks = new PriorityBlockingQueue<Entry>(128, new EntryComparator());
+        this.pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                return new WorkerThread(pool);
+            }
+        }, null, true);
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = new AtomicInteger();
+            completed[i] = new AtomicLong();
+            latency[i] = new AtomicLong();
+        }
+        logger.info("Chunk pipeline uses {} worker threads", threads);
+    }
+
+    /**
+     * Runs a task which is not bound to the state of a chunk, like loading or generating it.
+     */
+    public void submit(Stage stage, ChunkTask task) {
+        Preconditions.checkNotNull(stage, "The parameter 'stage' must not be null");
+        Preconditions.checkNotNull(task, "The parameter 'task' must not be null");
+        enqueue(new Entry(stage, task, null));
+    }
+
+    /**
+     * Records the current state of a chunk, either because it became available or because it advanced to the next stage.
+     * Schedules the next stage of the chunk and of all neighbours which have been waiting for it, including neighbours
+     * whose stage task has run without advancing them.
+     */
+    public void setState(Vector3i position, ChunkState state) {
+        Preconditions.checkNotNull(position, "The parameter 'position' must not be null");
+        Preconditions.checkNotNull(state, "The parameter 'state' must not be null");
+        synchronized (nodes) {
+            Node node = nodes.get(position);
+            ChunkState oldState = null;
+            if (node == null) {
+                node = new Node(position);
+                nodes.put(node.position, node);
+            } else {
+                oldState = node.state;
+            }
+            node.state = state;
+            node.scheduled = false;
+            node.stalled = false;
+            recount(node);
+            final Vector3i adjPos = new Vector3i();
+            for (Vector3i offset : NEIGHBOURS) {
+                adjPos.set(position.x + offset.x, position.y + offset.y, position.z + offset.z);
+                final Node adjNode = nodes.get(adjPos);
+                if (adjNode == null || !adjNode.isPending()) {
+                    continue;
+                }
+                if (!satisfies(oldState, adjNode.state) && satisfies(state, adjNode.state)) {
+                    adjNode.waiting--;
+                } else if (!adjNode.stalled) {
+                    continue;
+                }
+                if (adjNode.waiting == 0 && !adjNode.scheduled) {
+                    schedule(adjNode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets a chunk which is no longer available. Neighbours waiting on it will wait until it is available again.
+     */
+    public void remove(Vector3i position) {
+        synchronized (nodes) {
+            final Node node = nodes.remove(position);
+            if (node == null) {
+                return;
+            }
+            final Vector3i adjPos = new Vector3i();
+            for (Vector3i offset : NEIGHBOURS) {
+                adjPos.set(position.x + offset.x, position.y + offset.y, position.z + offset.z);
+                final Node adjNode = nodes.get(adjPos);
+                if (adjNode != null && adjNode.isPending() && satisfies(node.state, adjNode.state)) {
+                    adjNode.waiting++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules the next stage of a chunk if its dependencies are met and it is not already scheduled. This is only
+     * needed to retry a stage task which could not advance its chunk, while none of its neighbours changes its state.
+     */
+    public void review(Vector3i position) {
+        synchronized (nodes) {
+            final Node node = nodes.get(position);
+            if (node != null && !node.scheduled) {
+                recount(node);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a stage task for the chunk is queued or running.
+     */
+    public boolean isScheduled(Vector3i position) {
+        synchronized (nodes) {
+            final Node node = nodes.get(position);
+            return node != null && node.scheduled;
+        }
+    }
+
+    public int getQueueDepth(Stage stage) {
+        return queued[stage.ordinal()].get();
+    }
+
+    public long getCompletedTasks(Stage stage) {
+        return completed[stage.ordinal()].get();
+    }
+
+    /**
+     * Returns the average time in milliseconds from scheduling a task of the given stage until its completion.
+     */
+    public double getAverageLatency(Stage stage) {
+        final long count = completed[stage.ordinal()].get();
+        if (count == 0) {
+            return 0;
+        }
+        return latency[stage.ordinal()].get() / (count * 1000000.0);
+    }
+
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * Drops all queued tasks and waits for the running tasks to finish.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        pool.shutdown();
+        readyTasks.clear();
+        try {
+            if (!pool.awaitTermination(timeout, unit)) {
+                logger.warn("Timed out awaiting chunk processing thread termination");
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted awaiting chunk processing thread termination");
+        }
+        for (Stage stage : Stage.values()) {
+            logger.debug("Chunk stage {}: {} tasks completed, {} ms average latency", stage.getDisplayName(),
+                    getCompletedTasks(stage), getAverageLatency(stage));
+        }
+    }
+
+    private static boolean satisfies(ChunkState state, ChunkState required) {
+        return state != null && state.compareTo(required) >= 0;
+    }
+
+    private void recount(Node node) {
+        node.waiting = 0;
+        if (!node.isPending()) {
+            return;
+        }
+        final Vector3i adjPos = new Vector3i();
+        for (Vector3i offset : NEIGHBOURS) {
+            adjPos.set(node.position.x + offset.x, node.position.y + offset.y, node.position.z + offset.z);
+            final Node adjNode = nodes.get(adjPos);
+            if (adjNode == null || !satisfies(adjNode.state, node.state)) {
+                node.waiting++;
+            }
+        }
+        if (node.waiting == 0 && !node.scheduled) {
+            schedule(node);
+        }
+    }
+
+    private void schedule(Node node) {
+        final ChunkTask task = factory.createStageTask(node.position, node.state);
+        if (task != null) {
+            node.scheduled = true;
+            node.stalled = false;
+            enqueue(new Entry(Stage.forState(node.state), task, node.state));
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        if (pool.isShutdown()) {
+            return;
+        }
+        queued[entry.stage.ordinal()].incrementAndGet();
+        readyTasks.offer(entry);
+        try {
+            pool.execute(runNextTask);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Rejected chunk task after shutdown");
+        }
+    }
+
+    private void runNextTask() {
+        final Entry entry = readyTasks.poll();
+        if (entry == null) {
+            return;
+        }
+        final int stage = entry.stage.ordinal();
+        queued[stage].decrementAndGet();
+        final Thread thread = Thread.currentThread();
+        final SingleThreadMonitor monitor = thread instanceof WorkerThread ? ((WorkerThread) thread).monitor : NullThreadMonitor.getInstance();
+        try {
+            entry.task.enact();
+            monitor.increment(stage);
+        } catch (Exception e) {
+            monitor.addError(e);
+            logger.error("Error in chunk task", e);
+        } finally {
+            completed[stage].incrementAndGet();
+            latency[stage].addAndGet(System.nanoTime() - entry.created);
+            if (entry.state != null) {
+                finished(entry.task.getPosition(), entry.state);
+            }
+        }
+    }
+
+    /**
+     * Called after a stage task has run. If the task did not advance its chunk, the chunk is stalled and will be
+     * scheduled again on the next state change of a neighbour or the next review.
+     */
+    private void finished(Vector3i position, ChunkState state) {
+        synchronized (nodes) {
+            final Node node = nodes.get(position);
+            if (node != null && node.scheduled && node.state == state) {
+                node.scheduled = false;
+                node.stalled = true;
+            }
+        }
+    }
+
+    private static class Node {
+        private final Vector3i position;
+        private ChunkState state;
+        private int waiting;
+        private boolean scheduled;
+        private boolean stalled;
+
+        public Node(Vector3i position) {
+            this.position = new Vector3i(position);
+        }
+
+        public boolean isPending() {
+            return state != null && state != ChunkState.COMPLETE;
+        }
+    }
+
+    private static class Entry {
+        private final Stage stage;
+        private final ChunkTask task;
+        private final ChunkState state;
+        private final long created = System.nanoTime();
+
+        public Entry(Stage stage, ChunkTask task, ChunkState state) {
+            this.stage = stage;
+            this.task = task;
+            this.state = state;
+        }
+    }
+
+    private class EntryComparator implements Comparator<Entry> {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return relevance.compare(o1.task, o2.task);
+        }
+    }
+
+    private static class WorkerThread extends ForkJoinWorkerThread {
+        private SingleThreadMonitor monitor = NullThreadMonitor.getInstance();
+
+        public WorkerThread(ForkJoinPool pool) {
+            super(pool);
+            setPriority(Thread.MIN_PRIORITY);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            monitor = ThreadMonitor.create("Terasology.Chunks.Processing", STAGE_NAMES);
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            if (exception != null) {
+                monitor.addError(exception);
+            }
+            monitor.setActive(false);
+            super.onTermination(exception);
+        }
+    }
+}
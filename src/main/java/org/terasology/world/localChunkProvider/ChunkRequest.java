@@ -24,10 +24,6 @@ import org.terasology.math.Region3i;
 public class ChunkRequest implements Comparable<ChunkRequest> {
 
     public enum RequestType {
-        /**
-         * If available, check whether the chunks can be further generated
-         */
-        REVIEW,
         /**
          * Retrieve the chunks from the chunk store or generate them if missing
          */
@@ -26,8 +26,6 @@ public interface ChunkTask {
 
     void enact();
 
-    boolean isShutdownRequest();
-
     Vector3i getPosition();
 
     ChunkProvider getProvider();
@@ -91,6 +91,12 @@ void main() {
 
     vec2 texCoord = gl_TexCoord[0].xy;
 
+    // Merged faces repeat a single tile of the atlas - see ChunkTessellator
+    if (checkFlag(BLOCK_HINT_TILED, blockHint)) {
+        vec2 tile = floor(texCoord / TILED_TEXTURE_SPAN);
+        texCoord = (tile + fract(texCoord - tile * TILED_TEXTURE_SPAN)) * TEXTURE_OFFSET;
+    }
+
     vec3 normalizedVPos = -normalize(vertexViewPos.xyz);
     vec2 projectedPos = projectVertexToTexCoord(vertexProjPos);
     vec3 normalOpaque = normal;
@@ -109,13 +109,16 @@ varying float blockHint;
 
 void main()
 {
+	// Positions and lighting values are packed into shorts - see ChunkMesh
+	vec4 vertexPos = vec4(gl_Vertex.xyz * CHUNK_POSITION_SCALE, 1.0);
+
 	gl_TexCoord[0] = gl_MultiTexCoord0;
-	blockHint = int(gl_TexCoord[0].z);
+	blockHint = int(gl_MultiTexCoord1.w);
 
-    gl_TexCoord[1] = gl_MultiTexCoord1;
+    gl_TexCoord[1] = vec4(gl_MultiTexCoord1.xyz * CHUNK_LIGHT_SCALE, 1.0);
 
-	vertexViewPos = gl_ModelViewMatrix * gl_Vertex;
-	vertexWorldPos = gl_Vertex.xyz + chunkPositionWorld.xyz;
+	vertexViewPos = gl_ModelViewMatrix * vertexPos;
+	vertexWorldPos = vertexPos.xyz + chunkPositionWorld.xyz;
 
 	sunVecView = (gl_ModelViewMatrix * vec4(sunVec.x, sunVec.y, sunVec.z, 0.0)).xyz;
 
@@ -18,7 +18,8 @@ varying vec4 positionProj;
 
 void main()
 {
-	gl_Position = ftransform();
+	// Chunk positions are packed into shorts - see ChunkMesh
+	gl_Position = gl_ModelViewProjectionMatrix * vec4(gl_Vertex.xyz * CHUNK_POSITION_SCALE, 1.0);
 	positionProj = gl_Position;
 
     gl_FrontColor = gl_Color;
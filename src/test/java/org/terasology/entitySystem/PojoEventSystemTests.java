@@ -117,6 +117,62 @@ public class PojoEventSystemTests {
         assertEquals(entity, handler.receivedList.get(0).entity);
     }
 
+    @Test
+    public void testReceiveEventAfterComponentsChanged() {
+        entity.addComponent(new StringComponent());
+
+        TestCompoundComponentEventHandler handler = new TestCompoundComponentEventHandler();
+        eventSystem.registerEventHandler(handler);
+
+        eventSystem.send(entity, new TestEvent());
+        assertEquals(0, handler.receivedList.size());
+
+        entity.addComponent(new IntegerComponent());
+        eventSystem.send(entity, new TestEvent());
+        assertEquals(1, handler.receivedList.size());
+
+        entity.removeComponent(StringComponent.class);
+        eventSystem.send(entity, new TestEvent());
+        assertEquals(1, handler.receivedList.size());
+    }
+
+    @Test
+    public void testNoReceiveEventOnReusedIdAfterClear() {
+        entity.addComponent(new StringComponent());
+
+        TestEventHandler handler = new TestEventHandler();
+        eventSystem.registerEventHandler(handler);
+
+        entity.send(new TestEvent());
+        assertEquals(1, handler.receivedList.size());
+
+        entityManager.clear();
+        EntityRef newEntity = entityManager.create();
+        assertEquals(entity.getId(), newEntity.getId());
+
+        newEntity.send(new TestEvent());
+        assertEquals(1, handler.receivedList.size());
+    }
+
+    @Test
+    public void testNoReceiveEventOnReusedIdAfterDestroy() {
+        entity.addComponent(new StringComponent());
+
+        TestEventHandler handler = new TestEventHandler();
+        eventSystem.registerEventHandler(handler);
+
+        entity.send(new TestEvent());
+        assertEquals(1, handler.receivedList.size());
+
+        int id = entity.getId();
+        entity.destroy();
+        EntityRef newEntity = entityManager.create();
+        assertEquals(id, newEntity.getId());
+
+        newEntity.send(new TestEvent());
+        assertEquals(1, handler.receivedList.size());
+    }
+
     @Test
     public void testPriorityAndCancel() {
         StringComponent stringComponent = entity.addComponent(new StringComponent());
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.entitySystem.pojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.TIntList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.entitySystem.Component;
+import org.terasology.entitySystem.stubs.IntegerComponent;
+import org.terasology.entitySystem.stubs.StringComponent;
+
+import com.google.common.collect.Lists;
+
+public class ArchetypeComponentStoreTest {
+
+    private ArchetypeComponentStore store;
+
+    @Before
+    public void setup() {
+        store = new ArchetypeComponentStore();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        StringComponent string = new StringComponent();
+        IntegerComponent integer = new IntegerComponent();
+        assertNull(store.put(1, string));
+        assertNull(store.put(1, integer));
+        assertSame(string, store.get(1, StringComponent.class));
+        assertSame(integer, store.get(1, IntegerComponent.class));
+        assertNull(store.get(2, StringComponent.class));
+
+        StringComponent replacement = new StringComponent();
+        assertSame(string, store.put(1, replacement));
+        assertSame(replacement, store.get(1, StringComponent.class));
+        assertEquals(1, store.numEntities());
+    }
+
+    @Test
+    public void testRemoveMovesEntityBetweenArchetypes() {
+        StringComponent string = new StringComponent();
+        IntegerComponent integer = new IntegerComponent();
+        store.put(1, string);
+        store.put(1, integer);
+        store.put(2, new StringComponent());
+        store.put(2, new IntegerComponent());
+
+        assertSame(string, store.remove(1, StringComponent.class));
+        assertNull(store.get(1, StringComponent.class));
+        assertSame(integer, store.get(1, IntegerComponent.class));
+        assertEquals(1, store.getComponentCount(StringComponent.class));
+        assertEquals(2, store.getComponentCount(IntegerComponent.class));
+
+        store.remove(1, IntegerComponent.class);
+        assertFalse(store.iterateComponents(1).iterator().hasNext());
+        assertEquals(1, store.numEntities());
+        assertEquals(2, Lists.newArrayList(store.iterateComponents(2)).size());
+    }
+
+    @Test
+    public void testFindEntities() {
+        for (int id = 1; id <= 100; id++) {
+            store.put(id, new StringComponent());
+            if (id % 2 == 0) {
+                store.put(id, new IntegerComponent());
+            }
+        }
+        store.remove(10);
+
+        TIntList both = store.findEntities(StringComponent.class, IntegerComponent.class);
+        assertEquals(49, both.size());
+        for (int i = 0; i < both.size(); i++) {
+            assertTrue(both.get(i) % 2 == 0);
+            assertTrue(both.get(i) != 10);
+        }
+        assertEquals(99, store.findEntities(StringComponent.class).size());
+    }
+
+    @Test
+    public void testComponentIterator() {
+        store.put(1, new StringComponent());
+        store.put(2, new StringComponent());
+        store.put(2, new IntegerComponent());
+        assertNull(store.componentIterator(Component.class));
+
+        int count = 0;
+        int idSum = 0;
+        TIntObjectIterator<StringComponent> iterator = store.componentIterator(StringComponent.class);
+        while (iterator.hasNext()) {
+            iterator.advance();
+            assertSame(iterator.value(), store.get(iterator.key(), StringComponent.class));
+            idSum += iterator.key();
+            count++;
+        }
+        assertEquals(2, count);
+        assertEquals(3, idSum);
+    }
+}
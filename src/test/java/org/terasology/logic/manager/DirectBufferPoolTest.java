@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.logic.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class DirectBufferPoolTest {
+
+    @Test
+    public void testBuffersAreRoundedUpToSizeClasses() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20);
+        ByteBuffer small = pool.acquire(1);
+        assertTrue(small.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), small.order());
+        assertEquals(4096, small.capacity());
+        assertEquals(1, small.limit());
+        assertEquals(0, small.position());
+
+        ByteBuffer exact = pool.acquire(8192);
+        assertEquals(8192, exact.capacity());
+        assertEquals(8192, exact.limit());
+
+        ByteBuffer rounded = pool.acquire(8193);
+        assertEquals(16384, rounded.capacity());
+        assertEquals(8193, rounded.limit());
+
+        assertEquals(0, pool.acquire(0).capacity());
+    }
+
+    @Test
+    public void testReleasedBuffersAreReusedForTheSameSizeClass() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20);
+        ByteBuffer buffer = pool.acquire(5000);
+        buffer.position(100);
+        pool.release(buffer);
+        assertEquals(8192, pool.getPooledBytes());
+
+        assertNotSame(buffer, pool.acquire(100));
+        ByteBuffer reused = pool.acquire(6000);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(6000, reused.limit());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testPoolIsCappedAtMaxPooledBytes() {
+        DirectBufferPool pool = new DirectBufferPool(10000);
+        ByteBuffer first = pool.acquire(4096);
+        ByteBuffer second = pool.acquire(4096);
+        ByteBuffer third = pool.acquire(4096);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(8192, pool.getPooledBytes());
+
+        assertSame(second, pool.acquire(4096));
+        assertSame(first, pool.acquire(4096));
+        assertNotSame(third, pool.acquire(4096));
+    }
+
+    @Test
+    public void testOversizeBuffersAreNotPooled() {
+        DirectBufferPool pool = new DirectBufferPool(1L << 30);
+        int size = (1 << 24) + 1;
+        ByteBuffer buffer = pool.acquire(size);
+        assertEquals(size, buffer.capacity());
+        assertEquals(size, buffer.limit());
+        pool.release(buffer);
+        assertEquals(0, pool.getPooledBytes());
+
+        pool.release(ByteBuffer.allocateDirect(1 << 25));
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testForeignBuffersOutsideTheSizeClassesAreIgnored() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20);
+        pool.release(ByteBuffer.allocateDirect(5000));
+        pool.release(ByteBuffer.allocateDirect(1024));
+        assertEquals(0, pool.getPooledBytes());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.physics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.vecmath.Vector3f;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Region3i;
+import org.terasology.math.Vector3i;
+import org.terasology.testUtil.ChunkProviderStub;
+import org.terasology.world.WorldProvider;
+import org.terasology.world.WorldProviderCoreImpl;
+import org.terasology.world.WorldProviderWrapper;
+import org.terasology.world.block.Block;
+import org.terasology.world.block.BlockUri;
+import org.terasology.world.block.family.SymmetricFamily;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.chunks.Chunk;
+
+import com.bulletphysics.collision.shapes.BoxShape;
+
+public class PhysicsWorldWrapperTest {
+
+    private WorldProvider world;
+    private PhysicsWorldWrapper wrapper;
+    private Block air;
+    private Block stone;
+
+    @Before
+    public void setup() {
+        CoreRegistry.put(Config.class, new Config());
+        air = BlockManager.getInstance().getAir();
+        stone = new Block();
+        stone.setDisplayName("Stone");
+        stone.setUri(new BlockUri("unittest:collidingStone"));
+        stone.setCollision(new Vector3f(), new BoxShape(new Vector3f(0.5f, 0.5f, 0.5f)));
+        BlockManager.getInstance().addBlockFamily(new SymmetricFamily(stone.getURI(), stone));
+        stone = BlockManager.getInstance().getBlock(stone.getURI());
+
+        ChunkProviderStub chunkProvider = new ChunkProviderStub();
+        chunkProvider.load(Region3i.createFromCenterExtents(new Vector3i(), new Vector3i(1, 0, 1)));
+        world = new WorldProviderWrapper(new WorldProviderCoreImpl("test", "seed", 0, null, chunkProvider) {
+            @Override
+            public void setTime(long time) {
+                // the engine timer requires the native libraries
+            }
+        });
+        wrapper = new PhysicsWorldWrapper(world);
+    }
+
+    @Test
+    public void testChangedBlockIsVisibleAfterCommit() {
+        assertFalse(wrapper.getCollisionShapeAt(1, 2, 3).isColliding());
+        assertEquals(1, wrapper.getSnapshotCount());
+
+        world.setBlock(new Vector3i(1, 2, 3), stone, air);
+        assertFalse(wrapper.getCollisionShapeAt(1, 2, 3).isColliding());
+
+        wrapper.blockChanged(new Vector3i(1, 2, 3));
+        wrapper.commitChanges();
+        assertTrue(wrapper.getCollisionShapeAt(1, 2, 3).isColliding());
+        assertEquals(new Vector3i(1, 2, 3), wrapper.getCollisionShapeAt(1, 2, 3).getUserData());
+    }
+
+    @Test
+    public void testGeneratedBlockIsVisibleOnceChunkIsReady() {
+        assertFalse(wrapper.getCollisionShapeAt(1, 2, 3).isColliding());
+
+        // the generator changes blocks without block change events
+        world.setBlock(new Vector3i(1, 2, 3), stone, air);
+        wrapper.chunkReady(new Vector3i(0, 0, 0));
+        wrapper.commitChanges();
+        assertEquals(0, wrapper.getSnapshotCount());
+        assertTrue(wrapper.getCollisionShapeAt(1, 2, 3).isColliding());
+    }
+
+    @Test
+    public void testUnloadedChunksAreEmpty() {
+        assertFalse(wrapper.getCollisionShapeAt(5 * Chunk.SIZE_X, 2, 3).isColliding());
+        assertEquals(0, wrapper.getSnapshotCount());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.rendering.primitives;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.asset.AssetType;
+import org.terasology.asset.AssetUri;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Region3i;
+import org.terasology.math.Vector3i;
+import org.terasology.world.WorldBiomeProviderImpl;
+import org.terasology.world.WorldView;
+import org.terasology.world.block.Block;
+import org.terasology.world.block.BlockPart;
+import org.terasology.world.block.BlockUri;
+import org.terasology.world.block.family.SymmetricFamily;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.block.shapes.BlockMeshPart;
+import org.terasology.world.block.shapes.BlockShape;
+import org.terasology.world.block.shapes.JsonBlockShapeLoader;
+import org.terasology.world.chunks.Chunk;
+
+import javax.vecmath.Vector2f;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkTessellatorTest {
+
+    private static final int MESH_HEIGHT = 4;
+
+    private Chunk chunk;
+    private WorldView view;
+    private ChunkTessellator tessellator;
+    private Block stone;
+    private Block otherStone;
+    private Block wavingStone;
+
+    @Before
+    public void setup() throws IOException {
+        Config config = new Config();
+        config.getRendering().setGreedyMeshing(true);
+        CoreRegistry.put(Config.class, config);
+
+        chunk = new Chunk(new Vector3i(0, 0, 0));
+        Chunk[] chunks = new Chunk[]{new Chunk(new Vector3i(-1, 0, -1)), new Chunk(new Vector3i(0, 0, -1)), new Chunk(new Vector3i(1, 0, -1)),
+                new Chunk(new Vector3i(-1, 0, 0)), chunk, new Chunk(new Vector3i(1, 0, 0)),
+                new Chunk(new Vector3i(-1, 0, 1)), new Chunk(new Vector3i(0, 0, 1)), new Chunk(new Vector3i(1, 0, 1))};
+        view = new WorldView(chunks, Region3i.createFromCenterExtents(new Vector3i(0, 0, 0), new Vector3i(1, 0, 1)), new Vector3i(1, 1, 1));
+        tessellator = new ChunkTessellator(new WorldBiomeProviderImpl("tessellator"));
+
+        BlockShape cube;
+        InputStream stream = getClass().getResourceAsStream("/assets/shapes/cube.json");
+        try {
+            cube = new JsonBlockShapeLoader().load(new AssetUri(AssetType.SHAPE, "engine:cube"), stream, Collections.<URL>emptyList());
+        } finally {
+            stream.close();
+        }
+        stone = createBlock(cube, "unittest:tessellatorStone", 1);
+        otherStone = createBlock(cube, "unittest:tessellatorOtherStone", 1);
+        wavingStone = createBlock(cube, "unittest:tessellatorWavingStone", 2);
+        wavingStone.setWaving(true);
+    }
+
+    private Block createBlock(BlockShape shape, String uri, int tile) {
+        Block block = new Block();
+        block.setUri(new BlockUri(uri));
+        Vector2f atlasPos = new Vector2f(tile * Block.calcRelativeTileSize(), 0);
+        for (BlockPart part : BlockPart.values()) {
+            BlockMeshPart meshPart = shape.getMeshPart(part);
+            if (meshPart != null) {
+                block.setMeshPart(part, meshPart.mapTexCoords(atlasPos, Block.calcRelativeTileSizeWithOffset()));
+                if (part.isSide()) {
+                    block.setFullSide(part.getSide(), shape.isBlockingSide(part.getSide()));
+                }
+            }
+        }
+        BlockManager.getInstance().addBlockFamily(new SymmetricFamily(block.getURI(), block), true);
+        return block;
+    }
+
+    @Test
+    public void testFlatSlabIsMergedIntoOneQuadPerSide() {
+        fill(stone, 0, 3, 0, 2);
+
+        ChunkMesh.VertexElements elements = tessellate();
+        assertEquals(6, elements.vtxCount / 4);
+        for (int quad = 0; quad < elements.vtxCount / 4; quad++) {
+            assertEquals(ChunkTessellator.ChunkVertexFlags.BLOCK_HINT_TILED.getValue(), elements.flags.get(quad * 4));
+        }
+
+        List<Integer> top = topQuads(elements);
+        assertEquals(1, top.size());
+        float[] bounds = bounds(elements, top.get(0));
+        assertEquals(-0.5f, bounds[0], 0.001f);
+        assertEquals(3.5f, bounds[3], 0.001f);
+        assertEquals(1.5f, bounds[1], 0.001f);
+        assertEquals(1.5f, bounds[4], 0.001f);
+        assertEquals(-0.5f, bounds[2], 0.001f);
+        assertEquals(2.5f, bounds[5], 0.001f);
+    }
+
+    @Test
+    public void testFacesOfDifferentBlocksAreNotMerged() {
+        fill(stone, 0, 1, 0, 2);
+        fill(otherStone, 2, 3, 0, 2);
+
+        ChunkMesh.VertexElements elements = tessellate();
+        List<Integer> top = topQuads(elements);
+        assertEquals(2, top.size());
+        for (int quad : top) {
+            float[] bounds = bounds(elements, quad);
+            assertEquals(2.0f, bounds[3] - bounds[0], 0.001f);
+            assertEquals(3.0f, bounds[5] - bounds[2], 0.001f);
+        }
+    }
+
+    @Test
+    public void testFacesWithDifferentLightingAreNotMerged() {
+        fill(stone, 0, 3, 0, 2);
+        for (int z = -1; z <= 3; z++) {
+            for (int y = 2; y < MESH_HEIGHT; y++) {
+                view.setLight(3, y, z, Chunk.MAX_LIGHT);
+            }
+        }
+
+        ChunkMesh.VertexElements elements = tessellate();
+        List<Integer> top = topQuads(elements);
+        assertTrue(top.size() > 1);
+        for (int quad : top) {
+            float[] bounds = bounds(elements, quad);
+            assertTrue("merged across the light", bounds[0] > -0.5f || bounds[3] < 3.5f);
+        }
+    }
+
+    @Test
+    public void testFacesWithVertexFlagsAreNotMerged() {
+        fill(wavingStone, 0, 3, 0, 2);
+
+        ChunkMesh.VertexElements elements = tessellate();
+        List<Integer> top = topQuads(elements);
+        assertEquals(12, top.size());
+        for (int quad = 0; quad < elements.vtxCount / 4; quad++) {
+            assertEquals(ChunkTessellator.ChunkVertexFlags.BLOCK_HINT_WAVING_BLOCK.getValue(), elements.flags.get(quad * 4));
+        }
+    }
+
+    /**
+     * Places a one block high slab at y = 1.
+     */
+    private void fill(Block block, int minX, int maxX, int minZ, int maxZ) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                chunk.setBlock(x, 1, z, block);
+            }
+        }
+    }
+
+    private ChunkMesh.VertexElements tessellate() {
+        ChunkMesh mesh = tessellator.generateMesh(view, new Vector3i(0, 0, 0), MESH_HEIGHT, 0);
+        return mesh.vertexElements[ChunkMesh.RENDER_TYPE.OPAQUE.getIndex()];
+    }
+
+    private List<Integer> topQuads(ChunkMesh.VertexElements elements) {
+        List<Integer> result = Lists.newArrayList();
+        for (int quad = 0; quad < elements.vtxCount / 4; quad++) {
+            if (elements.normals.get(quad * 12 + 1) > 0.5f) {
+                result.add(quad);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The minimum x, y and z followed by the maximum x, y and z of the vertices of the quad
+     */
+    private float[] bounds(ChunkMesh.VertexElements elements, int quad) {
+        float[] result = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int vertex = quad * 4; vertex < quad * 4 + 4; vertex++) {
+            for (int axis = 0; axis < 3; axis++) {
+                float value = elements.vertices.get(vertex * 3 + axis);
+                result[axis] = Math.min(result[axis], value);
+                result[axis + 3] = Math.max(result[axis + 3], value);
+            }
+        }
+        return result;
+    }
+}
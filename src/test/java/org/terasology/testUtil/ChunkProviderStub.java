@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.testUtil;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.terasology.entitySystem.EntityRef;
+import org.terasology.math.Region3i;
+import org.terasology.math.Vector3i;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.chunks.provider.ChunkProvider;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * A chunk provider over a fixed set of empty chunks, which records the positions of all requested chunks.
+ */
+public class ChunkProviderStub implements ChunkProvider {
+    private final Map<Vector3i, Chunk> chunks = Maps.newHashMap();
+    private final Set<Vector3i> requested = Sets.newHashSet();
+
+    /**
+     * Adds empty, clean chunks for all positions in the region.
+     */
+    public void load(Region3i region) {
+        for (Vector3i pos : region) {
+            Chunk chunk = new Chunk(pos);
+            chunk.setDirty(false);
+            chunks.put(pos, chunk);
+        }
+    }
+
+    public Iterable<Chunk> getChunks() {
+        return chunks.values();
+    }
+
+    public boolean wasRequested(Vector3i chunkPos) {
+        return requested.contains(chunkPos);
+    }
+
+    @Override
+    public void setWorldEntity(EntityRef entity) {
+    }
+
+    @Override
+    public void addRegionEntity(EntityRef entity, int distance) {
+    }
+
+    @Override
+    public void removeRegionEntity(EntityRef entity) {
+    }
+
+    @Override
+    public void update() {
+    }
+
+    @Override
+    public boolean isChunkAvailable(Vector3i pos) {
+        return chunks.containsKey(pos);
+    }
+
+    @Override
+    public Chunk getChunk(int x, int y, int z) {
+        return getChunk(new Vector3i(x, y, z));
+    }
+
+    @Override
+    public Chunk getChunk(Vector3i chunkPos) {
+        requested.add(new Vector3i(chunkPos));
+        return chunks.get(chunkPos);
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return 0;
+    }
+
+    @Override
+    public float size() {
+        return chunks.size();
+    }
+}
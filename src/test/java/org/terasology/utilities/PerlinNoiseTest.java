@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.utilities;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PerlinNoiseTest {
+
+    @Test
+    public void testGridMatchesSinglePoints() {
+        PerlinNoise noise = new PerlinNoise(12345);
+        noise.setOctaves(8);
+        double[] xs = {-1000.25, -0.5, 0, 0.004 * 17, 3.75};
+        double[] ys = {0, 0.001 * 64, 1.5, 250.125};
+        double[] zs = {-7.125, 0.0009 * -3, 42};
+        double[] output = new double[xs.length * ys.length * zs.length];
+        noise.fBm(xs, ys, zs, output);
+        for (int i = 0; i < xs.length; i++) {
+            for (int k = 0; k < zs.length; k++) {
+                for (int j = 0; j < ys.length; j++) {
+                    assertEquals(noise.fBm(xs[i], ys[j], zs[k]), output[(i * zs.length + k) * ys.length + j], 0.0);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGridOutputTooSmall() {
+        new PerlinNoise(1).fBm(new double[2], new double[2], new double[2], new double[7]);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.utilities.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.terasology.world.chunks.provider.ChunkCache;
+
+public class ConcurrentLongObjectMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<String>();
+        assertNull(map.put(5, "a"));
+        assertEquals("a", map.putIfAbsent(5, "b"));
+        assertEquals("a", map.put(5, "c"));
+        assertEquals("c", map.get(5));
+        assertFalse(map.remove(5, "a"));
+        assertTrue(map.remove(5, "c"));
+        assertNull(map.get(5));
+        assertTrue(map.isEmpty());
+        assertNull(map.putIfAbsent(5, "d"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<Long>();
+        for (long i = -1000; i < 1000; i++) {
+            map.put(i * 31, i);
+        }
+        for (long i = -1000; i < 1000; i += 2) {
+            assertEquals(Long.valueOf(i), map.remove(i * 31));
+        }
+        for (long i = 1000; i < 3000; i++) {
+            map.put(i * 31, i);
+        }
+        assertEquals(3000, map.size());
+        assertEquals(3000, map.values().size());
+        for (long i = -1000; i < 3000; i++) {
+            if (i < 1000 && (i & 1) == 0) {
+                assertNull(map.get(i * 31));
+            } else {
+                assertEquals(Long.valueOf(i), map.get(i * 31));
+            }
+        }
+    }
+
+    @Test
+    public void testChunkKeysAreDistinct() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<String>();
+        for (int x = -2; x <= 2; x++) {
+            for (int z = -2; z <= 2; z++) {
+                assertNull(map.put(ChunkCache.key(x, 0, z), x + ":" + z));
+            }
+        }
+        assertEquals("-2:1", map.get(ChunkCache.key(-2, 0, 1)));
+        assertEquals(25, map.size());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.math.Vector3i;
+
+public class BlockUpdateSchedulerTest {
+
+    private final AtomicLong time = new AtomicLong();
+    private BlockUpdateScheduler<String> scheduler;
+
+    @Before
+    public void setup() {
+        time.set(1000);
+        scheduler = new BlockUpdateScheduler<String>(1, 10, new BlockUpdateScheduler.TimeSource() {
+            @Override
+            public long getTime() {
+                return time.get();
+            }
+        });
+    }
+
+    @Test
+    public void testUpdatesAreReturnedWhenDue() throws InterruptedException {
+        scheduler.schedule(Vector3i.zero(), "late", 2000);
+        scheduler.schedule(Vector3i.zero(), "early", 1200);
+        scheduler.schedule(Vector3i.zero(), "now", 0);
+        assertEquals("now", scheduler.take(0));
+        time.set(1200);
+        assertEquals("early", scheduler.take(0));
+        // further than one revolution of the wheel
+        time.set(5000);
+        assertEquals("late", scheduler.take(0));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testDuplicatesAreMerged() throws InterruptedException {
+        assertTrue(scheduler.schedule(Vector3i.zero(), "a", 1500));
+        assertFalse(scheduler.schedule(Vector3i.zero(), "a", 1600));
+        assertTrue(scheduler.schedule(Vector3i.zero(), "a", 1100));
+        assertEquals(1, scheduler.size());
+        time.set(1100);
+        assertEquals("a", scheduler.take(0));
+        assertEquals(0, scheduler.size());
+        assertTrue(scheduler.schedule(Vector3i.zero(), "a", 1100));
+    }
+
+    @Test
+    public void testUpdatesAreNotReturnedBeforeDue() throws InterruptedException {
+        scheduler = new BlockUpdateScheduler<String>(1, 10, new BlockUpdateScheduler.TimeSource() {
+            @Override
+            public long getTime() {
+                return time.get();
+            }
+        });
+        scheduler.schedule(Vector3i.zero(), "due", 1205);
+        time.set(1204);
+        shutdownLater();
+        assertNull(scheduler.take(0));
+    }
+
+    @Test
+    public void testUpdatesAreReturnedAtTheFirstTickAfterDue() throws InterruptedException {
+        scheduler = new BlockUpdateScheduler<String>(1, 10, new BlockUpdateScheduler.TimeSource() {
+            @Override
+            public long getTime() {
+                return time.get();
+            }
+        });
+        scheduler.schedule(Vector3i.zero(), "due", 1205);
+        scheduler.schedule(Vector3i.zero(), "onTick", 1210);
+        time.set(1210);
+        assertEquals("due", scheduler.take(0));
+        assertEquals("onTick", scheduler.take(0));
+    }
+
+    private void shutdownLater() {
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                scheduler.shutdown();
+            }
+        }.start();
+    }
+
+    @Test
+    public void testShutdownReleasesWaitingThreads() throws InterruptedException {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                scheduler.shutdown();
+            }
+        };
+        scheduler.schedule(Vector3i.zero(), "pending", 5000);
+        thread.start();
+        assertNull(scheduler.take(0));
+        thread.join();
+    }
+}
@@ -20,13 +20,18 @@ import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.terasology.components.world.LocationComponent;
+import org.terasology.components.world.WorldComponent;
 import org.terasology.entitySystem.EntityManager;
 import org.terasology.entitySystem.EntityRef;
+import org.terasology.entitySystem.EventReceiver;
 import org.terasology.entitySystem.Prefab;
 import org.terasology.entitySystem.PrefabManager;
+import org.terasology.entitySystem.event.AddComponentEvent;
 import org.terasology.entitySystem.stubs.StringComponent;
 import org.terasology.game.bootstrap.EntitySystemBuilder;
 import org.terasology.logic.mod.ModManager;
+import org.terasology.math.Vector3i;
 import org.terasology.testUtil.WorldProviderCoreStub;
 import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockComponent;
@@ -132,6 +137,105 @@ public class EntityAwareWorldProviderTest {
         assertFalse(blockEntities.get(0).getComponent(BlockComponent.class).temporary);
     }
 
+    @Test
+    public void testOffThreadChangesAreCoalesced() throws InterruptedException {
+        final Block air = BlockManager.getInstance().getAir();
+        final Block block = new Block();
+        BlockManager.getInstance().addBlockFamily(new SymmetricFamily(new BlockUri("unittest:block"), block));
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                worldProvider.setBlock(0, 0, 0, block, air);
+                worldProvider.setBlock(0, 0, 0, air, block);
+                worldProvider.setBlock(1, 0, 0, block, air);
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertEquals(1, worldProvider.getPendingEventCount());
+        worldProvider.update(0);
+        assertEquals(0, worldProvider.getPendingEventCount());
+        assertFalse(worldProvider.getBlockEntityAt(new Vector3i(1, 0, 0)).exists());
+    }
+
+    @Test
+    public void testTemporaryEntityIsDestroyedAfterDelivery() throws InterruptedException {
+        final Block air = BlockManager.getInstance().getAir();
+        final Block block = new Block();
+        SymmetricFamily family = new SymmetricFamily(new BlockUri("unittest:block"), block);
+        BlockManager.getInstance().addBlockFamily(family);
+        worldProvider.registerBlockEntityEvents(family);
+        final List<BlockComponent> received = Lists.newArrayList();
+        entityManager.getEventSystem().registerEventReceiver(new EventReceiver<BlockChangedEvent>() {
+            @Override
+            public void onEvent(BlockChangedEvent event, EntityRef entity) {
+                received.add(entity.getComponent(BlockComponent.class));
+                assertNotNull(entity.getComponent(LocationComponent.class));
+            }
+        }, BlockChangedEvent.class, BlockComponent.class);
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                worldProvider.setBlock(0, 0, 0, block, air);
+                worldProvider.setBlock(1, 0, 0, block, air);
+            }
+        };
+        thread.start();
+        thread.join();
+        while (worldProvider.getPendingEventCount() > 0) {
+            worldProvider.update(0);
+        }
+
+        assertEquals(2, received.size());
+        assertEquals(new Vector3i(0, 0, 0), received.get(0).getPosition());
+        assertEquals(new Vector3i(1, 0, 0), received.get(1).getPosition());
+        assertTrue(received.get(0).temporary);
+        assertFalse(entityManager.iteratorEntities(BlockComponent.class).iterator().hasNext());
+    }
+
+    @Test
+    public void testNoEntityIsCreatedForBlockWithoutEntityHandlers() throws InterruptedException {
+        final Block air = BlockManager.getInstance().getAir();
+        final Block block = new Block();
+        BlockManager.getInstance().addBlockFamily(new SymmetricFamily(new BlockUri("unittest:plainblock"), block));
+        EntityRef worldEntity = entityManager.create();
+        worldEntity.addComponent(new WorldComponent());
+        final List<Vector3i> received = Lists.newArrayList();
+        entityManager.getEventSystem().registerEventReceiver(new EventReceiver<BlockChangedEvent>() {
+            @Override
+            public void onEvent(BlockChangedEvent event, EntityRef entity) {
+                received.add(event.getBlockPosition());
+                assertFalse(worldProvider.getBlockEntityAt(event.getBlockPosition()).exists());
+            }
+        }, BlockChangedEvent.class, WorldComponent.class);
+        final List<EntityRef> blockEntities = Lists.newArrayList();
+        entityManager.getEventSystem().registerEventReceiver(new EventReceiver<AddComponentEvent>() {
+            @Override
+            public void onEvent(AddComponentEvent event, EntityRef entity) {
+                blockEntities.add(entity);
+            }
+        }, AddComponentEvent.class, BlockComponent.class);
+
+        assertTrue(worldProvider.setBlock(0, 0, 0, block, air));
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                worldProvider.setBlock(1, 0, 0, block, air);
+            }
+        };
+        thread.start();
+        thread.join();
+        while (worldProvider.getPendingEventCount() > 0) {
+            worldProvider.update(0);
+        }
+
+        assertEquals(Lists.newArrayList(new Vector3i(0, 0, 0), new Vector3i(1, 0, 0)), received);
+        assertTrue(blockEntities.isEmpty());
+    }
+
     @Test
     public void testAddBlockWithPreExistingEntity() {
 
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Region3i;
+import org.terasology.math.Side;
+import org.terasology.math.Vector3i;
+import org.terasology.testUtil.ChunkProviderStub;
+import org.terasology.world.block.Block;
+import org.terasology.world.block.BlockUri;
+import org.terasology.world.block.family.SymmetricFamily;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.chunks.Chunk;
+
+public class WorldProviderCoreImplTest {
+
+    private ChunkProviderStub chunkProvider;
+    private WorldProviderCoreImpl worldProvider;
+    private Block air;
+    private Block stone;
+
+    @Before
+    public void setup() {
+        CoreRegistry.put(Config.class, new Config());
+        air = BlockManager.getInstance().getAir();
+        stone = new Block();
+        stone.setDisplayName("Stone");
+        stone.setUri(new BlockUri("engine:stone"));
+        for (Side side : Side.values()) {
+            stone.setFullSide(side, true);
+        }
+        BlockManager.getInstance().addBlockFamily(new SymmetricFamily(stone.getURI(), stone));
+        stone = BlockManager.getInstance().getBlock(stone.getURI());
+
+        chunkProvider = new ChunkProviderStub();
+        worldProvider = new WorldProviderCoreImpl("test", "seed", 0, null, chunkProvider) {
+            @Override
+            public void setTime(long time) {
+                // the engine timer requires the native libraries
+            }
+        };
+    }
+
+    @Test
+    public void testBatchAcrossSeveralChunks() {
+        chunkProvider.load(Region3i.createFromMinMax(new Vector3i(-1, 0, -1), new Vector3i(2, 0, 1)));
+        Vector3i a = new Vector3i(3, 10, 3);
+        Vector3i b = new Vector3i(Chunk.SIZE_X + 3, 10, 3);
+
+        assertTrue(worldProvider.setBlocks(new BlockUpdate(a, stone, air), new BlockUpdate(b, stone, air)));
+        assertEquals(stone, getBlock(a));
+        assertEquals(stone, getBlock(b));
+        assertTrue(chunkProvider.getChunk(0, 0, 0).isDirty());
+        assertTrue(chunkProvider.getChunk(1, 0, 0).isDirty());
+    }
+
+    @Test
+    public void testUnloadedChunkBetweenUpdatesIsNotRequired() {
+        chunkProvider.load(Region3i.createFromCenterExtents(new Vector3i(0, 0, 0), new Vector3i(1, 0, 1)));
+        chunkProvider.load(Region3i.createFromCenterExtents(new Vector3i(4, 0, 0), new Vector3i(1, 0, 1)));
+        Vector3i a = new Vector3i(8, 10, 8);
+        Vector3i b = new Vector3i(4 * Chunk.SIZE_X + 8, 10, 8);
+
+        assertTrue(worldProvider.setBlocks(new BlockUpdate(a, stone, air), new BlockUpdate(b, stone, air)));
+        assertEquals(stone, getBlock(a));
+        assertEquals(stone, getBlock(b));
+        assertFalse(chunkProvider.wasRequested(new Vector3i(2, 0, 0)));
+    }
+
+    @Test
+    public void testBatchIsNotAppliedWhenAnAffectedChunkIsUnloaded() {
+        chunkProvider.load(Region3i.createFromCenterExtents(new Vector3i(0, 0, 0), new Vector3i(1, 0, 1)));
+        Vector3i a = new Vector3i(8, 10, 8);
+        Vector3i b = new Vector3i(4 * Chunk.SIZE_X + 8, 10, 8);
+
+        assertFalse(worldProvider.setBlocks(new BlockUpdate(a, stone, air), new BlockUpdate(b, stone, air)));
+        assertEquals(air, getBlock(a));
+    }
+
+    @Test
+    public void testBatchIsNotAppliedWhenAnUpdateDoesNotMatch() {
+        chunkProvider.load(Region3i.createFromMinMax(new Vector3i(-1, 0, -1), new Vector3i(2, 0, 1)));
+        Vector3i a = new Vector3i(3, 10, 3);
+        Vector3i b = new Vector3i(Chunk.SIZE_X + 3, 10, 3);
+
+        assertFalse(worldProvider.setBlocks(new BlockUpdate(a, stone, air), new BlockUpdate(b, air, stone)));
+        assertEquals(air, getBlock(a));
+        assertEquals(air, getBlock(b));
+        assertFalse(chunkProvider.getChunk(0, 0, 0).isDirty());
+        for (Chunk chunk : chunkProvider.getChunks()) {
+            assertFalse(chunk.isLocked());
+        }
+    }
+
+    @Test
+    public void testLaterUpdatesSeeEarlierOnes() {
+        chunkProvider.load(Region3i.createFromCenterExtents(new Vector3i(0, 0, 0), new Vector3i(1, 0, 1)));
+        Vector3i a = new Vector3i(3, 10, 3);
+
+        assertTrue(worldProvider.setBlocks(new BlockUpdate(a, stone, air), new BlockUpdate(a, air, stone)));
+        assertEquals(air, getBlock(a));
+    }
+
+    private Block getBlock(Vector3i pos) {
+        return worldProvider.getBlock(pos.x, pos.y, pos.z);
+    }
+}
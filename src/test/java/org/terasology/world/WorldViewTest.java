@@ -107,6 +107,18 @@ public class WorldViewTest {
         assertEquals(solidBlock, worldView.getBlock(0, 0, 0));
     }
 
+    @Test
+    public void blockIdWorldView() {
+        Chunk chunk = new Chunk(new Vector3i());
+        chunk.setBlock(new Vector3i(0,0,0), solidBlock);
+
+        WorldView worldView = new WorldView(new Chunk[] {chunk}, Region3i.createFromCenterExtents(Vector3i.zero(), Vector3i.zero()), new Vector3i());
+        assertEquals(solidBlock.getId().shortValue(), worldView.getBlockId(0, 0, 0));
+        assertEquals(0, worldView.getBlockId(1, 0, 0));
+        assertEquals(0, worldView.getBlockId(-1, 0, 0));
+        assertSame(solidBlock, BlockManager.getInstance().getRenderInfo(worldView.getBlockId(0, 0, 0)).getBlock());
+    }
+
     @Test
     public void localToWorld() {
         Chunk chunk = new Chunk(new Vector3i(1,0,1));
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Vector3i;
+import org.terasology.protobuf.ChunksProtobuf;
+import org.terasology.world.chunks.blockdata.TeraArray;
+
+public class ChunkSerializerTest {
+
+    private ChunkSerializer serializer;
+
+    @Before
+    public void setup() {
+        CoreRegistry.put(Config.class, new Config());
+        serializer = new ChunkSerializer();
+    }
+
+    private static Chunk createChunk() {
+        final Chunk chunk = new Chunk(new Vector3i(-3, 0, 1000));
+        chunk.setChunkState(ChunkState.COMPLETE);
+        for (int x = 0; x < Chunk.SIZE_X; x++) {
+            for (int z = 0; z < Chunk.SIZE_Z; z++) {
+                for (int y = 0; y < 64 + x + z; y++) {
+                    chunk.getBlockData().set(x, y, z, 1 + (x * z + y) % 7);
+                }
+                chunk.getSunlightData().set(x, 100, z, 15);
+                chunk.getLightData().set(x, 10, z, x % 16);
+                chunk.getExtraData().set(x, 20, z, z % 8);
+            }
+        }
+        return chunk;
+    }
+
+    private static void assertArrayEquals(TeraArray expected, TeraArray actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        for (int x = 0; x < expected.getSizeX(); x++) {
+            for (int y = 0; y < expected.getSizeY(); y++) {
+                for (int z = 0; z < expected.getSizeZ(); z++) {
+                    assertEquals(expected.get(x, y, z), actual.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    private static void assertChunkEquals(Chunk expected, Chunk actual) {
+        assertEquals(expected.getPos(), actual.getPos());
+        assertEquals(expected.getChunkState(), actual.getChunkState());
+        assertArrayEquals(expected.getBlockData(), actual.getBlockData());
+        assertArrayEquals(expected.getSunlightData(), actual.getSunlightData());
+        assertArrayEquals(expected.getLightData(), actual.getLightData());
+        assertArrayEquals(expected.getExtraData(), actual.getExtraData());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final Chunk chunk = createChunk();
+        assertChunkEquals(chunk, serializer.deserialize(serializer.serialize(chunk)));
+    }
+
+    @Test
+    public void testCompatibleWithProtobufMessages() throws Exception {
+        final Chunk chunk = createChunk();
+        final ChunksProtobuf.Chunk expected = Chunks.getInstance().encode(chunk);
+
+        final ByteBuffer buffer = serializer.serialize(chunk);
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        assertEquals(expected, ChunksProtobuf.Chunk.parseFrom(data));
+
+        assertChunkEquals(chunk, serializer.deserialize(ByteBuffer.wrap(expected.toByteArray())));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.blockdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.terasology.protobuf.ChunksProtobuf;
+import org.terasology.world.chunks.deflate.TeraStandardDeflator;
+
+public class TeraPaletteArray16BitTest {
+
+    private static final int SIZE_X = 16;
+    private static final int SIZE_Y = 256;
+    private static final int SIZE_Z = 16;
+
+    private static void fill(TeraArray array, int distinct, long seed) {
+        final Random random = new Random(seed);
+        for (int y = 0; y < SIZE_Y; y++) {
+            for (int x = 0; x < SIZE_X; x++) {
+                for (int z = 0; z < SIZE_Z; z++) {
+                    array.set(x, y, z, random.nextInt(distinct) * 37 - 500);
+                }
+            }
+        }
+    }
+
+    private static void assertSameContent(TeraArray expected, TeraArray actual) {
+        for (int y = 0; y < SIZE_Y; y++) {
+            for (int x = 0; x < SIZE_X; x++) {
+                for (int z = 0; z < SIZE_Z; z++) {
+                    assertEquals(expected.get(x, y, z), actual.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGrowsIndexWidth() {
+        final TeraPaletteArray16Bit array = new TeraPaletteArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+        assertEquals(0, array.get(3, 100, 5));
+        final int initialSize = array.getEstimatedMemoryConsumptionInBytes();
+
+        for (int distinct : new int[]{2, 3, 5, 17, 255}) {
+            final TeraDenseArray16Bit expected = new TeraDenseArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+            fill(expected, distinct, distinct);
+            fill(array, distinct, distinct);
+            assertSameContent(expected, array);
+        }
+        assertEquals(256, array.getPaletteSize());
+        assertTrue(array.getEstimatedMemoryConsumptionInBytes() > initialSize);
+        assertEquals(64 * 1024, array.getEstimatedMemoryConsumptionInBytes(), 1024);
+    }
+
+    @Test
+    public void testSwitchesToDenseStorage() {
+        final TeraPaletteArray16Bit array = new TeraPaletteArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+        final TeraDenseArray16Bit expected = new TeraDenseArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+        fill(expected, 300, 5);
+        fill(array, 300, 5);
+        assertEquals(0, array.getPaletteSize());
+        assertSameContent(expected, array);
+        assertEquals(128 * 1024, array.getEstimatedMemoryConsumptionInBytes(), 1024);
+
+        assertEquals(expected.get(1, 2, 3), array.set(1, 2, 3, 12345));
+        assertTrue(array.set(1, 2, 3, -12345, 12345));
+        assertFalse(array.set(1, 2, 3, 7, 12345));
+        assertEquals(-12345, array.get(1, 2, 3));
+        expected.set(1, 2, 3, -12345);
+
+        final ChunksProtobuf.TeraArray message = TeraArrays.getInstance().encode(array);
+        assertEquals(ChunksProtobuf.Type.PaletteArray16Bit, message.getType());
+        assertSameContent(expected, TeraArrays.getInstance().decode(message));
+        assertSameContent(expected, array.copy());
+
+        final TeraArray deflated = new TeraStandardDeflator().deflate(array);
+        assertTrue(deflated instanceof TeraDenseArray16Bit);
+        assertSameContent(expected, deflated);
+    }
+
+    @Test
+    public void testSetWithExpectedValue() {
+        final TeraPaletteArray16Bit array = new TeraPaletteArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+        assertTrue(array.set(1, 2, 3, 42, 0));
+        assertFalse(array.set(1, 2, 3, 7, 0));
+        assertEquals(42, array.get(1, 2, 3));
+        assertEquals(42, array.set(1, 2, 3, -1));
+        assertEquals(-1, array.get(1, 2, 3));
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        final TeraPaletteArray16Bit array = new TeraPaletteArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+        fill(array, 11, 1);
+
+        final ChunksProtobuf.TeraArray message = TeraArrays.getInstance().encode(array);
+        assertEquals(ChunksProtobuf.Type.PaletteArray16Bit, message.getType());
+        final TeraArray decoded = TeraArrays.getInstance().decode(message);
+        assertTrue(decoded instanceof TeraPaletteArray16Bit);
+        assertSameContent(array, decoded);
+        assertSameContent(array, array.copy());
+    }
+
+    @Test
+    public void testDeflateDenseArray() {
+        final TeraDenseArray16Bit dense = new TeraDenseArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+        fill(dense, 12, 2);
+
+        final TeraArray deflated = new TeraStandardDeflator().deflate(dense);
+        assertTrue(deflated instanceof TeraPaletteArray16Bit);
+        assertEquals(32 * 1024, deflated.getEstimatedMemoryConsumptionInBytes(), 1024);
+        assertSameContent(dense, deflated);
+    }
+
+    @Test
+    public void testDeflateDropsUnusedPaletteEntries() {
+        final TeraPaletteArray16Bit array = new TeraPaletteArray16Bit(SIZE_X, SIZE_Y, SIZE_Z);
+        fill(array, 40, 3);
+        fill(array, 3, 4);
+        assertEquals(41, array.getPaletteSize());
+
+        final TeraArray deflated = new TeraStandardDeflator().deflate(array);
+        assertTrue(deflated instanceof TeraPaletteArray16Bit);
+        assertEquals(3, ((TeraPaletteArray16Bit) deflated).getPaletteSize());
+        assertTrue(deflated.getEstimatedMemoryConsumptionInBytes() < array.getEstimatedMemoryConsumptionInBytes());
+        assertSameContent(array, deflated);
+        assertSame(deflated, new TeraStandardDeflator().deflate(deflated));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terasology.protobuf.ChunksProtobuf.CompressedChunks.CompressionMethod;
+
+public class ChunkCodecsTest {
+
+    private static byte[] chunkLikeData(int length) {
+        final Random random = new Random(42);
+        final byte[] data = new byte[length];
+        int i = 0;
+        while (i < length) {
+            final byte value = (byte) random.nextInt(8);
+            final int run = 1 + random.nextInt(300);
+            for (int j = 0; j < run && i < length; j++) {
+                data[i++] = value;
+            }
+        }
+        return data;
+    }
+
+    private static byte[] randomData(int length) {
+        final byte[] data = new byte[length];
+        new Random(7).nextBytes(data);
+        return data;
+    }
+
+    private static void assertRoundTrip(byte[] data) throws IOException {
+        final ChunkCodecs codecs = ChunkCodecs.getInstance();
+        for (final CompressionMethod method : CompressionMethod.values()) {
+            final ChunkCodec codec = codecs.getCodec(method);
+            final byte[] encoded = codecs.encode(codec, data, 0, data.length);
+            assertEquals(method, codecs.getMethod(encoded));
+            assertArrayEquals("Round trip failed for " + method, data, codecs.decode(encoded));
+        }
+    }
+
+    @Test
+    public void testAllMethodsSupported() {
+        for (final CompressionMethod method : CompressionMethod.values()) {
+            assertTrue(ChunkCodecs.getInstance().isSupported(method));
+            assertEquals(method, ChunkCodecs.getInstance().getCodec(method).getMethod());
+        }
+    }
+
+    @Test
+    public void testRoundTripEmpty() throws IOException {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void testRoundTripShort() throws IOException {
+        assertRoundTrip(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+    }
+
+    @Test
+    public void testRoundTripRuns() throws IOException {
+        assertRoundTrip(chunkLikeData(100000));
+        assertRoundTrip(new byte[70000]);
+    }
+
+    @Test
+    public void testRoundTripIncompressible() throws IOException {
+        assertRoundTrip(randomData(50000));
+    }
+
+    @Test
+    public void testLz4CompressesRuns() throws IOException {
+        final byte[] data = chunkLikeData(100000);
+        assertTrue(new Lz4Codec().compress(data, 0, data.length).length < data.length / 10);
+    }
+
+    @Test
+    public void testOffset() throws IOException {
+        final byte[] data = chunkLikeData(5000);
+        final Lz4Codec codec = new Lz4Codec();
+        final byte[] compressed = codec.compress(data, 100, 4000);
+        final byte[] expected = new byte[4000];
+        System.arraycopy(data, 100, expected, 0, 4000);
+        assertArrayEquals(expected, codec.decompress(compressed, 0, compressed.length));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptLz4Data() throws IOException {
+        final byte[] data = chunkLikeData(5000);
+        final Lz4Codec codec = new Lz4Codec();
+        final byte[] compressed = codec.compress(data, 0, data.length);
+        codec.decompress(compressed, 0, compressed.length / 2);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Vector3i;
+import org.terasology.world.chunks.Chunk;
+
+import com.google.common.collect.Lists;
+
+public class ChunkCacheTest {
+
+    private ChunkCache cache;
+    private final List<Vector3i> stored = Lists.newArrayList();
+    private Vector3i pinned;
+
+    private final ChunkCache.EvictionHandler handler = new ChunkCache.EvictionHandler() {
+        @Override
+        public boolean isEvictable(Chunk chunk) {
+            return !chunk.getPos().equals(pinned);
+        }
+
+        @Override
+        public void store(Chunk chunk) {
+            assertTrue(cache.contains(chunk.getPos()));
+            stored.add(chunk.getPos());
+        }
+
+        @Override
+        public void evicted(Chunk chunk) {
+            assertFalse(cache.contains(chunk.getPos()));
+            chunk.dispose();
+        }
+    };
+
+    @Before
+    public void setup() {
+        CoreRegistry.put(Config.class, new Config());
+        cache = new ChunkCache();
+    }
+
+    private Chunk add(int x) {
+        final Chunk chunk = new Chunk(x, 0, 0);
+        cache.putIfAbsent(chunk.getPos(), chunk);
+        return chunk;
+    }
+
+    @Test
+    public void testEvictsUntilBudgetIsMet() {
+        final Chunk a = add(0);
+        add(1);
+        add(2);
+        pinned = new Vector3i(1, 0, 0);
+        assertEquals(3 * a.getEstimatedMemoryConsumptionInBytes(), cache.getSizeInBytes());
+
+        assertEquals(2, cache.evict(0, 100, handler));
+        assertEquals(Lists.newArrayList(new Vector3i(0, 0, 0), new Vector3i(2, 0, 0)), stored);
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains(pinned));
+        assertEquals(a.getEstimatedMemoryConsumptionInBytes(), cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testReferencedChunksGetSecondChance() {
+        final Chunk a = add(0);
+        add(1);
+        final long budget = a.getEstimatedMemoryConsumptionInBytes();
+
+        // newly added chunks count as referenced, the first pass only clears their bits
+        assertEquals(0, cache.evict(budget, 2, handler));
+        cache.get(new Vector3i(0, 0, 0));
+        assertEquals(1, cache.evict(budget, 10, handler));
+        assertEquals(Lists.newArrayList(new Vector3i(1, 0, 0)), stored);
+        assertTrue(cache.contains(new Vector3i(0, 0, 0)));
+    }
+
+    @Test
+    public void testLockedChunksAreNotEvicted() throws InterruptedException {
+        final Chunk a = add(0);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread editor = new Thread() {
+            @Override
+            public void run() {
+                a.lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    // fall through and unlock
+                } finally {
+                    a.unlock();
+                }
+            }
+        };
+        editor.start();
+        locked.await();
+        try {
+            assertEquals(0, cache.evict(0, 10, handler));
+            assertTrue(cache.contains(a.getPos()));
+        } finally {
+            release.countDown();
+            editor.join();
+        }
+        assertEquals(1, cache.evict(0, 10, handler));
+    }
+}
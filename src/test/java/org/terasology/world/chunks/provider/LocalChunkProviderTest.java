@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Vector3i;
+import org.terasology.world.chunks.Chunk;
+import org.terasology.world.chunks.store.ChunkStore;
+
+import com.google.common.collect.Lists;
+
+public class LocalChunkProviderTest {
+
+    private final List<Vector3i> stored = Lists.newArrayList();
+    private ChunkCache cache;
+    private LocalChunkProvider provider;
+
+    private final ChunkStore store = new ChunkStore() {
+        @Override
+        public Chunk get(Vector3i position) {
+            return null;
+        }
+
+        @Override
+        public void put(Chunk c) {
+            stored.add(c.getPos());
+        }
+
+        @Override
+        public boolean contains(Vector3i position) {
+            return false;
+        }
+
+        @Override
+        public int list(List<Vector3i> output) {
+            return 0;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 0;
+        }
+
+        @Override
+        public float size() {
+            return 0;
+        }
+
+        @Override
+        public void dispose() {
+        }
+
+        @Override
+        public void saveToFile(File file) {
+        }
+
+        @Override
+        public void loadFromFile(File file) {
+        }
+    };
+
+    @Before
+    public void setup() {
+        final Config config = new Config();
+        // keep the eviction thread of the provider from evicting on its own
+        config.getAdvanced().setChunkCacheBudget(1024);
+        CoreRegistry.put(Config.class, config);
+        cache = new ChunkCache();
+        provider = new LocalChunkProvider(store, null, cache);
+    }
+
+    @After
+    public void cleanup() {
+        provider.dispose();
+    }
+
+    private Chunk add(int x) {
+        final Chunk chunk = new Chunk(x, 0, 0);
+        cache.putIfAbsent(chunk.getPos(), chunk);
+        return chunk;
+    }
+
+    @Test
+    public void testEvictedChunksAreDisposedOnUpdate() {
+        final Chunk chunk = add(0);
+        assertEquals(1, provider.evict(0));
+        assertFalse(cache.contains(chunk.getPos()));
+        assertEquals(Lists.newArrayList(chunk.getPos()), stored);
+        assertFalse(chunk.isDisposed());
+
+        provider.update();
+        assertTrue(chunk.isDisposed());
+    }
+
+    @Test
+    public void testEvictionSkipsLockedChunks() throws InterruptedException {
+        final Chunk locked = add(0);
+        final Chunk unlocked = add(1);
+        final CountDownLatch lockTaken = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread editor = new Thread() {
+            @Override
+            public void run() {
+                locked.lock();
+                try {
+                    lockTaken.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    // fall through and unlock
+                } finally {
+                    locked.unlock();
+                }
+            }
+        };
+        editor.start();
+        lockTaken.await();
+        try {
+            assertEquals(1, provider.evict(0));
+            assertTrue(cache.contains(locked.getPos()));
+            assertFalse(cache.contains(unlocked.getPos()));
+            assertEquals(Lists.newArrayList(unlocked.getPos()), stored);
+            provider.update();
+            assertFalse(locked.isDisposed());
+            assertTrue(unlocked.isDisposed());
+        } finally {
+            release.countDown();
+            editor.join();
+        }
+        assertEquals(1, provider.evict(0));
+        assertFalse(cache.contains(locked.getPos()));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.chunks.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RegionFileTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("terasology", ".region");
+        file.delete();
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    private static byte[] data(int length, int seed) {
+        final byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) (i * 31 + seed);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSlotIndex() {
+        assertEquals(0, RegionFile.slotIndex(0, 0));
+        assertEquals(RegionFile.SLOTS - 1, RegionFile.slotIndex(-1, -1));
+        assertEquals(1 + RegionFile.REGION_SIZE, RegionFile.slotIndex(RegionFile.REGION_SIZE + 1, 1));
+        assertEquals(-1, RegionFile.regionPos(-1));
+        assertEquals(1, RegionFile.regionPos(RegionFile.REGION_SIZE));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final RegionFile region = new RegionFile(file);
+        try {
+            assertFalse(region.contains(5));
+            assertNull(region.read(5));
+            region.write(5, data(10000, 1));
+            region.write(7, data(100, 2));
+            assertTrue(region.contains(5));
+            assertArrayEquals(data(10000, 1), region.read(5));
+            assertArrayEquals(data(100, 2), region.read(7));
+            assertArrayEquals(new int[] {5, 7}, region.listSlots());
+        } finally {
+            region.close();
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        RegionFile region = new RegionFile(file);
+        region.write(3, data(5000, 3));
+        region.close();
+        region = new RegionFile(file);
+        try {
+            assertArrayEquals(data(5000, 3), region.read(3));
+            assertFalse(region.isDirty());
+        } finally {
+            region.close();
+        }
+    }
+
+    @Test
+    public void testSectorsAreReused() throws IOException {
+        final RegionFile region = new RegionFile(file);
+        try {
+            region.write(0, data(3 * RegionFile.SECTOR_SIZE, 0));
+            region.write(1, data(RegionFile.SECTOR_SIZE, 1));
+            final long size = region.sizeInBytes();
+            // shrinking in place and moving the second chunk into the freed sectors must not grow the file
+            region.write(0, data(RegionFile.SECTOR_SIZE, 2));
+            assertEquals(0, region.write(2, data(2 * RegionFile.SECTOR_SIZE, 3)));
+            assertEquals(size, region.sizeInBytes());
+            region.remove(1);
+            assertFalse(region.contains(1));
+            assertEquals(0, region.write(1, data(RegionFile.SECTOR_SIZE, 4)));
+            assertArrayEquals(data(RegionFile.SECTOR_SIZE, 2), region.read(0));
+            assertArrayEquals(data(RegionFile.SECTOR_SIZE, 4), region.read(1));
+            assertArrayEquals(data(2 * RegionFile.SECTOR_SIZE, 3), region.read(2));
+            assertArrayEquals(new int[] {0, 1, 2}, region.listSlots());
+        } finally {
+            region.close();
+        }
+    }
+}
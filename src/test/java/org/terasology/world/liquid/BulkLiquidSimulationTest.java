@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.liquid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.config.Config;
+import org.terasology.game.CoreRegistry;
+import org.terasology.math.Region3i;
+import org.terasology.math.TeraMath;
+import org.terasology.math.Vector3i;
+import org.terasology.testUtil.ChunkProviderStub;
+import org.terasology.world.WorldProvider;
+import org.terasology.world.WorldProviderCoreImpl;
+import org.terasology.world.WorldProviderWrapper;
+import org.terasology.world.block.Block;
+import org.terasology.world.block.BlockUri;
+import org.terasology.world.block.family.SymmetricFamily;
+import org.terasology.world.block.management.BlockManager;
+import org.terasology.world.chunks.Chunk;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Runs the same scenarios through the bulk simulation and through single block simulation until both settle, and
+ * expects the same liquid and blocks.
+ */
+public class BulkLiquidSimulationTest {
+
+    private static final byte SOURCE_DEPTH = 7;
+    private static final Region3i REGION = Region3i.createFromMinMax(new Vector3i(-Chunk.SIZE_X, 0, -Chunk.SIZE_Z), new Vector3i(2 * Chunk.SIZE_X - 1, 8, 2 * Chunk.SIZE_Z - 1));
+    private static final int MAX_ROUNDS = 100;
+
+    private Block air;
+    private Block dirt;
+    private Block grass;
+    private Block water;
+
+    private WorldProvider singleWorld;
+    private WorldProvider bulkWorld;
+    private LiquidSimulator simulator;
+    private BulkLiquidSimulation bulkSimulation;
+
+    @Before
+    public void setup() {
+        CoreRegistry.put(Config.class, new Config());
+        air = BlockManager.getInstance().getAir();
+        dirt = register("engine:Dirt", false, false);
+        grass = register("engine:Grass", false, false);
+        register("engine:Snow", false, false);
+        water = register("engine:Water", true, true);
+        Block lava = register("engine:Lava", true, true);
+
+        singleWorld = createWorld();
+        bulkWorld = createWorld();
+        CoreRegistry.put(WorldProvider.class, singleWorld);
+        simulator = new LiquidSimulator();
+        simulator.initialise();
+        bulkSimulation = new BulkLiquidSimulation(bulkWorld, air, water, lava, grass, BlockManager.getInstance().getBlock("engine:Snow"), dirt);
+    }
+
+    @After
+    public void teardown() {
+        simulator.shutdown();
+    }
+
+    private Block register(String uri, boolean liquid, boolean penetrable) {
+        Block block = new Block();
+        block.setDisplayName(uri);
+        block.setUri(new BlockUri(uri));
+        block.setLiquid(liquid);
+        block.setPenetrable(penetrable);
+        BlockManager.getInstance().addBlockFamily(new SymmetricFamily(block.getURI(), block));
+        return BlockManager.getInstance().getBlock(block.getURI());
+    }
+
+    private WorldProvider createWorld() {
+        ChunkProviderStub chunkProvider = new ChunkProviderStub();
+        chunkProvider.load(Region3i.createFromCenterExtents(Vector3i.zero(), new Vector3i(2, 0, 2)));
+        return new WorldProviderWrapper(new WorldProviderCoreImpl("test", "seed", 0, null, chunkProvider) {
+            @Override
+            public void setTime(long time) {
+                // the engine timer requires the native libraries
+            }
+        });
+    }
+
+    @Test
+    public void testSpreading() {
+        floor(grass, 0);
+        source(new Vector3i(8, 1, 8));
+        assertSameResult();
+        assertEquals(dirt, bulkWorld.getBlock(new Vector3i(9, 0, 8)));
+        assertTrue(bulkWorld.getLiquid(new Vector3i(10, 1, 8)).getDepth() > 0);
+    }
+
+    @Test
+    public void testFalling() {
+        floor(dirt, 0);
+        source(new Vector3i(8, 6, 8));
+        assertSameResult();
+        assertTrue(bulkWorld.getLiquid(new Vector3i(8, 1, 8)).getDepth() > 0);
+    }
+
+    @Test
+    public void testSourceIsKept() {
+        floor(dirt, 0);
+        source(new Vector3i(6, 1, 8));
+        source(new Vector3i(10, 1, 8));
+        assertSameResult();
+        assertEquals(new LiquidData(LiquidType.WATER, SOURCE_DEPTH), bulkWorld.getLiquid(new Vector3i(6, 1, 8)));
+        assertEquals(new LiquidData(LiquidType.WATER, SOURCE_DEPTH), bulkWorld.getLiquid(new Vector3i(10, 1, 8)));
+    }
+
+    @Test
+    public void testSpreadingAcrossChunkBorder() {
+        floor(dirt, 0);
+        source(new Vector3i(Chunk.SIZE_X - 1, 1, Chunk.SIZE_Z - 1));
+        assertSameResult();
+        assertTrue(bulkWorld.getLiquid(new Vector3i(Chunk.SIZE_X, 1, Chunk.SIZE_Z - 1)).getDepth() > 0);
+        assertTrue(bulkWorld.getLiquid(new Vector3i(Chunk.SIZE_X - 1, 1, Chunk.SIZE_Z)).getDepth() > 0);
+    }
+
+    @Test
+    public void testCellsAreKeptWhileViewIsUnavailable() {
+        Vector3i outside = new Vector3i(2 * Chunk.SIZE_X + 8, 1, 8);
+        Vector3i chunkPos = bulkSimulation.activate(outside);
+        assertEquals(TeraMath.calcChunkPos(outside), chunkPos);
+
+        assertTrue(bulkSimulation.step(chunkPos).isEmpty());
+        assertEquals(1, bulkSimulation.getActiveCellCount(chunkPos));
+    }
+
+    private void floor(Block block, int y) {
+        for (Vector3i pos : Region3i.createFromMinMax(new Vector3i(REGION.min().x, y, REGION.min().z), new Vector3i(REGION.max().x, y, REGION.max().z))) {
+            singleWorld.setBlock(pos, block, air);
+            bulkWorld.setBlock(pos, block, air);
+        }
+    }
+
+    private void source(Vector3i pos) {
+        LiquidData source = new LiquidData(LiquidType.WATER, SOURCE_DEPTH);
+        for (WorldProvider world : new WorldProvider[]{singleWorld, bulkWorld}) {
+            world.setBlock(pos, water, air);
+            world.setLiquid(pos, source, new LiquidData());
+        }
+    }
+
+    private void assertSameResult() {
+        runSingle();
+        runBulk();
+        for (Vector3i pos : REGION) {
+            assertEquals(pos.toString(), singleWorld.getLiquid(pos), bulkWorld.getLiquid(pos));
+            assertEquals(pos.toString(), singleWorld.getBlock(pos), bulkWorld.getBlock(pos));
+        }
+    }
+
+    private void runSingle() {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            for (Vector3i pos : REGION) {
+                LiquidData before = singleWorld.getLiquid(pos);
+                simulator.simulate(pos, singleWorld.getWorldViewAround(TeraMath.calcChunkPos(pos)));
+                changed |= !before.equals(singleWorld.getLiquid(pos));
+            }
+            if (!changed) {
+                return;
+            }
+        }
+        throw new AssertionError("Single block simulation did not settle");
+    }
+
+    private void runBulk() {
+        Set<Vector3i> chunks = Sets.newHashSet();
+        for (Vector3i pos : REGION) {
+            chunks.add(bulkSimulation.activate(pos));
+        }
+        for (int round = 0; round < MAX_ROUNDS && !chunks.isEmpty(); round++) {
+            Set<Vector3i> next = Sets.newHashSet();
+            for (Vector3i chunkPos : chunks) {
+                next.addAll(bulkSimulation.step(chunkPos));
+            }
+            chunks = next;
+        }
+        assertTrue("Bulk simulation did not settle", chunks.isEmpty());
+    }
+}
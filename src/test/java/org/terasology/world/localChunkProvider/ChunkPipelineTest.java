@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2013 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.world.localChunkProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.math.Vector3i;
+import org.terasology.world.chunks.ChunkState;
+
+import com.google.common.collect.Lists;
+
+public class ChunkPipelineTest {
+
+    private final List<Vector3i> scheduled = Lists.newArrayList();
+    private ChunkPipeline pipeline;
+
+    @Before
+    public void setup() {
+        pipeline = new ChunkPipeline(new ChunkPipeline.StageTaskFactory() {
+            @Override
+            public ChunkTask createStageTask(Vector3i position, ChunkState state) {
+                // the factory is called while the pipeline updates its dependencies, so this is recorded synchronously
+                scheduled.add(new Vector3i(position));
+                return new AbstractChunkTask(position, null) {
+                    @Override
+                    public void enact() {
+                    }
+                };
+            }
+        }, new Comparator<ChunkTask>() {
+            @Override
+            public int compare(ChunkTask o1, ChunkTask o2) {
+                return 0;
+            }
+        }, 1);
+    }
+
+    @After
+    public void cleanup() {
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    private void setStates(Vector3i center, ChunkState state) {
+        for (int x = -1; x <= 1; x++) {
+            for (int z = -1; z <= 1; z++) {
+                if (x != 0 || z != 0) {
+                    pipeline.setState(new Vector3i(center.x + x, 0, center.z + z), state);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStageWaitsForAllNeighbours() {
+        pipeline.setState(Vector3i.zero(), ChunkState.INTERNAL_LIGHT_GENERATION_PENDING);
+        setStates(Vector3i.zero(), ChunkState.ADJACENCY_GENERATION_PENDING);
+        assertTrue(scheduled.isEmpty());
+
+        setStates(Vector3i.zero(), ChunkState.INTERNAL_LIGHT_GENERATION_PENDING);
+        assertEquals(Lists.newArrayList(Vector3i.zero()), scheduled);
+    }
+
+    @Test
+    public void testRemovedNeighbourBlocksStage() {
+        pipeline.setState(Vector3i.zero(), ChunkState.LIGHT_PROPAGATION_PENDING);
+        setStates(Vector3i.zero(), ChunkState.COMPLETE);
+        pipeline.remove(new Vector3i(1, 0, 1));
+        assertEquals(1, scheduled.size());
+
+        scheduled.clear();
+        pipeline.setState(Vector3i.zero(), ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING);
+        assertTrue(scheduled.isEmpty());
+        pipeline.setState(new Vector3i(1, 0, 1), ChunkState.COMPLETE);
+        assertEquals(Lists.newArrayList(Vector3i.zero()), scheduled);
+    }
+
+    @Test
+    public void testStalledStageIsRetriedWhenNeighbourAdvances() throws InterruptedException {
+        setStates(Vector3i.zero(), ChunkState.LIGHT_PROPAGATION_PENDING);
+        pipeline.setState(Vector3i.zero(), ChunkState.LIGHT_PROPAGATION_PENDING);
+        assertEquals(Lists.newArrayList(Vector3i.zero()), scheduled);
+        // the task does not advance the chunk
+        awaitFinished(Vector3i.zero());
+
+        scheduled.clear();
+        pipeline.setState(new Vector3i(1, 0, 0), ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING);
+        assertEquals(Lists.newArrayList(Vector3i.zero()), scheduled);
+    }
+
+    @Test
+    public void testWaitingStageIsNotRetriedBeforeNeighboursAreReady() throws InterruptedException {
+        setStates(Vector3i.zero(), ChunkState.LIGHT_PROPAGATION_PENDING);
+        pipeline.setState(Vector3i.zero(), ChunkState.LIGHT_PROPAGATION_PENDING);
+        awaitFinished(Vector3i.zero());
+        pipeline.remove(new Vector3i(1, 0, 1));
+
+        scheduled.clear();
+        pipeline.setState(new Vector3i(1, 0, 0), ChunkState.FULL_LIGHT_CONNECTIVITY_PENDING);
+        assertTrue(scheduled.isEmpty());
+    }
+
+    private void awaitFinished(Vector3i position) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 1000;
+        while (pipeline.isScheduled(position) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(1);
+        }
+        assertFalse(pipeline.isScheduled(position));
+    }
+
+    @Test
+    public void testCompleteChunksAreNotScheduled() {
+        pipeline.setState(Vector3i.zero(), ChunkState.COMPLETE);
+        setStates(Vector3i.zero(), ChunkState.COMPLETE);
+        assertTrue(scheduled.isEmpty());
+    }
+}